@@ -0,0 +1,50 @@
+package org.rem.benchmarks;
+
+import norswap.uranium.Reactor;
+import org.openjdk.jmh.annotations.*;
+import org.rem.SemanticAnalyzer;
+import org.rem.parser.Lexer;
+import org.rem.parser.Parser;
+import org.rem.parser.Source;
+import org.rem.parser.ast.Statement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures semantic analysis, i.e. registering the rules with
+ * {@link SemanticAnalyzer#analyze} and solving them with {@link Reactor#run}.
+ * Analysis only attaches attributes to a fresh reactor, so the same AST is
+ * reused across invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "LARGE"})
+  public BenchmarkPrograms.Size size;
+
+  private List<Statement> statements;
+
+  @Setup
+  public void setup() {
+    statements = new Parser(new Lexer(new Source("benchmark.r", BenchmarkPrograms.generate(size)))).parse();
+  }
+
+  @Benchmark
+  public Reactor analyze() {
+    Reactor reactor = new Reactor();
+    new SemanticAnalyzer(reactor, false).analyze(statements);
+    reactor.run();
+
+    if (!reactor.errors().isEmpty()) {
+      throw new IllegalStateException("benchmark program has semantic errors");
+    }
+
+    return reactor;
+  }
+}
@@ -0,0 +1,42 @@
+package org.rem.benchmarks;
+
+import tools.rem.GenerateProgram;
+
+/**
+ * Generates the rem programs used as benchmark inputs with
+ * {@link GenerateProgram}. Every program is valid and compiles through every
+ * phase, so the same input can be fed to the lexer, the parser, the analyzer
+ * and code generation.
+ */
+public final class BenchmarkPrograms {
+
+  private BenchmarkPrograms() {
+  }
+
+  /**
+   * Input sizes shared by all benchmarks, expressed as a number of generated
+   * functions.
+   */
+  public enum Size {
+    SMALL(10),
+    MEDIUM(500),
+    LARGE(3_000);
+
+    private final int functions;
+
+    Size(int functions) {
+      this.functions = functions;
+    }
+  }
+
+  public static String generate(Size size) {
+    return generate(size.functions);
+  }
+
+  public static String generate(int functions) {
+    GenerateProgram generator = new GenerateProgram();
+    generator.functions = functions;
+    generator.depth = 2;
+    return generator.generate();
+  }
+}
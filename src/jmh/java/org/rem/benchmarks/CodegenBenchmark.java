@@ -0,0 +1,58 @@
+package org.rem.benchmarks;
+
+import norswap.uranium.Reactor;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.openjdk.jmh.annotations.*;
+import org.rem.SemanticAnalyzer;
+import org.rem.compiler.CompileResult;
+import org.rem.compiler.targets.llvm.LLVMCompileTarget;
+import org.rem.parser.Lexer;
+import org.rem.parser.Parser;
+import org.rem.parser.Source;
+import org.rem.parser.ast.Statement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures LLVM IR generation by {@link LLVMCompileTarget#compile} over an
+ * analyzed AST. Every invocation builds a fresh module in its own context,
+ * which is disposed once the invocation is over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodegenBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "LARGE"})
+  public BenchmarkPrograms.Size size;
+
+  private List<Statement> statements;
+  private Reactor reactor;
+  private LLVMCompileTarget target;
+
+  @Setup
+  public void setup() {
+    statements = new Parser(new Lexer(new Source("benchmark.r", BenchmarkPrograms.generate(size)))).parse();
+    reactor = new Reactor();
+    new SemanticAnalyzer(reactor, false).analyze(statements);
+    reactor.run();
+  }
+
+  @Benchmark
+  public CompileResult<LLVMValueRef> compile() {
+    target = new LLVMCompileTarget(reactor, "benchmark");
+    return target.compile(statements);
+  }
+
+  @TearDown(Level.Invocation)
+  public void dispose() {
+    if (target != null) {
+      target.dispose();
+      target = null;
+    }
+  }
+}
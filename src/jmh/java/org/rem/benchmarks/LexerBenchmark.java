@@ -0,0 +1,53 @@
+package org.rem.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rem.parser.Lexer;
+import org.rem.parser.Source;
+import org.rem.parser.TokenBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "LARGE"})
+  public BenchmarkPrograms.Size size;
+
+  @Param({"code", "annotated"})
+  public String shape;
+
+  private Source source;
+
+  @Setup
+  public void setup() {
+    String program = BenchmarkPrograms.generate(size);
+    source = new Source("benchmark.r", shape.equals("annotated") ? annotate(program) : program);
+  }
+
+  @Benchmark
+  public TokenBuffer lex() {
+    return new Lexer(source).tokenize();
+  }
+
+  /**
+   * Surrounds every line with a block comment, a string literal and a line
+   * comment. The result only has to lex, not parse.
+   */
+  private static String annotate(String program) {
+    StringBuilder builder = new StringBuilder(program.length() * 4);
+
+    for (String line : program.split("\n")) {
+      builder.append("/*\n * Computes the next value of the sequence.\n */\n")
+        .append("\"the value is ${value} and \\\"quoted\\\" text follows\"\n")
+        .append(line)
+        .append("    # keeps the loop bounded\n");
+    }
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,66 @@
+package org.rem.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rem.parser.Lexer;
+import org.rem.parser.Parser;
+import org.rem.parser.Source;
+import org.rem.parser.TokenBuffer;
+import org.rem.parser.ast.Statement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing alone by reusing the tokens of a single lexer run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({"SMALL", "MEDIUM", "LARGE"})
+  public BenchmarkPrograms.Size size;
+
+  @Param({"code", "arithmetic"})
+  public String shape;
+
+  private Lexer lexer;
+  private TokenBuffer tokens;
+
+  @Setup
+  public void setup() {
+    String program = BenchmarkPrograms.generate(size);
+    if (shape.equals("arithmetic")) program = arithmetic(program);
+
+    lexer = new Lexer(new Source("benchmark.r", program));
+    tokens = lexer.tokenize();
+  }
+
+  @Benchmark
+  public List<Statement> parse() {
+    return new Parser(lexer, tokens).parse();
+  }
+
+  /**
+   * Appends a function of long operator chains and deeply nested
+   * parentheses for every eight lines of the program.
+   */
+  private static String arithmetic(String program) {
+    int functions = program.split("\n").length / 8;
+    StringBuilder builder = new StringBuilder(program).append('\n');
+
+    for (int i = 0; i < functions; i++) {
+      builder.append("def arithmetic").append(i).append("(a: i32, b: i32) i32 {\n")
+        .append("  var c = a * b + a / 3 - b % 7 << 2 | a & b ^ 5 >> 1\n")
+        .append("  var d = ").append("(".repeat(64)).append('a')
+        .append(" + b) * 2".repeat(64)).append('\n')
+        .append("  return c < d and a != b or d >= c == true ? c : d\n")
+        .append("}\n");
+    }
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,65 @@
+package org.rem.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rem.parser.StringDecoder;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link StringDecoder} with the chained `String.replace` decoding
+ * the lexer used before, on string bodies with and without escapes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringDecoderBenchmark {
+
+  @Param({"plain", "escaped"})
+  public String kind;
+
+  @Param({"16", "4096"})
+  public int length;
+
+  private final StringDecoder decoder = new StringDecoder();
+  private String source;
+
+  @Setup
+  public void setup() {
+    String unit = kind.equals("plain") ? "lorem ipsum " : "a\\tb\\n\\\"c\\\\ ";
+    StringBuilder body = new StringBuilder();
+    while (body.length() < length) {
+      body.append(unit);
+    }
+
+    source = "\"" + body + "\"";
+  }
+
+  @Benchmark
+  public String decoder() {
+    return decoder.decode(source, 1, source.length() - 1);
+  }
+
+  @Benchmark
+  public String replaceChain() {
+    Charset UTF_8 = StandardCharsets.UTF_8;
+    String escaped = source.subSequence(1, source.length() - 1).toString()
+      .replace("\\0", "\0")
+      .replace("\\$", "$")
+      .replace("\\'", "\\'")
+      .replace("\\\"", "'")
+      .replace("\\b", "\b")
+      .replace("\\f", "\f")
+      .replace("\\n", "\n")
+      .replace("\\r", "\r")
+      .replace("\\t", "\t")
+      .replace("\\\\", "\\")
+      .replace("\\n", "\n");
+
+    return UTF_8.decode(UTF_8.encode(escaped)).toString();
+  }
+}
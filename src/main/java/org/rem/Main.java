@@ -2,36 +2,212 @@ package org.rem;
 
 import org.rem.compiler.CompileRequest;
 import org.rem.compiler.Compiler;
+import org.rem.compiler.cache.BuildCache;
+import org.rem.enums.EmitMode;
+import org.rem.enums.OptimizationLevel;
 import org.rem.exceptions.AnalysisException;
+import org.rem.utils.TimeReport;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Main {
 
   public static void main(String[] args) {
-    if (args.length > 0) {
-      String file = args[0];
+    System.exit(run(args, Path.of("").toAbsolutePath()));
+  }
+
+  public static int run(String[] args, Path workingDirectory) {
+    return run(args, workingDirectory, System.getenv());
+  }
+
+  /**
+   * Runs the compiler with the given command line and returns its exit status.
+   * Relative paths are resolved against the given working directory, and
+   * tools and the cache are found through the given environment, so that the
+   * compiler daemon can serve clients started anywhere.
+   */
+  public static int run(String[] args, Path workingDirectory, Map<String, String> environment) {
+    String file = null;
+    String output = null;
+    OptimizationLevel optimizationLevel = OptimizationLevel.O0;
+    String passPipeline = null;
+    int jobs = Runtime.getRuntime().availableProcessors();
+    boolean useCache = true;
+    boolean showCacheStats = false;
+    Path cacheDirectory = BuildCache.defaultDirectory(environment);
+    long cacheSize = BuildCache.DEFAULT_MAX_BYTES;
+    boolean library = false;
+    List<String> libraries = new ArrayList<>();
+    List<String> libraryPaths = new ArrayList<>();
+    String timeReport = null;
+    Set<EmitMode> emit = Set.of(EmitMode.EXECUTABLE);
+    String dumpFunction = null;
+    boolean runProgram = args.length > 0 && args[0].equals("run");
+
+    for (int i = runProgram ? 1 : 0; i < args.length; i++) {
+      String arg = args[i];
+
+      if (arg.startsWith("-O")) {
+        optimizationLevel = OptimizationLevel.parse(arg);
+        if (optimizationLevel == null) {
+          System.err.printf("error: unknown optimization level '%s'\n", arg);
+          return 1;
+        }
+      } else if (arg.startsWith("--passes=")) {
+        passPipeline = arg.substring("--passes=".length());
+      } else if (arg.equals("-o") && i + 1 < args.length) {
+        output = args[++i];
+      } else if (arg.equals("-j") && i + 1 < args.length) {
+        try {
+          jobs = Integer.parseInt(args[++i]);
+        } catch (NumberFormatException e) {
+          System.err.printf("error: invalid job count '%s'\n", args[i]);
+          return 1;
+        }
+      } else if (arg.equals("--no-cache")) {
+        useCache = false;
+      } else if (arg.equals("--cache-stats")) {
+        showCacheStats = true;
+      } else if (arg.startsWith("--cache-dir=")) {
+        cacheDirectory = workingDirectory.resolve(arg.substring("--cache-dir=".length()));
+      } else if (arg.startsWith("--cache-size=")) {
+        try {
+          cacheSize = Long.parseLong(arg.substring("--cache-size=".length())) * 1024 * 1024;
+        } catch (NumberFormatException e) {
+          System.err.printf("error: invalid cache size '%s'\n", arg);
+          return 1;
+        }
+      } else if (arg.equals("--time-report")) {
+        timeReport = "table";
+      } else if (arg.startsWith("--time-report=")) {
+        timeReport = arg.substring("--time-report=".length());
+      } else if (arg.startsWith("--emit=")) {
+        emit = EmitMode.parse(arg.substring("--emit=".length()));
+        if (emit == null) {
+          System.err.printf("error: unknown emit mode in '%s'\n", arg);
+          return 1;
+        }
+      } else if (arg.startsWith("--dump-function=")) {
+        dumpFunction = arg.substring("--dump-function=".length());
+      } else if (arg.equals("--lib")) {
+        library = true;
+      } else if (arg.equals("-l") && i + 1 < args.length) {
+        libraries.add(args[++i]);
+      } else if (arg.startsWith("-l") && arg.length() > 2) {
+        libraries.add(arg.substring(2));
+      } else if (arg.equals("-L") && i + 1 < args.length) {
+        libraryPaths.add(workingDirectory.resolve(args[++i]).toString());
+      } else if (arg.startsWith("-L") && arg.length() > 2) {
+        libraryPaths.add(workingDirectory.resolve(arg.substring(2)).toString());
+      } else if (arg.startsWith("-")) {
+        System.err.printf("error: unknown option '%s'\n", arg);
+        return 1;
+      } else {
+        file = arg;
+      }
+    }
+
+    BuildCache cache = new BuildCache(cacheDirectory, cacheSize);
+
+    if (file == null && showCacheStats) {
+      printCacheStats(cache);
+      return 0;
+    }
 
+    if (file != null) {
       // TODO: Make configurable
       boolean showWarnings = true;
 
+      File sourceFile = workingDirectory.resolve(file).toFile();
+
+      if (output == null) {
+        output = sourceFile.getName().replaceAll("[.][^.]*$", "");
+      }
+
       try {
-        Compiler compiler = new Compiler(
-          new CompileRequest(
-            new File(file),
-            "llvm"
-          ),
-          showWarnings
+        CompileRequest request = new CompileRequest(
+          sourceFile,
+          "llvm",
+          "__main__",
+          workingDirectory.resolve(output).toString()
         );
+        request.optimizationLevel = optimizationLevel;
+        request.passPipeline = passPipeline;
+        request.jobs = jobs;
+        request.cache = useCache ? cache : null;
+        request.library = library;
+        request.libraries = libraries;
+        request.libraryPaths = libraryPaths;
+        request.emit = emit;
+        request.dumpFunction = dumpFunction;
+        request.environment = environment;
+        if (timeReport != null) {
+          request.timeReport = TimeReport.create();
+        }
 
-        System.exit(compiler.generate(compiler.compile()));
+        Compiler compiler = new Compiler(request, showWarnings);
+
+        try {
+          if (runProgram) {
+            return compiler.run();
+          }
+
+          int status = compiler.build();
+
+          if (showCacheStats) {
+            printCacheStats(cache);
+          }
+
+          return status;
+        } finally {
+          if (timeReport != null) {
+            printTimeReport(request.timeReport, timeReport, workingDirectory);
+          }
+        }
       } catch (AnalysisException e) {
         System.err.println(e.getMessage());
+        return 1;
       } catch (Exception e) {
         e.printStackTrace();
+        return 1;
       }
     } else {
-      System.out.println("Usage: rem <file>");
+      System.out.println("Usage: rem [run] [-O0|-O1|-O2|-O3|-Os|-Oz] [--passes=<pipeline>] [--emit=llvm-ir|bc|asm|obj|exe] [--dump-function=<name>] [-o <output>] [-j <jobs>] [--lib] [-l<library>] [-L<dir>] [--time-report[=json|<file>]] [--no-cache] [--cache-dir=<dir>] [--cache-size=<MiB>] [--cache-stats] <file>");
+    }
+
+    return 0;
+  }
+
+  /**
+   * Prints the report as a table, as JSON with `json`, or writes it as JSON to
+   * the given file.
+   */
+  private static void printTimeReport(TimeReport report, String format, Path workingDirectory) {
+    if (format.equals("table")) {
+      report.print(System.err);
+    } else if (format.equals("json")) {
+      System.err.println(report.toJson());
+    } else {
+      try {
+        Files.writeString(workingDirectory.resolve(format), report.toJson() + "\n");
+      } catch (IOException e) {
+        System.err.printf("error: could not write time report: %s\n", e.getMessage());
+      }
+    }
+  }
+
+  private static void printCacheStats(BuildCache cache) {
+    try {
+      System.err.println(cache.statistics());
+    } catch (IOException e) {
+      System.err.printf("error: could not read build cache: %s\n", e.getMessage());
     }
   }
 }
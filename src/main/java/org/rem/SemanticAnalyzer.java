@@ -36,6 +36,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   private AST inferenceContext;
   private AST methodContext;
   private AST currentLoop;
+  private int ruleCount = 0;
 
   public SemanticAnalyzer(Reactor reactor, boolean showWarnings) {
     this.R = reactor;
@@ -43,8 +44,30 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     scope = new RootScope(reactor);
   }
 
+  /**
+   * The number of Reactor rules registered by this analyzer.
+   */
+  public int getRuleCount() {
+    return ruleCount;
+  }
+
   //region [General Helpers]
 
+  private Rule rule() {
+    ruleCount++;
+    return R.rule();
+  }
+
+  private Rule rule(Object node, String attribute) {
+    ruleCount++;
+    return R.rule(node, attribute);
+  }
+
+  private Rule rule(Attribute... attributes) {
+    ruleCount++;
+    return R.rule(attributes);
+  }
+
   private static String arithmeticError(Token op, Object left, Object right) {
     return String.format(
       "Invalid arithemetic operation %s on type %s and %s",
@@ -147,7 +170,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
     switch (expr.op.type()) {
       case TILDE: {
-        R.rule(expr, "type")
+        rule(expr, "type")
           .using(expr.right, "type")
           .by(r -> {
             IType opType = r.get(0);
@@ -164,7 +187,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         break;
       }
       case MINUS: {
-        R.rule(expr, "type")
+        rule(expr, "type")
           .using(expr.right, "type")
           .by(r -> {
             IType opType = r.get(0);
@@ -180,7 +203,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
       case BANG: {
         R.set(expr, "type", BoolType.INSTANCE);
 
-        R.rule()
+        rule()
           .using(expr.right, "type")
           .by(r -> {
             IType opType = r.get(0);
@@ -199,7 +222,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(expr.left);
     visitExpression(expr.right);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.left.attr("type"), expr.right.attr("type"))
       .by(r -> {
         IType left = r.get(0);
@@ -215,7 +238,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
                 left = F32Type.INSTANCE;
 
                 IType finalLeft = left;
-                R.rule(expr.left, "cast")
+                rule(expr.left, "cast")
                   .using(expr.left, "type")
                   .by(r1 -> r1.set(0, finalLeft));
               }
@@ -224,7 +247,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
                 right = F32Type.INSTANCE;
 
                 IType finalRight = right;
-                R.rule(expr.right, "cast")
+                rule(expr.right, "cast")
                   .using(expr.right, "type")
                   .by(r1 -> r1.set(0, finalRight));
               }
@@ -233,7 +256,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
                 left = I32Type.INSTANCE;
 
                 IType finalLeft = left;
-                R.rule(expr.left, "cast")
+                rule(expr.left, "cast")
                   .using(expr.left, "type")
                   .by(r1 -> r1.set(0, finalLeft));
               }
@@ -242,7 +265,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
                 right = I32Type.INSTANCE;
 
                 IType finalRight = right;
-                R.rule(expr.right, "cast")
+                rule(expr.right, "cast")
                   .using(expr.right, "type")
                   .by(r1 -> r1.set(0, finalRight));
               }
@@ -253,7 +276,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
             if(left.lessOrGreater(maxType)) {
 //              left = maxType;
 
-              R.rule(expr.left, "cast")
+              rule(expr.left, "cast")
                 .using(expr.left, "type")
                 .by(r1 -> r1.set(0, maxType));
             }
@@ -261,7 +284,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
             if(right.lessOrGreater(maxType)) {
 //              right = maxType;
 
-              R.rule(expr.right, "cast")
+              rule(expr.right, "cast")
                 .using(expr.right, "type")
                 .by(r1 -> r1.set(0, maxType));
             }
@@ -295,7 +318,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(expr.left);
     visitExpression(expr.right);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.left.attr("type"), expr.right.attr("type"))
       .by(r -> {
         IType left = r.get(0);
@@ -333,7 +356,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitGroupingExpression(Expression.Grouping expr) {
     visitExpression(expr.expression);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.expression, "type")
       .by(Rule::copyFirst);
   }
@@ -342,7 +365,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitIncrementExpression(Expression.Increment expr) {
     visitExpression(expr.expression);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.expression, "type")
       .by(r -> {
         IType type = r.get(0);
@@ -359,7 +382,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitDecrementExpression(Expression.Decrement expr) {
     visitExpression(expr.expression);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.expression, "type")
       .by(r -> {
         IType type = r.get(0);
@@ -379,22 +402,23 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     // functions or types. By looking up now, we can report looked-up variables later
     // as being used before being defined.
     String name = expr.token.literal();
-    DeclarationContext maybeCtx = scope.lookup(name);
+    int symbol = expr.token.symbol();
+    DeclarationContext maybeCtx = scope.lookup(symbol);
 
     if (maybeCtx != null) {
       R.set(expr, "ast", maybeCtx.declaration());
       R.set(expr, "scope", maybeCtx.scope());
 
-      R.rule(expr, "type")
+      rule(expr, "type")
         .using(maybeCtx.declaration(), "type")
         .by(Rule::copyFirst);
       return;
     }
 
     // Re-lookup after the scopes have been built.
-    R.rule(expr.attr("ast"), expr.attr("scope"))
+    rule(expr.attr("ast"), expr.attr("scope"))
       .by(r -> {
-        DeclarationContext ctx = scope.lookup(name);
+        DeclarationContext ctx = scope.lookup(symbol);
         AST ast = ctx == null ? null : ctx.declaration();
 
         if (ctx == null) {
@@ -412,7 +436,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
               expr, expr.attr("type")
             );
           } else {
-            R.rule(expr, "type")
+            rule(expr, "type")
               .using(ast, "type")
               .by(Rule::copyFirst);
           }
@@ -422,13 +446,13 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
   @Override
   public void visitTypedNameExpression(Expression.TypedName expr) {
-    scope.declare(expr.name.token.literal(), expr);
+    scope.declare(expr.name.token.symbol(), expr);
 
     if (expr.type == null) return;
 
     visitTyped(expr.type);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.type, "value")
       .by(Rule::copyFirst);
   }
@@ -439,7 +463,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(expr.falsy);
     visitExpression(expr.truth);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.expression.attr("type"), expr.truth.attr("type"), expr.falsy.attr("type"))
       .by(r -> {
         IType condition = r.get(0);
@@ -484,7 +508,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
     visitExpression(expr.callee);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(dependencies)
       .by(r -> {
         IType maybeFunType = r.get(0);
@@ -534,7 +558,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
             );
           } else if(argType != paramType) {
             // ensure correct casting
-            R.rule(expr.args.get(i), "cast")
+            rule(expr.args.get(i), "cast")
               .using(expr.args.get(i), "type")
               .by(r1 -> {
                 if(argType instanceof ArrayType argArray && paramType instanceof ArrayType paramArray) {
@@ -554,7 +578,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitGetExpression(Expression.Get expr) {
     visitExpression(expr.expression);
 
-    R.rule()
+    rule()
       .using(expr.expression, "type")
       .by(r -> {
         IType type = r.get(0);
@@ -562,7 +586,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         if (type instanceof ArrayType) {
           // FIXME: May need to ditch this when if decide that arrays do not have fields.
           if (expr.name.token.literal().equals("length")) {
-            R.rule(expr, "type")
+            rule(expr, "type")
               .by(rr -> rr.set(0, I32Type.INSTANCE));
           } else {
             r.errorFor(
@@ -589,7 +613,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         for (Statement.Property property : aClass.properties) {
           if (!property.name.name.token.literal().equals(getName)) continue;
 
-          R.rule(expr, "type")
+          rule(expr, "type")
             .using(property, "type")
             .by(Rule::copyFirst);
 
@@ -600,7 +624,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         for (Statement.Method method : aClass.methods) {
           if (!method.name.literal().equals(getName)) continue;
 
-          R.rule(expr, "type")
+          rule(expr, "type")
             .using(method, "type")
             .by(Rule::copyFirst);
 
@@ -620,7 +644,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(expr.name);
     visitExpression(expr.value);
 
-    R.rule()
+    rule()
       .using(expr.expression.attr("type"), expr.value.attr("type"))
       .by(r -> {
         IType iType = r.get(0);
@@ -656,7 +680,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         for (Statement.Property property : aClass.properties) {
           if (!property.name.name.token.literal().equals(getName)) continue;
 
-          R.rule(expr, "type")
+          rule(expr, "type")
             .using(property, "type")
             .by(r1 -> {
               IType type = r1.get(0);
@@ -689,7 +713,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(expr.argument);
     visitExpression(expr.callee);
 
-    R.rule()
+    rule()
       .using(expr.argument, "type")
       .by(r -> {
         IType type = r.get(0);
@@ -700,7 +724,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
           r.error("Indexing an array using a value that's not assignable to `i32`", expr.argument);
       });
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.callee, "type")
       .by(r -> {
         IType type = r.get(0);
@@ -747,15 +771,15 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
       if (context instanceof Statement.Var varStmt) {
         if(varStmt.typedName.type == null) {
-          R.rule()
+          rule()
             .by(r -> r.errorFor("Cannot assign empty array to untyped variable", expr));
         }
 
-        R.rule(expr, "type")
+        rule(expr, "type")
           .using(context, "type")
           .by(Rule::copyFirst);
       } else if (context instanceof Expression.Call) {
-        R.rule(expr, "type")
+        rule(expr, "type")
           .using(((Expression.Call) context).callee.attr("type"), expr.attr("index"))
           .by(r -> {
             DefType funType = r.get(0);
@@ -768,7 +792,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     Attribute[] dependencies =
       expr.items.stream().map(it -> it.attr("type")).toArray(Attribute[]::new);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(dependencies)
       .by(r -> {
         IType[] types = IntStream.range(0, dependencies.length).<IType>mapToObj(r::get)
@@ -813,13 +837,13 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
       final AST context = this.inferenceContext;
 
       if (context instanceof Statement.Var) {
-        R.rule(expr, "type")
+        rule(expr, "type")
           .using(context, "type")
           .by(Rule::copyFirst);
       } else if (context instanceof Expression.Call) {
         Integer index = R.get(expr, "index");
         if (index == null) {
-          R.rule(expr, "type")
+          rule(expr, "type")
             .by(r -> {
               r.errorFor("Cannot infer type for sub dictionary literal with no index.", expr);
               r.set(0, new MappedType(VoidType.INSTANCE, VoidType.INSTANCE));
@@ -827,7 +851,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
           return;
         }
 
-        R.rule(expr, "type")
+        rule(expr, "type")
           .using(((Expression.Call) context).callee.attr("type"), expr.attr("index"))
           .by(r -> {
             DefType funType = r.get(0);
@@ -847,7 +871,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     Attribute[] valueDependencies =
       expr.values.stream().map(it -> it.attr("type")).toArray(Attribute[]::new);
 
-    R.rule()
+    rule()
       .using(keyDependencies)
       .by(r -> {
         IType[] keyTypes = IntStream.range(0, keyDependencies.length).<IType>mapToObj(r::get)
@@ -880,7 +904,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
           final IType sharedKeyType = keyType;
 
-          R.rule(expr, "type")
+          rule(expr, "type")
             .using(valueDependencies)
             .by(r1 -> {
               IType[] valueTypes = IntStream.range(0, valueDependencies.length).<IType>mapToObj(r1::get)
@@ -915,7 +939,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitNewExpression(Expression.New expr) {
     visitExpression(expr.expression);
 
-    R.rule()
+    rule()
       .using(expr.expression, "ast")
       .by(r -> {
         Statement declaration = r.get(0);
@@ -933,11 +957,11 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
           .orElse(null);
 
         if (constructor != null) {
-          R.rule(expr, "type")
+          rule(expr, "type")
             .using(constructor.attr("type"))
             .by(Rule::copyFirst);
         } else {
-          R.rule(expr, "type")
+          rule(expr, "type")
             .using(declaration, "type")
             .by(r1 -> {
               r1.set(0, new DefType(r1.get(0)));
@@ -949,7 +973,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   @Override
   public void visitParentExpression(Expression.Parent expr) {
     if (methodContext != null) {
-      R.rule(expr, "type")
+      rule(expr, "type")
         .using(methodContext, "class")
         .by(r -> {
           ClassType type = r.get(0);
@@ -969,7 +993,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
           }
         });
     } else {
-      R.rule(expr, "type")
+      rule(expr, "type")
         .by(r -> {
           r.errorFor("Cannot declare variable `parent` outside of a non-static class method", expr);
           r.set(0, VoidType.INSTANCE);
@@ -980,11 +1004,11 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   @Override
   public void visitSelfExpression(Expression.Self expr) {
     if (methodContext != null) {
-      R.rule(expr, "type")
+      rule(expr, "type")
         .using(methodContext, "class")
         .by(Rule::copyFirst);
     } else {
-      R.rule(expr, "type")
+      rule(expr, "type")
         .by(r -> {
           r.errorFor("Cannot declare variable `self` outside of a non-static class method", expr);
           r.set(0, VoidType.INSTANCE);
@@ -997,7 +1021,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(expr.expression);
     visitExpression(expr.value);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.expression.attr("type"), expr.value.attr("type"))
       .by(r -> {
         IType left = r.get(0);
@@ -1027,7 +1051,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(expr.expression);
     visitExpression(expr.value);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.expression.attr("type"), expr.value.attr("type"))
       .by(r -> {
         IType left = r.get(0);
@@ -1046,7 +1070,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
                 }
               }
 
-              R.rule(expr.value, "cast")
+              rule(expr.value, "cast")
                 .using(expr.expression, "type")
                 .by(Rule::copyFirst);
             }
@@ -1073,7 +1097,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitAnonymousExpression(Expression.Anonymous expr) {
     visitFunctionStatement(expr.function);
 
-    R.rule(expr, "type")
+    rule(expr, "type")
       .using(expr.function, "type")
       .by(Rule::copyFirst);
   }
@@ -1092,7 +1116,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitEchoStatement(Statement.Echo stmt) {
     visitExpression(stmt.value);
 
-    R.rule(stmt, "type")
+    rule(stmt, "type")
       .using(stmt.value, "type")
       .by(Rule::copyFirst);
   }
@@ -1108,7 +1132,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitStatement(stmt.thenBranch);
     visitStatement(stmt.elseBranch);
 
-    R.rule()
+    rule()
       .using(stmt.condition.attr("type"))
       .by(r -> {
         IType condition = r.get(0);
@@ -1128,7 +1152,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     }
 
     Attribute[] deps = getReturnsDependencies(dependencies);
-    R.rule(stmt, "returns")
+    rule(stmt, "returns")
       .using(deps)
       .by(r -> r.set(0, deps.length == 2 && Arrays.stream(deps).allMatch(r::get)));
   }
@@ -1146,7 +1170,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     if(stmt.condition != null) {
       visitExpression(stmt.condition);
 
-      R.rule()
+      rule()
         .using(stmt.condition, "type")
         .by(r -> {
           IType type = r.get(0);
@@ -1159,12 +1183,12 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         });
     }
 
-    R.rule(stmt, "breaks")
+    rule(stmt, "breaks")
       .using(stmt.body, "breaks")
       .by(Rule::copyFirst);
 
     Attribute[] deps = getReturnsDependencies(List.of(stmt.body));
-    R.rule(stmt, "returns")
+    rule(stmt, "returns")
       .using(deps)
       .by(r -> r.set(0, deps.length == 2 && Arrays.stream(deps).allMatch(r::get)));
   }
@@ -1178,7 +1202,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitStatement(stmt.body);
     currentLoop = previousLoop;
 
-    R.rule()
+    rule()
       .using(stmt.condition, "type")
       .by(r -> {
         IType type = r.get(0);
@@ -1190,12 +1214,12 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         }
       });
 
-    R.rule(stmt, "breaks")
+    rule(stmt, "breaks")
       .using(stmt.body, "breaks")
       .by(Rule::copyFirst);
 
     Attribute[] deps = getReturnsDependencies(List.of(stmt.body));
-    R.rule(stmt, "returns")
+    rule(stmt, "returns")
       .using(deps)
       .by(r -> r.set(0, deps.length == 2 && Arrays.stream(deps).allMatch(r::get)));
   }
@@ -1209,7 +1233,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitStatement(stmt.body);
     currentLoop = previousLoop;
 
-    R.rule()
+    rule()
       .using(stmt.condition, "type")
       .by(r -> {
         IType type = r.get(0);
@@ -1221,12 +1245,12 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
         }
       });
 
-    R.rule(stmt, "breaks")
+    rule(stmt, "breaks")
       .using(stmt.body, "breaks")
       .by(Rule::copyFirst);
 
     Attribute[] deps = getReturnsDependencies(List.of(stmt.body));
-    R.rule(stmt, "returns")
+    rule(stmt, "returns")
       .using(deps)
       .by(r -> r.set(0, deps.length == 2 && Arrays.stream(deps).allMatch(r::get)));
   }
@@ -1234,7 +1258,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   @Override
   public void visitContinueStatement(Statement.Continue stmt) {
     if(currentLoop == null) {
-      R.rule()
+      rule()
         .by(r -> r.errorFor("Cannot use continue outside of loop", stmt));
     } else {
       R.set(stmt, "ast", currentLoop);
@@ -1244,7 +1268,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   @Override
   public void visitBreakStatement(Statement.Break stmt) {
     if(currentLoop == null) {
-      R.rule()
+      rule()
         .by(r -> r.errorFor("Cannot use break outside of loop", stmt));
     } else {
       R.set(stmt, "ast", currentLoop);
@@ -1274,7 +1298,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
       boolean isConstructor = method.name.literal().equals("@new");
 
       if (stmt.value == null) {
-        R.rule()
+        rule()
           .using(method.returnType, "value")
           .by(r -> {
             IType returnType = r.get(0);
@@ -1284,7 +1308,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
             }
           });
       } else {
-        R.rule()
+        rule()
           .using(method.returnType.attr("value"), stmt.value.attr("type"))
           .by(r -> {
             IType expected = r.get(0);
@@ -1304,7 +1328,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
               // ensure that proper value is returned
               if(actual != expected) {
-                R.rule(stmt, "cast")
+                rule(stmt, "cast")
                   .using(method.returnType, "value")
                   .by(Rule::copyFirst);
               }
@@ -1315,7 +1339,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
       boolean isConstructor = function.name.literal().equals("@new");
 
       if (stmt.value == null) {
-        R.rule()
+        rule()
           .using(function.returnType, "value")
           .by(r -> {
             IType returnType = r.get(0);
@@ -1325,7 +1349,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
             }
           });
       } else {
-        R.rule()
+        rule()
           .using(function.returnType.attr("value"), stmt.value.attr("type"))
           .by(r -> {
             IType expected = r.get(0);
@@ -1343,7 +1367,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
               // ensure that proper value is returned
               if(actual != expected) {
-                R.rule(stmt, "cast")
+                rule(stmt, "cast")
                   .using(function.returnType, "value")
                   .by(Rule::copyFirst);
               }
@@ -1358,7 +1382,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(stmt.expression);
     visitExpression(stmt.message);
 
-    R.rule()
+    rule()
       .using(stmt.expression.attr("type"), stmt.message.attr("type"))
       .by(r -> {
         IType expressionType = r.get(0);
@@ -1403,11 +1427,11 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     R.set(stmt, "scope", scope);
 
     Attribute[] deps = getReturnsDependencies(stmt.body);
-    R.rule(stmt, "returns")
+    rule(stmt, "returns")
       .using(deps)
       .by(r -> r.set(0, deps.length != 0 && Arrays.stream(deps).anyMatch(r::get)));
 
-    R.rule(stmt, "breaks")
+    rule(stmt, "breaks")
       .using(deps)
       .by(r -> r.set(0, deps.length != 0 && Arrays.stream(deps).anyMatch(r::get)));
 
@@ -1422,21 +1446,22 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(stmt.value);
 
     String name = stmt.typedName.name.token.literal();
+    int symbol = stmt.typedName.name.token.symbol();
 
     if (stmt.typedName.type == null) {
-      R.rule(stmt.typedName, "type")
+      rule(stmt.typedName, "type")
         .using(stmt.value, "type")
         .by(Rule::copyFirst);
     }
 
-    scope.declare(name, stmt);
+    scope.declare(symbol, stmt);
     R.set(stmt, "scope", scope);
 
-    R.rule(stmt, "type")
+    rule(stmt, "type")
       .using(stmt.typedName, "type")
       .by(Rule::copyFirst);
 
-    R.rule()
+    rule()
       .using(stmt.typedName.attr("type"), stmt.value.attr("type"))
       .by(r -> {
         IType expected = r.get(0);
@@ -1450,7 +1475,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
             if (TypeUtil.isIntegerType(expectedElem) && TypeUtil.isIntegerType(actualElem)) {
               // TODO: Check this attr in the compiler and perform a casting per-element if necessary.
-              R.rule(stmt, "cast")
+              rule(stmt, "cast")
                 .by(r1 -> {
                   r1.set(0, expectedElem);
                 });
@@ -1464,7 +1489,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
             if (TypeUtil.isIntegerType(expectedElem) && TypeUtil.isIntegerType(actualElem)) {
               // TODO: Check this attr in the compiler and perform a casting per-element if necessary.
-              R.rule(stmt, "cast-key")
+              rule(stmt, "cast-key")
                 .by(r1 -> {
                   r1.set(0, expectedElem);
                 });
@@ -1494,8 +1519,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
   @Override
   public void visitExternStatement(Statement.Extern stmt) {
-    String name = stmt.name.literal();
-    scope.declare(name, stmt);
+    scope.declare(stmt.name.symbol(), stmt);
 
     scope = new Scope(stmt, scope);
     R.set(stmt, "scope", scope);
@@ -1511,7 +1535,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
     visitTyped(stmt.returnType);
 
-    R.rule(stmt, "type")
+    rule(stmt, "type")
       .using(dependencies)
       .by(r -> {
         IType[] paramTypes = new IType[stmt.parameters.size()];
@@ -1525,8 +1549,8 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
       });
   }
 
-  private void doFunctionVisit(Statement statement, String name, Typed returnType, List<Expression.TypedName> parameters, Statement.Block body, boolean isVariadic, boolean isMethod) {
-    scope.declare(name, statement);
+  private void doFunctionVisit(Statement statement, Token name, Typed returnType, List<Expression.TypedName> parameters, Statement.Block body, boolean isVariadic, boolean isMethod) {
+    scope.declare(name.symbol(), statement);
 
     scope = new Scope(statement, scope);
     R.set(statement, "scope", scope);
@@ -1542,13 +1566,13 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
 
     visitTyped(returnType);
 
-    R.rule(statement, "type")
+    rule(statement, "type")
       .using(dependencies)
       .by(r -> {
         IType[] paramTypes = new IType[parameters.size()];
 
         IType rType = r.get(0);
-        if (name.equals("@new") && isMethod) {
+        if (name.literal().equals("@new") && isMethod) {
           if (rType != VoidType.INSTANCE) {
             r.errorFor("Cannot return value from constructor", statement);
             // continue assigning type
@@ -1568,7 +1592,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitStatement(body);
     methodContext = null;
 
-    R.rule()
+    rule()
       .using(body.attr("returns"), returnType.attr("value"))
       .by(r -> {
         boolean returns = r.get(0);
@@ -1584,7 +1608,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     scope = scope.parent;
   }
 
-  private void doFunctionVisit(Statement statement, String name, Typed returnType, List<Expression.TypedName> parameters, Statement.Block body, boolean isVariadic) {
+  private void doFunctionVisit(Statement statement, Token name, Typed returnType, List<Expression.TypedName> parameters, Statement.Block body, boolean isVariadic) {
     doFunctionVisit(statement, name, returnType, parameters, body, isVariadic, false);
   }
 
@@ -1592,7 +1616,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitFunctionStatement(Statement.Function stmt) {
     doFunctionVisit(
       stmt,
-      stmt.name.literal(),
+      stmt.name,
       stmt.returnType,
       stmt.parameters,
       stmt.body,
@@ -1604,7 +1628,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitMethodStatement(Statement.Method stmt) {
     doFunctionVisit(
       stmt,
-      stmt.name.literal(),
+      stmt.name,
       stmt.returnType,
       stmt.parameters,
       stmt.body,
@@ -1618,7 +1642,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitExpression(stmt.value);
     visitTypedNameExpression(stmt.name);
 
-    R.rule(stmt, "type")
+    rule(stmt, "type")
       .using(stmt.name.attr("type"), stmt.value.attr("type"))
       .by(r -> {
         IType nameType = r.get(0);
@@ -1642,22 +1666,22 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   @Override
   public void visitClassStatement(Statement.Class stmt) {
 
-    scope.declare(stmt.name.literal(), stmt);
+    scope.declare(stmt.name.symbol(), stmt);
 
     if (stmt.superclass != null) {
       String superClassName = stmt.superclass.token.literal();
-      DeclarationContext ctx = scope.lookup(superClassName);
+      DeclarationContext ctx = scope.lookup(stmt.superclass.token.symbol());
       AST ast = ctx == null ? null : ctx.declaration();
 
       if (ctx == null) {
-        R.rule()
+        rule()
           .by(r -> r.errorFor(
             String.format("Cannot resolve class '%s'", superClassName),
             stmt.superclass,
             stmt.superclass.attr("value")
           ));
       } else if (isNotTypeDeclaration(ast)) {
-        R.rule()
+        rule()
           .by(r -> r.errorFor(
             String.format(
               "%s did not resolve to a class declaration but to a %s",
@@ -1730,11 +1754,12 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   @Override
   public void visitIdTyped(Typed.Id typed) {
     final String name = typed.name.token.literal();
+    final int symbol = typed.name.token.symbol();
 
-    R.rule()
+    rule()
       .by(r -> {
         // type declarations may occur after use
-        DeclarationContext ctx = scope.lookup(name);
+        DeclarationContext ctx = scope.lookup(symbol);
         AST ast = ctx == null ? null : ctx.declaration();
 
         if (ctx == null) {
@@ -1753,7 +1778,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
             typed.attr("value")
           );
         } else {
-          R.rule(typed.attr("value"))
+          rule(typed.attr("value"))
             .using(ast.attr("declared"))
             .by(Rule::copyFirst);
         }
@@ -1764,7 +1789,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitArrayTyped(Typed.Array typed) {
     visitTyped(typed.type);
 
-    R.rule(typed, "value")
+    rule(typed, "value")
       .using(typed.type, "value")
       .by(r -> {
         IType type = r.get(0);
@@ -1785,7 +1810,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
   public void visitVectorTyped(Typed.Vector typed) {
     visitTyped(typed.type);
 
-    R.rule(typed, "value")
+    rule(typed, "value")
       .using(typed.type, "value")
       .by(r -> {
         IType type = r.get(0);
@@ -1803,7 +1828,7 @@ public final class SemanticAnalyzer implements Expression.VoidVisitor, Statement
     visitTyped(typed.keyType);
     visitTyped(typed.valueType);
 
-    R.rule(typed, "value")
+    rule(typed, "value")
       .using(typed.keyType.attr("value"), typed.valueType.attr("value"))
       .by(r -> {
         IType keyType = r.get(0);
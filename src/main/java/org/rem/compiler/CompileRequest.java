@@ -1,6 +1,16 @@
 package org.rem.compiler;
 
+import org.rem.compiler.cache.BuildCache;
+import org.rem.enums.EmitMode;
+import org.rem.enums.OptimizationLevel;
+import org.rem.utils.TimeReport;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class CompileRequest {
   public final String moduleName;
@@ -8,6 +18,62 @@ public class CompileRequest {
   public final String compileTarget;
   public final File sourceFile;
 
+  /**
+   * The optimization level applied to the module before emission.
+   */
+  public OptimizationLevel optimizationLevel = OptimizationLevel.O0;
+
+  /**
+   * A custom new pass manager pipeline (e.g. `mem2reg,instcombine`) that replaces
+   * the pipeline implied by {@link #optimizationLevel} when set.
+   */
+  public String passPipeline = null;
+
+  /**
+   * The number of modules that may be compiled at the same time.
+   */
+  public int jobs = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The cache reused and filled by {@link Compiler#build()}, or null to always
+   * compile from scratch.
+   */
+  public BuildCache cache = null;
+
+  /**
+   * Whether to produce a static library instead of an executable.
+   */
+  public boolean library = false;
+
+  /**
+   * The environment of the process that asked for the build, which the
+   * daemon forwards from its client. It selects the linker and archiver.
+   */
+  public Map<String, String> environment = System.getenv();
+
+  /**
+   * Extra libraries (`-l`) and library search paths (`-L`) for the linker.
+   */
+  public List<String> libraries = new ArrayList<>();
+  public List<String> libraryPaths = new ArrayList<>();
+
+  /**
+   * Collects per phase timings when a report was requested.
+   */
+  public TimeReport timeReport = TimeReport.disabled();
+
+  /**
+   * The artifacts written by {@link Compiler#build()}. Every mode but
+   * {@link EmitMode#EXECUTABLE} writes one file per module next to the output.
+   */
+  public Set<EmitMode> emit = EnumSet.of(EmitMode.EXECUTABLE);
+
+  /**
+   * The name of a function whose IR is printed to stderr once it has been
+   * optimized, or null to print nothing.
+   */
+  public String dumpFunction = null;
+
   public CompileRequest(File sourceFile, String compileTarget, String moduleName, String outputPath) {
     this.sourceFile = sourceFile;
     this.compileTarget = compileTarget;
@@ -16,10 +82,29 @@ public class CompileRequest {
   }
 
   public CompileRequest(File sourceFile, String compileTarget, String moduleName) {
-    this(sourceFile, compileTarget, moduleName, sourceFile.getAbsolutePath().replace("[.]r$", ".o"));
+    this(sourceFile, compileTarget, moduleName, null);
   }
 
   public CompileRequest(File sourceFile, String compileTarget) {
     this(sourceFile, compileTarget, "__main__");
   }
+
+  /**
+   * Returns the pass pipeline to run over the module or null if no
+   * optimization should be done.
+   */
+  public String getPassPipeline() {
+    if (passPipeline != null && !passPipeline.isBlank()) {
+      return passPipeline;
+    }
+
+    return optimizationLevel == OptimizationLevel.O0 ? null : optimizationLevel.pipeline();
+  }
+
+  /**
+   * Whether the build writes the given artifact.
+   */
+  public boolean emits(EmitMode mode) {
+    return emit.contains(mode);
+  }
 }
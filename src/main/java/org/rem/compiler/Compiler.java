@@ -3,19 +3,31 @@ package org.rem.compiler;
 import norswap.uranium.Reactor;
 import norswap.uranium.SemanticError;
 import org.rem.SemanticAnalyzer;
+import org.rem.compiler.cache.BuildCache;
+import org.rem.compiler.modules.ModuleBuilder;
+import org.rem.compiler.modules.ModuleGraph;
+import org.rem.compiler.modules.Module;
+import org.rem.enums.EmitMode;
 import org.rem.exceptions.AnalysisException;
-import org.rem.parser.Lexer;
-import org.rem.parser.Parser;
+import org.rem.interfaces.IGenerator;
 import org.rem.parser.Source;
 import org.rem.parser.ast.Statement;
 import org.rem.registries.CompilerRegistry;
 import org.rem.registries.GeneratorRegistry;
+import org.rem.utils.OutputRoute;
 import org.rem.utils.SemanticErrorUtil;
+import org.rem.utils.TimeReport;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public class Compiler {
 
@@ -28,28 +40,167 @@ public class Compiler {
   }
 
   public CompileResult<?> compile() throws IOException {
-    Source source = new Source(request.sourceFile);
-    Lexer lexer = new Lexer(source);
-    Parser parser = new Parser(lexer);
-    List<Statement> parseResult = parser.parse();
+    Module module = ModuleGraph.parse(request.sourceFile.toPath(), request.moduleName, request.timeReport);
+    return compile(module.source, module.statements, request.moduleName);
+  }
+
+  /**
+   * Analyzes the parsed statements of a module and compiles them for the
+   * requested target. Safe to call from several threads at once.
+   */
+  public CompileResult<?> compile(Source source, List<Statement> parseResult, String moduleName) {
+    return compile(source, parseResult, moduleName, reactor -> {});
+  }
 
+  /**
+   * Same as {@link #compile(Source, List, String)}, handing the reactor to the
+   * callback once the analysis succeeded and before code is generated.
+   */
+  public CompileResult<?> compile(Source source, List<Statement> parseResult, String moduleName, Consumer<Reactor> analyzed) {
+    TimeReport report = request.timeReport;
     Reactor reactor = new Reactor();
     SemanticAnalyzer analyzer = new SemanticAnalyzer(reactor, showWarnings);
-    analyzer.analyze(parseResult);
 
-    reactor.run();
+    report.measure(TimeReport.Phase.ANALYZE, () -> {
+      analyzer.analyze(parseResult);
+      return null;
+    });
+
+    report.measure(TimeReport.Phase.REACTOR, () -> {
+      reactor.run();
+      return null;
+    });
+    report.count("reactor rules", analyzer.getRuleCount());
+
     Set<SemanticError> errors = reactor.errors();
 
     if (!errors.isEmpty()) {
       throw new AnalysisException(SemanticErrorUtil.trace(errors, source));
     }
 
-    return CompilerRegistry
-      .get(request.compileTarget, reactor)
-      .compile(parseResult);
+    analyzed.accept(reactor);
+
+    return report.measure(TimeReport.Phase.CODEGEN, () -> CompilerRegistry
+      .get(request.compileTarget, reactor, moduleName)
+      .compile(parseResult));
   }
 
   public  <T> int generate(CompileResult<T> result) {
+    return result.getTarget().getGenerator().generate(result, request, getOutputName());
+  }
+
+  /**
+   * Builds the requested file together with every module it imports. Modules
+   * are parsed, compiled and emitted on {@link CompileRequest#jobs} workers and
+   * then linked together.
+   * <p>
+   * When the request has a {@link BuildCache}, an unchanged build reuses the
+   * cached objects and goes straight to linking. The cache only holds objects,
+   * so it is bypassed when other artifacts are requested with
+   * {@link CompileRequest#emit}. For the same reason only such builds keep a
+   * {@link org.rem.compiler.modules.ModuleSummary} of each imported module,
+   * which lets the next build reuse the objects of unchanged modules. Both are
+   * bypassed with {@link CompileRequest#dumpFunction}, whose output needs
+   * every module to be compiled.
+   */
+  public int build() throws IOException {
+    String outputName = getOutputName();
+    Path entryPath = request.sourceFile.toPath();
+    boolean onlyObjects = onlyObjectsEmitted() && request.dumpFunction == null;
+    BuildCache cache = onlyObjects ? request.cache : null;
+    String cacheKey = null;
+
+    if (cache != null) {
+      IGenerator<?> generator = GeneratorRegistry.get(request.compileTarget, null);
+      cacheKey = cache.key(request, Files.readAllBytes(entryPath), generator.targetTriple());
+
+      List<String> objectFiles = cache.restore(cacheKey, entryPath, outputName);
+      if (objectFiles != null) {
+        return link(generator, objectFiles, outputName);
+      }
+    }
+
+    ExecutorService executor = newWorkerPool();
+
+    try {
+      ModuleGraph graph = ModuleGraph.load(entryPath, request.moduleName, executor, request.timeReport, onlyObjects ? outputName : null);
+      ModuleBuilder.Output output = new ModuleBuilder(this, request, executor).emit(graph, outputName);
+
+      if (output == null) {
+        return 1;
+      }
+
+      if (cache != null) {
+        List<Path> imports = new ArrayList<>();
+        for (Module module : graph.modules()) {
+          if (module != graph.entry()) {
+            imports.add(module.path);
+          }
+        }
+
+        cache.store(cacheKey, entryPath, imports, outputName, output.objectFiles());
+      }
+
+      return link(output.generator(), output.objectFiles(), outputName);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private int link(IGenerator<?> generator, List<String> objectFiles, String outputName) {
+    if (!request.emits(EmitMode.EXECUTABLE)) {
+      return 0;
+    }
+
+    return request.timeReport.measure(TimeReport.Phase.LINK, () -> generator.link(objectFiles, request, outputName));
+  }
+
+  private boolean onlyObjectsEmitted() {
+    for (EmitMode mode : request.emit) {
+      if (mode != EmitMode.OBJECT && mode != EmitMode.EXECUTABLE) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Compiles the requested file and the modules it imports, then runs the
+   * program in process without producing an executable.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public int run() {
+    ExecutorService executor = newWorkerPool();
+
+    try {
+      ModuleGraph graph = ModuleGraph.load(request.sourceFile.toPath(), request.moduleName, executor, request.timeReport);
+      List<CompileResult<?>> results = new ModuleBuilder(this, request, executor).compile(graph);
+
+      try {
+        IGenerator generator = results.getFirst().getTarget().getGenerator();
+        return request.timeReport.measure(TimeReport.Phase.RUN, () -> generator.run((List) results, request));
+      } finally {
+        ModuleBuilder.dispose(results);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private ExecutorService newWorkerPool() {
+    return Executors.newFixedThreadPool(Math.max(1, request.jobs), runnable -> {
+      Thread thread = new Thread(OutputRoute.propagate(runnable), "rem-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private String getOutputName() {
+    if (request.outputPath != null) {
+      return request.outputPath;
+    }
+
     String outputFileName = request.sourceFile.getName();
     int splitPoint = outputFileName.lastIndexOf('.');
 
@@ -57,6 +208,6 @@ public class Compiler {
       outputFileName = outputFileName.substring(0, splitPoint);
     }
 
-    return result.getTarget().getGenerator().generate(result, outputFileName);
+    return outputFileName;
   }
 }
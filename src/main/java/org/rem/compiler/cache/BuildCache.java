@@ -0,0 +1,460 @@
+package org.rem.compiler.cache;
+
+import org.rem.compiler.CompileRequest;
+import org.rem.compiler.Compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content addressed cache of emitted object files.
+ * <p>
+ * Entries are keyed by a hash of the entry source file, the compile options,
+ * the target triple and the compiler version. Each entry records the hash of
+ * every imported file so that a change to any module of the build invalidates
+ * it. Entries are evicted least recently used first once the cache grows past
+ * its size limit.
+ */
+public class BuildCache {
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  private static final String MANIFEST = "manifest";
+  private static final String MANIFEST_HEADER = "rem-cache 1";
+  private static final String STATS = "stats.properties";
+  private static final String LOCK = ".lock";
+
+  private static final ReentrantLock LOCAL_LOCK = new ReentrantLock();
+
+  private static String compilerFingerprint;
+
+  private final Path directory;
+  private final long maxBytes;
+
+  public BuildCache(Path directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  public BuildCache(Path directory) {
+    this(directory, DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * The cache directory used when none is given: `$REM_CACHE_DIR` of the
+   * given environment, or `~/.cache/rem` otherwise.
+   */
+  public static Path defaultDirectory(Map<String, String> environment) {
+    String configured = environment.get("REM_CACHE_DIR");
+    if (configured != null && !configured.isBlank()) {
+      return Path.of(configured);
+    }
+
+    return Path.of(System.getProperty("user.home"), ".cache", "rem");
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Computes the cache key of a build of the given entry source.
+   */
+  public String key(CompileRequest request, byte[] source, String targetTriple) {
+    MessageDigest digest = sha256();
+    update(digest, compilerFingerprint());
+    update(digest, targetTriple);
+    update(digest, request.compileTarget);
+    update(digest, request.moduleName);
+    update(digest, request.optimizationLevel.name());
+    update(digest, String.valueOf(request.getPassPipeline()));
+    digest.update(source);
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Looks up the given key and, when every recorded import is unchanged,
+   * copies the cached objects next to `outputName`.
+   *
+   * @param entryPath the entry source file the imports are relative to.
+   * @return the restored object files in link order, or null on a miss.
+   */
+  public List<String> restore(String key, Path entryPath, String outputName) {
+    Path entry = entryDirectory(key);
+    Path manifest = entry.resolve(MANIFEST);
+
+    try {
+      // Under the lock, so that no concurrent build evicts the entry while it
+      // is copied, and the entry counts as used before the next eviction.
+      return withLock(() -> {
+        if (!Files.isRegularFile(manifest)) {
+          record(Stat.MISSES);
+          return null;
+        }
+
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.getFirst().equals(MANIFEST_HEADER)) {
+          record(Stat.MISSES);
+          return null;
+        }
+
+        Path base = entryPath.toAbsolutePath().getParent();
+        List<String> suffixes = new ArrayList<>();
+
+        for (String line : lines.subList(1, lines.size())) {
+          String[] parts = line.split(" ", 3);
+
+          if (parts[0].equals("import")) {
+            Path imported = base.resolve(parts[2]);
+            if (!Files.isRegularFile(imported) || !parts[1].equals(hash(Files.readAllBytes(imported)))) {
+              record(Stat.MISSES);
+              return null;
+            }
+          } else if (parts[0].equals("object")) {
+            suffixes.add(parts.length > 1 ? parts[1] : "");
+          }
+        }
+
+        List<String> objectFiles = new ArrayList<>();
+        for (int i = 0; i < suffixes.size(); i++) {
+          String objectFile = outputName + suffixes.get(i) + ".o";
+          Files.copy(entry.resolve(i + ".o"), Path.of(objectFile), StandardCopyOption.REPLACE_EXISTING);
+          objectFiles.add(objectFile);
+        }
+
+        Files.setLastModifiedTime(manifest, FileTime.fromMillis(System.currentTimeMillis()));
+        record(Stat.HITS);
+        return objectFiles;
+      });
+    } catch (IOException e) {
+      // A damaged or concurrently evicted entry is just a miss.
+      record(Stat.MISSES);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the objects of a successful build under the given key and evicts
+   * old entries if the cache grew past its limit.
+   *
+   * @param imports the source files of every imported module.
+   * @param objectFiles the emitted objects in link order, all named after `outputName`.
+   */
+  public void store(String key, Path entryPath, List<Path> imports, String outputName, List<String> objectFiles) {
+    Path entry = entryDirectory(key);
+    Path base = entryPath.toAbsolutePath().getParent();
+
+    try {
+      Files.createDirectories(entry.getParent());
+      Path staging = Files.createTempDirectory(entry.getParent(), key + ".tmp");
+
+      StringBuilder manifest = new StringBuilder(MANIFEST_HEADER).append('\n');
+      for (Path imported : imports) {
+        manifest.append("import ")
+          .append(hash(Files.readAllBytes(imported)))
+          .append(' ')
+          .append(base.relativize(imported.toAbsolutePath()))
+          .append('\n');
+      }
+
+      for (int i = 0; i < objectFiles.size(); i++) {
+        String objectFile = objectFiles.get(i);
+        String suffix = objectFile.substring(outputName.length(), objectFile.length() - ".o".length());
+
+        Files.copy(Path.of(objectFile), staging.resolve(i + ".o"));
+        manifest.append("object ").append(suffix).append('\n');
+      }
+
+      Files.writeString(staging.resolve(MANIFEST), manifest);
+
+      withLock(() -> {
+        try {
+          Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+          // Another build stored the same entry first.
+          deleteRecursively(staging);
+        } catch (IOException e) {
+          deleteRecursively(staging);
+          if (!Files.isDirectory(entry)) throw e;
+        }
+
+        record(Stat.STORES);
+        evict();
+        return null;
+      });
+    } catch (IOException e) {
+      System.err.printf("warning: could not write build cache entry: %s\n", e.getMessage());
+    }
+  }
+
+  /**
+   * Removes least recently used entries until the cache fits its size limit.
+   */
+  public void evict() throws IOException {
+    withLock(() -> {
+      List<Entry> entries = entries();
+      long total = 0;
+      for (Entry entry : entries) {
+        total += entry.size;
+      }
+
+      entries.sort(Comparator.comparing(Entry::lastUsed));
+
+      int evicted = 0;
+      for (Entry entry : entries) {
+        if (total <= maxBytes) break;
+
+        deleteRecursively(entry.path);
+        total -= entry.size;
+        evicted++;
+      }
+
+      if (evicted > 0) {
+        record(Stat.EVICTIONS, evicted);
+      }
+
+      return null;
+    });
+  }
+
+  /**
+   * Returns a human readable summary of the cache contents and its lifetime
+   * hit and miss counts.
+   */
+  public String statistics() throws IOException {
+    Properties stats = withLock(this::readStats);
+    long hits = count(stats, Stat.HITS);
+    long misses = count(stats, Stat.MISSES);
+    long lookups = hits + misses;
+
+    long size = 0;
+    List<Entry> entries = entries();
+    for (Entry entry : entries) {
+      size += entry.size;
+    }
+
+    return String.format(
+      "cache directory: %s\nentries: %d\nsize: %.1f KiB / %.1f KiB\nhits: %d\nmisses: %d\nhit rate: %.1f%%\nstores: %d\nevictions: %d",
+      directory, entries.size(), size / 1024.0, maxBytes / 1024.0, hits, misses,
+      lookups == 0 ? 0.0 : hits * 100.0 / lookups, count(stats, Stat.STORES), count(stats, Stat.EVICTIONS)
+    );
+  }
+
+  //region Helpers
+
+  private enum Stat {
+    HITS, MISSES, STORES, EVICTIONS;
+
+    String property() {
+      return name().toLowerCase();
+    }
+  }
+
+  private record Entry(Path path, long size, FileTime lastUsed) {
+  }
+
+  private interface LockedAction<T> {
+    T run() throws IOException;
+  }
+
+  private Path entryDirectory(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  private List<Entry> entries() throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return entries;
+    }
+
+    try (Stream<Path> shards = Files.list(directory)) {
+      for (Path shard : shards.filter(Files::isDirectory).toList()) {
+        try (Stream<Path> keys = Files.list(shard)) {
+          for (Path entry : keys.toList()) {
+            // Entries still being staged by another build are not stored yet.
+            Path manifest = entry.resolve(MANIFEST);
+            if (entry.getFileName().toString().contains(".tmp") || !Files.isRegularFile(manifest)) continue;
+
+            long size = 0;
+            try (Stream<Path> files = Files.list(entry)) {
+              for (Path file : files.toList()) {
+                size += Files.size(file);
+              }
+            }
+
+            entries.add(new Entry(entry, size, Files.getLastModifiedTime(manifest)));
+          }
+        }
+      }
+    }
+
+    return entries;
+  }
+
+  private void record(Stat stat) {
+    record(stat, 1);
+  }
+
+  private void record(Stat stat, long amount) {
+    try {
+      withLock(() -> {
+        Properties stats = readStats();
+        stats.setProperty(stat.property(), String.valueOf(count(stats, stat) + amount));
+
+        try (OutputStream out = Files.newOutputStream(directory.resolve(STATS))) {
+          stats.store(out, "rem build cache statistics");
+        }
+
+        return null;
+      });
+    } catch (IOException e) {
+      // Statistics are best effort and never fail a build.
+    }
+  }
+
+  private Properties readStats() throws IOException {
+    Properties stats = new Properties();
+    Path file = directory.resolve(STATS);
+
+    if (Files.isRegularFile(file)) {
+      try (InputStream in = Files.newInputStream(file)) {
+        stats.load(in);
+      }
+    }
+
+    return stats;
+  }
+
+  private static long count(Properties stats, Stat stat) {
+    try {
+      return Long.parseLong(stats.getProperty(stat.property(), "0"));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Runs the action while holding the cache lock, which is the lock file for
+   * other processes and {@link #LOCAL_LOCK} for other threads, since a JVM
+   * holds file locks for the whole process. Actions may nest.
+   */
+  private <T> T withLock(LockedAction<T> action) throws IOException {
+    if (LOCAL_LOCK.isHeldByCurrentThread()) {
+      return action.run();
+    }
+
+    Files.createDirectories(directory);
+    LOCAL_LOCK.lock();
+
+    try (FileChannel channel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      FileLock lock = channel.lock();
+      try {
+        return action.run();
+      } finally {
+        lock.release();
+      }
+    } finally {
+      LOCAL_LOCK.unlock();
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) return;
+
+    try (Stream<Path> files = Files.walk(path)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    digest.update((byte) (bytes.length >>> 24));
+    digest.update((byte) (bytes.length >>> 16));
+    digest.update((byte) (bytes.length >>> 8));
+    digest.update((byte) bytes.length);
+    digest.update(bytes);
+  }
+
+  private static String hash(byte[] content) {
+    return HexFormat.of().formatHex(sha256().digest(content));
+  }
+
+  /**
+   * Identifies the running compiler build: its implementation version and a
+   * hash of its code, which is the jar it was loaded from, or every class file
+   * under the classes directory of a development build. Rebuilding any part
+   * of the compiler therefore invalidates the entries it emitted.
+   */
+  public static synchronized String compilerFingerprint() {
+    if (compilerFingerprint != null) {
+      return compilerFingerprint;
+    }
+
+    String version = Compiler.class.getPackage().getImplementationVersion();
+    String code = "unknown";
+
+    try {
+      // The code source is missing for classes the bootstrap loader defined,
+      // then the version alone identifies the compiler.
+      CodeSource source = Compiler.class.getProtectionDomain().getCodeSource();
+      if (source != null && source.getLocation() != null) {
+        code = codeHash(Path.of(source.getLocation().toURI()));
+      }
+    } catch (IOException | URISyntaxException | SecurityException e) {
+      // Fall back to the version alone.
+    }
+
+    compilerFingerprint = (version == null ? "dev" : version) + "@" + code;
+    return compilerFingerprint;
+  }
+
+  private static String codeHash(Path code) throws IOException {
+    if (!Files.isDirectory(code)) {
+      return hash(Files.readAllBytes(code));
+    }
+
+    MessageDigest digest = sha256();
+    try (Stream<Path> files = Files.walk(code)) {
+      for (Path file : files.filter(f -> f.toString().endsWith(".class")).sorted().toList()) {
+        update(digest, code.relativize(file).toString());
+        digest.update(Files.readAllBytes(file));
+      }
+    }
+
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  //endregion
+}
@@ -0,0 +1,211 @@
+package org.rem.compiler.modules;
+
+import org.rem.parser.Source;
+import org.rem.parser.Token;
+import org.rem.parser.TokenType;
+import org.rem.parser.ast.Statement;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A parsed source file taking part in a multi-module build, or one whose
+ * {@link ModuleSummary} from an earlier build still matches its source.
+ */
+public class Module {
+  public final String name;
+  public final Path path;
+  public final Source source;
+  public final List<Statement> statements;
+  // null when the module was parsed
+  public final ModuleSummary summary;
+  private final Map<Statement.Import, Module> dependencies = new LinkedHashMap<>();
+
+  public Module(String name, Path path, Source source, List<Statement> statements) {
+    this.name = name;
+    this.path = path;
+    this.source = source;
+    this.statements = statements;
+    this.summary = null;
+  }
+
+  /**
+   * A module read from its summary. The statements are only decoded when
+   * they are used.
+   */
+  public Module(String name, Path path, Source source, ModuleSummary summary) {
+    this.name = name;
+    this.path = path;
+    this.source = source;
+    this.statements = summary.statements();
+    this.summary = summary;
+  }
+
+  /**
+   * The top level import statements of this module in source order.
+   */
+  public List<Statement.Import> imports() {
+    if (summary != null) {
+      return summary.imports();
+    }
+
+    List<Statement.Import> imports = new ArrayList<>();
+    for (Statement statement : statements) {
+      if (statement instanceof Statement.Import anImport) {
+        imports.add(anImport);
+      }
+    }
+
+    return imports;
+  }
+
+  void addDependency(Statement.Import anImport, Module module) {
+    dependencies.put(anImport, module);
+  }
+
+  public List<Module> dependencies() {
+    return List.copyOf(dependencies.values());
+  }
+
+  /**
+   * The module the import statement resolved to.
+   */
+  public Module dependency(Statement.Import anImport) {
+    return dependencies.get(anImport);
+  }
+
+  /**
+   * Whether the object file written along with the summary can be used as
+   * is: it was built with the same options, and every module this one
+   * imports still exports the same declarations.
+   */
+  public boolean isUpToDate(String options) {
+    if (summary == null || !summary.getOptions().equals(options)) {
+      return false;
+    }
+
+    for (Map.Entry<Statement.Import, Module> entry : dependencies.entrySet()) {
+      if (!Arrays.equals(summary.dependencyHash(entry.getKey()), entry.getValue().interfaceHash())) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * A hash of the declarations this module exports, which changes whenever
+   * the modules importing it have to be compiled again.
+   */
+  public byte[] interfaceHash() {
+    return summary != null ? summary.getInterfaceHash() : ModuleSummary.interfaceHash(exports(List.of()));
+  }
+
+  /**
+   * Returns the function declarations this module makes visible to importers
+   * as extern declarations. Functions whose name starts with `_` are internal to
+   * the module and `main` is never exported.
+   *
+   * @param elements the names selected by the import, or an empty list (or `*`) for all.
+   */
+  public List<Statement.Extern> exports(List<Token> elements) {
+    Set<String> selected = new HashSet<>();
+    for (Token element : elements) {
+      if (element.type() == TokenType.MULTIPLY) {
+        selected.clear();
+        break;
+      }
+
+      selected.add(element.literal());
+    }
+
+    List<Statement.Extern> exports = new ArrayList<>();
+    for (Statement.Extern extern : summary != null ? summary.externs() : externs()) {
+      if (!selected.isEmpty() && !selected.contains(extern.name.literal())) continue;
+
+      exports.add(extern);
+    }
+
+    return exports;
+  }
+
+  /**
+   * The top level functions and extern declarations this module exports, in
+   * source order.
+   */
+  List<Statement> exportedDeclarations() {
+    List<Statement> declarations = new ArrayList<>();
+    for (Statement statement : statements) {
+      Token name = null;
+
+      if (statement instanceof Statement.Function function) {
+        name = function.name;
+      } else if (statement instanceof Statement.Extern extern) {
+        name = extern.name;
+      }
+
+      if (name == null || name.literal().startsWith("_") || name.literal().equals("main")) continue;
+
+      declarations.add(statement);
+    }
+
+    return declarations;
+  }
+
+  private List<Statement.Extern> externs() {
+    List<Statement.Extern> externs = new ArrayList<>();
+    for (Statement statement : exportedDeclarations()) {
+      if (statement instanceof Statement.Function function) {
+        Statement.Extern extern = new Statement.Extern(function.name, function.parameters, function.returnType, function.isVariadic);
+        extern.span = function.span;
+        externs.add(extern);
+      } else {
+        externs.add((Statement.Extern) statement);
+      }
+    }
+
+    return externs;
+  }
+
+  /**
+   * Returns the statements of this module preceded by extern declarations for
+   * everything it imports from other modules.
+   */
+  public List<Statement> linkedStatements() {
+    if (dependencies.isEmpty()) {
+      return statements;
+    }
+
+    Set<String> declared = new HashSet<>();
+    for (Statement statement : statements) {
+      if (statement instanceof Statement.Extern extern) {
+        declared.add(extern.name.literal());
+      } else if (statement instanceof Statement.Function function) {
+        declared.add(function.name.literal());
+      }
+    }
+
+    List<Statement> linked = new ArrayList<>();
+    for (Map.Entry<Statement.Import, Module> entry : dependencies.entrySet()) {
+      for (Statement.Extern extern : entry.getValue().exports(entry.getKey().elements)) {
+        if (declared.add(extern.name.literal())) {
+          linked.add(extern);
+        }
+      }
+    }
+
+    linked.addAll(statements);
+    return linked;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("<rem::Module name='%s' path='%s'>", name, path);
+  }
+}
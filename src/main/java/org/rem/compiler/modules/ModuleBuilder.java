@@ -0,0 +1,206 @@
+package org.rem.compiler.modules;
+
+import org.rem.compiler.CompileRequest;
+import org.rem.compiler.CompileResult;
+import org.rem.compiler.Compiler;
+import org.rem.enums.EmitMode;
+import org.rem.exceptions.AnalysisException;
+import org.rem.interfaces.IGenerator;
+import org.rem.registries.GeneratorRegistry;
+import org.rem.utils.TimeReport;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds every module of a {@link ModuleGraph} on a worker pool and emits one
+ * object file per module.
+ * <p>
+ * Each module is analyzed, compiled and emitted by a single worker with its own
+ * compile target, so every LLVM context is only ever used from one thread.
+ * <p>
+ * When the graph uses summaries, an imported module that is up to date with
+ * its summary keeps the object of the previous build, and every other
+ * imported module gets a new summary once it is emitted.
+ */
+public class ModuleBuilder {
+  private final Compiler compiler;
+  private final CompileRequest request;
+  private final Executor executor;
+
+  public ModuleBuilder(Compiler compiler, CompileRequest request, Executor executor) {
+    this.compiler = compiler;
+    this.request = request;
+    this.executor = executor;
+  }
+
+  /**
+   * Emits every module of the graph, returning null if any emission failed.
+   * The entry module's object comes first.
+   */
+  public Output emit(ModuleGraph graph, String outputName) {
+    List<Module> modules = graph.modules();
+    List<CompletableFuture<Emitted>> jobs = new ArrayList<>();
+    String options = null;
+
+    for (Module module : modules) {
+      String objectName = module == graph.entry() ? outputName : outputName + "." + module.name;
+      Path summaryPath = graph.summaryPath(module);
+
+      if (summaryPath == null) {
+        jobs.add(CompletableFuture.supplyAsync(
+          () -> emit(compiler.compile(module.source, module.linkedStatements(), module.name), objectName),
+          executor
+        ));
+        continue;
+      }
+
+      if (options == null) {
+        options = ModuleSummary.options(request, GeneratorRegistry.get(request.compileTarget, null).targetTriple());
+      }
+
+      String objectFile = objectName + EmitMode.OBJECT.extension();
+      if (module.isUpToDate(options) && Files.isRegularFile(Path.of(objectFile))) {
+        request.timeReport.count("reused objects", 1);
+        jobs.add(CompletableFuture.completedFuture(new Emitted(null, objectFile)));
+        continue;
+      }
+
+      String summaryOptions = options;
+      jobs.add(CompletableFuture.supplyAsync(
+        () -> emit(module, objectName, summaryPath, summaryOptions),
+        executor
+      ));
+    }
+
+    List<String> errors = new ArrayList<>();
+    List<String> objectFiles = new ArrayList<>();
+    Emitted entry = null;
+
+    for (CompletableFuture<Emitted> job : jobs) {
+      try {
+        Emitted emitted = job.join();
+        if (emitted.objectFile == null) {
+          return null;
+        }
+
+        if (entry == null) {
+          entry = emitted;
+        }
+
+        objectFiles.add(emitted.objectFile);
+      } catch (CompletionException e) {
+        errors.add(unwrap(e));
+      }
+    }
+
+    if (!errors.isEmpty()) {
+      throw new AnalysisException(String.join("\n", errors));
+    }
+
+    return new Output(entry.generator, objectFiles);
+  }
+
+  /**
+   * Analyzes and compiles every module of the graph without emitting them.
+   * The entry module's result comes first. The caller disposes the compile
+   * targets of the results.
+   */
+  public List<CompileResult<?>> compile(ModuleGraph graph) {
+    List<CompletableFuture<CompileResult<?>>> jobs = new ArrayList<>();
+
+    for (Module module : graph.modules()) {
+      jobs.add(CompletableFuture.supplyAsync(
+        () -> compiler.compile(module.source, module.linkedStatements(), module.name),
+        executor
+      ));
+    }
+
+    List<String> errors = new ArrayList<>();
+    List<CompileResult<?>> results = new ArrayList<>();
+
+    for (CompletableFuture<CompileResult<?>> job : jobs) {
+      try {
+        results.add(job.join());
+      } catch (CompletionException e) {
+        errors.add(unwrap(e));
+      }
+    }
+
+    if (!errors.isEmpty()) {
+      dispose(results);
+      throw new AnalysisException(String.join("\n", errors));
+    }
+
+    return results;
+  }
+
+  /**
+   * Disposes the compile targets of the results.
+   */
+  public static void dispose(List<CompileResult<?>> results) {
+    for (CompileResult<?> result : results) {
+      result.getTarget().dispose();
+    }
+  }
+
+  /**
+   * Compiles and emits an imported module, then writes its summary.
+   */
+  private Emitted emit(Module module, String objectName, Path summaryPath, String options) {
+    List<ModuleSummary.Export> exports = new ArrayList<>();
+    CompileResult<?> result = compiler.compile(
+      module.source, module.linkedStatements(), module.name,
+      reactor -> exports.addAll(ModuleSummary.exports(module, reactor))
+    );
+
+    Emitted emitted = emit(result, objectName);
+    if (emitted.objectFile != null) {
+      ModuleSummary.write(summaryPath, module, options, exports);
+    }
+
+    return emitted;
+  }
+
+  /**
+   * Emits a compiled module and disposes its compile target.
+   */
+  private <T> Emitted emit(CompileResult<T> result, String objectName) {
+    IGenerator<T> generator = result.getTarget().getGenerator();
+
+    try {
+      String objectFile = request.timeReport.measure(
+        TimeReport.Phase.EMIT,
+        () -> generator.emit(result, request, objectName)
+      );
+
+      return new Emitted(generator, objectFile);
+    } finally {
+      result.getTarget().dispose();
+    }
+  }
+
+  /**
+   * Returns the message of an analysis failure and rethrows anything else.
+   */
+  private static String unwrap(CompletionException e) {
+    if (e.getCause() instanceof AnalysisException analysisException) {
+      return analysisException.getMessage().strip();
+    } else if (e.getCause() instanceof RuntimeException cause) {
+      throw cause;
+    }
+
+    throw e;
+  }
+
+  private record Emitted(IGenerator<?> generator, String objectFile) {
+  }
+
+  public record Output(IGenerator<?> generator, List<String> objectFiles) {
+  }
+}
@@ -0,0 +1,279 @@
+package org.rem.compiler.modules;
+
+import org.rem.exceptions.AnalysisException;
+import org.rem.parser.Lexer;
+import org.rem.parser.ParallelLexer;
+import org.rem.parser.ParallelParser;
+import org.rem.parser.Parser;
+import org.rem.parser.Source;
+import org.rem.parser.TokenBuffer;
+import org.rem.parser.TokenSource;
+import org.rem.parser.TokenStream;
+import org.rem.parser.ast.Statement;
+import org.rem.utils.TimeReport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * The graph of modules reachable from an entry file through import statements.
+ * <p>
+ * Modules are lexed and parsed on the given executor as soon as they are
+ * discovered, so independent imports are parsed at the same time. Import
+ * cycles are allowed since modules only see each other's declarations.
+ * <p>
+ * When the graph is loaded for a build that writes object files, an imported
+ * module whose {@link ModuleSummary} still matches its source is read from
+ * the summary instead of being lexed and parsed.
+ */
+public class ModuleGraph {
+  private static final String LIBRARY_ENTRY = "lib.r";
+
+  private final Path root;
+  private final Path entryPath;
+  private final String entryName;
+  private final Executor executor;
+  private final TimeReport report;
+  // null when summaries are neither read nor written
+  private final String outputName;
+  private final ConcurrentHashMap<Path, CompletableFuture<Module>> modules = new ConcurrentHashMap<>();
+  private Module entry;
+
+  private ModuleGraph(Path entryPath, String entryName, Executor executor, TimeReport report, String outputName) {
+    this.root = entryPath.getParent();
+    this.entryPath = entryPath;
+    this.entryName = entryName;
+    this.executor = executor;
+    this.report = report;
+    this.outputName = outputName;
+  }
+
+  /**
+   * Loads the entry module and everything it imports, directly or indirectly.
+   */
+  public static ModuleGraph load(Path entryPath, String entryName, Executor executor) {
+    return load(entryPath, entryName, executor, TimeReport.disabled());
+  }
+
+  /**
+   * Loads the entry module and everything it imports, recording the cost of
+   * loading, lexing and parsing each file in the report.
+   */
+  public static ModuleGraph load(Path entryPath, String entryName, Executor executor, TimeReport report) {
+    return load(entryPath, entryName, executor, report, null);
+  }
+
+  /**
+   * Loads the entry module and everything it imports, reading imported
+   * modules from the summaries next to their objects, which are named after
+   * the output name, when their source did not change.
+   */
+  public static ModuleGraph load(Path entryPath, String entryName, Executor executor, TimeReport report, String outputName) {
+    Path normalized = entryPath.toAbsolutePath().normalize();
+    ModuleGraph graph = new ModuleGraph(normalized, entryName, executor, report, outputName);
+    graph.entry = graph.discover(normalized);
+    return graph;
+  }
+
+  public Module entry() {
+    return entry;
+  }
+
+  /**
+   * All modules of the graph, starting with the entry module.
+   */
+  public List<Module> modules() {
+    List<Module> result = new ArrayList<>();
+    result.add(entry);
+
+    for (CompletableFuture<Module> future : modules.values()) {
+      Module module = future.join();
+      if (module != entry) {
+        result.add(module);
+      }
+    }
+
+    return result;
+  }
+
+  public int size() {
+    return modules.size();
+  }
+
+  /**
+   * The file the summary of the module is kept in, or null if the module has
+   * none because it is the entry or the graph does not use summaries.
+   */
+  public Path summaryPath(Module module) {
+    return summaryPath(module.path, module.name);
+  }
+
+  private Path summaryPath(Path path, String name) {
+    if (outputName == null || path.equals(entryPath)) {
+      return null;
+    }
+
+    return Path.of(outputName + "." + name + ModuleSummary.EXTENSION);
+  }
+
+  private Module discover(Path entryPath) {
+    CompletableFuture<Module> entryFuture = schedule(entryPath, entryName);
+
+    // Every task registers the modules it imports before completing, so once
+    // all known modules are done and no new one appeared the graph is complete.
+    while (true) {
+      List<CompletableFuture<Module>> known = List.copyOf(modules.values());
+
+      try {
+        CompletableFuture.allOf(known.toArray(CompletableFuture[]::new)).join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+
+        throw e;
+      }
+
+      if (known.size() == modules.size()) {
+        break;
+      }
+    }
+
+    for (CompletableFuture<Module> future : modules.values()) {
+      Module module = future.join();
+
+      for (Statement.Import anImport : module.imports()) {
+        module.addDependency(anImport, modules.get(resolve(module, anImport)).join());
+      }
+    }
+
+    return entryFuture.join();
+  }
+
+  private CompletableFuture<Module> schedule(Path path, String name) {
+    return modules.computeIfAbsent(path, key -> CompletableFuture.supplyAsync(() -> {
+      Module module = load(key, name);
+
+      for (Statement.Import anImport : module.imports()) {
+        Path imported = resolve(module, anImport);
+        schedule(imported, moduleName(imported));
+      }
+
+      return module;
+    }, executor));
+  }
+
+  private Module load(Path path, String name) {
+    Path summaryPath = summaryPath(path, name);
+    if (summaryPath == null) {
+      return parse(path, name, report);
+    }
+
+    Source source = read(path, report);
+    ModuleSummary summary = ModuleSummary.read(summaryPath, source);
+    if (summary == null) {
+      return parse(path, name, source, report);
+    }
+
+    report.count("modules", 1);
+    report.count("summarized modules", 1);
+    return new Module(name, path, source, summary);
+  }
+
+  /**
+   * Loads, lexes and parses a single file.
+   */
+  public static Module parse(Path path, String name, TimeReport report) {
+    return parse(path, name, read(path, report), report);
+  }
+
+  private static Source read(Path path, TimeReport report) {
+    try {
+      return report.measure(TimeReport.Phase.SOURCE, () -> new Source(path.toFile()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Module parse(Path path, String name, Source source, TimeReport report) {
+    Lexer lexer = new Lexer(source);
+
+    // Lexing up front is only needed to split a large file across threads.
+    // Otherwise the parser pulls tokens as it goes and never holds the whole
+    // file's tokens, and both are timed together as the streamed phase.
+    boolean parallelParse = ParallelParser.isWorthwhile(source);
+    TokenSource tokens;
+    if (ParallelLexer.isWorthwhile(source)) {
+      tokens = report.measure(TimeReport.Phase.LEX, () -> new ParallelLexer(source).tokenize());
+    } else if (parallelParse) {
+      tokens = report.measure(TimeReport.Phase.LEX, lexer::tokenize);
+    } else {
+      tokens = new TokenStream(lexer);
+    }
+
+    boolean streamed = tokens instanceof TokenStream;
+    List<Statement> statements;
+    int nodeCount;
+    if (parallelParse) {
+      ParallelParser parser = new ParallelParser(lexer, (TokenBuffer) tokens);
+      statements = report.measure(TimeReport.Phase.PARSE, parser::parse);
+      nodeCount = parser.getNodeCount();
+    } else {
+      Parser parser = new Parser(lexer, tokens);
+      statements = report.measure(streamed ? TimeReport.Phase.STREAM : TimeReport.Phase.PARSE, parser::parse);
+      nodeCount = parser.getNodeCount();
+    }
+
+    // streamed files are counted apart so that each phase's throughput
+    // only covers the files it measured
+    report.count("modules", 1);
+    report.count("source bytes", source.getContent().length());
+    report.count(streamed ? "streamed tokens" : "tokens", tokens.size());
+    report.count(streamed ? "streamed ast nodes" : "ast nodes", nodeCount);
+
+    return new Module(name, path, source, statements);
+  }
+
+  private String moduleName(Path path) {
+    String relative = root.relativize(path).toString().replaceAll("[.]r$", "");
+    return relative.replace("..", "_").replace('/', '.').replace('\\', '.');
+  }
+
+  /**
+   * Resolves the file imported by the given statement. Dotted paths such as
+   * `a.b` resolve to `a/b.r` relative to the importing file, paths ending in `.r`
+   * are used as is and a directory resolves to its `lib.r` entry point.
+   */
+  private Path resolve(Module importer, Statement.Import anImport) {
+    String importPath = anImport.path;
+    String relative = importPath.endsWith(".r")
+      ? importPath
+      : importPath.replace('.', '/') + ".r";
+
+    Path directory = importer.path.getParent();
+    Path candidate = directory.resolve(relative).normalize();
+
+    if (!Files.isRegularFile(candidate)) {
+      Path library = directory.resolve(importPath.replace('.', '/')).resolve(LIBRARY_ENTRY).normalize();
+
+      if (!Files.isRegularFile(library)) {
+        throw new AnalysisException(String.format(
+          "ERROR: Cannot resolve import '%s' at %s:%d",
+          importPath, importer.source.getPath(), anImport.getStartLine(importer.source)
+        ));
+      }
+
+      candidate = library;
+    }
+
+    return candidate;
+  }
+}
@@ -0,0 +1,502 @@
+package org.rem.compiler.modules;
+
+import norswap.uranium.Reactor;
+import org.rem.compiler.CompileRequest;
+import org.rem.compiler.cache.BuildCache;
+import org.rem.enums.TypeEnum;
+import org.rem.interfaces.IType;
+import org.rem.parser.Source;
+import org.rem.parser.Token;
+import org.rem.parser.TokenType;
+import org.rem.parser.ast.AstArena;
+import org.rem.parser.ast.Expression;
+import org.rem.parser.ast.Statement;
+import org.rem.parser.ast.Typed;
+import org.rem.types.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What a build keeps of an imported module next to its object file, so that
+ * the next build does not lex, parse or analyze it while its source is
+ * unchanged.
+ * <p>
+ * A summary holds the import statements of the module, the signature of every
+ * declaration it exports with the types the analyzer resolved for it, and all
+ * of its statements stored as an {@link AstArena}. The file is memory mapped
+ * when it is read. Importers only need the exports, so the statements are
+ * decoded only if the module itself has to be compiled again, which is when
+ * the build options or the exports of a module it imports changed.
+ */
+public final class ModuleSummary {
+  public static final String EXTENSION = ".rmi";
+
+  private static final int MAGIC = 0x52454d49;
+  private static final int VERSION = 2;
+  private static final int HASH_LENGTH = 32;
+
+  private final byte[] interfaceHash;
+  private final String options;
+  private final List<Statement.Import> imports;
+  private final byte[][] dependencyHashes;
+  private final List<Export> exports;
+  private final int[] roots;
+  private ByteBuffer arenaData;
+  private Statement[] statements;
+
+  /**
+   * An exported function: its name and parameter names, and the type of the
+   * function as resolved by the analyzer.
+   */
+  public record Export(Token name, long span, List<Token> parameters, DefType type) {
+  }
+
+  private ModuleSummary(byte[] interfaceHash, String options, List<Statement.Import> imports, byte[][] dependencyHashes, List<Export> exports, int[] roots, ByteBuffer arenaData) {
+    this.interfaceHash = interfaceHash;
+    this.options = options;
+    this.imports = imports;
+    this.dependencyHashes = dependencyHashes;
+    this.exports = exports;
+    this.roots = roots;
+    this.arenaData = arenaData;
+  }
+
+  /**
+   * The build options that decide whether an object file can be reused.
+   */
+  public static String options(CompileRequest request, String targetTriple) {
+    return String.join(" ",
+      BuildCache.compilerFingerprint(), targetTriple, request.compileTarget,
+      request.optimizationLevel.name(), String.valueOf(request.getPassPipeline())
+    );
+  }
+
+  /**
+   * Reads the summary of a module, or returns null when there is none or it
+   * was written for a different source.
+   */
+  public static ModuleSummary read(Path file, Source source) {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.remaining() < 12 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+        return null;
+      }
+
+      // The statements are only decoded later, so a file cut short is caught
+      // here by the marker it ends with.
+      if (in.getInt(in.limit() - Integer.BYTES) != MAGIC) {
+        return null;
+      }
+
+      in.limit(in.limit() - Integer.BYTES);
+
+      if (!Arrays.equals(readHash(in), hash(source.getContent()))) {
+        return null;
+      }
+
+      byte[] interfaceHash = readHash(in);
+      String options = (String) AstArena.readRef(in);
+
+      int importCount = in.getInt();
+      List<Statement.Import> imports = new ArrayList<>(importCount);
+      byte[][] dependencyHashes = new byte[importCount][];
+
+      for (int i = 0; i < importCount; i++) {
+        String path = (String) AstArena.readRef(in);
+        boolean all = in.get() != 0;
+        long span = in.getLong();
+        List<Token> elements = readTokens(in);
+
+        Statement.Import anImport = new Statement.Import(path, elements, all);
+        anImport.span = span;
+        imports.add(anImport);
+        dependencyHashes[i] = readHash(in);
+      }
+
+      int exportCount = in.getInt();
+      List<Export> exports = new ArrayList<>(exportCount);
+
+      for (int i = 0; i < exportCount; i++) {
+        Token name = (Token) AstArena.readRef(in);
+        long span = in.getLong();
+        List<Token> parameters = readTokens(in);
+        exports.add(new Export(name, span, parameters, (DefType) readType(in)));
+      }
+
+      int[] roots = new int[in.getInt()];
+      in.asIntBuffer().get(roots);
+      in.position(in.position() + roots.length * Integer.BYTES);
+
+      return new ModuleSummary(interfaceHash, options, imports, dependencyHashes, exports, roots, in.slice());
+    } catch (IOException | RuntimeException e) {
+      // A damaged summary is ignored and the module parsed again.
+      return null;
+    }
+  }
+
+  /**
+   * Writes the summary of a module that was just compiled. A module that
+   * exports types the summary cannot hold, such as classes, gets no summary
+   * and is always compiled from source.
+   *
+   * @param exports the exports of the module as resolved by its analysis.
+   */
+  public static void write(Path file, Module module, String options, List<Export> exports) {
+    Path staging = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(staging)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(hash(module.source.getContent()));
+        out.write(module.interfaceHash());
+        AstArena.writeRef(out, options);
+
+        List<Statement.Import> imports = module.imports();
+        out.writeInt(imports.size());
+
+        for (Statement.Import anImport : imports) {
+          AstArena.writeRef(out, anImport.path);
+          out.writeBoolean(anImport.all);
+          out.writeLong(anImport.span);
+          writeTokens(out, anImport.elements);
+          out.write(module.dependency(anImport).interfaceHash());
+        }
+
+        out.writeInt(exports.size());
+        for (Export export : exports) {
+          AstArena.writeRef(out, export.name());
+          out.writeLong(export.span());
+          writeTokens(out, export.parameters());
+          writeType(out, export.type());
+        }
+
+        AstArena arena = new AstArena();
+        int[] roots = arena.addAll(module.statements);
+
+        out.writeInt(roots.length);
+        for (int root : roots) {
+          out.writeInt(root);
+        }
+
+        arena.writeTo(out);
+        out.writeInt(MAGIC);
+      }
+
+      Files.move(staging, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IllegalArgumentException e) {
+      delete(staging, file);
+    } catch (IOException e) {
+      delete(staging, file);
+      System.err.printf("warning: could not write module summary: %s\n", e.getMessage());
+    }
+  }
+
+  /**
+   * Collects the resolved types of the declarations a module exports from
+   * the reactor that analyzed it.
+   */
+  public static List<Export> exports(Module module, Reactor reactor) {
+    List<Export> exports = new ArrayList<>();
+
+    for (Statement declaration : module.exportedDeclarations()) {
+      if (declaration instanceof Statement.Function function) {
+        exports.add(new Export(function.name, function.span, names(function.parameters), reactor.get(function, "type")));
+      } else if (declaration instanceof Statement.Extern extern) {
+        exports.add(new Export(extern.name, extern.span, names(extern.parameters), reactor.get(extern, "type")));
+      }
+    }
+
+    return exports;
+  }
+
+  /**
+   * A hash of the exported signatures as they are written, which is all that
+   * importers see of a module.
+   */
+  public static byte[] interfaceHash(List<Statement.Extern> externs) {
+    StringBuilder builder = new StringBuilder();
+
+    for (Statement.Extern extern : externs) {
+      builder.append(extern.name.literal()).append(extern.isVariadic ? "(...)" : "()");
+
+      for (Expression.TypedName parameter : extern.parameters) {
+        builder.append(' ').append(parameter.name.token.literal()).append(':');
+        describe(builder, parameter.type);
+      }
+
+      builder.append(" -> ");
+      describe(builder, extern.returnType);
+      builder.append('\n');
+    }
+
+    return hash(builder.toString());
+  }
+
+  public byte[] getInterfaceHash() {
+    return interfaceHash;
+  }
+
+  public String getOptions() {
+    return options;
+  }
+
+  public List<Statement.Import> imports() {
+    return imports;
+  }
+
+  /**
+   * The interface hash the module imported by the statement had when this
+   * module was compiled.
+   */
+  public byte[] dependencyHash(Statement.Import anImport) {
+    int index = imports.indexOf(anImport);
+    return index < 0 ? null : dependencyHashes[index];
+  }
+
+  public List<Export> exports() {
+    return exports;
+  }
+
+  /**
+   * The exports as extern declarations, with the resolved types spelled out.
+   */
+  public List<Statement.Extern> externs() {
+    List<Statement.Extern> externs = new ArrayList<>(exports.size());
+
+    for (Export export : exports) {
+      IType[] types = export.type().getParameterTypes();
+      List<Expression.TypedName> parameters = new ArrayList<>(types.length);
+
+      for (int i = 0; i < types.length; i++) {
+        Token name = export.parameters().get(i);
+        parameters.add(new Expression.TypedName(new Expression.Identifier(name), typed(types[i], name)));
+      }
+
+      Statement.Extern extern = new Statement.Extern(
+        export.name(), parameters, typed(export.type().getReturnType(), export.name()), export.type().isVariadic()
+      );
+      extern.span = export.span();
+      externs.add(extern);
+    }
+
+    return externs;
+  }
+
+  /**
+   * The statements of the module, decoded from the summary when they are
+   * first needed.
+   */
+  public List<Statement> statements() {
+    return new AbstractList<>() {
+      @Override
+      public Statement get(int index) {
+        return decode()[index];
+      }
+
+      @Override
+      public int size() {
+        return roots.length;
+      }
+    };
+  }
+
+  private synchronized Statement[] decode() {
+    if (statements == null) {
+      AstArena arena = AstArena.readFrom(arenaData);
+      statements = new Statement[roots.length];
+
+      for (int i = 0; i < roots.length; i++) {
+        statements[i] = (Statement) arena.toAST(roots[i]);
+      }
+
+      arenaData = null;
+    }
+
+    return statements;
+  }
+
+  //region Helpers
+
+  private static List<Token> names(List<Expression.TypedName> parameters) {
+    List<Token> names = new ArrayList<>(parameters.size());
+    for (Expression.TypedName parameter : parameters) {
+      names.add(parameter.name.token);
+    }
+
+    return names;
+  }
+
+  private static void describe(StringBuilder builder, Typed typed) {
+    if (typed instanceof Typed.Id id) {
+      builder.append(id.name.token.literal());
+    } else if (typed instanceof Typed.Array array) {
+      builder.append('[').append(array.size).append(']');
+      describe(builder, array.type);
+    } else if (typed instanceof Typed.Vector vector) {
+      builder.append("[]");
+      describe(builder, vector.type);
+    } else if (typed instanceof Typed.Map map) {
+      builder.append('{');
+      describe(builder, map.keyType);
+      builder.append(':');
+      describe(builder, map.valueType);
+      builder.append('}');
+    } else if (typed instanceof Typed.Void) {
+      builder.append("void");
+    }
+  }
+
+  /**
+   * Spells out a resolved type the way the parser would have read it.
+   */
+  private static Typed typed(IType type, Token at) {
+    switch (type.type()) {
+      case VOID:
+        return new Typed.Void();
+      case ARRAY:
+        ArrayType array = (ArrayType) type;
+        return new Typed.Array(typed(array.getType(), at), (int) array.getLength());
+      case VECTOR:
+        return new Typed.Vector(typed(((VectorType) type).getType(), at));
+      case MAPPED:
+        MappedType mapped = (MappedType) type;
+        return new Typed.Map(typed(mapped.keyType(), at), typed(mapped.valueType(), at));
+      default:
+        Token name = new Token(TokenType.IDENTIFIER, type.name(), at.line(), at.offset());
+        return new Typed.Id(new Expression.Identifier(name));
+    }
+  }
+
+  private static void writeType(DataOutputStream out, IType type) throws IOException {
+    out.writeByte(type.type().ordinal());
+
+    switch (type.type()) {
+      case ARRAY:
+        ArrayType array = (ArrayType) type;
+        out.writeLong(array.getLength());
+        writeType(out, array.getType());
+        break;
+      case VECTOR:
+        writeType(out, ((VectorType) type).getType());
+        break;
+      case MAPPED:
+        MappedType mapped = (MappedType) type;
+        writeType(out, mapped.keyType());
+        writeType(out, mapped.valueType());
+        break;
+      case DEF:
+        DefType def = (DefType) type;
+        out.writeBoolean(def.isVariadic());
+        writeType(out, def.getReturnType());
+        out.writeInt(def.getParameterTypes().length);
+        for (IType parameter : def.getParameterTypes()) {
+          writeType(out, parameter);
+        }
+        break;
+      case CLASS:
+        throw new IllegalArgumentException("cannot store class type " + type.name());
+      default:
+        break;
+    }
+  }
+
+  private static IType readType(ByteBuffer in) {
+    TypeEnum type = TypeEnum.values()[in.get()];
+
+    switch (type) {
+      case VOID: return VoidType.INSTANCE;
+      case NIL: return NilType.INSTANCE;
+      case BOOL: return BoolType.INSTANCE;
+      case I8: return I8Type.INSTANCE;
+      case I16: return I16Type.INSTANCE;
+      case I32: return I32Type.INSTANCE;
+      case I64: return I64Type.INSTANCE;
+      case I128: return I128Type.INSTANCE;
+      case F32: return F32Type.INSTANCE;
+      case F64: return F64Type.INSTANCE;
+      case F128: return F128Type.INSTANCE;
+      case TYPE: return TypeType.INSTANCE;
+      case ARRAY:
+        long length = in.getLong();
+        return new ArrayType(readType(in), length);
+      case VECTOR:
+        return new VectorType(readType(in));
+      case MAPPED:
+        IType keyType = readType(in);
+        return new MappedType(keyType, readType(in));
+      case DEF:
+        boolean isVariadic = in.get() != 0;
+        IType returnType = readType(in);
+        IType[] parameters = new IType[in.getInt()];
+        for (int i = 0; i < parameters.length; i++) {
+          parameters[i] = readType(in);
+        }
+        return new DefType(returnType, isVariadic, parameters);
+      default:
+        throw new IllegalStateException("cannot read " + type + " type");
+    }
+  }
+
+  private static void writeTokens(DataOutputStream out, List<Token> tokens) throws IOException {
+    out.writeInt(tokens.size());
+    for (Token token : tokens) {
+      AstArena.writeRef(out, token);
+    }
+  }
+
+  private static List<Token> readTokens(ByteBuffer in) {
+    int count = in.getInt();
+    List<Token> tokens = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      tokens.add((Token) AstArena.readRef(in));
+    }
+
+    return tokens;
+  }
+
+  private static byte[] readHash(ByteBuffer in) {
+    byte[] hash = new byte[HASH_LENGTH];
+    in.get(hash);
+    return hash;
+  }
+
+  private static byte[] hash(String content) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void delete(Path... files) {
+    for (Path file : files) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // A summary left behind fails its checks and only costs a recompile.
+      }
+    }
+  }
+
+  //endregion
+}
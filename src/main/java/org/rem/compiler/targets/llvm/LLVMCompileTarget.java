@@ -7,11 +7,13 @@ import org.rem.compiler.BaseCompileTarget;
 import org.rem.generators.LLVMGenerator;
 import org.rem.interfaces.IGenerator;
 import org.rem.interfaces.IType;
+import org.rem.parser.Token;
 import org.rem.parser.TokenType;
 import org.rem.parser.ast.AST;
 import org.rem.parser.ast.Expression;
 import org.rem.parser.ast.Statement;
 import org.rem.scope.Environment;
+import org.rem.scope.SymbolEnvironment;
 import org.rem.types.*;
 import org.rem.utils.TypeUtil;
 
@@ -25,16 +27,21 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
   private final LLVMContextRef context;
   private final LLVMModuleRef module;
   private final Map<IType, LLVMTypeRef> createdTypesCache = new HashMap<>();
-  private LLVMBuilderRef builder = LLVMCreateBuilder();
+  private LLVMBuilderRef builder;
   private LLVMBasicBlockRef currentBlock;
   private LLVMValueRef currentFunction;
-  private Environment<String, LLVMValueRef> env = new Environment<>(null);
+  private SymbolEnvironment<LLVMValueRef> env = new SymbolEnvironment<>(null);
   private Environment<LLVMValueRef, LLVMTypeRef> functionTypeRegistry = new Environment<>(null);
 
-  public LLVMCompileTarget(Reactor reactor) {
+  public LLVMCompileTarget(Reactor reactor, String moduleName) {
     super(reactor);
     this.context = LLVMContextCreate();
-    module = LLVMModuleCreateWithNameInContext("__main__", context);
+    this.builder = LLVMCreateBuilderInContext(context);
+    module = LLVMModuleCreateWithNameInContext(moduleName, context);
+  }
+
+  public LLVMCompileTarget(Reactor reactor) {
+    this(reactor, "__main__");
   }
 
   @Override
@@ -321,7 +328,7 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
 
   @Override
   public LLVMValueRef visitIdentifierExpression(Expression.Identifier expr) {
-    var value = env.get(expr.token.literal());
+    var value = env.get(expr.token.symbol());
     if (value == null) {
       throw new RuntimeException("We should never get here.");
     }
@@ -1000,7 +1007,7 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
     String name = stmt.typedName.name.token.literal();
 
     var allocation = LLVMBuildAlloca(builder, type, name);
-    env.put(name, allocation);
+    env.put(stmt.typedName.name.token.symbol(), allocation);
 
     LLVMValueRef value;
 
@@ -1056,15 +1063,15 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
     }
 
     // define the function in the parent environment
-    env.put(stmt.name.literal(), function);
+    env.put(stmt.name.symbol(), function);
     functionTypeRegistry.put(function, functionType);
 
     for (int i = 0; i < stmt.parameters.size(); i++) {
-      String name = stmt.parameters.get(i).name.token.literal();
+      Token name = stmt.parameters.get(i).name.token;
 
       var param = LLVMGetParam(function, i);
-      LLVMSetValueName2(param, name, name.length());
-      env.put(name, param);
+      LLVMSetValueName2(param, name.literal(), name.literal().length());
+      env.put(name.symbol(), param);
     }
 
     return function;
@@ -1087,7 +1094,7 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
     var functionType = LLVMFunctionType(returnType, paramTypes, stmt.parameters.size(), stmt.isVariadic ? 1 : 0);
     var function = LLVMAddFunction(module, stmt.name.literal(), functionType);
 
-    env = new Environment<>(env);
+    env = new SymbolEnvironment<>(env);
     functionTypeRegistry = new Environment<>(functionTypeRegistry);
     currentFunction = function;
 
@@ -1098,7 +1105,7 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
     }
 
     // define the function in the parent environment
-    env.getParent().put(stmt.name.literal(), function);
+    env.getParent().put(stmt.name.symbol(), function);
     functionTypeRegistry.getParent().put(function, functionType);
 
     currentBlock = LLVMAppendBasicBlockInContext(context, function, "entry");
@@ -1106,15 +1113,15 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
     LLVMPositionBuilderAtEnd(builder, currentBlock);
 
     for (int i = 0; i < stmt.parameters.size(); i++) {
-      String name = stmt.parameters.get(i).name.token.literal();
+      Token name = stmt.parameters.get(i).name.token;
 
       var param = LLVMGetParam(function, i);
-      LLVMSetValueName2(param, name, name.length());
+      LLVMSetValueName2(param, name.literal(), name.literal().length());
 
-      LLVMValueRef paramAllocation = LLVMBuildAlloca(builder, LLVMTypeOf(param), name + ".addr");
+      LLVMValueRef paramAllocation = LLVMBuildAlloca(builder, LLVMTypeOf(param), name.literal() + ".addr");
       LLVMBuildStore(builder, param, paramAllocation);
 
-      env.put(name, paramAllocation);
+      env.put(name.symbol(), paramAllocation);
     }
 
     Boolean returns = R.get(stmt.body, "returns");
@@ -1146,6 +1153,17 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
     return module;
   }
 
+  /**
+   * Frees the builder, module and context of this target. The target must not
+   * be used afterwards.
+   */
+  @Override
+  public void dispose() {
+    LLVMDisposeBuilder(builder);
+    LLVMDisposeModule(module);
+    LLVMContextDispose(context);
+  }
+
   private LLVMTypeRef llvmType(LLVMContextRef context, IType type) {
     if (createdTypesCache.containsKey(type)) {
       return createdTypesCache.get(type);
@@ -1194,7 +1212,7 @@ public class LLVMCompileTarget extends BaseCompileTarget<LLVMValueRef> {
 //
 //
 //      }
-      default -> LLVMVoidType();
+      default -> LLVMVoidTypeInContext(context);
     };
 
     createdTypesCache.put(type, value);
@@ -0,0 +1,190 @@
+package org.rem.daemon;
+
+import org.rem.Main;
+import org.rem.generators.LLVMGenerator;
+import org.rem.utils.OutputRoute;
+import org.rem.utils.SymbolTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * A long lived compiler process serving {@link DaemonClient}s over a Unix
+ * domain socket.
+ * <p>
+ * The JVM, the LLVM native libraries and the LLVM targets are loaded once and
+ * stay warm, so each request only pays for the compilation itself. Requests run
+ * concurrently; their standard output and error are routed back to the client
+ * that issued them through an {@link OutputRoute}, and they see the client's
+ * environment rather than the daemon's. Each request is a {@link SymbolTable}
+ * session, so the names of unrelated projects do not pile up in the daemon.
+ */
+public class CompilerDaemon {
+  private final Path socket;
+  private final RoutedOutputStream stdout;
+  private final RoutedOutputStream stderr;
+  private volatile boolean running = true;
+
+  public CompilerDaemon(Path socket) {
+    this.socket = socket;
+    this.stdout = new RoutedOutputStream(System.out, OutputRoute::out);
+    this.stderr = new RoutedOutputStream(System.err, OutputRoute::err);
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path socket = DaemonProtocol.defaultSocket();
+
+    for (String arg : args) {
+      if (arg.startsWith("--socket=")) {
+        socket = Path.of(arg.substring("--socket=".length()));
+      } else {
+        System.err.printf("error: unknown option '%s'\n", arg);
+        System.err.println("Usage: remd [--socket=<path>]");
+        System.exit(1);
+      }
+    }
+
+    new CompilerDaemon(socket).serve();
+  }
+
+  /**
+   * Listens on the socket until a client asks the daemon to stop.
+   */
+  public void serve() throws IOException {
+    LLVMGenerator.initializeTargets();
+
+    if (Files.exists(socket)) {
+      if (DaemonClient.isRunning(socket)) {
+        throw new IOException("a compiler daemon is already listening on " + socket);
+      }
+
+      Files.delete(socket);
+    }
+
+    System.setOut(new PrintStream(stdout, true));
+    System.setErr(new PrintStream(stderr, true));
+
+    ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "rem-daemon-request");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(socket));
+      socket.toFile().deleteOnExit();
+      stderr.fallback.printf("rem daemon listening on %s\n", socket);
+
+      while (running) {
+        SocketChannel client = server.accept();
+        if (!running) {
+          client.close();
+          break;
+        }
+
+        workers.execute(() -> handle(client));
+      }
+    } finally {
+      workers.shutdown();
+      Files.deleteIfExists(socket);
+    }
+  }
+
+  private void handle(SocketChannel channel) {
+    try (channel) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      DaemonProtocol.Request request = DaemonProtocol.readRequest(in);
+
+      int status;
+      if (request.args().length == 1 && request.args()[0].equals(DaemonProtocol.STOP)) {
+        running = false;
+        status = 0;
+      } else {
+        status = compile(request, out);
+      }
+
+      synchronized (out) {
+        out.writeByte(DaemonProtocol.EXIT);
+        out.writeInt(status);
+        out.flush();
+      }
+
+      if (!running) {
+        // Wake the accept loop up so that it notices the stop request.
+        DaemonClient.isRunning(socket);
+      }
+    } catch (EOFException e) {
+      // A client probing whether the daemon is running.
+    } catch (IOException e) {
+      stderr.fallback.printf("rem daemon: request failed: %s\n", e.getMessage());
+    }
+  }
+
+  private int compile(DaemonProtocol.Request request, DataOutputStream out) {
+    PrintStream requestOut = new PrintStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDOUT), true);
+    PrintStream requestErr = new PrintStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDERR), true);
+
+    OutputRoute.set(new OutputRoute(requestOut, requestErr));
+    SymbolTable.beginSession();
+
+    try {
+      return Main.run(request.args(), request.workingDirectory(), request.environment());
+    } finally {
+      SymbolTable.endSession();
+      requestOut.flush();
+      requestErr.flush();
+      OutputRoute.set(null);
+    }
+  }
+
+  /**
+   * Sends output to the stream of the current thread's {@link OutputRoute}.
+   * Output written outside of any request goes to the daemon's own stream.
+   */
+  private static final class RoutedOutputStream extends OutputStream {
+    private final PrintStream fallback;
+    private final Function<OutputRoute, PrintStream> stream;
+
+    RoutedOutputStream(PrintStream fallback, Function<OutputRoute, PrintStream> stream) {
+      this.fallback = fallback;
+      this.stream = stream;
+    }
+
+    private PrintStream current() {
+      OutputRoute route = OutputRoute.current();
+      return route == null ? fallback : stream.apply(route);
+    }
+
+    @Override
+    public void write(int b) {
+      current().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      current().write(b, off, len);
+    }
+
+    @Override
+    public void flush() {
+      current().flush();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package org.rem.daemon;
+
+import org.rem.Main;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A thin command line front end that forwards its arguments to a running
+ * {@link CompilerDaemon} and relays the daemon's output and exit status.
+ * <p>
+ * It accepts the same arguments as {@link Main}. When no daemon is listening
+ * the compilation runs in process, so the client can always replace `Main`.
+ * `--stop` shuts the daemon down and `run` always executes in process.
+ */
+public class DaemonClient {
+
+  public static void main(String[] args) {
+    Path socket = DaemonProtocol.defaultSocket();
+    Path workingDirectory = Path.of("").toAbsolutePath();
+
+    // Programs started with `run` execute inside the compiler process, so they
+    // run here to keep their output and exit status with this client.
+    if (!isRunning(socket) || (args.length > 0 && args[0].equals("run"))) {
+      if (args.length == 1 && args[0].equals(DaemonProtocol.STOP)) {
+        System.err.println("error: no compiler daemon is running");
+        System.exit(1);
+      }
+
+      // Without a daemon the compilation simply runs in process.
+      System.exit(Main.run(args, workingDirectory));
+    }
+
+    try {
+      System.exit(send(socket, workingDirectory, args));
+    } catch (IOException e) {
+      System.err.printf("error: lost connection to the compiler daemon: %s\n", e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the given command line on the daemon listening on `socket` and
+   * returns its exit status.
+   */
+  public static int send(Path socket, Path workingDirectory, String[] args) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socket));
+
+      DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      DaemonProtocol.writeRequest(out, workingDirectory, System.getenv(), args);
+
+      while (true) {
+        byte kind = in.readByte();
+
+        if (kind == DaemonProtocol.EXIT) {
+          int status = in.readInt();
+          System.out.flush();
+          System.err.flush();
+          return status;
+        }
+
+        byte[] chunk = new byte[in.readInt()];
+        in.readFully(chunk);
+
+        PrintStream stream = kind == DaemonProtocol.STDERR ? System.err : System.out;
+        stream.write(chunk, 0, chunk.length);
+      }
+    }
+  }
+
+  /**
+   * Returns true if a daemon accepts connections on the given socket.
+   */
+  static boolean isRunning(Path socket) {
+    if (!Files.exists(socket)) {
+      return false;
+    }
+
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      return channel.connect(UnixDomainSocketAddress.of(socket));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.rem.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The wire format spoken between {@link DaemonClient} and {@link CompilerDaemon}.
+ * <p>
+ * A client sends the protocol version, its working directory, the variables of
+ * its environment the compiler reads and its command line. The daemon answers with a sequence of frames: chunks of standard output
+ * or standard error, followed by a single exit frame carrying the status.
+ */
+final class DaemonProtocol {
+  static final int VERSION = 2;
+
+  static final byte STDOUT = 1;
+  static final byte STDERR = 2;
+  static final byte EXIT = 3;
+
+  /**
+   * The command line sent by a client to stop the daemon.
+   */
+  static final String STOP = "--stop";
+
+  /**
+   * The environment variables a client forwards, since the daemon's own
+   * environment is whatever it was started with.
+   */
+  static final List<String> ENVIRONMENT = List.of("REM_CACHE_DIR", "CC", "AR", "PATH");
+
+  private DaemonProtocol() {
+  }
+
+  /**
+   * The socket used when none is given: `$REM_DAEMON_SOCKET`, or a per user
+   * socket in the temporary directory otherwise.
+   */
+  static Path defaultSocket() {
+    String configured = System.getenv("REM_DAEMON_SOCKET");
+    if (configured != null && !configured.isBlank()) {
+      return Path.of(configured);
+    }
+
+    return Path.of(System.getProperty("java.io.tmpdir"), "rem-" + System.getProperty("user.name") + ".sock");
+  }
+
+  static void writeRequest(DataOutputStream out, Path workingDirectory, Map<String, String> environment, String[] args) throws IOException {
+    out.writeInt(VERSION);
+    out.writeUTF(workingDirectory.toString());
+
+    for (String name : ENVIRONMENT) {
+      String value = environment.get(name);
+      out.writeBoolean(value != null);
+      if (value != null) out.writeUTF(value);
+    }
+
+    out.writeInt(args.length);
+    for (String arg : args) {
+      out.writeUTF(arg);
+    }
+
+    out.flush();
+  }
+
+  static Request readRequest(DataInputStream in) throws IOException {
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported protocol version " + version);
+    }
+
+    Path workingDirectory = Path.of(in.readUTF());
+
+    Map<String, String> environment = new HashMap<>();
+    for (String name : ENVIRONMENT) {
+      if (in.readBoolean()) environment.put(name, in.readUTF());
+    }
+
+    String[] args = new String[in.readInt()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = in.readUTF();
+    }
+
+    return new Request(workingDirectory, environment, args);
+  }
+
+  /**
+   * @param environment the forwarded variables the client has set.
+   */
+  record Request(Path workingDirectory, Map<String, String> environment, String[] args) {
+  }
+
+  /**
+   * Forwards everything written to it as frames of the given kind. Writes from
+   * several threads are serialized on the underlying stream.
+   */
+  static final class FrameOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final byte kind;
+
+    FrameOutputStream(DataOutputStream out, byte kind) {
+      this.out = out;
+      this.kind = kind;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) return;
+
+      synchronized (out) {
+        out.writeByte(kind);
+        out.writeInt(len);
+        out.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (out) {
+        out.flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.rem.enums;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The artifacts a build can write, as selected with `--emit`.
+ */
+public enum EmitMode {
+  LLVM_IR("llvm-ir", ".ll"),
+  BITCODE("bc", ".bc"),
+  ASSEMBLY("asm", ".s"),
+  OBJECT("obj", ".o"),
+  EXECUTABLE("exe", "");
+
+  private final String option;
+  private final String extension;
+
+  EmitMode(String option, String extension) {
+    this.option = option;
+    this.extension = extension;
+  }
+
+  /**
+   * The name used on the command line.
+   */
+  public String option() {
+    return option;
+  }
+
+  /**
+   * The extension appended to the output name for this artifact.
+   */
+  public String extension() {
+    return extension;
+  }
+
+  /**
+   * Parses a comma separated list such as `llvm-ir,obj`, returning null if any
+   * value is not a known mode.
+   */
+  public static Set<EmitMode> parse(String value) {
+    Set<EmitMode> modes = EnumSet.noneOf(EmitMode.class);
+
+    for (String name : value.split(",")) {
+      EmitMode mode = null;
+      for (EmitMode emitMode : values()) {
+        if (emitMode.option.equals(name.strip())) {
+          mode = emitMode;
+        }
+      }
+
+      if (mode == null) {
+        return null;
+      }
+
+      modes.add(mode);
+    }
+
+    return modes;
+  }
+}
@@ -0,0 +1,53 @@
+package org.rem.enums;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+public enum OptimizationLevel {
+  O0("default<O0>", LLVMCodeGenLevelNone),
+  O1("default<O1>", LLVMCodeGenLevelLess),
+  O2("default<O2>", LLVMCodeGenLevelDefault),
+  O3("default<O3>", LLVMCodeGenLevelAggressive),
+  Os("default<Os>", LLVMCodeGenLevelDefault),
+  Oz("default<Oz>", LLVMCodeGenLevelDefault);
+
+  private final String pipeline;
+  private final int codeGenLevel;
+
+  OptimizationLevel(String pipeline, int codeGenLevel) {
+    this.pipeline = pipeline;
+    this.codeGenLevel = codeGenLevel;
+  }
+
+  /**
+   * The new pass manager pipeline equivalent to this level.
+   */
+  public String pipeline() {
+    return pipeline;
+  }
+
+  /**
+   * The LLVMCodeGenOptLevel used when creating the target machine.
+   */
+  public int codeGenLevel() {
+    return codeGenLevel;
+  }
+
+  /**
+   * Parses a level given as `O2`, `-O2` or `2`, returning null if the value is not a
+   * known level.
+   */
+  public static OptimizationLevel parse(String value) {
+    String level = value.startsWith("-") ? value.substring(1) : value;
+    if (!level.startsWith("O")) {
+      level = "O" + level;
+    }
+
+    for (OptimizationLevel optimizationLevel : values()) {
+      if (optimizationLevel.name().equals(level)) {
+        return optimizationLevel;
+      }
+    }
+
+    return null;
+  }
+}
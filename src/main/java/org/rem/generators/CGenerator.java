@@ -1,12 +1,30 @@
 package org.rem.generators;
 
+import org.rem.compiler.CompileRequest;
 import org.rem.compiler.CompileResult;
 import org.rem.interfaces.IGenerator;
 import org.rem.nodes.Node;
 
+import java.util.List;
+
 public class CGenerator implements IGenerator<Node> {
   @Override
-  public int generate(CompileResult<Node> result, String outputName) {
+  public int generate(CompileResult<Node> result, CompileRequest request, String outputName) {
     return 0;
   }
+
+  @Override
+  public String emit(CompileResult<Node> result, CompileRequest request, String outputName) {
+    return null;
+  }
+
+  @Override
+  public int link(List<String> objectFiles, CompileRequest request, String outputName) {
+    return 0;
+  }
+
+  @Override
+  public String targetTriple() {
+    return "c";
+  }
 }
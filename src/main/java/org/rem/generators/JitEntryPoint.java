@@ -0,0 +1,40 @@
+package org.rem.generators;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * The `void __rem_run(ptr status)` function of a JIT compiled program, called
+ * from Java through a downcall handle of the native linker.
+ */
+final class JitEntryPoint {
+  private static final FunctionDescriptor SIGNATURE = FunctionDescriptor.ofVoid(ValueLayout.ADDRESS);
+
+  private final MethodHandle function;
+
+  JitEntryPoint(long address) {
+    this.function = Linker.nativeLinker().downcallHandle(MemorySegment.ofAddress(address), SIGNATURE);
+  }
+
+  /**
+   * Runs the program and returns the status it stored.
+   */
+  int call() {
+    try (Arena arena = Arena.ofConfined()) {
+      MemorySegment status = arena.allocate(ValueLayout.JAVA_INT);
+      status.set(ValueLayout.JAVA_INT, 0, 0);
+
+      function.invokeExact(status);
+      return status.get(ValueLayout.JAVA_INT, 0);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      // Native code throws no checked exceptions.
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -1,100 +1,326 @@
 package org.rem.generators;
 
+import org.bytedeco.llvm.LLVM.LLVMMemoryBufferRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetMachineRef;
 import org.bytedeco.llvm.LLVM.LLVMTargetRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.rem.compiler.CompileRequest;
 import org.rem.compiler.CompileResult;
 import org.rem.compiler.targets.llvm.LLVMCompileTarget;
+import org.rem.enums.EmitMode;
 import org.rem.interfaces.IGenerator;
+import org.rem.linker.LinkJob;
+import org.rem.linker.LinkerDriver;
+import org.rem.utils.TimeReport;
 
 import org.bytedeco.javacpp.BytePointer;
 
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.bytedeco.llvm.global.LLVM.*;
 
 public class LLVMGenerator implements IGenerator<LLVMValueRef> {
-  static final String[] LINKERS = new String[]{"cc", "clang", "gcc"};
+  private static boolean targetsInitialized = false;
 
-  private static final BytePointer error = new BytePointer();
+  /**
+   * Initializes every LLVM target once per process. This must happen before
+   * modules are emitted from several threads.
+   */
+  public static synchronized void initializeTargets() {
+    if (targetsInitialized) return;
+
+    LLVMInitializeAllTargetInfos();
+    LLVMInitializeAllTargets();
+    LLVMInitializeAllTargetMCs();
+    LLVMInitializeAllAsmParsers();
+    LLVMInitializeAllAsmPrinters();
+
+    targetsInitialized = true;
+  }
 
   @Override
-  public int generate(CompileResult<LLVMValueRef> result, String outputName) {
+  public int generate(CompileResult<LLVMValueRef> result, CompileRequest request, String outputName) {
+    String objectFile = emit(result, request, outputName);
+    if (objectFile == null) {
+      return 1;
+    }
+
+    return request.emits(EmitMode.EXECUTABLE) ? link(List.of(objectFile), request, outputName) : 0;
+  }
+
+  /**
+   * Writes every artifact requested with {@link CompileRequest#emit} next to
+   * `outputName`. Returns the object file when objects are emitted or needed
+   * to link an executable, otherwise the first artifact written, or null on
+   * failure.
+   */
+  @Override
+  public String emit(CompileResult<LLVMValueRef> result, CompileRequest request, String outputName) {
     if(result.getTarget() instanceof LLVMCompileTarget llvmTarget) {
-       final var error = new BytePointer();
+      var module = llvmTarget.getModule();
+      var machine = prepare(module, request);
+      if (machine == null) {
+        return null;
+      }
+
+      try {
+        if (!optimize(module, machine, request)) {
+          return null;
+        }
 
-       LLVMDumpModule(llvmTarget.getModule());
+        dumpFunction(module, request.dumpFunction);
+        String emitted = null;
 
-      LLVMInitializeAllTargetInfos();
-      LLVMInitializeAllTargets();
-      LLVMInitializeAllTargetMCs();
-      LLVMInitializeAllAsmParsers();
-      LLVMInitializeAllAsmPrinters();
+        for (EmitMode mode : request.emit) {
+          if (mode == EmitMode.EXECUTABLE) continue;
 
-      var target = new LLVMTargetRef();
-      LLVMGetTargetFromTriple(LLVMGetDefaultTargetTriple(), target, error);
-      if(!error.isNull()) {
-        System.err.printf("error: %s\n", error.getString());
-      }
-      LLVMDisposeMessage(error);
+          String path = outputName + mode.extension();
+          if (!write(module, machine, mode, path)) {
+            return null;
+          }
 
-      var machine = LLVMCreateTargetMachine(target, LLVMGetDefaultTargetTriple(), new BytePointer("generic"), LLVMGetHostCPUFeatures(), LLVMCodeGenLevelDefault, LLVMRelocDefault, LLVMCodeModelDefault);
+          if (emitted == null || mode == EmitMode.OBJECT) {
+            emitted = path;
+          }
+        }
 
-      LLVMSetTarget(llvmTarget.getModule(), LLVMGetDefaultTargetTriple());
-      var dataLayout = LLVMCreateTargetDataLayout(machine);
-      var dataLayoutStr = LLVMCopyStringRepOfTargetData(dataLayout);
+        if (request.emits(EmitMode.EXECUTABLE) && !request.emits(EmitMode.OBJECT)) {
+          emitted = outputName + EmitMode.OBJECT.extension();
+          if (!write(module, machine, EmitMode.OBJECT, emitted)) {
+            return null;
+          }
+        }
 
-      if(!error.isNull()) {
-        System.err.printf("error: %s\n", error.getString());
+        return emitted;
+      } finally {
+        LLVMDisposeTargetMachine(machine);
       }
-      LLVMSetDataLayout(llvmTarget.getModule(), dataLayoutStr);
-      LLVMDisposeMessage(dataLayoutStr);
+    }
 
-      var objectFile = outputName+".o";
+    return null;
+  }
 
-      LLVMTargetMachineEmitToFile(machine, llvmTarget.getModule(), objectFile, LLVMObjectFile, error);
-      if(!error.isNull()) {
-        System.err.printf("error: %s\n", error.getString());
+  /**
+   * Optimizes the module like {@link #emit} and returns the requested artifact
+   * in memory instead of writing it, for embedders that do not want files.
+   * Returns null on failure.
+   */
+  public byte[] emitToMemory(CompileResult<LLVMValueRef> result, CompileRequest request, EmitMode mode) {
+    if (mode == EmitMode.EXECUTABLE) {
+      throw new IllegalArgumentException("executables can only be produced by linking");
+    }
+
+    if (!(result.getTarget() instanceof LLVMCompileTarget llvmTarget)) {
+      return null;
+    }
+
+    var module = llvmTarget.getModule();
+    var machine = prepare(module, request);
+    if (machine == null) {
+      return null;
+    }
+
+    try {
+      if (!optimize(module, machine, request)) {
+        return null;
       }
-      LLVMDisposeMessage(error);
 
-      return linkToExe(objectFile, outputName);
+      dumpFunction(module, request.dumpFunction);
+      if (mode == EmitMode.LLVM_IR) {
+        var ir = LLVMPrintModuleToString(module);
+        try {
+          return ir.getString().getBytes(StandardCharsets.UTF_8);
+        } finally {
+          LLVMDisposeMessage(ir);
+        }
+      }
 
+      LLVMMemoryBufferRef buffer;
+      if (mode == EmitMode.BITCODE) {
+        buffer = LLVMWriteBitcodeToMemoryBuffer(module);
+      } else {
+        final var error = new BytePointer();
+        buffer = new LLVMMemoryBufferRef();
+        int fileType = mode == EmitMode.ASSEMBLY ? LLVMAssemblyFile : LLVMObjectFile;
+
+        if (LLVMTargetMachineEmitToMemoryBuffer(machine, module, fileType, error, buffer) != 0) {
+          System.err.printf("error: %s\n", error.getString());
+          LLVMDisposeMessage(error);
+          return null;
+        }
+      }
+
+      try {
+        byte[] bytes = new byte[(int) LLVMGetBufferSize(buffer)];
+        LLVMGetBufferStart(buffer).capacity(bytes.length).get(bytes);
+        return bytes;
+      } finally {
+        LLVMDisposeMemoryBuffer(buffer);
+      }
+    } finally {
+      LLVMDisposeTargetMachine(machine);
     }
-    return 0;
   }
 
-  private int linkToExe(String inputPath, String ouputPath) {
-    boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
+  /**
+   * Links the objects into an executable, or with `--lib` archives the objects
+   * of every module into one static library, `<output>.a`, which resolves
+   * everything the entry module imports.
+   */
+  @Override
+  public int link(List<String> objectFiles, CompileRequest request, String outputName) {
+    LinkerDriver linker = LinkerDriver.get(request.environment);
 
-    if(!ouputPath.endsWith(".exe") && isWindows) {
-      ouputPath += ".exe";
+    if (request.library) {
+      return linker.link(LinkJob.archive(objectFiles, outputName + ".a"));
     }
 
-    // TODO: Only export a static library if the main function is missing
-    // OR CREATE A PROPER LINKER
+    boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
+    String executable = !outputName.endsWith(".exe") && isWindows ? outputName + ".exe" : outputName;
+
+    return linker.link(LinkJob.executable(objectFiles, executable, request.libraries, request.libraryPaths));
+  }
 
+  @Override
+  public int run(List<CompileResult<LLVMValueRef>> results, CompileRequest request) {
+    return new LLVMJitRunner().run(results, request);
+  }
+
+  @Override
+  public String targetTriple() {
+    var triple = LLVMGetDefaultTargetTriple();
     try {
-      for(var linker : LINKERS) {
-        // TODO: Verify that -w works for other linkers apart from clang
-        var process = Runtime.getRuntime().exec(new String[]{linker, inputPath, "-o", ouputPath, "-w", "-lc"});
-
-        String out;
-        try (var inputReader = process.inputReader()) {
-          while ((out = inputReader.readLine()) != null) {
-            System.out.println(out);
-          }
-        }
+      return triple.getString();
+    } finally {
+      LLVMDisposeMessage(triple);
+    }
+  }
 
-        try (var errReader = process.errorReader()) {
-          while ((out = errReader.readLine()) != null) {
-            System.err.println(out);
-          }
+  /**
+   * Adds the number of defined functions and instructions of the module, as
+   * produced by code generation, to the report.
+   */
+  static void countModule(LLVMModuleRef module, TimeReport report) {
+    if (!report.isEnabled()) return;
+
+    long functions = 0;
+    long instructions = 0;
+
+    for (var function = LLVMGetFirstFunction(module); function != null; function = LLVMGetNextFunction(function)) {
+      if (LLVMCountBasicBlocks(function) == 0) continue;
+      functions++;
+
+      for (var block = LLVMGetFirstBasicBlock(function); block != null; block = LLVMGetNextBasicBlock(block)) {
+        for (var instruction = LLVMGetFirstInstruction(block); instruction != null; instruction = LLVMGetNextInstruction(instruction)) {
+          instructions++;
         }
       }
-    } catch (IOException e) {
-      return 1;
     }
 
-    return 0;
+    report.count("llvm functions", functions);
+    report.count("llvm instructions", instructions);
+  }
+
+  /**
+   * Creates a target machine for the host and sets the module's triple and
+   * data layout. Returns null if the host target is not available.
+   */
+  private LLVMTargetMachineRef prepare(LLVMModuleRef module, CompileRequest request) {
+    final var error = new BytePointer();
+
+    initializeTargets();
+
+    var target = new LLVMTargetRef();
+    if (LLVMGetTargetFromTriple(LLVMGetDefaultTargetTriple(), target, error) != 0) {
+      System.err.printf("error: %s\n", error.getString());
+      LLVMDisposeMessage(error);
+      return null;
+    }
+
+    var machine = LLVMCreateTargetMachine(target, LLVMGetDefaultTargetTriple(), new BytePointer("generic"), LLVMGetHostCPUFeatures(), request.optimizationLevel.codeGenLevel(), LLVMRelocDefault, LLVMCodeModelDefault);
+
+    LLVMSetTarget(module, LLVMGetDefaultTargetTriple());
+    var dataLayout = LLVMCreateTargetDataLayout(machine);
+    var dataLayoutStr = LLVMCopyStringRepOfTargetData(dataLayout);
+
+    LLVMSetDataLayout(module, dataLayoutStr);
+    LLVMDisposeMessage(dataLayoutStr);
+    LLVMDisposeTargetData(dataLayout);
+
+    countModule(module, request.timeReport);
+
+    return machine;
+  }
+
+  /**
+   * Writes a single artifact of the module to the given path. Returns false
+   * if it could not be written.
+   */
+  private static boolean write(LLVMModuleRef module, LLVMTargetMachineRef machine, EmitMode mode, String path) {
+    final var error = new BytePointer();
+
+    int status = switch (mode) {
+      case LLVM_IR -> LLVMPrintModuleToFile(module, path, error);
+      case BITCODE -> LLVMWriteBitcodeToFile(module, path);
+      case ASSEMBLY -> LLVMTargetMachineEmitToFile(machine, module, path, LLVMAssemblyFile, error);
+      case OBJECT -> LLVMTargetMachineEmitToFile(machine, module, path, LLVMObjectFile, error);
+      case EXECUTABLE -> throw new IllegalArgumentException("executables can only be produced by linking");
+    };
+
+    if (status != 0) {
+      if (error.address() != 0) {
+        System.err.printf("error: could not write '%s': %s\n", path, error.getString());
+        LLVMDisposeMessage(error);
+      } else {
+        System.err.printf("error: could not write '%s'\n", path);
+      }
+
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Prints the IR of the named function to stderr if the module defines it.
+   * Called once the pass pipeline has run, so it shows the optimized code.
+   */
+  static void dumpFunction(LLVMModuleRef module, String name) {
+    if (name == null) return;
+
+    var function = LLVMGetNamedFunction(module, name);
+    if (function == null || LLVMCountBasicBlocks(function) == 0) return;
+
+    var ir = LLVMPrintValueToString(function);
+    System.err.print(ir.getString());
+    LLVMDisposeMessage(ir);
+  }
+
+  /**
+   * Runs the new pass manager over the module using the pipeline requested.
+   * Returns false if the pipeline could not be built or run.
+   */
+  private boolean optimize(LLVMModuleRef module, LLVMTargetMachineRef machine, CompileRequest request) {
+    String pipeline = request.getPassPipeline();
+    if (pipeline == null) {
+      return true;
+    }
+
+    var options = LLVMCreatePassBuilderOptions();
+    try {
+      var passError = LLVMRunPasses(module, pipeline, machine, options);
+      if (passError != null) {
+        var message = LLVMGetErrorMessage(passError);
+        System.err.printf("error: failed to run pass pipeline '%s': %s\n", pipeline, message.getString());
+        LLVMDisposeErrorMessage(message);
+        return false;
+      }
+    } finally {
+      LLVMDisposePassBuilderOptions(options);
+    }
+
+    return true;
   }
 }
@@ -0,0 +1,201 @@
+package org.rem.generators;
+
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.*;
+import org.rem.compiler.CompileRequest;
+import org.rem.compiler.CompileResult;
+import org.rem.compiler.targets.llvm.LLVMCompileTarget;
+
+import java.util.List;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Runs compiled modules in process with the ORC LLJIT instead of emitting
+ * and linking an executable.
+ * <p>
+ * Symbols the modules do not define, such as `putchar`, are resolved against
+ * the host process. Since `main` may have any signature, a small
+ * `void __rem_run(ptr)` wrapper is added to the entry module. It calls `main`,
+ * stores its status through the pointer and flushes the C standard streams,
+ * and is called through a {@link JitEntryPoint}.
+ */
+public class LLVMJitRunner {
+  private static final String RUN_FUNCTION = "__rem_run";
+
+  /**
+   * JIT compiles the given modules, runs `main` from the first one and returns
+   * its status. Programs whose `main` returns nothing exit with 0.
+   */
+  public int run(List<CompileResult<LLVMValueRef>> results, CompileRequest request) {
+    LLVMGenerator.initializeTargets();
+
+    LLVMOrcThreadSafeContextRef threadSafeContext = LLVMOrcCreateNewThreadSafeContext();
+    LLVMContextRef context = LLVMOrcThreadSafeContextGetContext(threadSafeContext);
+    LLVMOrcLLJITRef jit = new LLVMOrcLLJITRef();
+
+    try {
+      if (failed(LLVMOrcCreateLLJIT(jit, null), "could not create the JIT")) {
+        return 1;
+      }
+
+      LLVMOrcJITDylibRef mainDylib = LLVMOrcLLJITGetMainJITDylib(jit);
+      LLVMOrcDefinitionGeneratorRef processSymbols = new LLVMOrcDefinitionGeneratorRef();
+
+      if (failed(
+        LLVMOrcCreateDynamicLibrarySearchGeneratorForProcess(processSymbols, LLVMOrcLLJITGetGlobalPrefix(jit), null, null),
+        "could not expose the host process symbols"
+      )) {
+        return 1;
+      }
+
+      LLVMOrcJITDylibAddGenerator(mainDylib, processSymbols);
+
+      for (int i = 0; i < results.size(); i++) {
+        LLVMModuleRef module = copyInto(results.get(i), context);
+        if (module == null) {
+          return 1;
+        }
+
+        LLVMGenerator.countModule(module, request.timeReport);
+
+        if (i == 0 && !addRunFunction(module, context)) {
+          LLVMDisposeModule(module);
+          return 1;
+        }
+
+        if (!optimize(module, request)) {
+          LLVMDisposeModule(module);
+          return 1;
+        }
+
+        LLVMGenerator.dumpFunction(module, request.dumpFunction);
+
+        // The JIT takes ownership of the module.
+        LLVMOrcThreadSafeModuleRef threadSafeModule = LLVMOrcCreateNewThreadSafeModule(module, threadSafeContext);
+        if (failed(LLVMOrcLLJITAddLLVMIRModule(jit, mainDylib, threadSafeModule), "could not add module to the JIT")) {
+          LLVMOrcDisposeThreadSafeModule(threadSafeModule);
+          return 1;
+        }
+      }
+
+      long[] runAddress = new long[1];
+      if (failed(LLVMOrcLLJITLookup(jit, runAddress, RUN_FUNCTION), "could not compile 'main'")) {
+        return 1;
+      }
+
+      return new JitEntryPoint(runAddress[0]).call();
+    } finally {
+      if (!jit.isNull()) {
+        LLVMErrorRef error = LLVMOrcDisposeLLJIT(jit);
+        if (error != null) LLVMConsumeError(error);
+      }
+
+      LLVMOrcDisposeThreadSafeContext(threadSafeContext);
+    }
+  }
+
+  /**
+   * Copies a compiled module into the JIT's context by round tripping it
+   * through in-memory bitcode, leaving the compile target's module untouched.
+   */
+  private LLVMModuleRef copyInto(CompileResult<LLVMValueRef> result, LLVMContextRef context) {
+    if (!(result.getTarget() instanceof LLVMCompileTarget llvmTarget)) {
+      return null;
+    }
+
+    LLVMMemoryBufferRef bitcode = LLVMWriteBitcodeToMemoryBuffer(llvmTarget.getModule());
+    LLVMModuleRef module = new LLVMModuleRef();
+
+    try {
+      if (LLVMParseBitcodeInContext2(context, bitcode, module) != 0) {
+        System.err.println("error: could not load module into the JIT");
+        return null;
+      }
+    } finally {
+      LLVMDisposeMemoryBuffer(bitcode);
+    }
+
+    return module;
+  }
+
+  /**
+   * Adds `void __rem_run(ptr status)` which calls `main`, stores its result as
+   * an i32 and flushes every C stream.
+   */
+  private boolean addRunFunction(LLVMModuleRef module, LLVMContextRef context) {
+    LLVMValueRef main = LLVMGetNamedFunction(module, "main");
+    if (main == null || LLVMCountBasicBlocks(main) == 0) {
+      System.err.println("error: no 'main' function to run");
+      return false;
+    }
+
+    LLVMTypeRef i32 = LLVMInt32TypeInContext(context);
+    LLVMTypeRef ptr = LLVMPointerTypeInContext(context, 0);
+
+    LLVMValueRef fflush = LLVMGetNamedFunction(module, "fflush");
+    LLVMTypeRef fflushType = LLVMFunctionType(i32, new PointerPointer<>(1).put(0, ptr), 1, 0);
+    if (fflush == null) {
+      fflush = LLVMAddFunction(module, "fflush", fflushType);
+    }
+
+    LLVMTypeRef runType = LLVMFunctionType(LLVMVoidTypeInContext(context), new PointerPointer<>(1).put(0, ptr), 1, 0);
+    LLVMValueRef run = LLVMAddFunction(module, RUN_FUNCTION, runType);
+    LLVMBuilderRef builder = LLVMCreateBuilderInContext(context);
+
+    try {
+      LLVMPositionBuilderAtEnd(builder, LLVMAppendBasicBlockInContext(context, run, "entry"));
+
+      LLVMTypeRef mainType = LLVMGlobalGetValueType(main);
+      int parameterCount = LLVMCountParamTypes(mainType);
+      PointerPointer<LLVMTypeRef> parameterTypes = new PointerPointer<>(Math.max(1, parameterCount));
+      LLVMGetParamTypes(mainType, parameterTypes);
+
+      PointerPointer<LLVMValueRef> arguments = new PointerPointer<>(Math.max(1, parameterCount));
+      for (int i = 0; i < parameterCount; i++) {
+        arguments.put(i, LLVMConstNull(parameterTypes.get(LLVMTypeRef.class, i)));
+      }
+
+      LLVMTypeRef returnType = LLVMGetReturnType(mainType);
+      boolean returnsInteger = LLVMGetTypeKind(returnType) == LLVMIntegerTypeKind;
+      LLVMValueRef result = LLVMBuildCall2(builder, mainType, main, arguments, parameterCount, returnsInteger ? "status" : "");
+
+      LLVMValueRef status = returnsInteger
+        ? LLVMBuildIntCast2(builder, result, i32, LLVMGetIntTypeWidth(returnType) > 1 ? 1 : 0, "")
+        : LLVMConstInt(i32, 0, 0);
+
+      LLVMBuildStore(builder, status, LLVMGetParam(run, 0));
+      LLVMBuildCall2(builder, fflushType, fflush, new PointerPointer<>(1).put(0, LLVMConstNull(ptr)), 1, "");
+      LLVMBuildRetVoid(builder);
+    } finally {
+      LLVMDisposeBuilder(builder);
+    }
+
+    return true;
+  }
+
+  private boolean optimize(LLVMModuleRef module, CompileRequest request) {
+    String pipeline = request.getPassPipeline();
+    if (pipeline == null) {
+      return true;
+    }
+
+    LLVMPassBuilderOptionsRef options = LLVMCreatePassBuilderOptions();
+    try {
+      return !failed(LLVMRunPasses(module, pipeline, null, options), "failed to run pass pipeline '" + pipeline + "'");
+    } finally {
+      LLVMDisposePassBuilderOptions(options);
+    }
+  }
+
+  private static boolean failed(LLVMErrorRef error, String context) {
+    if (error == null) {
+      return false;
+    }
+
+    var message = LLVMGetErrorMessage(error);
+    System.err.printf("error: %s: %s\n", context, message.getString());
+    LLVMDisposeErrorMessage(message);
+    return true;
+  }
+}
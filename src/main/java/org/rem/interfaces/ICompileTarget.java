@@ -40,4 +40,11 @@ public interface ICompileTarget<T> extends IBaseVisitor<T>, Typed.Visitor<T> {
   }
 
   IGenerator<T> getGenerator();
+
+  /**
+   * Frees any native resources held by this target once its results are no
+   * longer needed. The target must not be used afterwards.
+   */
+  default void dispose() {
+  }
 }
@@ -1,9 +1,36 @@
 package org.rem.interfaces;
 
+import org.rem.compiler.CompileRequest;
 import org.rem.compiler.CompileResult;
 
-import java.io.File;
+import java.util.List;
 
 public interface IGenerator<T> {
-  int generate(CompileResult<T> result, String outputName);
+  int generate(CompileResult<T> result, CompileRequest request, String outputName);
+
+  /**
+   * Emits the object file for a single module and returns its path, or null
+   * if emission failed.
+   */
+  String emit(CompileResult<T> result, CompileRequest request, String outputName);
+
+  /**
+   * Links the given object files into the final output.
+   */
+  int link(List<String> objectFiles, CompileRequest request, String outputName);
+
+  /**
+   * Runs the compiled modules in process, starting from the first one, and
+   * returns the status of the program. Targets that cannot run programs
+   * report it and fail.
+   */
+  default int run(List<CompileResult<T>> results, CompileRequest request) {
+    System.err.println("error: running is only supported for LLVM targets");
+    return 1;
+  }
+
+  /**
+   * Identifies the platform the emitted objects are built for.
+   */
+  String targetTriple();
 }
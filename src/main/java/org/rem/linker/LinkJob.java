@@ -0,0 +1,28 @@
+package org.rem.linker;
+
+import java.util.List;
+
+/**
+ * A single invocation of the linker or archiver.
+ *
+ * @param objectFiles the objects to link, in order.
+ * @param output the executable or archive to produce.
+ * @param libraries libraries passed to the linker as `-l<name>`.
+ * @param libraryPaths directories passed to the linker as `-L<dir>`.
+ * @param archive whether to produce a static archive instead of an executable.
+ */
+public record LinkJob(
+  List<String> objectFiles,
+  String output,
+  List<String> libraries,
+  List<String> libraryPaths,
+  boolean archive
+) {
+  public static LinkJob executable(List<String> objectFiles, String output, List<String> libraries, List<String> libraryPaths) {
+    return new LinkJob(objectFiles, output, libraries, libraryPaths, false);
+  }
+
+  public static LinkJob archive(List<String> objectFiles, String output) {
+    return new LinkJob(objectFiles, output, List.of(), List.of(), true);
+  }
+}
@@ -0,0 +1,136 @@
+package org.rem.linker;
+
+import org.rem.utils.OutputRoute;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs link and archive jobs with the detected {@link Toolchain}.
+ * <p>
+ * Every job runs exactly one process whose standard output and error are
+ * drained at the same time, so a chatty linker can never block on a full pipe.
+ * Jobs of concurrent builds, for example in the daemon, run in parallel,
+ * bounded by the number of processors so that they do not oversubscribe the
+ * machine.
+ */
+public class LinkerDriver {
+  private static final Semaphore SLOTS = new Semaphore(Runtime.getRuntime().availableProcessors());
+
+  private final Toolchain toolchain;
+  private final Semaphore slots;
+
+  public LinkerDriver(Toolchain toolchain, int parallelJobs) {
+    this(toolchain, new Semaphore(Math.max(1, parallelJobs)));
+  }
+
+  private LinkerDriver(Toolchain toolchain, Semaphore slots) {
+    this.toolchain = toolchain;
+    this.slots = slots;
+  }
+
+  /**
+   * Returns a driver for the toolchain of the given environment. All of them
+   * share one bound on the jobs running at once.
+   */
+  public static LinkerDriver get(Map<String, String> environment) {
+    return new LinkerDriver(Toolchain.detect(environment), SLOTS);
+  }
+
+  /**
+   * Runs a single job and returns its exit status.
+   */
+  public int link(LinkJob job) {
+    List<String> command = command(job);
+    if (command == null) {
+      return 1;
+    }
+
+    try {
+      slots.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 1;
+    }
+
+    try {
+      return execute(command);
+    } finally {
+      slots.release();
+    }
+  }
+
+  private List<String> command(LinkJob job) {
+    List<String> command = new ArrayList<>();
+
+    if (job.archive()) {
+      if (toolchain.archiver() == null) {
+        System.err.println("error: no archiver found, install ar or set $AR");
+        return null;
+      }
+
+      command.addAll(List.of(toolchain.archiver(), "rcs", job.output()));
+      command.addAll(job.objectFiles());
+      return command;
+    }
+
+    if (toolchain.linker() == null) {
+      System.err.println("error: no linker found, install cc, clang or gcc or set $CC");
+      return null;
+    }
+
+    command.add(toolchain.linker());
+    command.addAll(job.objectFiles());
+    command.addAll(List.of("-o", job.output(), "-w"));
+
+    for (String path : job.libraryPaths()) {
+      command.add("-L" + path);
+    }
+
+    for (String library : job.libraries()) {
+      command.add("-l" + library);
+    }
+
+    command.add("-lc");
+    return command;
+  }
+
+  private int execute(List<String> command) {
+    try {
+      ProcessBuilder builder = new ProcessBuilder(command);
+      if (toolchain.path() != null) builder.environment().put("PATH", toolchain.path());
+
+      Process process = builder.start();
+
+      Thread stdout = new Thread(OutputRoute.propagate(() -> relay(process.getInputStream(), System.out)), "rem-linker-stdout");
+      stdout.setDaemon(true);
+      stdout.start();
+
+      relay(process.getErrorStream(), System.err);
+
+      int status = process.waitFor();
+      stdout.join();
+      return status;
+    } catch (IOException e) {
+      System.err.printf("error: could not run %s: %s\n", command.getFirst(), e.getMessage());
+      return 1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 1;
+    }
+  }
+
+  private static void relay(InputStream in, PrintStream out) {
+    try (in) {
+      in.transferTo(out);
+      out.flush();
+    } catch (IOException e) {
+      // The process went away, its exit status tells the rest.
+    }
+  }
+}
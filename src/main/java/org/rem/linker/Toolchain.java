@@ -0,0 +1,110 @@
+package org.rem.linker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The native tools used to turn object files into executables and static
+ * libraries.
+ * <p>
+ * The toolchain is probed once per environment and cached. `$CC` and `$AR`
+ * take precedence over the usual `cc`, `clang` and `gcc` drivers and the `ar`
+ * and `llvm-ar` archivers, which are looked up on `$PATH`.
+ *
+ * @param linker the linker driver, or null if none was found.
+ * @param archiver the archiver, or null if none was found.
+ * @param path the `$PATH` the tools run with, so that a linker driver finds
+ *             the same tools it would find when run by hand.
+ */
+public record Toolchain(String linker, String archiver, String path) {
+  private static final String[] LINKERS = new String[]{"cc", "clang", "gcc"};
+  private static final String[] ARCHIVERS = new String[]{"ar", "llvm-ar"};
+
+  private static final Map<List<String>, Toolchain> detected = new HashMap<>();
+
+  /**
+   * Returns the toolchain selected by `$CC`, `$AR` and `$PATH` of the given
+   * environment, probing for it on first use.
+   */
+  public static synchronized Toolchain detect(Map<String, String> environment) {
+    String path = environment.get("PATH");
+
+    return detected.computeIfAbsent(Arrays.asList(environment.get("CC"), environment.get("AR"), path), key -> new Toolchain(
+      probe(key.get(0), LINKERS, "--version", path),
+      probe(key.get(1), ARCHIVERS, "--version", path),
+      path
+    ));
+  }
+
+  /**
+   * Returns the first tool that runs, resolved against the path so that it is
+   * the same tool whatever the `$PATH` of this process.
+   */
+  private static String probe(String preferred, String[] candidates, String versionFlag, String path) {
+    List<String> tools = new ArrayList<>();
+    if (preferred != null && !preferred.isBlank()) {
+      tools.add(preferred.strip());
+    }
+
+    tools.addAll(List.of(candidates));
+
+    for (String tool : tools) {
+      String resolved = resolve(tool, path);
+      if (resolved == null) continue;
+
+      try {
+        ProcessBuilder builder = new ProcessBuilder(resolved, versionFlag)
+          .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+          .redirectError(ProcessBuilder.Redirect.DISCARD);
+        if (path != null) builder.environment().put("PATH", path);
+
+        Process process = builder.start();
+        if (process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0) {
+          return resolved;
+        }
+
+        process.destroyForcibly();
+      } catch (IOException e) {
+        // Not usable, try the next one.
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Finds the tool on the path before starting a process so that missing
+   * tools are skipped without paying for a failed exec. Returns null if it is
+   * missing, or the tool as is if there is no path to search.
+   */
+  private static String resolve(String tool, String path) {
+    if (tool.contains(File.separator)) {
+      return new File(tool).canExecute() ? tool : null;
+    }
+
+    if (path == null) {
+      return tool;
+    }
+
+    boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
+
+    for (String directory : path.split(File.pathSeparator)) {
+      File file = new File(directory, tool);
+      if (file.canExecute()) return file.getAbsolutePath();
+
+      File executable = new File(directory, tool + ".exe");
+      if (isWindows && executable.canExecute()) return executable.getAbsolutePath();
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,93 @@
+package org.rem.parser;
+
+import static org.rem.parser.TokenType.*;
+
+/**
+ * Recognizes keywords directly in the source, switching on the length and the
+ * first character of the word. Nothing is allocated and no state is shared,
+ * so every lexer can use it concurrently.
+ */
+public final class Keywords {
+
+  private Keywords() {
+  }
+
+  /**
+   * Returns the keyword spelled by the characters between start (inclusive)
+   * and end (exclusive), or null if they spell an identifier.
+   */
+  public static TokenType match(String source, int start, int end) {
+    char c = source.charAt(start);
+
+    switch (end - start) {
+      case 2:
+        switch (c) {
+          case 'd': return is(source, start, "do") ? DO : null;
+          case 'i': return is(source, start, "if") ? IF : is(source, start, "in") ? IN : null;
+          case 'o': return is(source, start, "or") ? OR : null;
+        }
+        break;
+      case 3:
+        switch (c) {
+          case 'a': return is(source, start, "and") ? AND : null;
+          case 'd': return is(source, start, "def") ? DEF : null;
+          case 'f': return is(source, start, "for") ? FOR : null;
+          case 'n': return is(source, start, "new") ? NEW : is(source, start, "nil") ? NIL : null;
+          case 't': return is(source, start, "try") ? TRY : null;
+          case 'v': return is(source, start, "var") ? VAR : null;
+        }
+        break;
+      case 4:
+        switch (c) {
+          case 'e': return is(source, start, "echo") ? ECHO : is(source, start, "else") ? ELSE : null;
+          case 's': return is(source, start, "self") ? SELF : null;
+          case 't': return is(source, start, "true") ? TRUE : null;
+          case 'w': return is(source, start, "when") ? WHEN : null;
+        }
+        break;
+      case 5:
+        switch (c) {
+          case 'b': return is(source, start, "break") ? BREAK : null;
+          case 'c': return is(source, start, "catch") ? CATCH
+            : is(source, start, "class") ? CLASS
+            : is(source, start, "const") ? CONST : null;
+          case 'f': return is(source, start, "false") ? FALSE : null;
+          case 'r': return is(source, start, "raise") ? RAISE : null;
+          case 'u': return is(source, start, "using") ? USING : null;
+          case 'w': return is(source, start, "while") ? WHILE : null;
+        }
+        break;
+      case 6:
+        switch (c) {
+          case 'a': return is(source, start, "assert") ? ASSERT : null;
+          case 'i': return is(source, start, "import") ? IMPORT : null;
+          case 'p': return is(source, start, "parent") ? PARENT : null;
+          case 'r': return is(source, start, "return") ? RETURN : null;
+          case 's': return is(source, start, "static") ? STATIC : null;
+        }
+        break;
+      case 7:
+        switch (c) {
+          case 'd': return is(source, start, "default") ? DEFAULT : null;
+          case 'f': return is(source, start, "finally") ? FINALLY : is(source, start, "foreach") ? FOREACH : null;
+        }
+        break;
+      case 8:
+        return c == 'c' && is(source, start, "continue") ? CONTINUE : null;
+    }
+
+    return null;
+  }
+
+  /**
+   * Whether the source spells the word at start. The first character was
+   * already matched by the caller.
+   */
+  private static boolean is(String source, int start, String word) {
+    for (int i = 1; i < word.length(); i++) {
+      if (source.charAt(start + i) != word.charAt(i)) return false;
+    }
+
+    return true;
+  }
+}
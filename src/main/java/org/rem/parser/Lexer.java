@@ -1,9 +1,9 @@
 package org.rem.parser;
 
 import org.rem.exceptions.LexerException;
+import org.rem.utils.SymbolTable;
 
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.math.BigInteger;
 import java.util.*;
 
 import static org.rem.parser.TokenType.*;
@@ -15,67 +15,29 @@ public class Lexer {
   private int current = 0;
   private int start = 0;
   private int lineStart = 0;
-  private Token lastToken;
   private final Stack<Character> interpolating = new Stack<>();
+  private final StringDecoder stringDecoder = new StringDecoder();
 
   private final Source source;
   public final String sourceString;
-  private final List<Token> tokens = new ArrayList<>();
+  private TokenSink tokens;
+  private int added = 0;
+  private boolean finished = false;
 
   public Lexer(Source source) {
     this.source = source;
     this.sourceString = source.getContent();
   }
 
-  private final Dictionary<String, TokenType> keywords = createKeywords();
-
-  private Dictionary<String, TokenType> createKeywords() {
-    return new Hashtable<>() {
-      {
-        put("and", AND);
-        put("assert", ASSERT);
-        put("break", BREAK);
-        put("catch", CATCH);
-        put("class", CLASS);
-        put("const", CONST);
-        put("continue", CONTINUE);
-        put("def", DEF);
-        put("default", DEFAULT);
-        put("do", DO);
-        put("echo", ECHO);
-        put("else", ELSE);
-        put("false", FALSE);
-        put("finally", FINALLY);
-        put("for", FOR);
-        put("foreach", FOREACH);
-        put("if", IF);
-        put("import", IMPORT);
-        put("in", IN);
-        put("new", NEW);
-        put("nil", NIL);
-        put("or", OR);
-        put("parent", PARENT);
-        put("raise", RAISE);
-        put("return", RETURN);
-        put("self", SELF);
-        put("static", STATIC);
-        put("true", TRUE);
-        put("try", TRY);
-        put("using", USING);
-        put("var", VAR);
-        put("when", WHEN);
-        put("while", WHILE);
-      }
-
-      @Override
-      public synchronized TokenType get(Object key) {
-        if (this.containsKey(key)) {
-          return super.get(key);
-        }
-
-        return IDENTIFIER;
-      }
-    };
+  /**
+   * Creates a lexer that starts scanning at the given offset, which must be
+   * on the given line and outside of any token, comment or string.
+   */
+  Lexer(Source source, int offset, int line) {
+    this(source);
+    this.current = offset;
+    this.lineStart = offset;
+    this.line = line;
   }
 
   private boolean isAtEnd() {
@@ -96,20 +58,6 @@ public class Lexer {
     return isAlpha(c) || isDigit(c);
   }
 
-  private boolean isBinary(char c) {
-    return c == '1' || c == '0';
-  }
-
-  private boolean isOctal(char c) {
-    return c >= '0' && c <= '7';
-  }
-
-  private boolean isHexadecimal(char c) {
-    return this.isDigit(c) ||
-      (c >= 'a' && c <= 'f') ||
-      (c >= 'A' && c <= 'F');
-  }
-
   /**
    * Returns the current token while moving the pointer forward
    */
@@ -169,19 +117,27 @@ public class Lexer {
   }
 
   /**
-   * Adds a new token to the list of tokens
+   * Adds a new token whose literal is its source text to the buffer
    */
   private void addToken(TokenType type) {
-    addToken(type, sourceString.subSequence(start, current).toString().trim());
+    tokens.add(type, start, current - start, line);
+    added++;
   }
 
   /**
-   * Adds a new token to the list of tokens
+   * Adds a new token with the given literal to the buffer
    */
   private void addToken(TokenType type, String literal) {
-    Token token = new Token(type, literal, line, start);
-    lastToken = token;
-    tokens.add(token);
+    tokens.add(type, start, current - start, line, literal);
+    added++;
+  }
+
+  /**
+   * Adds a new numeric token with the value scanned for it
+   */
+  private void addNumber(TokenType type, long value) {
+    tokens.addNumber(type, start, current - start, line, value);
+    added++;
   }
 
   /**
@@ -189,27 +145,28 @@ public class Lexer {
    */
   private void skipBlockComments() {
     int nesting = 1;
+    int length = sourceString.length();
+
     while (nesting > 0) {
-      if (isAtEnd()) {
-        throw new LexerException(line, current - start, "Unclosed block comment");
-      }
+      // only '*', '/' and line breaks matter inside a comment
+      int i = current;
+      char c = 0;
+      while (i < length && (c = sourceString.charAt(i)) != '*' && c != '/' && c != '\n') i++;
+      current = i;
 
-      // fix line number changes within a block comment.
-      if(previous() == '\n') {
-        lineStart = current;
+      if (isAtEnd()) {
+        throw new LexerException(line, current - lineStart, "Unclosed block comment");
       }
 
       // internal comment open
-      if (peek() == '/' && next() == '*') {
-        advance();
-        advance();
+      if (c == '/' && next() == '*') {
+        current += 2;
         nesting++;
       }
 
       // comment close
-      else if (peek() == '*' && next() == '/') {
-        advance();
-        advance();
+      else if (c == '*' && next() == '/') {
+        current += 2;
         nesting--;
       } else advance();
     }
@@ -228,13 +185,18 @@ public class Lexer {
         case ' ':
         case '\r':
         case '\t': {
-          advance();
+          // blanks never end a line, so the whole run is skipped at once
+          int i = current + 1;
+          char ch;
+          while (i < sourceString.length() && ((ch = sourceString.charAt(i)) == ' ' || ch == '\t' || ch == '\r')) i++;
+          current = i;
           break;
         }
 
         // single line comment
         case '#': {
-          while (peek() != '\n' && !isAtEnd()) advance();
+          int end = sourceString.indexOf('\n', current);
+          current = end < 0 ? sourceString.length() : end;
           break;
         }
 
@@ -267,13 +229,23 @@ public class Lexer {
    * Parses a string surrounded by the quote c.
    */
   private void string(char c) {
-    while (peek() != c && !isAtEnd()) {
+    int length = sourceString.length();
+
+    while (true) {
+      // only the quote, escapes, interpolation and line breaks need a closer look
+      int i = current;
+      char ch;
+      while (i < length && (ch = sourceString.charAt(i)) != c && ch != '\\' && ch != '$' && ch != '\n') i++;
+      current = i;
+
+      if (isAtEnd() || peek() == c) break;
+
       if (peek() == '$' && next() == '{' && previous() != '\\') {  // interpolation started
 
         if (interpolating.size() < MAX_INTERPOLATION_NESTING) {
           interpolating.push(c);
           current++;
-          addToken(INTERPOLATION, getUnquotedString(c));
+          addToken(INTERPOLATION, getUnquotedString());
           current++;
           return;
         }
@@ -293,35 +265,47 @@ public class Lexer {
     }
 
     match(c);
-    addToken(LITERAL, getUnquotedString(c));
+    addToken(LITERAL, getUnquotedString());
   }
 
   /**
-   * Parses a valid Blade number
+   * Parses a valid Blade number. The value is accumulated while scanning,
+   * and integers that do not fit in 64 bits become big numbers.
    */
   private void number() {
     if (previous() == '0') {
       if (match('b')) {   // binary number
-        while (isBinary(peek())) advance();
-        addToken(BIN_NUMBER);
+        radixNumber(BIN_NUMBER, 1);
         return;
       } else if (match('c')) {  // octal number
-        while (isOctal(peek())) advance();
-        addToken(OCT_NUMBER);
+        radixNumber(OCT_NUMBER, 3);
         return;
       } else if (match('x')) {  // hex number
-        while (isHexadecimal(peek())) advance();
-        addToken(HEX_NUMBER);
+        radixNumber(HEX_NUMBER, 4);
         return;
       }
     }
 
-    while (isDigit(peek()) || peek() == '_') advance();
+    long value = previous() - '0';
+    boolean overflow = false;
+
+    char c;
+    while (isDigit(c = peek()) || c == '_') {
+      current++;
+      if (c == '_') continue;
+
+      int digit = c - '0';
+      if (value > (Long.MAX_VALUE - digit) / 10) {
+        overflow = true;
+      } else {
+        value = value * 10 + digit;
+      }
+    }
 
     if(peek() == 'n') {
       // we've encountered a big integer
       advance();
-      addToken(BIG_NUMBER, sourceString.subSequence(start, current - 1).toString().replace("_", "").trim());
+      addToken(BIG_NUMBER, digits(start, current - 1));
       return;
     }
 
@@ -338,19 +322,84 @@ public class Lexer {
         do advance();
         while (isDigit(peek()));
       }
+
+      addNumber(FLOAT_NUMBER, Float.floatToRawIntBits(Float.parseFloat(digits(start, current))));
+      return;
+    }
+
+    if (overflow) {
+      addToken(BIG_NUMBER, digits(start, current));
+    } else {
+      addNumber(REG_NUMBER, value);
+    }
+  }
+
+  /**
+   * Scans the digits of a binary, octal or hexadecimal number, whose radix is
+   * 2 to the power of shift, after its prefix. Such numbers are bit patterns,
+   * so any value up to 2^64 - 1 is kept, those from 2^63 up as negative longs.
+   */
+  private void radixNumber(TokenType type, int shift) {
+    int radix = 1 << shift;
+    long value = 0;
+    boolean overflow = false;
+
+    int digit;
+    while ((digit = digitValue(peek())) < radix) {
+      current++;
+
+      if (value >>> (64 - shift) != 0) {
+        overflow = true;
+      } else {
+        value = (value << shift) | digit;
+      }
+    }
+
+    if (current - start == 2) {
+      throw new LexerException(line, current - start, String.format("Expected digits after '%s'", sourceString.substring(start, current)));
+    }
+
+    if (overflow) {
+      addToken(BIG_NUMBER, new BigInteger(sourceString.substring(start + 2, current), radix).toString());
+    } else {
+      addNumber(type, value);
     }
+  }
 
-    addToken(REG_NUMBER, sourceString.subSequence(start, current).toString().replace("_", "").trim());
+  /**
+   * The value of a hexadecimal digit, or 16 if c is not one.
+   */
+  private int digitValue(char c) {
+    if (c >= '0' && c <= '9') return c - '0';
+    if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+    if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+    return 16;
+  }
+
+  /**
+   * The digits of a number between from and to, without separators.
+   */
+  private String digits(int from, int to) {
+    int separator = sourceString.indexOf('_', from);
+    String digits = sourceString.substring(from, to);
+    return separator != -1 && separator < to ? digits.replace("_", "") : digits;
   }
 
   /**
    * Scans identifiers and keywords
    */
   private void identifier() {
-    while (isAlphanumeric(peek())) advance();
+    int length = sourceString.length();
+    while (current < length && isAlphanumeric(sourceString.charAt(current))) current++;
 
-    String text = sourceString.subSequence(start, current).toString().trim();
-    addToken(keywords.get(text), text);
+    TokenType keyword = Keywords.match(sourceString, start, current);
+
+    if (keyword != null) {
+      addToken(keyword);
+    } else {
+      tokens.addIdentifier(start, current - start, line, SymbolTable.intern(sourceString, start, current));
+      added++;
+    }
   }
 
   /**
@@ -533,38 +582,71 @@ public class Lexer {
   }
 
   /**
-   * Scans the source and returns a list of tokens.
-   *
-   * @return list[Token]
+   * Scans the source into a compact token buffer.
    */
-  public List<Token> run() {
+  public TokenBuffer tokenize() {
+    TokenBuffer buffer = new TokenBuffer(sourceString);
+    while (scanInto(buffer)) ;
+    return buffer;
+  }
+
+  /**
+   * Scans until the next token was added to the sink, ending with an EOF
+   * token. Returns false once the EOF token was added.
+   */
+  boolean scanInto(TokenSink sink) {
+    if (finished) return false;
+    tokens = sink;
+
+    int before = added;
     while (!isAtEnd()) {
       skipWhitespace();
 
       scan();
+
+      if (added > before) return true;
     }
 
+    start = current;
     addToken(EOF, "");
-    return tokens;
+    finished = true;
+    return true;
+  }
+
+  /**
+   * The offset of the next character to scan.
+   */
+  int position() {
+    return current;
+  }
+
+  /**
+   * Whether the tokens scanned from the current position on depend on the
+   * position alone, that is the lexer is between tokens, outside of any
+   * string interpolation and has not added the EOF token yet.
+   */
+  boolean isSettled() {
+    return !finished && interpolating.isEmpty();
   }
 
-  private String getUnquotedString(char quote) {
-    Charset UTF_8 = StandardCharsets.UTF_8;
-    String escaped = sourceString.subSequence(start + 1, current - 1).toString()
-      .replace("\\0", "\0")
-      .replace("\\$", "$")
-      .replace("\\'", quote == '\'' || quote == '}' ? "'" : "\\'")
-      .replace("\\\"", quote == '\"' || quote == '}' ? "'" : "\\\"")
-      .replace("\\b", "\b")
-      .replace("\\f", "\f")
-      .replace("\\n", "\n")
-      .replace("\\r", "\r")
-      .replace("\\t", "\t")
-      .replace("\\\\", "\\")
-      .replace("\\n", "\n");
-
-    // ensure we align to UTF8
-    return UTF_8.decode(UTF_8.encode(escaped)).toString();
+  /**
+   * Scans the source and returns a list of tokens.
+   *
+   * @return list[Token]
+   */
+  public List<Token> run() {
+    return tokenize().toList();
+  }
+
+  /**
+   * Decodes the body of the string token being scanned, without its quotes.
+   */
+  private String getUnquotedString() {
+    try {
+      return stringDecoder.decode(sourceString, start + 1, current - 1);
+    } catch (IllegalArgumentException e) {
+      throw new LexerException(line, current - start, e.getMessage());
+    }
   }
 
   public Source getSource() {
@@ -0,0 +1,201 @@
+package org.rem.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lexes a large source on several threads.
+ * <p>
+ * The source is cut into chunks at line breaks and every chunk but the first
+ * is lexed speculatively on a fork/join pool, as if it started outside of any
+ * comment, string or interpolation. The chunks are then stitched together in
+ * order by a lexer that carries the true state. It scans on from the end of
+ * the previous chunk until it reaches a position where the speculative lexer
+ * of the next chunk was also between tokens and outside of any interpolation.
+ * From there both lexers produce the same tokens, so the rest of the chunk is
+ * taken as it is. A chunk whose starting state was guessed wrong, because it
+ * starts inside a block comment or a multi-line string, is only re-lexed up
+ * to the first point where the two agree.
+ * <p>
+ * The tokens, offsets and line numbers are the same as those of
+ * {@link Lexer#tokenize()}, and so are the errors.
+ */
+public class ParallelLexer {
+  /**
+   * The default number of characters per chunk.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+  private final Source source;
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+
+  public ParallelLexer(Source source) {
+    this(source, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+  }
+
+  public ParallelLexer(Source source, ForkJoinPool pool, int chunkSize) {
+    this.source = source;
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Whether a source is large enough, and the machine has the cores, for
+   * lexing it in parallel to pay off.
+   */
+  public static boolean isWorthwhile(Source source) {
+    return ForkJoinPool.getCommonPoolParallelism() > 1
+      && source.getContent().length() >= 2 * DEFAULT_CHUNK_SIZE;
+  }
+
+  /**
+   * Scans the source into a compact token buffer.
+   */
+  public TokenBuffer tokenize() {
+    List<Chunk> chunks = split();
+    if (chunks.size() < 2) {
+      return new Lexer(source).tokenize();
+    }
+
+    for (Chunk chunk : chunks.subList(1, chunks.size())) {
+      chunk.task = pool.submit(chunk::lex);
+    }
+
+    try {
+      return stitch(chunks);
+    } finally {
+      // only left running when the true lexer failed
+      for (Chunk chunk : chunks) {
+        if (chunk.task != null) chunk.task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Cuts the source into chunks of about the chunk size that each start at
+   * the beginning of a line.
+   */
+  private List<Chunk> split() {
+    String content = source.getContent();
+    List<Chunk> chunks = new ArrayList<>();
+
+    int start = 0;
+    while (start < content.length()) {
+      int end = content.length();
+
+      if (end - start > chunkSize) {
+        int newline = content.indexOf('\n', start + chunkSize);
+        if (newline >= 0) end = newline + 1;
+      }
+
+      chunks.add(new Chunk(start, end, source.getLineNumber(start), end == content.length()));
+      start = end;
+    }
+
+    return chunks;
+  }
+
+  private TokenBuffer stitch(List<Chunk> chunks) {
+    TokenBuffer tokens = new TokenBuffer(source.getContent());
+    Lexer lexer = new Lexer(source);
+    int next = 1;
+
+    while (true) {
+      int position = lexer.position();
+
+      while (next < chunks.size() && position >= chunks.get(next).start) {
+        Chunk chunk = chunks.get(next);
+        chunk.task.join();
+
+        int sync = lexer.isSettled() ? chunk.syncAt(position) : -1;
+        if (sync >= 0) {
+          // from here on the speculative tokens are the true ones
+          tokens.append(chunk.tokens, chunk.syncCounts[sync]);
+          lexer = chunk.lexer;
+          position = lexer.position();
+          next++;
+        } else if (position >= chunk.limit) {
+          // the guess was wrong for the whole chunk
+          next++;
+        } else {
+          break;
+        }
+      }
+
+      if (!lexer.scanInto(tokens)) {
+        return tokens;
+      }
+    }
+  }
+
+  /**
+   * A part of the source and the tokens lexed from its start.
+   */
+  private class Chunk {
+    final int start;
+    final int end;
+    final int line;
+    final boolean last;
+    final TokenBuffer tokens;
+    ForkJoinTask<?> task;
+
+    // the speculative lexer, left where it stopped
+    Lexer lexer;
+    // the positions where the speculative lexer was settled, and how many
+    // tokens it had added by then
+    int[] syncOffsets = new int[64];
+    int[] syncCounts = new int[64];
+    int syncSize = 0;
+    // the position after which the chunk can no longer be synced into
+    int limit;
+
+    Chunk(int start, int end, int line, boolean last) {
+      this.start = start;
+      this.end = end;
+      this.line = line;
+      this.last = last;
+      this.tokens = new TokenBuffer(source.getContent(), Math.max(256, (end - start) / 4));
+    }
+
+    void lex() {
+      Lexer lexer = new Lexer(source, start, line);
+
+      try {
+        while (true) {
+          if (lexer.isSettled()) sync(lexer.position(), tokens.size());
+          if (!last && lexer.position() >= end) break;
+          if (!lexer.scanInto(tokens)) break;
+        }
+      } catch (RuntimeException e) {
+        // a wrong guess can run into errors that the true lexer never sees,
+        // so the chunk is simply re-lexed
+        syncSize = 0;
+        limit = end;
+        return;
+      }
+
+      this.lexer = lexer;
+      this.limit = lexer.position();
+    }
+
+    void sync(int offset, int count) {
+      if (syncSize == syncOffsets.length) {
+        syncOffsets = Arrays.copyOf(syncOffsets, syncSize * 2);
+        syncCounts = Arrays.copyOf(syncCounts, syncSize * 2);
+      }
+
+      syncOffsets[syncSize] = offset;
+      syncCounts[syncSize] = count;
+      syncSize++;
+    }
+
+    int syncAt(int offset) {
+      int index = Arrays.binarySearch(syncOffsets, 0, syncSize, offset);
+      return index < 0 ? -1 : index;
+    }
+  }
+}
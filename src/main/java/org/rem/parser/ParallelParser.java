@@ -0,0 +1,207 @@
+package org.rem.parser;
+
+import org.rem.parser.ast.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.rem.parser.TokenType.*;
+
+/**
+ * Parses the top-level declarations of a large file on several threads.
+ * <p>
+ * The tokens are scanned once for the places where a top-level declaration
+ * can start: a `def`, `class`, `@def`, `var` or `const` at the start of a line
+ * and outside of any braces, parentheses or brackets. The declarations
+ * between them are grouped into chunks that are parsed on a fork/join pool,
+ * each by its own parser, and the statements are joined in source order. A
+ * chunk starts counting anonymous functions from the number of `@` tokens
+ * before it, so they are named as they would be by a single parser.
+ * <p>
+ * A chunk that fails, or whose parser does not stop exactly where the next
+ * chunk starts, makes the whole file be parsed again by a single parser. The
+ * statements, their positions and the errors are therefore always those of
+ * {@link Parser#parse()}.
+ */
+public class ParallelParser {
+  /**
+   * The default number of tokens per chunk.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+  private final Lexer lexer;
+  private final TokenBuffer tokens;
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+  private int nodeCount = 0;
+
+  public ParallelParser(Lexer lexer, TokenBuffer tokens) {
+    this(lexer, tokens, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+  }
+
+  public ParallelParser(Lexer lexer, TokenBuffer tokens, ForkJoinPool pool, int chunkSize) {
+    this.lexer = lexer;
+    this.tokens = tokens;
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Whether a source is large enough, and the machine has the cores, for
+   * parsing it in parallel to pay off.
+   */
+  public static boolean isWorthwhile(Source source) {
+    return ForkJoinPool.getCommonPoolParallelism() > 1
+      && source.getContent().length() >= 256 * 1024;
+  }
+
+  /**
+   * The number of AST nodes created by the last parse.
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  public List<Statement> parse() {
+    List<Chunk> chunks = split();
+    if (chunks.size() < 2) {
+      return sequential();
+    }
+
+    for (Chunk chunk : chunks) {
+      chunk.task = pool.submit(chunk::parse);
+    }
+
+    List<Statement> result = new ArrayList<>();
+    int nodes = 0;
+
+    for (int i = 0; i < chunks.size(); i++) {
+      Chunk chunk = chunks.get(i);
+      chunk.task.join();
+
+      int anonymousCount = i + 1 < chunks.size() ? chunks.get(i + 1).anonymousCount : -1;
+      if (chunk.statements == null || (anonymousCount >= 0 && chunk.endAnonymousCount != anonymousCount)) {
+        for (Chunk other : chunks) {
+          other.task.cancel(false);
+        }
+
+        return sequential();
+      }
+
+      result.addAll(chunk.statements);
+      nodes += chunk.nodeCount;
+    }
+
+    nodeCount = nodes;
+    return result;
+  }
+
+  private List<Statement> sequential() {
+    Parser parser = new Parser(lexer, tokens);
+    List<Statement> result = parser.parse();
+    nodeCount = parser.getNodeCount();
+    return result;
+  }
+
+  /**
+   * Cuts the tokens into chunks of about the chunk size that each start at a
+   * top-level declaration.
+   */
+  private List<Chunk> split() {
+    List<Chunk> chunks = new ArrayList<>();
+    int size = tokens.size();
+    int depth = 0;
+    int anonymousCount = 0;
+    int start = 0;
+    int startAnonymousCount = 0;
+
+    for (int i = 0; i < size; i++) {
+      TokenType type = tokens.type(i);
+
+      switch (type) {
+        case LBRACE:
+        case LPAREN:
+        case LBRACKET:
+          depth++;
+          break;
+        case RBRACE:
+        case RPAREN:
+        case RBRACKET:
+          depth--;
+          break;
+        case AT:
+          anonymousCount++;
+          break;
+        default:
+          if (depth == 0 && i > start && i - start >= chunkSize && tokens.type(i - 1) == NEWLINE && startsDeclaration(i)) {
+            chunks.add(new Chunk(start, i, startAnonymousCount));
+            start = i;
+            startAnonymousCount = anonymousCount;
+          }
+      }
+    }
+
+    chunks.add(new Chunk(start, size, startAnonymousCount));
+    return chunks;
+  }
+
+  private boolean startsDeclaration(int index) {
+    switch (tokens.type(index)) {
+      case DEF:
+      case CLASS:
+      case VAR:
+      case CONST:
+        return true;
+      case DECORATOR:
+        return tokens.literal(index).equals("@def");
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * The declarations between two token indexes and the statements parsed
+   * from them.
+   */
+  private class Chunk {
+    final int start;
+    final int end;
+    final int anonymousCount;
+    ForkJoinTask<?> task;
+
+    // null when the chunk has to be parsed again as part of the whole file
+    List<Statement> statements;
+    int endAnonymousCount;
+    int nodeCount;
+
+    Chunk(int start, int end, int anonymousCount) {
+      this.start = start;
+      this.end = end;
+      this.anonymousCount = anonymousCount;
+    }
+
+    void parse() {
+      Parser parser = new Parser(lexer, tokens);
+      parser.seek(start);
+      parser.setAnonymousCount(anonymousCount);
+      List<Statement> result = new ArrayList<>();
+
+      try {
+        while (parser.position() < end && parser.hasMoreDeclarations()) {
+          result.add(parser.nextDeclaration());
+        }
+      } catch (RuntimeException e) {
+        // the single parser reports the error, and any earlier one
+        return;
+      }
+
+      if (parser.position() == end || (end == tokens.size() && !parser.hasMoreDeclarations())) {
+        statements = result;
+        endAnonymousCount = parser.getAnonymousCount();
+        nodeCount = parser.getNodeCount();
+      }
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package org.rem.parser;
+
+import org.rem.parser.ast.SpanShifter;
+import org.rem.parser.ast.Statement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tokens and top-level declarations of a source, which can be brought up
+ * to date after an edit without lexing and parsing the whole file again.
+ * <p>
+ * {@link #apply(TextEdit)} re-lexes from the start of the last declaration
+ * that begins before the edit, and stops once the lexer reaches the end of a
+ * declaration after the edit in the same state as before. The old tokens
+ * from there on are kept, moved by the size of the edit. It then re-parses
+ * declarations from the same point until the parser lines up with the start
+ * of an old declaration again, and reuses that declaration and all the ones
+ * after it as they are. Lexing and parsing therefore cost as much as the
+ * declarations the edit touches, not the whole file.
+ * <p>
+ * The spans stored in the nodes of reused declarations are only moved when
+ * {@link #getStatements()} is called, so a series of edits moves each node
+ * once. Their line numbers are looked up in the source and need no update.
+ * Tokens held by those nodes keep the offsets they had when they were
+ * parsed. Since reused nodes are shared with the previous snapshot, applying
+ * an edit supersedes it, and only its source and tokens can still be used.
+ * <p>
+ * Anonymous functions are named `@anonN` in the order they are parsed, and
+ * re-parsed declarations continue the count of the previous snapshot. Reused
+ * declarations keep their names, so after an edit the names can differ from
+ * those of a full parse of the same source, though they stay unique.
+ */
+public class ParseSnapshot {
+  private final Source source;
+  private final TokenBuffer tokens;
+  private final Statement[] declarations;
+  // the index of the first token of each declaration
+  private final int[] firstTokens;
+  // how far the spans stored in each declaration's nodes are behind
+  private final int[] offsetShifts;
+  private final int anonymousCount;
+  private final int parsedCount;
+  private boolean superseded = false;
+
+  private ParseSnapshot(Source source, TokenBuffer tokens, Declarations declarations, int anonymousCount, int parsedCount) {
+    this.source = source;
+    this.tokens = tokens;
+    this.declarations = Arrays.copyOf(declarations.statements, declarations.size);
+    this.firstTokens = Arrays.copyOf(declarations.firstTokens, declarations.size);
+    this.offsetShifts = Arrays.copyOf(declarations.offsetShifts, declarations.size);
+    this.anonymousCount = anonymousCount;
+    this.parsedCount = parsedCount;
+  }
+
+  /**
+   * Lexes and parses the whole source.
+   */
+  public static ParseSnapshot parse(Source source) {
+    Lexer lexer = new Lexer(source);
+    TokenBuffer tokens = lexer.tokenize();
+    Parser parser = new Parser(lexer, tokens);
+    Declarations declarations = new Declarations(64);
+
+    while (parser.hasMoreDeclarations()) {
+      declarations.add(parser.position(), parser.nextDeclaration(), 0);
+    }
+
+    return new ParseSnapshot(source, tokens, declarations, parser.getAnonymousCount(), declarations.size);
+  }
+
+  /**
+   * Returns the snapshot of the source with the edit applied. This snapshot
+   * is superseded by it.
+   *
+   * @throws IndexOutOfBoundsException if the edit is outside of the source.
+   * @throws org.rem.exceptions.LexerException if the edited source does not lex.
+   * @throws org.rem.exceptions.ParserException if the edited source does not parse.
+   */
+  public ParseSnapshot apply(TextEdit edit) {
+    checkCurrent();
+
+    String text = source.getContent();
+    Source edited = new Source(source.getPath(), edit.applyTo(text));
+    int offsetDelta = edit.delta();
+    int lineDelta = lineBreaks(edit.insertedText(), 0, edit.insertedText().length())
+      - lineBreaks(text, edit.offset(), edit.removedEnd());
+
+    // The edit can extend the last token of the declaration before it, so
+    // the first damaged declaration is the last one that starts before it.
+    int first = firstDamaged(edit.offset());
+    int firstToken = first == 0 ? 0 : firstTokens[first];
+    int restart = first == 0 ? 0 : tokens.start(firstToken);
+    int restartLine = first == 0 ? 1 : tokens.line(firstToken);
+
+    TokenBuffer editedTokens = new TokenBuffer(edited.getContent(), tokens.size() + 256);
+    editedTokens.append(tokens, 0, firstToken, 0, 0);
+
+    // re-lex until the lexer is settled where an untouched declaration used
+    // to start, from where the old tokens are still right
+    Lexer lexer = new Lexer(edited, restart, restartLine);
+    int resumeToken = -1;
+    int next = first + 1;
+
+    while (lexer.scanInto(editedTokens)) {
+      int position = lexer.position();
+
+      while (next < declarations.length
+        && (boundary(next) < edit.removedEnd() || boundary(next) + offsetDelta < position)) {
+        next++;
+      }
+
+      if (next < declarations.length && boundary(next) + offsetDelta == position && lexer.isSettled()) {
+        resumeToken = firstTokens[next];
+        break;
+      }
+    }
+
+    int tokenDelta = 0;
+    if (resumeToken >= 0) {
+      tokenDelta = editedTokens.size() - resumeToken;
+      editedTokens.append(tokens, resumeToken, tokens.size(), offsetDelta, lineDelta);
+    }
+
+    // re-parse until the parser reaches the start of a reused declaration
+    Parser parser = new Parser(new Lexer(edited), editedTokens);
+    parser.setAnonymousCount(anonymousCount);
+    parser.seek(firstToken);
+
+    Declarations result = new Declarations(declarations.length + 8);
+    for (int i = 0; i < first; i++) {
+      result.add(firstTokens[i], declarations[i], offsetShifts[i]);
+    }
+
+    int reused = declarations.length;
+    int parsed = 0;
+
+    while (parser.hasMoreDeclarations()) {
+      int position = parser.position();
+
+      if (resumeToken >= 0 && position >= resumeToken + tokenDelta) {
+        int old = Arrays.binarySearch(firstTokens, first + 1, declarations.length, position - tokenDelta);
+        if (old >= 0) {
+          reused = old;
+          break;
+        }
+      }
+
+      result.add(position, parser.nextDeclaration(), 0);
+      parsed++;
+    }
+
+    for (int i = reused; i < declarations.length; i++) {
+      result.add(firstTokens[i] + tokenDelta, declarations[i], offsetShifts[i] + offsetDelta);
+    }
+
+    superseded = true;
+    return new ParseSnapshot(edited, editedTokens, result, parser.getAnonymousCount(), parsed);
+  }
+
+  public Source getSource() {
+    return source;
+  }
+
+  public TokenSource getTokens() {
+    return tokens;
+  }
+
+  /**
+   * The top-level declarations, with the spans of reused nodes brought up to
+   * date.
+   */
+  public List<Statement> getStatements() {
+    checkCurrent();
+
+    for (int i = 0; i < declarations.length; i++) {
+      if (offsetShifts[i] != 0) {
+        new SpanShifter(offsetShifts[i]).shift(declarations[i]);
+        offsetShifts[i] = 0;
+      }
+    }
+
+    return Collections.unmodifiableList(Arrays.asList(declarations));
+  }
+
+  /**
+   * The number of declarations that were parsed for this snapshot, as
+   * opposed to reused from the previous one.
+   */
+  public int getParsedCount() {
+    return parsedCount;
+  }
+
+  private void checkCurrent() {
+    if (superseded) {
+      throw new IllegalStateException("snapshot of " + source.getPath() + " was superseded by an edit");
+    }
+  }
+
+  /**
+   * The index of the last declaration that starts before the offset.
+   */
+  private int firstDamaged(int offset) {
+    int low = 0;
+    int high = declarations.length - 1;
+
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (tokens.start(firstTokens[middle]) < offset) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * The lexer's position right before it scanned the first token of a
+   * declaration, which is the end of the token before it.
+   */
+  private int boundary(int declaration) {
+    int last = firstTokens[declaration] - 1;
+    return tokens.start(last) + tokens.length(last);
+  }
+
+  private static int lineBreaks(String text, int from, int to) {
+    int count = 0;
+    for (int i = text.indexOf('\n', from); i >= 0 && i < to; i = text.indexOf('\n', i + 1)) {
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * A growable list of declarations and their bookkeeping.
+   */
+  private static class Declarations {
+    Statement[] statements;
+    int[] firstTokens;
+    int[] offsetShifts;
+    int size = 0;
+
+    Declarations(int capacity) {
+      statements = new Statement[capacity];
+      firstTokens = new int[capacity];
+      offsetShifts = new int[capacity];
+    }
+
+    void add(int firstToken, Statement statement, int offsetShift) {
+      if (size == statements.length) {
+        int capacity = size * 2;
+        statements = Arrays.copyOf(statements, capacity);
+        firstTokens = Arrays.copyOf(firstTokens, capacity);
+        offsetShifts = Arrays.copyOf(offsetShifts, capacity);
+      }
+
+      statements[size] = statement;
+      firstTokens[size] = firstToken;
+      offsetShifts[size] = offsetShift;
+      size++;
+    }
+  }
+}
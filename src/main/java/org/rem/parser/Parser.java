@@ -1,6 +1,5 @@
 package org.rem.parser;
 
-import org.rem.exceptions.LexerException;
 import org.rem.exceptions.ParserException;
 import org.rem.parser.ast.AST;
 import org.rem.parser.ast.Expression;
@@ -39,20 +38,79 @@ public class Parser {
       return containsKey(key) ? super.get(key) : EQUAL;
     }
   };
+  /**
+   * How tightly each binary operator binds, by token type ordinal, from 1 for
+   * `or` to 10 for the multiplicative operators. Zero for anything else.
+   */
+  private static final byte[] BINDING_POWERS = new byte[TokenType.values().length];
+  /**
+   * Whether each binary operator builds an {@link Expression.Logical} rather
+   * than an {@link Expression.Binary}.
+   */
+  private static final boolean[] LOGICAL = new boolean[TokenType.values().length];
   private static final TokenType[] OPERATORS = new TokenType[]{
     PLUS, MINUS, MULTIPLY, POW, DIVIDE, FLOOR, EQUAL_EQ, LESS,
     LSHIFT, GREATER, RSHIFT, URSHIFT, PERCENT, AMP, BAR,
     TILDE, XOR,
   };
+
+  static {
+    bind(1, true, OR);
+    bind(2, true, AND);
+    bind(3, true, BANG_EQ, EQUAL_EQ);
+    bind(4, true, GREATER, GREATER_EQ, LESS, LESS_EQ);
+    bind(5, false, BAR);
+    bind(6, false, XOR);
+    bind(7, false, AMP);
+    bind(8, false, LSHIFT, RSHIFT, URSHIFT);
+    bind(9, false, PLUS, MINUS);
+    bind(10, false, MULTIPLY, DIVIDE, PERCENT, POW, FLOOR);
+  }
+
+  private static void bind(int power, boolean logical, TokenType... types) {
+    for (TokenType type : types) {
+      BINDING_POWERS[type.ordinal()] = (byte) power;
+      LOGICAL[type.ordinal()] = logical;
+    }
+  }
+
+  /**
+   * How deep expressions, blocks and statement bodies may nest. The parser
+   * and the passes after it recurse once per level, so a fixed limit keeps
+   * them well within the default thread stack, and makes the same code parse
+   * or fail on the main thread and on fork/join workers alike.
+   */
+  static final int MAX_NESTING = 256;
+
   public final Lexer lexer;
-  private final List<Token> tokens;
+  private final TokenSource tokens;
   private int blockCount = 0;
+  private int nesting = 0;
   private int current = 0;
   private int anonymousCount = 0;
+  private int nodeCount = 0;
+
+  /**
+   * Creates a parser that lexes the source while it parses.
+   */
+  public Parser(Lexer lexer) {
+    this(lexer, new TokenStream(lexer));
+  }
 
-  public Parser(Lexer lexer) throws LexerException {
+  /**
+   * Creates a parser over tokens the lexer already produced, or pulls them
+   * from the lexer with a {@link TokenStream}.
+   */
+  public Parser(Lexer lexer, TokenSource tokens) {
     this.lexer = lexer;
-    this.tokens = this.lexer.run();
+    this.tokens = tokens;
+  }
+
+  /**
+   * The number of AST nodes created so far.
+   */
+  public int getNodeCount() {
+    return nodeCount;
   }
 
   //region [Utilities]
@@ -60,7 +118,7 @@ public class Parser {
   private boolean match(TokenType... tokenTypes) {
     for (TokenType t : tokenTypes) {
       if (check(t)) {
-        advance();
+        skip();
         return true;
       }
     }
@@ -71,8 +129,9 @@ public class Parser {
   private boolean matchAssigners() {
     if (isAtEnd()) return false;
 
-    if (peek().isAssignmentOp()) {
-      advance();
+    TokenType type = tokens.type(current);
+    if (type == EQUAL || ASSIGNER_ALTS.containsKey(type)) {
+      current++;
       return true;
     }
 
@@ -81,13 +140,13 @@ public class Parser {
 
   private boolean check(TokenType type) {
     if (isAtEnd() && type != EOF) return false;
-    return peek().type() == type;
+    return tokens.type(current) == type;
   }
 
   private boolean check(TokenType... types) {
     if (isAtEnd()) return false;
 
-    TokenType peeked = peek().type();
+    TokenType peeked = tokens.type(current);
     for (TokenType t : types) {
       if (peeked == t && t != EOF) return true;
     }
@@ -95,13 +154,20 @@ public class Parser {
     return false;
   }
 
-  private Token advance() {
+  /**
+   * Moves past the current token. Only {@link #consume} materializes it.
+   */
+  private void skip() {
     if (!isAtEnd()) current++;
+  }
+
+  private Token advance() {
+    skip();
     return previous();
   }
 
   private boolean isAtEnd() {
-    return peek().type() == EOF;
+    return tokens.type(current) == EOF;
   }
 
   private Token peek() {
@@ -109,7 +175,7 @@ public class Parser {
   }
 
   private Token next() {
-    if (current + 1 > tokens.size() - 1) return null;
+    if (isAtEnd()) return null;
     return tokens.get(current + 1);
   }
 
@@ -117,6 +183,10 @@ public class Parser {
     return tokens.get(current - 1);
   }
 
+  private TokenType previousType() {
+    return tokens.type(current - 1);
+  }
+
   private Token consume(TokenType type, String message) {
     if (check(type)) return advance();
     throw new ParserException(lexer.getSource(), peek(), message);
@@ -157,62 +227,52 @@ public class Parser {
   //endregion
 
   private Typed parseType(String message, boolean mustThrow) {
-    return wrap(() -> {
-      // The four possible type definitions are:
-      // 1. `[]type`    - Vector
-      // 2. `[4]type`   - Array
-      // 3. `[key]type` - Map
-      // 4. `type`      - Class
-      // These typing can be nested. E.g. `[key][]type`, [][key]type`, etc...
-      // However, there are certain exceptions
-      // 1. A list cannot be a key, so it's impossible to have `[[]type1]type2` and
-      //    its derivatives.
-
-      if (match(LBRACKET)) {
-        Expression.Identifier keyType = null;
-        Expression.Int32 size = null;
-
-        if (check(IDENTIFIER)) {
-          keyType = wrap(() -> {
-            match(IDENTIFIER);
-            return new Expression.Identifier(previous());
-          });
-
-          consume(RBRACKET, "']' expected after map type declaration");
-        } else if(check(REG_NUMBER)) {
-          size = wrap(() -> {
-            match(REG_NUMBER);
-            Expression number = parseNumber(previous().literal());
-            if(!(number instanceof Expression.Int32 int32)) {
-              throw new ParserException(lexer.getSource(), previous(), "Arrays sizes must be of type i32");
-            }
-
-            return int32;
-          });
-
-          consume(RBRACKET, "']' expected after array type declaration or key type for map type declaration");
-        } else {
-          consume(RBRACKET, "']' expected after vector type declaration or key type for map type declaration");
+    int start = start();
+    // The four possible type definitions are:
+    // 1. `[]type`    - Vector
+    // 2. `[4]type`   - Array
+    // 3. `[key]type` - Map
+    // 4. `type`      - Class
+    // These typing can be nested. E.g. `[key][]type`, [][key]type`, etc...
+    // However, there are certain exceptions
+    // 1. A list cannot be a key, so it's impossible to have `[[]type1]type2` and
+    //    its derivatives.
+
+    if (match(LBRACKET)) {
+      Expression.Identifier keyType = null;
+      Expression.Int32 size = null;
+
+      if (check(IDENTIFIER)) {
+        keyType = identifier("type name expected");
+        consume(RBRACKET, "']' expected after map type declaration");
+      } else if(check(REG_NUMBER, FLOAT_NUMBER)) {
+        int sizeStart = start();
+        match(REG_NUMBER, FLOAT_NUMBER);
+        Expression number = previousNumber();
+        if(!(number instanceof Expression.Int32 int32)) {
+          throw new ParserException(lexer.getSource(), previous(), "Arrays sizes must be of type i32");
         }
 
-        Typed valueType = parseType("invalid type specified", true);
+        size = position(int32, sizeStart);
+        consume(RBRACKET, "']' expected after array type declaration or key type for map type declaration");
+      } else {
+        consume(RBRACKET, "']' expected after vector type declaration or key type for map type declaration");
+      }
+
+      Typed valueType = parseType("invalid type specified", true);
 
-        if (keyType == null) {
-          return size == null ? new Typed.Vector(valueType) : new Typed.Array(valueType, size.value);
-        } else {
-          return new Typed.Map(new Typed.Id(keyType), valueType);
-        }
-      } else if (check(IDENTIFIER)) {
-        return new Typed.Id(wrap(() -> {
-          match(IDENTIFIER);
-          return new Expression.Identifier(previous());
-        }));
-      } else if (!mustThrow) {
-        return null;
+      if (keyType == null) {
+        return position(size == null ? new Typed.Vector(valueType) : new Typed.Array(valueType, size.value), start);
       } else {
-        throw new ParserException(lexer.getSource(), peek(), message);
+        return position(new Typed.Map(new Typed.Id(keyType), valueType), start);
       }
-    });
+    } else if (check(IDENTIFIER)) {
+      return position(new Typed.Id(identifier("type name expected")), start);
+    } else if (!mustThrow) {
+      return null;
+    } else {
+      throw new ParserException(lexer.getSource(), peek(), message);
+    }
   }
 
   private Typed parseType() {
@@ -228,26 +288,30 @@ public class Parser {
     return typed;
   }
 
+  /**
+   * Parses the identifier that must come next.
+   */
+  private Expression.Identifier identifier(String message) {
+    int start = start();
+    return position(new Expression.Identifier(consume(IDENTIFIER, message)), start);
+  }
+
   private Expression.TypedName typedName(String message) {
-    Expression.Identifier identifier = wrap(() -> {
-      consume(IDENTIFIER, message);
-      return new Expression.Identifier(previous());
-    });
+    Expression.Identifier identifier = identifier(message);
 
     consume(COLON, "':' expected after variable name '" + identifier.token.literal() + "' declaration");
-    return wrap(() -> new Expression.TypedName(identifier, parseType()));
+    int start = start();
+    return position(new Expression.TypedName(identifier, parseType()), start);
   }
 
   private Expression.TypedName variableTypedName() {
-    Expression.Identifier identifier = wrap(() -> {
-      consume(IDENTIFIER, "variable name expected");
-      return new Expression.Identifier(previous());
-    });
+    Expression.Identifier identifier = identifier("variable name expected");
 
     if (match(COLON)) {
-      return wrap(() -> new Expression.TypedName(identifier, parseType()));
+      int start = start();
+      return position(new Expression.TypedName(identifier, parseType()), start);
     } else {
-      return wrap(() -> new Expression.TypedName(identifier, null));
+      return position(new Expression.TypedName(identifier, null), start());
     }
   }
 
@@ -256,499 +320,395 @@ public class Parser {
   }
 
   private Expression.Grouping grouping() {
-    return wrap(() -> {
-      ignoreNewlines();
-      var expr = expression();
-      ignoreNewlines();
-      consume(RPAREN, "')' Expected after expression");
-      return new Expression.Grouping(expr);
-    });
+    int start = start();
+    ignoreNewlines();
+    var expr = expression();
+    ignoreNewlines();
+    consume(RPAREN, "')' Expected after expression");
+    return position(new Expression.Grouping(expr), start);
   }
 
   private Expression.Call finishCall(Expression callee) {
-    return wrap(() -> {
-      ignoreNewlines();
-      List<Expression> args = new ArrayList<>();
+    int start = start();
+    ignoreNewlines();
+    List<Expression> args = new ArrayList<>();
 
-      if (!check(RPAREN)) {
-        args.add(expression());
+    if (!check(RPAREN)) {
+      args.add(expression());
 
-        while (match(COMMA)) {
-          ignoreNewlines();
-          args.add(expression());
-        }
+      while (match(COMMA)) {
+        ignoreNewlines();
+        args.add(expression());
       }
+    }
 
-      ignoreNewlines();
-      consume(RPAREN, "')' expected after args");
-      return new Expression.Call(callee, args);
-    });
+    ignoreNewlines();
+    consume(RPAREN, "')' expected after args");
+    return position(new Expression.Call(callee, args), start);
   }
 
   private Expression finishIndex(Expression callee) {
-    return wrap(() -> {
-      ignoreNewlines();
-      Expression expression = expression();
-
-      if (match(COMMA)) {
-        ignoreNewlines();
-        expression = new Expression.Slice(callee, expression, expression());
-      } else {
-        expression = new Expression.Index(callee, expression);
-      }
+    int start = start();
+    ignoreNewlines();
+    Expression expression = expression();
 
+    if (match(COMMA)) {
       ignoreNewlines();
-      consume(RBRACKET, "']' expected at end of indexer");
-      return expression;
-    });
-  }
-
-  private Expression finishDot(Expression e) {
-    return wrap(
-      (expr) -> {
-        ignoreNewlines();
-        var prop = wrap(() -> new Expression.Identifier(
-          consume(IDENTIFIER, "property name expected")
-        ));
-
-        if (matchAssigners()) {
-          Token token = previous();
-          if (token.type() == EQUAL) {
-            expr = new Expression.Set(expr, prop, expression());
-          } else {
-            expr = new Expression.Set(
-              (Expression) expr.clone(),
-              (Expression.Identifier) prop.clone(),
-              new Expression.Binary(
-                reflectWrap(expr, prop, new Expression.Get(expr, prop)),
-                previous().copyToType(ASSIGNER_ALTS.get(token.type()), previous().literal()),
-                assignment()
-              )
-            );
-          }
-        } else {
-          expr = new Expression.Get(expr, prop);
-        }
+      expression = new Expression.Slice(callee, expression, expression());
+    } else {
+      expression = new Expression.Index(callee, expression);
+    }
 
-        return expr;
-      }, e
-    );
+    ignoreNewlines();
+    consume(RBRACKET, "']' expected at end of indexer");
+    return position(expression, start);
   }
 
-  private Expression interpolation() {
-    return wrap(() -> {
-      match(INTERPOLATION);
-
-      Expression expression = wrap(() -> new Expression.Literal(
-        previous().copyToType(LITERAL, previous().literal())
-      ));
+  private Expression finishDot(Expression expr) {
+    int start = start();
+    ignoreNewlines();
+    var prop = identifier("property name expected");
 
-      do {
-        expression = new Expression.Binary(
-          expression,
-          previous().copyToType(PLUS, "+"),
-          expression()
+    if (matchAssigners()) {
+      Token token = previous();
+      if (token.type() == EQUAL) {
+        expr = new Expression.Set(expr, prop, expression());
+      } else {
+        expr = new Expression.Set(
+          (Expression) expr.clone(),
+          (Expression.Identifier) prop.clone(),
+          new Expression.Binary(
+            reflectWrap(expr, prop, new Expression.Get(expr, prop)),
+            previous().copyToType(ASSIGNER_ALTS.get(token.type()), previous().literal()),
+            assignment()
+          )
         );
+      }
+    } else {
+      expr = new Expression.Get(expr, prop);
+    }
 
-      } while ((check(INTERPOLATION) || check(LITERAL)) && !isAtEnd());
-      match(INTERPOLATION, LITERAL);
-
-      return expression;
-    });
+    return position(expr, start);
   }
 
-  private Expression newStatement() {
-    return wrap(() -> {
-      Expression expression = primary();
-      List<Expression> arguments = new ArrayList<>();
-
-      consume(LPAREN, "'(' expected after new class instance");
-      ignoreNewlines();
-
-      if (!check(RPAREN)) {
-        arguments.add(expression());
-
-        while (match(COMMA)) {
-          ignoreNewlines();
-          arguments.add(expression());
-        }
-      }
+  private Expression interpolation() {
+    int start = start();
+    match(INTERPOLATION);
+
+    Expression expression = position(new Expression.Literal(
+      previous().copyToType(LITERAL, previous().literal())
+    ), start());
+
+    do {
+      expression = new Expression.Binary(
+        expression,
+        previous().copyToType(PLUS, "+"),
+        expression()
+      );
 
-      ignoreNewlines();
-      consume(RPAREN, "')' expected after new class instance arguments");
+    } while ((check(INTERPOLATION) || check(LITERAL)) && !isAtEnd());
+    match(INTERPOLATION, LITERAL);
 
-      return new Expression.Call(
-        reflectWrap(expression, new Expression.New(expression)),
-        arguments
-      );
-    });
+    return position(expression, start);
   }
 
-  private Expression parseNumber(String number) {
-    try {
-      return new Expression.Int32(Integer.parseInt(number));
-    } catch (NumberFormatException ignored) {
-      try {
-        return new Expression.Int64(Long.parseLong(number));
-      } catch (NumberFormatException ignored2) {
-        try {
-          return new Expression.Float32(Float.parseFloat(number));
-        } catch (NumberFormatException ignored3) {
-          return new Expression.Float64(Double.parseDouble(number));
-        }
-      }
-    }
-  }
+  private Expression newStatement() {
+    int start = start();
+    Expression expression = primary();
+    List<Expression> arguments = new ArrayList<>();
 
-  private Expression primary() {
-    return wrap(() -> {
-      if (match(FALSE)) return new Expression.Boolean(false);
-      if (match(TRUE)) return new Expression.Boolean(true);
-      if (match(NIL)) return new Expression.Nil();
-      if (match(SELF)) return new Expression.Self();
-      if (match(PARENT)) return new Expression.Parent();
-      if (match(NEW)) return newStatement();
-
-      if (check(INTERPOLATION)) return interpolation();
-
-      if (check(BIN_NUMBER, HEX_NUMBER, OCT_NUMBER, REG_NUMBER)) {
-        return wrap(() -> {
-          match(BIN_NUMBER, HEX_NUMBER, OCT_NUMBER, REG_NUMBER);
-          return parseNumber(previous().literal());
-        });
-      }
+    consume(LPAREN, "'(' expected after new class instance");
+    ignoreNewlines();
 
-      /*if (match(BIG_NUMBER)) {
-        return new Expression.BigNumber(previous());
-      }*/
+    if (!check(RPAREN)) {
+      arguments.add(expression());
 
-      if (check(LITERAL)) {
-        return wrap(() -> {
-          match(LITERAL);
-          return new Expression.Literal(previous());
-        });
+      while (match(COMMA)) {
+        ignoreNewlines();
+        arguments.add(expression());
       }
+    }
 
-      if (check(IDENTIFIER)) return wrap(() -> {
-        match(IDENTIFIER);
-        return new Expression.Identifier(previous());
-      });
-
-      if (match(LPAREN)) return grouping();
-      if (match(LBRACE)) {
-        return dict();
-      }
-      if (match(LBRACKET)) return list();
-      if (match(AT)) return anonymous();
+    ignoreNewlines();
+    consume(RPAREN, "')' expected after new class instance arguments");
 
-      return null;
-    });
+    return position(new Expression.Call(
+      reflectWrap(expression, new Expression.New(expression)),
+      arguments
+    ), start);
   }
 
-  private Expression range() {
-    return wrap(() -> {
-      Expression expression = primary();
+  /**
+   * Builds the literal of the numeric token just matched from the value the
+   * lexer scanned for it. Binary, octal and hex literals from 2^63 up have
+   * their top bit set and are always i64.
+   */
+  private Expression previousNumber() {
+    long value = tokens.value(current - 1);
 
-      while (match(RANGE)) {
-        ignoreNewlines();
-        expression = new Expression.Range(expression, primary());
-      }
+    if (previousType() == FLOAT_NUMBER) {
+      return new Expression.Float32(Float.intBitsToFloat((int) value));
+    }
 
-      return expression;
-    });
+    return value >= 0 && value == (int) value ? new Expression.Int32((int) value) : new Expression.Int64(value);
   }
 
-  private Expression doCall(Expression e) {
-    return wrap(
-      (expr) -> {
-        while (true) {
-          if (match(DOT)) {
-            expr = finishDot(expr);
-          } else if (match(LPAREN)) {
-            expr = finishCall(expr);
-          } else if (match(LBRACKET)) {
-            expr = finishIndex(expr);
-          } else {
-            break;
-          }
-        }
 
-        return expr;
-      }, e
-    );
-  }
+  private Expression primary() {
+    int start = start();
 
-  private Expression call() {
-    return wrap(() -> doCall(range()));
-  }
+    if (match(FALSE)) return position(new Expression.Boolean(false), start);
+    if (match(TRUE)) return position(new Expression.Boolean(true), start);
+    if (match(NIL)) return position(new Expression.Nil(), start);
+    if (match(SELF)) return position(new Expression.Self(), start);
+    if (match(PARENT)) return position(new Expression.Parent(), start);
+    if (match(NEW)) return position(newStatement(), start);
 
-  private Expression assignExpression() {
-    return wrap(() -> {
-      Expression expression = call();
+    if (check(INTERPOLATION)) return position(interpolation(), start);
 
-      if (match(INCREMENT)) {
-        expression = reflectWrap(expression, new Expression.Increment(expression));
-      } else if (match(DECREMENT)) {
-        expression = reflectWrap(expression, new Expression.Decrement(expression));
-      }
+    if (match(BIN_NUMBER, HEX_NUMBER, OCT_NUMBER, REG_NUMBER, FLOAT_NUMBER)) {
+      return position(previousNumber(), start);
+    }
 
-      return expression;
-    });
-  }
+    if (check(BIG_NUMBER)) {
+      throw new ParserException(lexer.getSource(), peek(), "integer literal out of range, decimal literals must fit in i64 and binary, octal and hex ones in 64 bits");
+    }
 
-  private Expression unary() {
-    return wrap(() -> {
-      if (match(BANG, MINUS, TILDE)) {
-        Token op = previous();
-        ignoreNewlines();
-        return new Expression.Unary(op, unary());
-      }
+    /*if (match(BIG_NUMBER)) {
+      return new Expression.BigNumber(previous());
+    }*/
 
-      return assignExpression();
-    });
-  }
+    if (match(LITERAL)) {
+      return position(new Expression.Literal(previous()), start);
+    }
 
-  private Expression factor() {
-    return wrap(() -> {
-      Expression expression = unary();
+    if (match(IDENTIFIER)) return position(new Expression.Identifier(previous()), start);
 
-      while (match(MULTIPLY, DIVIDE, PERCENT, POW, FLOOR)) {
-        Token op = previous();
-        ignoreNewlines();
-        expression = new Expression.Binary(expression, op, unary());
-      }
+    if (match(LPAREN)) return position(grouping(), start);
+    if (match(LBRACE)) {
+      return position(dict(), start);
+    }
+    if (match(LBRACKET)) return position(list(), start);
+    if (match(AT)) return position(anonymous(), start);
 
-      return expression;
-    });
+    return null;
   }
 
-  private Expression term() {
-    return wrap(() -> {
-      Expression expression = factor();
+  private Expression range() {
+    int start = start();
+    Expression expression = primary();
 
-      while (match(PLUS, MINUS)) {
-        Token op = previous();
-        ignoreNewlines();
-        expression = new Expression.Binary(expression, op, factor());
-      }
+    while (match(RANGE)) {
+      ignoreNewlines();
+      expression = new Expression.Range(expression, primary());
+    }
 
-      return expression;
-    });
+    return position(expression, start);
   }
 
-  private Expression shift() {
-    return wrap(() -> {
-      Expression expression = term();
+  private Expression doCall(Expression expr) {
+    int start = start();
 
-      while (match(LSHIFT, RSHIFT, URSHIFT)) {
-        var op = previous();
-        ignoreNewlines();
-        expression = new Expression.Binary(expression, op, term());
+    while (true) {
+      if (match(DOT)) {
+        expr = finishDot(expr);
+      } else if (match(LPAREN)) {
+        expr = finishCall(expr);
+      } else if (match(LBRACKET)) {
+        expr = finishIndex(expr);
+      } else {
+        break;
       }
+    }
 
-      return expression;
-    });
+    return position(expr, start);
   }
 
-  private Expression bitAnd() {
-    return wrap(() -> {
-      Expression expression = shift();
-
-      while (match(AMP)) {
-        var op = previous();
-        ignoreNewlines();
-        expression = new Expression.Binary(expression, op, shift());
-      }
-
-      return expression;
-    });
+  private Expression call() {
+    int start = start();
+    return position(doCall(range()), start);
   }
 
-  private Expression bitXor() {
-    return wrap(() -> {
-      Expression expression = bitAnd();
-
-      while (match(XOR)) {
-        var op = previous();
-        ignoreNewlines();
-        expression = new Expression.Binary(expression, op, bitAnd());
-      }
-
-      return expression;
-    });
-  }
+  private Expression assignExpression() {
+    int start = start();
+    Expression expression = call();
 
-  private Expression bitOr() {
-    return wrap(() -> {
-      Expression expression = bitXor();
+    // a stray `++` or `--` is left for the statement to reject
+    if (expression == null) {
+      return null;
+    }
 
-      while (match(BAR)) {
-        var op = previous();
-        ignoreNewlines();
-        expression = new Expression.Binary(expression, op, bitXor());
-      }
+    if (match(INCREMENT)) {
+      expression = reflectWrap(expression, new Expression.Increment(expression));
+    } else if (match(DECREMENT)) {
+      expression = reflectWrap(expression, new Expression.Decrement(expression));
+    }
 
-      return expression;
-    });
+    return position(expression, start);
   }
 
-  private Expression comparison() {
-    return wrap(() -> {
-      Expression expression = bitOr();
-
-      while (match(GREATER, GREATER_EQ, LESS, LESS_EQ)) {
-        Token op = previous();
-        ignoreNewlines();
-        expression = new Expression.Logical(expression, op, bitOr());
-      }
-
-      return expression;
-    });
-  }
+  private Expression unary() {
+    int start = start();
+    TokenType type = tokens.type(current);
 
-  private Expression equality() {
-    return wrap(() -> {
-      Expression expression = comparison();
+    if (type == BANG || type == MINUS || type == TILDE) {
+      advance();
+      Token op = previous();
+      ignoreNewlines();
 
-      while (match(BANG_EQ, EQUAL_EQ)) {
-        Token op = previous();
-        ignoreNewlines();
-        expression = new Expression.Logical(expression, op, comparison());
+      enter();
+      try {
+        return position(new Expression.Unary(op, unary()), start);
+      } finally {
+        nesting--;
       }
+    }
 
-      return expression;
-    });
-  }
-
-  private Expression and() {
-    return wrap(() -> {
-      Expression expression = equality();
-
-      while (match(AND)) {
-        Token op = previous();
-        ignoreNewlines();
-        expression = new Expression.Logical(expression, op, equality());
+    return position(assignExpression(), start);
+  }
+
+  /**
+   * Parses a chain of binary operators that bind at least as tightly as the
+   * minimum binding power, by precedence climbing over {@link #BINDING_POWERS}.
+   * <p>
+   * The nodes are positioned as the old one-method-per-level chain did it,
+   * which only positioned the last node built on each level.
+   */
+  private Expression binary(int minPower) {
+    int start = start();
+    Expression expression = unary();
+    int level = 0;
+
+    while (true) {
+      int ordinal = tokens.type(current).ordinal();
+      int power = BINDING_POWERS[ordinal];
+      if (power < minPower) break;
+
+      // leaving a tighter level positions the expression built on it
+      if (power != level) {
+        position(expression, start);
+        level = power;
       }
 
-      return expression;
-    });
-  }
-
-  private Expression or() {
-    return wrap(() -> {
-      Expression expression = and();
+      advance();
+      Token op = previous();
+      ignoreNewlines();
+      Expression right = binary(power + 1);
 
-      while (match(OR)) {
-        Token op = previous();
-        ignoreNewlines();
-        expression = new Expression.Logical(expression, op, and());
+      if (LOGICAL[ordinal]) {
+        expression = new Expression.Logical(expression, op, right);
+      } else {
+        expression = new Expression.Binary(expression, op, right);
       }
+    }
 
-      return expression;
-    });
+    return position(expression, start);
   }
 
   private Expression conditional() {
-    return wrap(() -> {
-      Expression expression = or();
+    int start = start();
+    Expression expression = binary(1);
 
-      if (match(QUESTION)) {
-        ignoreNewlines();
-        var truth = conditional();
-        consume(COLON, "':' expected in ternary operation after truth value");
-        ignoreNewlines();
-        expression = new Expression.Condition(expression, truth, conditional());
-      }
+    if (match(QUESTION)) {
+      ignoreNewlines();
+      var truth = conditional();
+      consume(COLON, "':' expected in ternary operation after truth value");
+      ignoreNewlines();
+      expression = new Expression.Condition(expression, truth, conditional());
+    }
 
-      return expression;
-    });
+    return position(expression, start);
   }
 
   private Expression assignment() {
-    return wrap(() -> {
-      final Expression expression = conditional();
+    int start = start();
+    Expression expression = conditional();
 
-      if (matchAssigners()) {
-        var type = previous();
-        ignoreNewlines();
+    if (matchAssigners()) {
+      var type = previous();
+      ignoreNewlines();
 
-        if (type.type() == EQUAL) {
-          return new Expression.Assign(expression, assignment());
-        } else {
-          return new Expression.Update(expression, type, assignment());
-        }
+      if (type.type() == EQUAL) {
+        expression = new Expression.Assign(expression, expression());
+      } else {
+        expression = new Expression.Update(expression, type, expression());
       }
+    }
 
-      return expression;
-    });
+    return position(expression, start);
   }
 
   private Expression expression() {
-    return wrap(this::assignment);
+    enter();
+    try {
+      return assignment();
+    } finally {
+      nesting--;
+    }
   }
 
   private Expression dict() {
-    return wrap(() -> {
-      ignoreNewlines();
-      List<Expression> keys = new ArrayList<>();
-      List<Expression> values = new ArrayList<>();
+    int start = start();
+    ignoreNewlines();
+    List<Expression> keys = new ArrayList<>();
+    List<Expression> values = new ArrayList<>();
 
-      if (!check(RBRACE)) {
-        do {
-          ignoreNewlines();
+    if (!check(RBRACE)) {
+      do {
+        ignoreNewlines();
 
-          if (!check(RBRACE)) {
-            Expression key;
-            if (check(IDENTIFIER)) {
-              key = wrap(() -> {
-                match(IDENTIFIER);
-                return new Expression.Literal(previous());
-              });
-            } else {
-              key = expression();
-            }
-            keys.add(key);
-            ignoreNewlines();
+        if (!check(RBRACE)) {
+          Expression key;
+          if (check(IDENTIFIER)) {
+            int keyStart = start();
+            match(IDENTIFIER);
+            key = position(new Expression.Literal(previous()), keyStart);
+          } else {
+            key = expression();
+          }
+          keys.add(key);
+          ignoreNewlines();
 
-            if (!match(COLON)) {
-              if (key instanceof Expression.Literal literal) {
-                values.add(reflectWrap(literal, new Expression.Identifier(literal.token)));
-              } else {
-                throw new ParserException(
-                  lexer.getSource(),
-                  previous(), "missing value in dictionary definition"
-                );
-              }
+          if (!match(COLON)) {
+            if (key instanceof Expression.Literal literal) {
+              values.add(reflectWrap(literal, new Expression.Identifier(literal.token)));
             } else {
-              ignoreNewlines();
-              values.add(expression());
+              throw new ParserException(
+                lexer.getSource(),
+                previous(), "missing value in dictionary definition"
+              );
             }
-
-            ignoreNewlines();
           } else {
-            break;
+            ignoreNewlines();
+            values.add(expression());
           }
-        } while (match(COMMA));
-      }
 
-      if (keys.size() != values.size()) {
-        throw new ParserException(
-          lexer.getSource(),
-          previous(), "key/value count mismatch dictionary definition"
-        );
-      }
+          ignoreNewlines();
+        } else {
+          break;
+        }
+      } while (match(COMMA));
+    }
 
-      ignoreNewlines();
-      consume(RBRACE, "'}' expected after dictionary");
-      return new Expression.Dict(keys, values);
-    });
+    if (keys.size() != values.size()) {
+      throw new ParserException(
+        lexer.getSource(),
+        previous(), "key/value count mismatch dictionary definition"
+      );
+    }
+
+    ignoreNewlines();
+    consume(RBRACE, "'}' expected after dictionary");
+    return position(new Expression.Dict(keys, values), start);
   }
 
   private Expression list() {
-    return wrap(() -> {
-      ignoreNewlines();
-      List<Expression> items = new ArrayList<>();
+    int start = start();
+    ignoreNewlines();
+    List<Expression> items = new ArrayList<>();
 
+    enter();
+    try {
       if (!check(RBRACKET)) {
         do {
           ignoreNewlines();
@@ -761,45 +721,49 @@ public class Parser {
           }
         } while (match(COMMA));
       }
+    } finally {
+      nesting--;
+    }
 
-      ignoreNewlines();
-      consume(RBRACKET, "expected ']' at the end of list");
-      return new Expression.Array(items);
-    });
+    ignoreNewlines();
+    consume(RBRACKET, "expected ']' at the end of list");
+    return position(new Expression.Array(items), start);
   }
 
   private Statement echoStatement() {
-    return wrap(() -> {
-      Expression val = expression();
-      endStatement();
-      return new Statement.Echo(val);
-    });
+    int start = start();
+    Expression val = expression();
+    endStatement();
+    return position(new Statement.Echo(val), start);
   }
 
   private Statement.Simple expressionStatement(boolean is_iter) {
-    return wrap(() -> {
-      Expression val = expression();
-      if (!is_iter) endStatement();
-      return new Statement.Simple(val);
-    });
+    int start = start();
+    Expression val = expression();
+    if (!is_iter) endStatement();
+    return position(new Statement.Simple(val), start);
   }
 
   private Statement.Block block() {
-    return wrap(() -> {
-      blockCount++;
+    int start = start();
+    blockCount++;
 
-      List<Statement> val = new ArrayList<>();
-      ignoreNewlines();
+    List<Statement> val = new ArrayList<>();
+    ignoreNewlines();
 
+    enter();
+    try {
       while (!check(RBRACE) && !isAtEnd()) {
         val.add(declaration());
       }
+    } finally {
+      nesting--;
+    }
 
-      consume(RBRACE, "'}' expected after block");
-      blockCount--;
+    consume(RBRACE, "'}' expected after block");
+    blockCount--;
 
-      return new Statement.Block(val);
-    });
+    return position(new Statement.Block(val), start);
   }
 
   private Statement.Block matchBlock(String message) {
@@ -808,414 +772,425 @@ public class Parser {
     return block();
   }
 
+  /**
+   * Parses the body of a statement, which nests like a block even without
+   * braces. That includes `else` branches, as every `else if` nests the next.
+   */
+  private Statement body() {
+    enter();
+    try {
+      return statement();
+    } finally {
+      nesting--;
+    }
+  }
+
+  /**
+   * Counts one more level of nesting, or reports the code as nested too deeply
+   * at the token that would go past {@link #MAX_NESTING}.
+   */
+  private void enter() {
+    if (nesting == MAX_NESTING) {
+      throw new ParserException(lexer.getSource(), peek(), "code is nested too deeply");
+    }
+
+    nesting++;
+  }
+
   private Statement ifStatement() {
-    return wrap(() -> {
-      Expression expression = expression();
-      Statement body = statement();
+    int start = start();
+    Expression expression = expression();
+    Statement body = body();
 
-      if (match(ELSE)) {
-        return new Statement.If(expression, body, statement());
-      }
+    if (match(ELSE)) {
+      return position(new Statement.If(expression, body, body()), start);
+    }
 
-      return new Statement.If(expression, body, null);
-    });
+    return position(new Statement.If(expression, body, null), start);
   }
 
   private Statement whileStatement() {
-    return wrap(() -> {
-      Expression expr = expression();
-      Statement stmt = statement();
+    int start = start();
+    Expression expr = expression();
+    Statement stmt = body();
 
-      if (stmt instanceof Statement.Block block) {
-        return new Statement.While(expr, block);
-      } else {
-        return new Statement.While(
-          expr,
-          (Statement.Block) reflectWrap(stmt, new Statement.Block(List.of(stmt)))
-        );
-      }
-    });
+    if (stmt instanceof Statement.Block block) {
+      return position(new Statement.While(expr, block), start);
+    } else {
+      return position(new Statement.While(
+        expr,
+        (Statement.Block) reflectWrap(stmt, new Statement.Block(List.of(stmt)))
+      ), start);
+    }
   }
 
   private Statement doWhileStatement() {
-    return wrap(() -> {
-      Statement body = statement();
-      consume(WHILE, "'while' expected after do body");
-      Expression condition = expression();
+    int start = start();
+    Statement body = body();
+    consume(WHILE, "'while' expected after do body");
+    Expression condition = expression();
 
-      if (body instanceof Statement.Block block) {
-        return new Statement.DoWhile(block, condition);
-      } else {
-        return new Statement.DoWhile(
-          (Statement.Block) reflectWrap(body, new Statement.Block(List.of(body))),
-          condition
-        );
-      }
-    });
+    if (body instanceof Statement.Block block) {
+      return position(new Statement.DoWhile(block, condition), start);
+    } else {
+      return position(new Statement.DoWhile(
+        (Statement.Block) reflectWrap(body, new Statement.Block(List.of(body))),
+        condition
+      ), start);
+    }
   }
 
   /*private Statement forEachStatement() {
-    return wrap(() -> {
-      consume(IDENTIFIER, "variable name expected");
-
-      // var key = nil
-      Statement.Var key = new Statement.Var(previous().copyToType(IDENTIFIER, " key "), null, false);
-      // var value = nil
-      Statement.Var value = new Statement.Var(previous(), null, false);
+    int start = start();
+    consume(IDENTIFIER, "variable name expected");
 
-      if (match(COMMA)) {
-        consume(IDENTIFIER, "variable name expected");
-        key = value;
-        value = new Statement.Var(previous(), null, false);
-      }
-
-      consume(IN, "'in' expected after for statement variables");
+    // var key = nil
+    Statement.Var key = new Statement.Var(previous().copyToType(IDENTIFIER, " key "), null, false);
+    // var value = nil
+    Statement.Var value = new Statement.Var(previous(), null, false);
 
-      // object
-      Expression iterable = expression();
+    if (match(COMMA)) {
+      consume(IDENTIFIER, "variable name expected");
+      key = value;
+      value = new Statement.Var(previous(), null, false);
+    }
 
-      List<Statement> stmtList = new ArrayList<>();
+    consume(IN, "'in' expected after for statement variables");
 
-      // key = object.@key(key)
-      stmtList.add(new Statement.Expression(
-        new Expression.Assign(
-          new Expression.Identifier(key.typedName.name.token),
-          new Expression.Call(
-            new Expression.Get(
-              (Expression) iterable.clone(),
-              new Expression.Identifier(previous().copyToType(IDENTIFIER, "@key"))
-            ),
-            List.of(new Expression.Identifier(key.typedName.name.token))
-          )
-        )
-      ));
+    // object
+    Expression iterable = expression();
 
-      // if key == nil {
-      //   break
-      // }
-      stmtList.add(new Statement.If(
-        new Expression.Binary(
-          new Expression.Identifier(key.typedName.name.token),
-          key.typedName.name.token.copyToType(EQUAL_EQ, "=="),
-          new Expression.Nil()
-        ),
-        new Statement.Break(),
-        null
-      ));
+    List<Statement> stmtList = new ArrayList<>();
 
-      // value = object.@value(key)
-      stmtList.add(new Statement.Expression(
-        new Expression.Assign(
-          new Expression.Identifier(value.typedName.name.token),
-          new Expression.Call(
-            new Expression.Get(
-              iterable,
-              new Expression.Identifier(previous().copyToType(IDENTIFIER, "@value"))
-            ),
-            List.of(new Expression.Identifier(key.typedName.name.token))
-          )
+    // key = object.@key(key)
+    stmtList.add(new Statement.Expression(
+      new Expression.Assign(
+        new Expression.Identifier(key.typedName.name.token),
+        new Expression.Call(
+          new Expression.Get(
+            (Expression) iterable.clone(),
+            new Expression.Identifier(previous().copyToType(IDENTIFIER, "@key"))
+          ),
+          List.of(new Expression.Identifier(key.typedName.name.token))
         )
-      ));
-
-      // parse the loop body
-      stmtList.add(statement());
-
-      return new Statement.Block(
-        List.of(
-          key,
-          value,
-          new Statement.While(new Expression.Boolean(true), new Statement.Block(stmtList))
+      )
+    ));
+
+    // if key == nil {
+    //   break
+    // }
+    stmtList.add(new Statement.If(
+      new Expression.Binary(
+        new Expression.Identifier(key.typedName.name.token),
+        key.typedName.name.token.copyToType(EQUAL_EQ, "=="),
+        new Expression.Nil()
+      ),
+      new Statement.Break(),
+      null
+    ));
+
+    // value = object.@value(key)
+    stmtList.add(new Statement.Expression(
+      new Expression.Assign(
+        new Expression.Identifier(value.typedName.name.token),
+        new Expression.Call(
+          new Expression.Get(
+            iterable,
+            new Expression.Identifier(previous().copyToType(IDENTIFIER, "@value"))
+          ),
+          List.of(new Expression.Identifier(key.typedName.name.token))
         )
-      );
-    });
+      )
+    ));
+
+    // parse the loop body
+    stmtList.add(statement());
+
+    return position(new Statement.Block(
+      List.of(
+        key,
+        value,
+        new Statement.While(new Expression.Boolean(true), new Statement.Block(stmtList))
+      )
+    ), start);
   }*/
 
   private Statement assertStatement() {
-    return wrap(() -> {
-      Expression message = null;
-      Expression expression = expression();
+    int start = start();
+    Expression message = null;
+    Expression expression = expression();
 
-      if (match(COMMA)) message = expression();
-      return new Statement.Assert(expression, message);
-    });
+    if (match(COMMA)) message = expression();
+    return position(new Statement.Assert(expression, message), start);
   }
 
   private Statement usingStatement() {
-    return wrap(() -> {
-      Expression expression = expression();
-      List<Expression> caseLabels = new ArrayList<>();
-      List<Statement> caseBodies = new ArrayList<>();
-      Statement defaultCase = null;
+    int start = start();
+    Expression expression = expression();
+    List<Expression> caseLabels = new ArrayList<>();
+    List<Statement> caseBodies = new ArrayList<>();
+    Statement defaultCase = null;
 
-      consume(LBRACE, "'{' expected after using expression");
-      ignoreNewlines();
+    consume(LBRACE, "'{' expected after using expression");
+    ignoreNewlines();
 
-      var state = 0;
+    var state = 0;
 
-      while (!match(RBRACE) && !check(EOF)) {
-        if (match(WHEN, DEFAULT, NEWLINE)) {
-          if (state == 1) {
-            throw new ParserException(
-              lexer.getSource(),
-              previous(), "'when' cannot exist after a default"
-            );
-          }
+    while (!match(RBRACE) && !check(EOF)) {
+      if (match(WHEN, DEFAULT, NEWLINE)) {
+        if (state == 1) {
+          throw new ParserException(
+            lexer.getSource(),
+            previous(), "'when' cannot exist after a default"
+          );
+        }
 
-          if (previous().type() == NEWLINE) {
-          } else if (previous().type() == WHEN) {
-            List<Expression> tmp_cases = new ArrayList<>();
-            do {
-              ignoreNewlines();
-              tmp_cases.add(expression());
-            } while (match(COMMA));
+        if (previousType() == NEWLINE) {
+        } else if (previousType() == WHEN) {
+          List<Expression> tmp_cases = new ArrayList<>();
+          do {
+            ignoreNewlines();
+            tmp_cases.add(expression());
+          } while (match(COMMA));
 
-            var stmt = statement();
+          var stmt = body();
 
-            for (Expression tmp : tmp_cases) {
-              caseLabels.add(tmp);
-              caseBodies.add(stmt);
-            }
-          } else {
-            state = 1;
-            defaultCase = statement();
+          for (Expression tmp : tmp_cases) {
+            caseLabels.add(tmp);
+            caseBodies.add(stmt);
           }
         } else {
-          throw new ParserException(
-            lexer.getSource(),
-            previous(), "Invalid using statement"
-          );
+          state = 1;
+          defaultCase = body();
         }
+      } else {
+        throw new ParserException(
+          lexer.getSource(),
+          previous(), "Invalid using statement"
+        );
       }
+    }
 
-      return new Statement.Using(expression, caseLabels, caseBodies, defaultCase);
-    });
+    return position(new Statement.Using(expression, caseLabels, caseBodies, defaultCase), start);
   }
 
   private Statement importStatement() {
-    return wrap(() -> {
-      List<String> path = new ArrayList<>();
-      List<Token> elements = new ArrayList<>();
-
-      while (!match(NEWLINE, EOF, LBRACE)) {
-        advance();
-        path.add(previous().literal());
-      }
+    int start = start();
+    List<String> path = new ArrayList<>();
+    List<Token> elements = new ArrayList<>();
 
-      Token importsAll = null;
-      int selectCount = 0;
+    while (!match(NEWLINE, EOF, LBRACE)) {
+      advance();
+      path.add(previous().literal());
+    }
 
-      if (previous().type() == LBRACE) {
-        var scan = true;
+    Token importsAll = null;
+    int selectCount = 0;
 
-        while (!check(RBRACE) && scan) {
-          ignoreNewlines();
-          elements.add(consumeAny("identifier expected", IDENTIFIER, MULTIPLY));
+    if (previousType() == LBRACE) {
+      var scan = true;
 
-          selectCount++;
-          if (previous().type() == MULTIPLY) {
-            if (importsAll != null) {
-              throw new ParserException(
-                lexer.getSource(),
-                importsAll, "cannot repeat select all"
-              );
-            }
+      while (!check(RBRACE) && scan) {
+        ignoreNewlines();
+        elements.add(consumeAny("identifier expected", IDENTIFIER, MULTIPLY));
 
-            importsAll = previous();
+        selectCount++;
+        if (previousType() == MULTIPLY) {
+          if (importsAll != null) {
+            throw new ParserException(
+              lexer.getSource(),
+              importsAll, "cannot repeat select all"
+            );
           }
 
-          if (!match(COMMA)) {
-            scan = false;
-          }
-          ignoreNewlines();
+          importsAll = previous();
         }
 
-        consume(RBRACE, "'}' expected at end of selective import");
+        if (!match(COMMA)) {
+          scan = false;
+        }
+        ignoreNewlines();
       }
 
-      if (importsAll != null && selectCount > 1) {
-        throw new ParserException(
-          lexer.getSource(),
-          importsAll, "cannot import selected items and all at the same time"
-        );
-      }
+      consume(RBRACE, "'}' expected at end of selective import");
+    }
 
-      return new Statement.Import(String.join("", path), elements, false);
-    });
+    if (importsAll != null && selectCount > 1) {
+      throw new ParserException(
+        lexer.getSource(),
+        importsAll, "cannot import selected items and all at the same time"
+      );
+    }
+
+    return position(new Statement.Import(String.join("", path), elements, false), start);
   }
 
   private Statement catchStatement() {
-    return wrap(() -> {
-      Statement.Block body = matchBlock("'{' expected after try");
-      Statement.Block catchBody = null;
-      Statement.Block finallyBody = null;
-
-      Expression.Identifier exception_var = null;
-      if (match(CATCH)) {
-        exception_var = wrap(() -> {
-          consume(IDENTIFIER, "exception variable expected");
-          return new Expression.Identifier(previous());
-        });
-
-        catchBody = matchBlock("'{' expected after catch variable name");
-      }
+    int start = start();
+    Statement.Block body = matchBlock("'{' expected after try");
+    Statement.Block catchBody = null;
+    Statement.Block finallyBody = null;
 
-      if (exception_var == null && !check(FINALLY)) {
-        throw new ParserException(lexer.getSource(), peek(), "try must declare at least one of `catch` or `finally`");
-      }
+    Expression.Identifier exception_var = null;
+    if (match(CATCH)) {
+      exception_var = identifier("exception variable expected");
 
-      if (match(FINALLY)) {
-        finallyBody = matchBlock("'{' expected after finally");
-      }
+      catchBody = matchBlock("'{' expected after catch variable name");
+    }
 
-      return new Statement.Catch(body, catchBody, finallyBody, exception_var);
-    });
+    if (exception_var == null && !check(FINALLY)) {
+      throw new ParserException(lexer.getSource(), peek(), "try must declare at least one of `catch` or `finally`");
+    }
+
+    if (match(FINALLY)) {
+      finallyBody = matchBlock("'{' expected after finally");
+    }
+
+    return position(new Statement.Catch(body, catchBody, finallyBody, exception_var), start);
   }
 
   private Statement forStatement() {
-    return wrap(() -> {
-      if (check(LPAREN)) {
-        match(LPAREN);
-      }
+    int start = start();
+    if (check(LPAREN)) {
+      match(LPAREN);
+    }
 
-      Statement declaration = null;
-      if (!check(SEMICOLON)) {
-        if (check(VAR)) {
-          consume(VAR, "variable declaration expected");
-        }
-        declaration = varDeclaration(false);
+    Statement declaration = null;
+    if (!check(SEMICOLON)) {
+      if (check(VAR)) {
+        consume(VAR, "variable declaration expected");
       }
-      consume(SEMICOLON, "';' expected");
-      ignoreNewlinesNoSemi();
+      declaration = varDeclaration(false);
+    }
+    consume(SEMICOLON, "';' expected");
+    ignoreNewlinesNoSemi();
 
-      Expression condition = null;
-      if (!check(SEMICOLON)) {
-        condition = expression();
-      }
-      consume(SEMICOLON, "';' expected");
-      ignoreNewlinesNoSemi();
+    Expression condition = null;
+    if (!check(SEMICOLON)) {
+      condition = expression();
+    }
+    consume(SEMICOLON, "';' expected");
+    ignoreNewlinesNoSemi();
 
-      Statement.Simple iterator = null;
-      if (!check(LBRACE) && !check(RPAREN)) {
-        do {
-          iterator = expressionStatement(true);
-          ignoreNewlines();
-        } while (match(COMMA));
-      }
+    Statement.Simple iterator = null;
+    if (!check(LBRACE) && !check(RPAREN)) {
+      do {
+        iterator = expressionStatement(true);
+        ignoreNewlines();
+      } while (match(COMMA));
+    }
 
-      if (check(RPAREN)) {
-        match(RPAREN);
-      }
+    if (check(RPAREN)) {
+      match(RPAREN);
+    }
 
-      Statement.Block body = matchBlock("'{' expected at beginning of for block");
-      return new Statement.For(declaration, condition, iterator, body);
-    });
+    Statement.Block body = matchBlock("'{' expected at beginning of for block");
+    return position(new Statement.For(declaration, condition, iterator, body), start);
   }
 
   private Statement statement() {
-    return wrap(() -> {
-      ignoreNewlines();
+    int start = start();
+    ignoreNewlines();
 
-      Statement result;
+    Statement result;
 
-      if (match(CATCH) || match(FINALLY)) {
-        throw new ParserException(
-          lexer.getSource(), previous(),
-          "`catch` and `finally` are only valid in `try` context"
-        );
-      }
+    if (match(CATCH) || match(FINALLY)) {
+      throw new ParserException(
+        lexer.getSource(), previous(),
+        "`catch` and `finally` are only valid in `try` context"
+      );
+    }
 
-      if (match(ECHO)) {
-        result = echoStatement();
-      } else if (match(IF)) {
-        result = ifStatement();
-      } else if (match(WHILE)) {
-        result = whileStatement();
-      } else if (match(DO)) {
-        result = doWhileStatement();
-      } else if (match(FOR)) {
-        result = forStatement();
-      } /*else if (match(FOREACH)) {
-        result = forEachStatement();
-      }*/ else if (match(USING)) {
-        result = usingStatement();
-      } else if (match(CONTINUE)) {
-        result = new Statement.Continue();
-      } else if (match(BREAK)) {
-        result = new Statement.Break();
-      } else if (match(RETURN)) {
-        result = new Statement.Return(expression());
-      } else if (match(ASSERT)) {
-        result = assertStatement();
-      } else if (match(RAISE)) {
-        result = new Statement.Raise(expression());
-      } else if (match(LBRACE)) {
-        result = block();
-      } else if (match(IMPORT)) {
-        result = importStatement();
-      } else if (match(TRY)) {
-        result = catchStatement();
-      } else {
-        result = expressionStatement(false);
-      }
+    if (match(ECHO)) {
+      result = echoStatement();
+    } else if (match(IF)) {
+      result = ifStatement();
+    } else if (match(WHILE)) {
+      result = whileStatement();
+    } else if (match(DO)) {
+      result = doWhileStatement();
+    } else if (match(FOR)) {
+      result = forStatement();
+    } /*else if (match(FOREACH)) {
+      result = forEachStatement();
+    }*/ else if (match(USING)) {
+      result = usingStatement();
+    } else if (match(CONTINUE)) {
+      result = new Statement.Continue();
+    } else if (match(BREAK)) {
+      result = new Statement.Break();
+    } else if (match(RETURN)) {
+      result = new Statement.Return(expression());
+    } else if (match(ASSERT)) {
+      result = assertStatement();
+    } else if (match(RAISE)) {
+      result = new Statement.Raise(expression());
+    } else if (match(LBRACE)) {
+      result = block();
+    } else if (match(IMPORT)) {
+      result = importStatement();
+    } else if (match(TRY)) {
+      result = catchStatement();
+    } else {
+      result = expressionStatement(false);
+    }
 
-      ignoreNewlines();
+    ignoreNewlines();
 
-      return result;
-    });
+    return position(result, start);
   }
 
   private Statement varDeclaration(boolean isConstant) {
-    return wrap(() -> {
-      Expression.TypedName name = variableTypedName();
-
-      Statement declaration;
-      if (match(EQUAL)) {
-        Expression value = expression();
-        if (value == null) {
-          throw new ParserException(lexer.getSource(), previous(), "incomplete variable declaration");
-        }
-
-        declaration = (Statement.Var) reflectWrap(name, value, new Statement.Var(name, value, isConstant));
-      } else if (name.type == null) {
-        throw new ParserException(lexer.getSource(), peek(), "Type or value must be declared");
-      } else {
-        if (isConstant) {
-          throw new ParserException(lexer.getSource(), peek(), "constant value not declared");
-        }
+    int start = start();
+    Expression.TypedName name = variableTypedName();
+
+    Statement declaration;
+    if (match(EQUAL)) {
+      Expression value = expression();
+      if (value == null) {
+        throw new ParserException(lexer.getSource(), previous(), "incomplete variable declaration");
+      }
 
-        declaration = (Statement.Var) reflectWrap(name, new Statement.Var(name, new Expression.Nil(), false));
+      declaration = (Statement.Var) reflectWrap(name, value, new Statement.Var(name, value, isConstant));
+    } else if (name.type == null) {
+      throw new ParserException(lexer.getSource(), peek(), "Type or value must be declared");
+    } else {
+      if (isConstant) {
+        throw new ParserException(lexer.getSource(), peek(), "constant value not declared");
       }
 
-      if (check(COMMA)) {
-        List<Statement> declarations = new ArrayList<>();
-        declarations.add(declaration);
+      declaration = (Statement.Var) reflectWrap(name, new Statement.Var(name, new Expression.Nil(), false));
+    }
 
-        while (match(COMMA)) {
-          ignoreNewlines();
-          name = variableTypedName();
+    if (check(COMMA)) {
+      List<Statement> declarations = new ArrayList<>();
+      declarations.add(declaration);
 
-          if (match(EQUAL)) {
-            Expression value = expression();
-            if (value == null) {
-              throw new ParserException(lexer.getSource(), previous(), "incomplete variable declaration");
-            }
+      while (match(COMMA)) {
+        ignoreNewlines();
+        name = variableTypedName();
 
-            declarations.add((Statement) reflectWrap(name, value, new Statement.Var(name, value, isConstant)));
-          } else if (name.type == null) {
-            throw new ParserException(lexer.getSource(), peek(), "Type or value must be declared");
-          } else {
-            if (isConstant) {
-              throw new ParserException(lexer.getSource(), peek(), "constant value not declared");
-            }
-            declarations.add((Statement) reflectWrap(name, new Statement.Var(name, new Expression.Nil(), false)));
+        if (match(EQUAL)) {
+          Expression value = expression();
+          if (value == null) {
+            throw new ParserException(lexer.getSource(), previous(), "incomplete variable declaration");
           }
-        }
 
-        return new Statement.VarList(declarations);
+          declarations.add((Statement) reflectWrap(name, value, new Statement.Var(name, value, isConstant)));
+        } else if (name.type == null) {
+          throw new ParserException(lexer.getSource(), peek(), "Type or value must be declared");
+        } else {
+          if (isConstant) {
+            throw new ParserException(lexer.getSource(), peek(), "constant value not declared");
+          }
+          declarations.add((Statement) reflectWrap(name, new Statement.Var(name, new Expression.Nil(), false)));
+        }
       }
 
-      return declaration;
-    });
+      return position(new Statement.VarList(declarations), start);
+    }
+
+    return position(declaration, start);
   }
 
   private boolean functionArgs(List<Expression.TypedName> params) {
@@ -1223,14 +1198,10 @@ public class Parser {
     boolean isVariadic = false;
 
     while (check(IDENTIFIER, TRI_DOT)) {
-      if (previous().type() == TRI_DOT) {
+      if (previousType() == TRI_DOT) {
         isVariadic = true;
-        params.add(wrap(() -> new Expression.TypedName(
-          wrap(() -> {
-            consume(IDENTIFIER, "variable parameter name expected");
-            return new Expression.Identifier(previous());
-          }), null
-        )));
+        int start = start();
+        params.add(position(new Expression.TypedName(identifier("variable parameter name expected"), null), start));
         break;
       }
 
@@ -1246,235 +1217,213 @@ public class Parser {
   }
 
   private Expression anonymous() {
-    return wrap(() -> {
-      int startOffset = previous().offset();
-      int startLine = previous().line();
+    int start = start();
+    int functionStart = previous().offset();
 
-      Token nameCompatToken = previous();
+    Token nameCompatToken = previous();
 
-      List<Expression.TypedName> params = new ArrayList<>();
-      boolean isVariadic = false;
+    List<Expression.TypedName> params = new ArrayList<>();
+    boolean isVariadic = false;
 
-      if (check(LPAREN)) {
-        consume(LPAREN, "expected '(' at start of anonymous function");
+    if (check(LPAREN)) {
+      consume(LPAREN, "expected '(' at start of anonymous function");
 
-        if (!check(RPAREN)) {
-          isVariadic = functionArgs(params);
-        }
-
-        consume(RPAREN, "expected ')' after anonymous function parameters");
+      if (!check(RPAREN)) {
+        isVariadic = functionArgs(params);
       }
 
-      Typed returnType = parseReturnType("missing return type after anonymous function arguments");
+      consume(RPAREN, "expected ')' after anonymous function parameters");
+    }
+
+    Typed returnType = parseReturnType("missing return type after anonymous function arguments");
 
-      var body = matchBlock("'{' expected after function declaration");
+    var body = matchBlock("'{' expected after function declaration");
 
-      Statement.Function function = new Statement.Function(
-        nameCompatToken.copyToType(IDENTIFIER, "@anon" + (anonymousCount++)),
-        params, returnType, body, isVariadic
-      );
-      function.startLine = startLine;
-      function.startColumn = startOffset;
-      function.endLine = previous().line();
-      function.endColumn = previous().offset();
+    Statement.Function function = new Statement.Function(
+      nameCompatToken.copyToType(IDENTIFIER, "@anon" + (anonymousCount++)),
+      params, returnType, body, isVariadic
+    );
+    int end = tokens.start(current - 1) + tokens.length(current - 1);
+    function.span = AST.span(functionStart, end - functionStart);
 
-      return new Expression.Anonymous(function);
-    });
+    return position(new Expression.Anonymous(function), start);
   }
 
   private Statement defDeclaration() {
-    return wrap(() -> {
-      consume(IDENTIFIER, "function name expected");
-      Token name = previous();
-      List<Expression.TypedName> params = new ArrayList<>();
+    int start = start();
+    consume(IDENTIFIER, "function name expected");
+    Token name = previous();
+    List<Expression.TypedName> params = new ArrayList<>();
 
-      consume(LPAREN, "'(' expected after function name");
-      boolean isVariadic = functionArgs(params);
-      consume(RPAREN, "')' expected after function arguments");
+    consume(LPAREN, "'(' expected after function name");
+    boolean isVariadic = functionArgs(params);
+    consume(RPAREN, "')' expected after function arguments");
 
-      Typed returnType = parseReturnType("missing return type after function arguments");
+    Typed returnType = parseReturnType("missing return type after function arguments");
 
-      var body = matchBlock("'{' expected after function declaration");
+    var body = matchBlock("'{' expected after function declaration");
 
-      return new Statement.Function(name, params, returnType, body, isVariadic);
-    });
+    return position(new Statement.Function(name, params, returnType, body, isVariadic), start);
   }
 
   private Statement.Property classField(boolean isStatic, boolean isConst) {
-    return wrap(() -> {
-      Expression.TypedName name = typedName("class property name expected");
+    int start = start();
+    Expression.TypedName name = typedName("class property name expected");
 
-      Expression value = null;
-      if (match(EQUAL)) value = expression();
+    Expression value = null;
+    if (match(EQUAL)) value = expression();
 
-      endStatement();
-      ignoreNewlines();
+    endStatement();
+    ignoreNewlines();
 
-      return new Statement.Property(name, value, isStatic, isConst);
-    });
+    return position(new Statement.Property(name, value, isStatic, isConst), start);
   }
 
   private Statement.Method classOperator() {
-    return wrap(() -> {
-      consumeAny("non-assignment operator expected", OPERATORS);
-      var name = previous();
+    int start = start();
+    consumeAny("non-assignment operator expected", OPERATORS);
+    var name = previous();
 
-      List<Expression.TypedName> params = new ArrayList<>();
+    List<Expression.TypedName> params = new ArrayList<>();
 
-      params.add(new Expression.TypedName(
-        new Expression.Identifier(previous().copyToType(IDENTIFIER, "__arg__")),
-        null
-      ));
+    params.add(new Expression.TypedName(
+      new Expression.Identifier(previous().copyToType(IDENTIFIER, "__arg__")),
+      null
+    ));
 
-      var body = matchBlock("'{' expected after operator declaration");
+    var body = matchBlock("'{' expected after operator declaration");
 
-      return new Statement.Method(name, params, null, body, false, false);
-    });
+    return position(new Statement.Method(name, params, null, body, false, false), start);
   }
 
   private Statement.Method method(boolean isStatic) {
-    return wrap(() -> {
-      consumeAny("method name expected", IDENTIFIER, DECORATOR);
-      Token name = previous();
+    int start = start();
+    consumeAny("method name expected", IDENTIFIER, DECORATOR);
+    Token name = previous();
 
-      List<Expression.TypedName> params = new ArrayList<>();
+    List<Expression.TypedName> params = new ArrayList<>();
 
-      consume(LPAREN, "'(' expected after method name");
-      boolean isVariadic = functionArgs(params);
-      consume(RPAREN, "')' expected after method arguments");
+    consume(LPAREN, "'(' expected after method name");
+    boolean isVariadic = functionArgs(params);
+    consume(RPAREN, "')' expected after method arguments");
 
-      Typed returnType = parseReturnType("missing return type after method arguments");
+    Typed returnType = parseReturnType("missing return type after method arguments");
 
-      var body = matchBlock("'{' expected after method declaration");
+    var body = matchBlock("'{' expected after method declaration");
 
-      return new Statement.Method(name, params, returnType, body, isStatic, isVariadic);
-    });
+    return position(new Statement.Method(name, params, returnType, body, isStatic, isVariadic), start);
   }
 
   private Statement classDeclaration() {
-    return wrap(() -> {
-      List<Statement.Property> properties = new ArrayList<>();
-      List<Statement.Method> methods = new ArrayList<>();
-      List<Statement.Method> operators = new ArrayList<>();
-
-      consume(IDENTIFIER, "class name expected");
-      Token name = previous();
-      Expression.Identifier superclass = null;
-
-      if (match(LESS)) {
-        superclass = wrap(() -> {
-          consume(IDENTIFIER, "super class name expected");
-          return new Expression.Identifier(previous());
-        });
-      }
+    int start = start();
+    List<Statement.Property> properties = new ArrayList<>();
+    List<Statement.Method> methods = new ArrayList<>();
+    List<Statement.Method> operators = new ArrayList<>();
+
+    consume(IDENTIFIER, "class name expected");
+    Token name = previous();
+    Expression.Identifier superclass = null;
+
+    if (match(LESS)) {
+      superclass = identifier("super class name expected");
+    }
+
+    ignoreNewlines();
+    consume(LBRACE, "'{' expected after class declaration");
+    ignoreNewlines();
+
+    while (!check(RBRACE) && !check(EOF)) {
+      boolean isStatic;
 
-      ignoreNewlines();
-      consume(LBRACE, "'{' expected after class declaration");
       ignoreNewlines();
 
-      while (!check(RBRACE) && !check(EOF)) {
-        boolean isStatic;
+      isStatic = match(STATIC);
 
+      int memberStart = start();
+      if (match(VAR)) {
+        properties.add(position(classField(isStatic, false), memberStart));
+      } else if (match(CONST)) {
+        properties.add(position(classField(isStatic, true), memberStart));
+      } else if (match(DEF)) {
+        operators.add(position(classOperator(), memberStart));
+        ignoreNewlines();
+      } else {
+        methods.add(method(isStatic));
         ignoreNewlines();
-
-        isStatic = match(STATIC);
-
-        if (check(VAR)) {
-          properties.add(wrap(() -> {
-            match(VAR);
-            return classField(isStatic, false);
-          }));
-        } else if (check(CONST)) {
-          properties.add(wrap(() -> {
-            match(CONST);
-            return classField(isStatic, true);
-          }));
-        } else if (check(DEF)) {
-          operators.add(wrap(() -> {
-            match(DEF);
-            return classOperator();
-          }));
-          ignoreNewlines();
-        } else {
-          methods.add(method(isStatic));
-          ignoreNewlines();
-        }
       }
+    }
 
-      boolean hasConstructor = methods.stream().anyMatch(m -> m.name.literal().equals("@new"));
-      if (!hasConstructor) {
-        // create default constructor here
-        methods.add(new Statement.Method(
-          previous().copyToType(IDENTIFIER, "@new"),
-          List.of(),
-          wrap(Typed.Void::new),
-          wrap(() -> new Statement.Block(List.of())),
-          false,
-          false
-        ));
-      }
+    boolean hasConstructor = methods.stream().anyMatch(m -> m.name.literal().equals("@new"));
+    if (!hasConstructor) {
+      // create default constructor here
+      methods.add(new Statement.Method(
+        previous().copyToType(IDENTIFIER, "@new"),
+        List.of(),
+        position(new Typed.Void(), start()),
+        position(new Statement.Block(List.of()), start()),
+        false,
+        false
+      ));
+    }
 
-      consume(RBRACE, "'{' expected at end of class definition");
-      return new Statement.Class(
-        name,
-        superclass,
-        properties,
-        methods,
-        operators
-      );
-    });
+    consume(RBRACE, "'{' expected at end of class definition");
+    return position(new Statement.Class(
+      name,
+      superclass,
+      properties,
+      methods,
+      operators
+    ), start);
   }
 
   private Statement externDeclaration(boolean isStatic) {
-    return wrap(() -> {
-      consume(IDENTIFIER, "function name expected");
-      Token name = previous();
-      List<Expression.TypedName> params = new ArrayList<>();
+    int start = start();
+    consume(IDENTIFIER, "function name expected");
+    Token name = previous();
+    List<Expression.TypedName> params = new ArrayList<>();
 
-      consume(LPAREN, "'(' expected after function name");
-      boolean isVariadic = functionArgs(params);
-      consume(RPAREN, "')' expected after function arguments");
+    consume(LPAREN, "'(' expected after function name");
+    boolean isVariadic = functionArgs(params);
+    consume(RPAREN, "')' expected after function arguments");
 
-      Typed returnType = parseReturnType("missing return type after function arguments");
+    Typed returnType = parseReturnType("missing return type after function arguments");
 
-      endStatement();
-      return new Statement.Extern(name, params, returnType, isVariadic);
-    });
+    endStatement();
+    return position(new Statement.Extern(name, params, returnType, isVariadic), start);
   }
 
   private Statement declaration() {
-    return wrap(() -> {
-      ignoreNewlines();
+    int start = start();
+    ignoreNewlines();
 
-      Statement result;
+    Statement result;
 
-      if (match(VAR)) {
-        result = varDeclaration(false);
-        endStatement();
-      } else if (match(CONST)) {
-        result = varDeclaration(true);
-        endStatement();
-      } else if (match(DEF)) {
-        result = defDeclaration();
-      } else if (blockCount == 0 && check(DECORATOR) && peek().literal().equals("@def")) {
-        match(DECORATOR);
-        boolean isStatic = match(STATIC);
-        result = externDeclaration(isStatic);
-      } else if (match(CLASS)) {
-        result = classDeclaration();
-      } else if (match(LBRACE)) {
-        if (!check(NEWLINE) && blockCount == 0) {
-          result = new Statement.Simple(doCall(dict()));
-        } else {
-          result = block();
-        }
+    if (match(VAR)) {
+      result = varDeclaration(false);
+      endStatement();
+    } else if (match(CONST)) {
+      result = varDeclaration(true);
+      endStatement();
+    } else if (match(DEF)) {
+      result = defDeclaration();
+    } else if (blockCount == 0 && check(DECORATOR) && tokens.literal(current).equals("@def")) {
+      match(DECORATOR);
+      boolean isStatic = match(STATIC);
+      result = externDeclaration(isStatic);
+    } else if (match(CLASS)) {
+      result = classDeclaration();
+    } else if (match(LBRACE)) {
+      if (!check(NEWLINE) && blockCount == 0) {
+        result = new Statement.Simple(doCall(dict()));
       } else {
-        result = statement();
+        result = block();
       }
+    } else {
+      result = statement();
+    }
 
-      ignoreNewlines();
-      return result;
-    });
+    ignoreNewlines();
+    return position(result, start);
   }
 
   public List<Statement> parse() {
@@ -1488,6 +1437,49 @@ public class Parser {
     return result;
   }
 
+  //region [Partial parsing]
+
+  /**
+   * The index of the next token to parse.
+   */
+  int position() {
+    return current;
+  }
+
+  /**
+   * Moves to the token at the given index, which must start a top-level
+   * declaration.
+   */
+  void seek(int index) {
+    current = index;
+  }
+
+  boolean hasMoreDeclarations() {
+    return !isAtEnd();
+  }
+
+  /**
+   * Parses the top-level declaration at the current position.
+   */
+  Statement nextDeclaration() {
+    return declaration();
+  }
+
+  /**
+   * The number of anonymous functions named so far. Parsing from the middle
+   * of a file continues from the count before that point, so that names stay
+   * unique across declarations parsed separately.
+   */
+  int getAnonymousCount() {
+    return anonymousCount;
+  }
+
+  void setAnonymousCount(int anonymousCount) {
+    this.anonymousCount = anonymousCount;
+  }
+
+  //endregion
+
   @Override
   public String toString() {
     return String.format(
@@ -1497,55 +1489,39 @@ public class Parser {
     );
   }
 
-  private <T extends AST> T wrap(Callback<T> callback, T ast) {
-    int startLine = peek().line();
-    int startOffset = peek().offset();
-
-    T result = callback.run(ast);
-
-    if (result != null && !result.wrapped) {
-      int endLine = previous().line();
-      int endOffset = previous().offset();
+  /**
+   * The offset of the next token, which is where a node that starts with it
+   * begins.
+   */
+  private int start() {
+    return tokens.start(current);
+  }
 
-      result.startLine = startLine;
-      result.startColumn = startOffset;
-      result.endLine = endLine;
-      result.endColumn = endOffset;
+  /**
+   * Gives a node that has no position yet the span from the start offset to
+   * the end of the last token consumed.
+   */
+  private <T extends AST> T position(T result, int start) {
+    if (result != null && !result.hasSpan()) {
+      int last = current - 1;
+      int end = tokens.start(last) + tokens.length(last);
 
-      // mark ad wrapped
-      result.wrapped = true;
+      result.span = AST.span(start, Math.max(0, end - start));
+      nodeCount++;
     }
 
     return result;
   }
 
-  private <T extends AST> T wrap(FlatCallback<T> callback) {
-    return wrap((ignore) -> callback.run(), null);
-  }
-
   private <T extends AST> T reflectWrap(T template, T value) {
-    value.wrapped = true;
-    value.startLine = template.startLine;
-    value.startColumn = template.startColumn;
-    value.endLine = template.endLine;
-    value.endColumn = template.endColumn;
+    nodeCount++;
+    value.span = template.span;
     return value;
   }
 
   private <T extends AST> T reflectWrap(T startTemplate, T endTemplate, T value) {
-    value.wrapped = true;
-    value.startLine = startTemplate.startLine;
-    value.startColumn = startTemplate.startColumn;
-    value.endLine = endTemplate.endLine;
-    value.endColumn = endTemplate.endColumn;
+    nodeCount++;
+    value.span = AST.span(startTemplate.getOffset(), endTemplate.getEndOffset() - startTemplate.getOffset());
     return value;
   }
-
-  interface FlatCallback<T> {
-    T run();
-  }
-
-  interface Callback<T> {
-    T run(T ast);
-  }
 }
@@ -1,22 +1,25 @@
 package org.rem.parser;
 
-import org.rem.parser.ast.AST;
-
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * A source file and its text.
+ * <p>
+ * Line starts are indexed once, on the first position lookup, so each lookup
+ * after that is a binary search and line text is only cut when asked for.
+ */
 public class Source {
   private final String path;
   private final String content;
-  private final List<String> lines;
+  private int[] lineStarts;
 
   public Source(String path, String content) {
     this.path = path;
     this.content = content;
-    this.lines = content.lines().toList();
   }
 
   public Source(File file) throws IOException {
@@ -31,8 +34,27 @@ public class Source {
     return content;
   }
 
-  public List<String> getLines() {
-    return lines;
+  /**
+   * The text of a line, numbered from 1, without its line break.
+   */
+  public String getLine(int line) {
+    int[] starts = lineStarts();
+    int start = starts[line - 1];
+    int end = line < starts.length ? starts[line] - 1 : content.length();
+
+    if(end > start && content.charAt(end - 1) == '\r') {
+      end--;
+    }
+
+    return content.substring(start, end);
+  }
+
+  /**
+   * The number of the line, from 1, that contains the given offset.
+   */
+  public int getLineNumber(int offset) {
+    int index = Arrays.binarySearch(lineStarts(), offset);
+    return index < 0 ? -index - 1 : index + 1;
   }
 
   public int getLineStart(int offset) {
@@ -40,13 +62,16 @@ public class Source {
       return content.length() - 1;
     }
 
-    for(var i = offset; i >= 0; i--) {
-      if(content.charAt(i) == '\n') {
-        return i + 1;
-      }
+    if(offset < 0) {
+      return offset;
     }
 
-    return offset;
+    // the start of the line after the last line break at or before offset
+    int[] starts = lineStarts();
+    int index = Arrays.binarySearch(starts, offset + 1);
+    if(index < 0) index = -index - 2;
+
+    return index > 0 ? starts[index] : offset;
   }
 
   public int getLineColumn(int column) {
@@ -54,4 +79,24 @@ public class Source {
     if(startColumn < 0) startColumn = 0;
     return startColumn + 1;
   }
+
+  private int[] lineStarts() {
+    int[] starts = lineStarts;
+    if(starts != null) {
+      return starts;
+    }
+
+    starts = new int[64];
+    int count = 1;
+
+    for(int i = content.indexOf('\n'); i >= 0; i = content.indexOf('\n', i + 1)) {
+      if(count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+      }
+
+      starts[count++] = i + 1;
+    }
+
+    return lineStarts = Arrays.copyOf(starts, count);
+  }
 }
@@ -0,0 +1,201 @@
+package org.rem.parser;
+
+/**
+ * Decodes the body of a string literal in a single pass.
+ * <p>
+ * Supported escapes are `\0`, `\a`, `\b`, `\e`, `\f`, `\n`, `\r`, `\t`, `\v`,
+ * `\\`, `\'`, `\"`, `\$`, `&#92;u{...}` with one to six hex digits, and `\xHH`.
+ * Consecutive `\xHH` escapes are bytes of a UTF-8 sequence and must form valid
+ * UTF-8. Any other escape is kept as written. A body without escapes is
+ * returned as a plain substring, otherwise the result is built in a buffer
+ * that is reused across calls, so a decoder must not be shared between
+ * threads.
+ */
+public final class StringDecoder {
+  private final StringBuilder buffer = new StringBuilder();
+
+  /**
+   * Decodes the characters between start (inclusive) and end (exclusive).
+   *
+   * @throws IllegalArgumentException if an escape is malformed or does not
+   *   encode a valid code point.
+   */
+  public String decode(String source, int start, int end) {
+    boolean escaped = false;
+    int run = start;
+    int i = start;
+
+    while (i < end) {
+      char c = source.charAt(i);
+
+      if (Character.isSurrogate(c)) {
+        if (!Character.isHighSurrogate(c) || i + 1 >= end || !Character.isLowSurrogate(source.charAt(i + 1))) {
+          throw new IllegalArgumentException("invalid UTF-16 surrogate in string");
+        }
+
+        i += 2;
+        continue;
+      }
+
+      if (c != '\\' || i + 1 >= end) {
+        i++;
+        continue;
+      }
+
+      if (!escaped) {
+        buffer.setLength(0);
+        escaped = true;
+      }
+
+      buffer.append(source, run, i);
+      i = escape(source, i, end);
+      run = i;
+    }
+
+    if (!escaped) {
+      return source.substring(start, end);
+    }
+
+    buffer.append(source, run, end);
+    return buffer.toString();
+  }
+
+  /**
+   * Decodes the escape starting with the backslash at the given index and
+   * returns the index after it.
+   */
+  private int escape(String source, int index, int end) {
+    char c = source.charAt(index + 1);
+
+    switch (c) {
+      case '0' -> buffer.append('\0');
+      case 'a' -> buffer.append('\u0007');
+      case 'b' -> buffer.append('\b');
+      case 'e' -> buffer.append('\u001B');
+      case 'f' -> buffer.append('\f');
+      case 'n' -> buffer.append('\n');
+      case 'r' -> buffer.append('\r');
+      case 't' -> buffer.append('\t');
+      case 'v' -> buffer.append('\u000B');
+      case '\\', '\'', '"', '$' -> buffer.append(c);
+      case 'u' -> {
+        return unicode(source, index, end);
+      }
+      case 'x' -> {
+        return utf8(source, index, end);
+      }
+      default -> buffer.append('\\').append(c);
+    }
+
+    return index + 2;
+  }
+
+  /**
+   * Decodes `&#92;u{...}`.
+   */
+  private int unicode(String source, int index, int end) {
+    int open = index + 2;
+    if (open >= end || source.charAt(open) != '{') {
+      throw new IllegalArgumentException("expected '{' after '\\u' in string");
+    }
+
+    int codePoint = 0;
+    int i = open + 1;
+
+    while (i < end && source.charAt(i) != '}') {
+      int digit = hexDigit(source.charAt(i));
+      if (digit < 0 || i - open > 6) {
+        throw new IllegalArgumentException("invalid unicode escape '" + source.substring(index, Math.min(i + 1, end)) + "' in string");
+      }
+
+      codePoint = codePoint * 16 + digit;
+      i++;
+    }
+
+    if (i >= end || i == open + 1) {
+      throw new IllegalArgumentException("invalid unicode escape '" + source.substring(index, Math.min(i + 1, end)) + "' in string");
+    }
+
+    if (codePoint > Character.MAX_CODE_POINT || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+      throw new IllegalArgumentException(String.format("invalid code point U+%X in string", codePoint));
+    }
+
+    buffer.appendCodePoint(codePoint);
+    return i + 1;
+  }
+
+  /**
+   * Decodes a run of `\xHH` escapes forming one UTF-8 encoded code point.
+   */
+  private int utf8(String source, int index, int end) {
+    int lead = hexByte(source, index, end);
+    int i = index + 4;
+
+    if (lead < 0x80) {
+      buffer.append((char) lead);
+      return i;
+    }
+
+    int length;
+    int codePoint;
+    if (lead >= 0xC2 && lead <= 0xDF) {
+      length = 2;
+      codePoint = lead & 0x1F;
+    } else if (lead >= 0xE0 && lead <= 0xEF) {
+      length = 3;
+      codePoint = lead & 0x0F;
+    } else if (lead >= 0xF0 && lead <= 0xF4) {
+      length = 4;
+      codePoint = lead & 0x07;
+    } else {
+      throw new IllegalArgumentException(String.format("invalid UTF-8 lead byte \\x%02X in string", lead));
+    }
+
+    for (int n = 1; n < length; n++) {
+      if (i + 1 >= end || source.charAt(i) != '\\' || source.charAt(i + 1) != 'x') {
+        throw new IllegalArgumentException(String.format("incomplete UTF-8 sequence starting with \\x%02X in string", lead));
+      }
+
+      int continuation = hexByte(source, i, end);
+      if ((continuation & 0xC0) != 0x80) {
+        throw new IllegalArgumentException(String.format("invalid UTF-8 continuation byte \\x%02X in string", continuation));
+      }
+
+      codePoint = (codePoint << 6) | (continuation & 0x3F);
+      i += 4;
+    }
+
+    int minimum = length == 2 ? 0x80 : length == 3 ? 0x800 : 0x10000;
+    if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+      throw new IllegalArgumentException(String.format("invalid UTF-8 sequence starting with \\x%02X in string", lead));
+    }
+
+    buffer.appendCodePoint(codePoint);
+    return i;
+  }
+
+  /**
+   * Reads the two hex digits of the `\xHH` escape at the given index.
+   */
+  private static int hexByte(String source, int index, int end) {
+    int high = index + 2 < end ? hexDigit(source.charAt(index + 2)) : -1;
+    int low = index + 3 < end ? hexDigit(source.charAt(index + 3)) : -1;
+
+    if (high < 0 || low < 0) {
+      throw new IllegalArgumentException("invalid escape '" + source.substring(index, Math.min(index + 4, end)) + "' in string, expected two hex digits");
+    }
+
+    return high * 16 + low;
+  }
+
+  /**
+   * The value of an ASCII hex digit, or -1. Unlike {@link Character#digit}
+   * this rejects other scripts' digits, such as fullwidth ones.
+   */
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') return c - '0';
+    if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+    if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+    return -1;
+  }
+}
@@ -0,0 +1,50 @@
+package org.rem.parser;
+
+import java.util.Objects;
+
+/**
+ * Replaces the removed length characters at offset with the inserted text.
+ */
+public record TextEdit(int offset, int removedLength, String insertedText) {
+
+  public TextEdit {
+    if (offset < 0 || removedLength < 0) {
+      throw new IllegalArgumentException("invalid edit of " + removedLength + " characters at " + offset);
+    }
+
+    Objects.requireNonNull(insertedText, "insertedText");
+  }
+
+  public static TextEdit insert(int offset, String text) {
+    return new TextEdit(offset, 0, text);
+  }
+
+  public static TextEdit delete(int offset, int length) {
+    return new TextEdit(offset, length, "");
+  }
+
+  /**
+   * The offset of the first character after the removed range, in the text
+   * before the edit.
+   */
+  public int removedEnd() {
+    return offset + removedLength;
+  }
+
+  /**
+   * How far the text after the edit moves.
+   */
+  public int delta() {
+    return insertedText.length() - removedLength;
+  }
+
+  /**
+   * Returns the text with this edit applied.
+   *
+   * @throws IndexOutOfBoundsException if the removed range is not in the text.
+   */
+  public String applyTo(String text) {
+    Objects.checkFromIndexSize(offset, removedLength, text.length());
+    return text.substring(0, offset) + insertedText + text.substring(removedEnd());
+  }
+}
@@ -1,6 +1,7 @@
 package org.rem.parser;
 
 import org.jspecify.annotations.NonNull;
+import org.rem.utils.SymbolTable;
 
 import java.util.List;
 
@@ -25,7 +26,11 @@ import static org.rem.parser.TokenType.TILDE;
 import static org.rem.parser.TokenType.URSHIFT;
 import static org.rem.parser.TokenType.XOR;
 
-public record Token(TokenType type, String literal, int line, int offset) {
+/**
+ * A token of the source. Identifiers carry the {@link SymbolTable} ID they
+ * were interned with at lex time in `symbol`.
+ */
+public record Token(TokenType type, String literal, int line, int offset, int symbol) {
 
   private static final List<TokenType> ARITHEMETIC_OPS = List.of(
     PLUS, MINUS, MULTIPLY, POW, DIVIDE, PERCENT, FLOOR
@@ -53,6 +58,19 @@ public record Token(TokenType type, String literal, int line, int offset) {
     LSHIFT_EQ, RSHIFT_EQ, URSHIFT_EQ
   );
 
+  public Token(TokenType type, String literal, int line, int offset) {
+    this(type, literal, line, offset, type == IDENTIFIER ? SymbolTable.intern(literal) : SymbolTable.NONE);
+  }
+
+  /**
+   * The {@link SymbolTable} ID of the literal. Tokens used as names without
+   * being identifiers, such as `@new`, are interned on demand.
+   */
+  @Override
+  public int symbol() {
+    return symbol != SymbolTable.NONE ? symbol : SymbolTable.intern(literal);
+  }
+
   @Override
   @NonNull
   public String toString() {
@@ -0,0 +1,238 @@
+package org.rem.parser;
+
+import org.rem.utils.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact store for the tokens of a source file.
+ * <p>
+ * Tokens are kept as parallel primitive arrays of type, start offset, length,
+ * line and symbol ID instead of one {@link Token} per token. Most literals are plain
+ * slices of the source and are only created when {@link #literal(int)} or
+ * {@link #get(int)} is called. Tokens whose literal differs from their source
+ * text, such as decoded strings, keep it in a dense side table of token
+ * indices and literals, ordered by index and searched when the literal is
+ * read. The values of numeric tokens are kept the same way, so neither costs
+ * anything for the other tokens.
+ */
+public class TokenBuffer implements TokenSource, TokenSink {
+  private static final TokenType[] TYPES = TokenType.values();
+  private static final int INITIAL_CAPACITY = 256;
+  private static final int INITIAL_SIDE_CAPACITY = 16;
+
+  private final String source;
+  private byte[] types;
+  private int[] starts;
+  private int[] lengths;
+  private int[] lines;
+  private int[] symbols;
+  private int size = 0;
+
+  private int[] literalIndices = new int[0];
+  private String[] literals = new String[0];
+  private int literalCount = 0;
+
+  private int[] valueIndices = new int[0];
+  private long[] values = new long[0];
+  private int valueCount = 0;
+
+  public TokenBuffer(String source) {
+    this(source, Math.max(INITIAL_CAPACITY, source.length() / 4));
+  }
+
+  public TokenBuffer(String source, int capacity) {
+    this.source = source;
+    this.types = new byte[capacity];
+    this.starts = new int[capacity];
+    this.lengths = new int[capacity];
+    this.lines = new int[capacity];
+    this.symbols = new int[capacity];
+  }
+
+  @Override
+  public void add(TokenType type, int start, int length, int line) {
+    if (size == types.length) {
+      grow();
+    }
+
+    types[size] = (byte) type.ordinal();
+    starts[size] = start;
+    lengths[size] = length;
+    lines[size] = line;
+    symbols[size] = SymbolTable.NONE;
+    size++;
+  }
+
+  @Override
+  public void add(TokenType type, int start, int length, int line, String literal) {
+    add(type, start, length, line);
+    if (literal != null) addLiteral(size - 1, literal);
+  }
+
+  @Override
+  public void addIdentifier(int start, int length, int line, int symbol) {
+    add(TokenType.IDENTIFIER, start, length, line);
+    symbols[size - 1] = symbol;
+  }
+
+  @Override
+  public void addNumber(TokenType type, int start, int length, int line, long value) {
+    add(type, start, length, line);
+    addValue(size - 1, value);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public TokenType type(int index) {
+    return TYPES[types[index]];
+  }
+
+  @Override
+  public int start(int index) {
+    return starts[index];
+  }
+
+  @Override
+  public int length(int index) {
+    return lengths[index];
+  }
+
+  @Override
+  public int line(int index) {
+    return lines[index];
+  }
+
+  @Override
+  public int symbol(int index) {
+    return symbols[index];
+  }
+
+  @Override
+  public long value(int index) {
+    if (valueCount == 0) return 0;
+
+    int position = Arrays.binarySearch(valueIndices, 0, valueCount, index);
+    return position < 0 ? 0 : values[position];
+  }
+
+  @Override
+  public String literal(int index) {
+    if (symbols[index] != SymbolTable.NONE) {
+      return SymbolTable.name(symbols[index]);
+    }
+
+    if (literalCount > 0) {
+      int position = Arrays.binarySearch(literalIndices, 0, literalCount, index);
+      if (position >= 0) return literals[position];
+    }
+
+    return source.substring(starts[index], starts[index] + lengths[index]).trim();
+  }
+
+  /**
+   * Appends the tokens of another buffer over the same source, starting with
+   * the token at the given index.
+   */
+  void append(TokenBuffer other, int from) {
+    append(other, from, other.size, 0, 0);
+  }
+
+  /**
+   * Appends the tokens between from (inclusive) and to (exclusive) of another
+   * buffer, moving their offsets and lines by the given amounts.
+   */
+  void append(TokenBuffer other, int from, int to, int offsetDelta, int lineDelta) {
+    int count = to - from;
+    while (size + count > types.length) {
+      grow();
+    }
+
+    System.arraycopy(other.types, from, types, size, count);
+    System.arraycopy(other.starts, from, starts, size, count);
+    System.arraycopy(other.lengths, from, lengths, size, count);
+    System.arraycopy(other.lines, from, lines, size, count);
+    System.arraycopy(other.symbols, from, symbols, size, count);
+
+    // The appended tokens follow every token of this buffer, so their side
+    // table entries keep the tables ordered.
+    for (int i = firstAtOrAfter(other.literalIndices, other.literalCount, from); i < other.literalCount; i++) {
+      if (other.literalIndices[i] >= to) break;
+      addLiteral(size + other.literalIndices[i] - from, other.literals[i]);
+    }
+
+    for (int i = firstAtOrAfter(other.valueIndices, other.valueCount, from); i < other.valueCount; i++) {
+      if (other.valueIndices[i] >= to) break;
+      addValue(size + other.valueIndices[i] - from, other.values[i]);
+    }
+
+    if (offsetDelta != 0 || lineDelta != 0) {
+      for (int i = size; i < size + count; i++) {
+        starts[i] += offsetDelta;
+        lines[i] += lineDelta;
+      }
+    }
+
+    size += count;
+  }
+
+  /**
+   * Materializes every token, for callers that still want a list.
+   */
+  public List<Token> toList() {
+    List<Token> tokens = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      tokens.add(get(i));
+    }
+
+    return tokens;
+  }
+
+  private void grow() {
+    int capacity = types.length * 2;
+    types = Arrays.copyOf(types, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    lengths = Arrays.copyOf(lengths, capacity);
+    lines = Arrays.copyOf(lines, capacity);
+    symbols = Arrays.copyOf(symbols, capacity);
+  }
+
+  private void addLiteral(int index, String literal) {
+    if (literalCount == literalIndices.length) {
+      int capacity = Math.max(INITIAL_SIDE_CAPACITY, literalCount * 2);
+      literalIndices = Arrays.copyOf(literalIndices, capacity);
+      literals = Arrays.copyOf(literals, capacity);
+    }
+
+    literalIndices[literalCount] = index;
+    literals[literalCount] = literal;
+    literalCount++;
+  }
+
+  private void addValue(int index, long value) {
+    if (valueCount == valueIndices.length) {
+      int capacity = Math.max(INITIAL_SIDE_CAPACITY, valueCount * 2);
+      valueIndices = Arrays.copyOf(valueIndices, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    valueIndices[valueCount] = index;
+    values[valueCount] = value;
+    valueCount++;
+  }
+
+  /**
+   * The position of the first side table entry for a token at or after the
+   * given index.
+   */
+  private static int firstAtOrAfter(int[] indices, int count, int index) {
+    int position = Arrays.binarySearch(indices, 0, count, index);
+    return position < 0 ? -position - 1 : position;
+  }
+}
@@ -0,0 +1,27 @@
+package org.rem.parser;
+
+/**
+ * Receives the tokens scanned by the {@link Lexer}.
+ */
+interface TokenSink {
+  /**
+   * Appends a token whose literal is its source text.
+   */
+  void add(TokenType type, int start, int length, int line);
+
+  /**
+   * Appends a token whose literal differs from its source text.
+   */
+  void add(TokenType type, int start, int length, int line, String literal);
+
+  /**
+   * Appends an identifier with its {@link org.rem.utils.SymbolTable} ID.
+   */
+  void addIdentifier(int start, int length, int line, int symbol);
+
+  /**
+   * Appends a numeric token with the value the lexer scanned, see
+   * {@link TokenSource#value(int)}.
+   */
+  void addNumber(TokenType type, int start, int length, int line, long value);
+}
@@ -0,0 +1,45 @@
+package org.rem.parser;
+
+import org.rem.utils.SymbolTable;
+
+/**
+ * Index based access to the tokens of a source file, as consumed by the
+ * {@link Parser}. Indices are absolute positions in the token stream.
+ */
+public interface TokenSource {
+  /**
+   * The number of tokens produced so far.
+   */
+  int size();
+
+  TokenType type(int index);
+
+  int start(int index);
+
+  int length(int index);
+
+  int line(int index);
+
+  /**
+   * The {@link SymbolTable} ID of an identifier, or {@link SymbolTable#NONE}.
+   */
+  int symbol(int index);
+
+  /**
+   * The value of a numeric token: the integer of a `REG_NUMBER`, `BIN_NUMBER`,
+   * `OCT_NUMBER` or `HEX_NUMBER` and the float bits of a `FLOAT_NUMBER`.
+   */
+  long value(int index);
+
+  /**
+   * Returns the literal of the token, creating it when needed.
+   */
+  String literal(int index);
+
+  /**
+   * Materializes the token at the given index.
+   */
+  default Token get(int index) {
+    return new Token(type(index), literal(index), line(index), start(index), symbol(index));
+  }
+}
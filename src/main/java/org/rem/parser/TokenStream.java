@@ -0,0 +1,132 @@
+package org.rem.parser;
+
+import org.rem.utils.SymbolTable;
+
+/**
+ * A {@link TokenSource} that pulls tokens from the {@link Lexer} as the parser
+ * asks for them.
+ * <p>
+ * Only the last {@link #CAPACITY} tokens are kept in a ring buffer, which is
+ * enough for the parser's `peek()`, `next()` and `previous()` since it never
+ * backtracks. Token memory therefore stays constant no matter how large the
+ * source is. The lexer's own state, including its interpolation stack, carries
+ * over from one pull to the next.
+ */
+public class TokenStream implements TokenSource, TokenSink {
+  private static final TokenType[] TYPES = TokenType.values();
+  private static final int CAPACITY = 16;
+  private static final int MASK = CAPACITY - 1;
+
+  private final Lexer lexer;
+  private final byte[] types = new byte[CAPACITY];
+  private final int[] starts = new int[CAPACITY];
+  private final int[] lengths = new int[CAPACITY];
+  private final int[] lines = new int[CAPACITY];
+  private final int[] symbols = new int[CAPACITY];
+  private final String[] literals = new String[CAPACITY];
+  private final long[] values = new long[CAPACITY];
+  private int size = 0;
+
+  public TokenStream(Lexer lexer) {
+    this.lexer = lexer;
+  }
+
+  @Override
+  public void add(TokenType type, int start, int length, int line) {
+    add(type, start, length, line, null);
+  }
+
+  @Override
+  public void add(TokenType type, int start, int length, int line, String literal) {
+    add(type, start, length, line, literal, SymbolTable.NONE);
+  }
+
+  @Override
+  public void addIdentifier(int start, int length, int line, int symbol) {
+    add(TokenType.IDENTIFIER, start, length, line, null, symbol);
+  }
+
+  @Override
+  public void addNumber(TokenType type, int start, int length, int line, long value) {
+    add(type, start, length, line, null, SymbolTable.NONE);
+    values[(size - 1) & MASK] = value;
+  }
+
+  private void add(TokenType type, int start, int length, int line, String literal, int symbol) {
+    int slot = size & MASK;
+    types[slot] = (byte) type.ordinal();
+    starts[slot] = start;
+    lengths[slot] = length;
+    lines[slot] = line;
+    literals[slot] = literal;
+    symbols[slot] = symbol;
+    values[slot] = 0;
+    size++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public TokenType type(int index) {
+    return TYPES[types[slot(index)]];
+  }
+
+  @Override
+  public int start(int index) {
+    return starts[slot(index)];
+  }
+
+  @Override
+  public int length(int index) {
+    return lengths[slot(index)];
+  }
+
+  @Override
+  public int line(int index) {
+    return lines[slot(index)];
+  }
+
+  @Override
+  public int symbol(int index) {
+    return symbols[slot(index)];
+  }
+
+  @Override
+  public long value(int index) {
+    return values[slot(index)];
+  }
+
+  @Override
+  public String literal(int index) {
+    int slot = slot(index);
+    if (symbols[slot] != SymbolTable.NONE) {
+      return SymbolTable.name(symbols[slot]);
+    }
+
+    if (literals[slot] != null) {
+      return literals[slot];
+    }
+
+    return lexer.sourceString.substring(starts[slot], starts[slot] + lengths[slot]).trim();
+  }
+
+  /**
+   * Scans up to the given token and returns its slot in the ring buffer.
+   */
+  private int slot(int index) {
+    while (index >= size) {
+      if (!lexer.scanInto(this)) {
+        throw new IndexOutOfBoundsException("token " + index + " is past the end of the stream");
+      }
+    }
+
+    if (index < size - CAPACITY) {
+      throw new IllegalStateException("token " + index + " is no longer buffered");
+    }
+
+    return index & MASK;
+  }
+}
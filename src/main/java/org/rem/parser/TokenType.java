@@ -96,6 +96,7 @@ public enum TokenType {
   LITERAL,  // string literal token
   BIG_NUMBER,  // big number token
   REG_NUMBER,  // regular number token
+  FLOAT_NUMBER,  // floating point number token
   BIN_NUMBER,  // binary number token
   OCT_NUMBER,  // octal number token
   HEX_NUMBER,  // hexadecimal number token
@@ -1,17 +1,58 @@
 package org.rem.parser.ast;
 
 import norswap.uranium.Attribute;
+import org.rem.parser.Source;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
 public class AST implements Cloneable {
-  public int startLine = 1;
-  public int endLine = 1;
-  public int startColumn = 0;
-  public int endColumn = 0;
-  public boolean wrapped = false;
+  /**
+   * The span of a node that was not given a position.
+   */
+  public static final long NO_SPAN = -1L;
+
+  /**
+   * The offset of the node's first token in the high half, and the length up
+   * to the end of its last token in the low half.
+   */
+  public long span = NO_SPAN;
+
+  public static long span(int offset, int length) {
+    return ((long) offset << 32) | (length & 0xffffffffL);
+  }
+
+  public boolean hasSpan() {
+    return span != NO_SPAN;
+  }
+
+  public int getOffset() {
+    return hasSpan() ? (int) (span >>> 32) : 0;
+  }
+
+  public int getLength() {
+    return hasSpan() ? (int) span : 0;
+  }
+
+  public int getEndOffset() {
+    return getOffset() + getLength();
+  }
+
+  /**
+   * The line of the node's first token. A node that starts with a newline
+   * token is on the line after it, as the lexer numbers them.
+   */
+  public int getStartLine(Source source) {
+    return hasSpan() ? source.getLineNumber(getOffset() + 1) : 1;
+  }
+
+  /**
+   * The line the node's last token ends on.
+   */
+  public int getEndLine(Source source) {
+    return hasSpan() ? source.getLineNumber(Math.max(getOffset() + 1, getEndOffset())) : 1;
+  }
 
   public final Attribute attr (String name) {
     return new Attribute(this, name);
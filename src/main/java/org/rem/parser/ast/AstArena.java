@@ -0,0 +1,2777 @@
+// DO NOT MODIFY DIRECTLY
+// This file was generated by the tools.rem.GenerateAst
+package org.rem.parser.ast;
+
+import org.rem.parser.Token;
+import org.rem.parser.TokenType;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A flat store for trees of {@link Typed}, {@link Expression} and
+ * {@link Statement} nodes. A node is an index into columns of primitive
+ * arrays that hold its kind, its span and the slots of its fields.
+ * Children are stored as their indexes, lists as a range of slots and
+ * numbers by value. Tokens, strings and other objects go in a separate
+ * table.
+ * <p>
+ * Nodes are read through short-lived views, which {@link #accept(int, Visitor)}
+ * hands to a visitor, or rebuilt as {@link AST} objects by {@link #toAST(int)}.
+ * A missing child is {@link #NONE}, and a null list is stored as an empty one.
+ * The columns can be written out and read back as a whole, which is how a
+ * parsed module is stored between builds.
+ */
+public final class AstArena {
+  public static final int NONE = -1;
+
+  public static final byte VOID_TYPED = 0;
+  public static final byte ID_TYPED = 1;
+  public static final byte ARRAY_TYPED = 2;
+  public static final byte VECTOR_TYPED = 3;
+  public static final byte MAP_TYPED = 4;
+  public static final byte NIL_EXPRESSION = 5;
+  public static final byte BOOLEAN_EXPRESSION = 6;
+  public static final byte INT32_EXPRESSION = 7;
+  public static final byte INT64_EXPRESSION = 8;
+  public static final byte FLOAT32_EXPRESSION = 9;
+  public static final byte FLOAT64_EXPRESSION = 10;
+  public static final byte LITERAL_EXPRESSION = 11;
+  public static final byte UNARY_EXPRESSION = 12;
+  public static final byte BINARY_EXPRESSION = 13;
+  public static final byte LOGICAL_EXPRESSION = 14;
+  public static final byte RANGE_EXPRESSION = 15;
+  public static final byte GROUPING_EXPRESSION = 16;
+  public static final byte INCREMENT_EXPRESSION = 17;
+  public static final byte DECREMENT_EXPRESSION = 18;
+  public static final byte IDENTIFIER_EXPRESSION = 19;
+  public static final byte ARRAY_EXPRESSION = 20;
+  public static final byte TYPED_NAME_EXPRESSION = 21;
+  public static final byte ASSIGN_EXPRESSION = 22;
+  public static final byte UPDATE_EXPRESSION = 23;
+  public static final byte CONDITION_EXPRESSION = 24;
+  public static final byte CALL_EXPRESSION = 25;
+  public static final byte GET_EXPRESSION = 26;
+  public static final byte SET_EXPRESSION = 27;
+  public static final byte INDEX_EXPRESSION = 28;
+  public static final byte SLICE_EXPRESSION = 29;
+  public static final byte DICT_EXPRESSION = 30;
+  public static final byte NEW_EXPRESSION = 31;
+  public static final byte PARENT_EXPRESSION = 32;
+  public static final byte SELF_EXPRESSION = 33;
+  public static final byte ANONYMOUS_EXPRESSION = 34;
+  public static final byte ECHO_STATEMENT = 35;
+  public static final byte SIMPLE_STATEMENT = 36;
+  public static final byte IF_STATEMENT = 37;
+  public static final byte FOR_STATEMENT = 38;
+  public static final byte WHILE_STATEMENT = 39;
+  public static final byte DO_WHILE_STATEMENT = 40;
+  public static final byte CONTINUE_STATEMENT = 41;
+  public static final byte BREAK_STATEMENT = 42;
+  public static final byte RAISE_STATEMENT = 43;
+  public static final byte RETURN_STATEMENT = 44;
+  public static final byte ASSERT_STATEMENT = 45;
+  public static final byte USING_STATEMENT = 46;
+  public static final byte IMPORT_STATEMENT = 47;
+  public static final byte CATCH_STATEMENT = 48;
+  public static final byte VAR_STATEMENT = 49;
+  public static final byte VAR_LIST_STATEMENT = 50;
+  public static final byte BLOCK_STATEMENT = 51;
+  public static final byte EXTERN_STATEMENT = 52;
+  public static final byte FUNCTION_STATEMENT = 53;
+  public static final byte METHOD_STATEMENT = 54;
+  public static final byte PROPERTY_STATEMENT = 55;
+  public static final byte CLASS_STATEMENT = 56;
+
+  // the number of fixed slots of each kind
+  private static final int[] SLOTS = {
+    0, 1, 2, 1, 2, 0, 1, 1, 2, 1, 2, 1, 2, 3, 3, 2,
+    1, 1, 1, 1, 2, 2, 2, 3, 3, 3, 2, 3, 2, 3, 4, 1,
+    0, 0, 1, 1, 1, 3, 6, 4, 4, 0, 0, 1, 1, 2, 6, 4,
+    4, 3, 2, 2, 5, 6, 7, 4, 8,
+  };
+
+  private byte[] kinds;
+  private long[] spans;
+  private int[] firstSlots;
+  private int[] slots;
+  private Object[] refs;
+  private int size = 0;
+  private int slotSize = 0;
+  private int refSize = 0;
+  private final Importer importer = new Importer();
+
+  public AstArena() {
+    this(1024);
+  }
+
+  public AstArena(int capacity) {
+    kinds = new byte[capacity];
+    spans = new long[capacity];
+    firstSlots = new int[capacity];
+    slots = new int[capacity * 3];
+    refs = new Object[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public byte kind(int node) {
+    return kinds[node];
+  }
+
+  /**
+   * The packed span of the node, as in {@link AST#span}.
+   */
+  public long span(int node) {
+    return spans[node];
+  }
+
+  public void setSpan(int node, long span) {
+    spans[node] = span;
+  }
+
+  /**
+   * Returns a view of the node, or null for {@link #NONE}.
+   */
+  public Node node(int node) {
+    if (node == NONE) return null;
+
+    switch (kinds[node]) {
+      case VOID_TYPED: return new VoidTyped(this, node);
+      case ID_TYPED: return new IdTyped(this, node);
+      case ARRAY_TYPED: return new ArrayTyped(this, node);
+      case VECTOR_TYPED: return new VectorTyped(this, node);
+      case MAP_TYPED: return new MapTyped(this, node);
+      case NIL_EXPRESSION: return new NilExpression(this, node);
+      case BOOLEAN_EXPRESSION: return new BooleanExpression(this, node);
+      case INT32_EXPRESSION: return new Int32Expression(this, node);
+      case INT64_EXPRESSION: return new Int64Expression(this, node);
+      case FLOAT32_EXPRESSION: return new Float32Expression(this, node);
+      case FLOAT64_EXPRESSION: return new Float64Expression(this, node);
+      case LITERAL_EXPRESSION: return new LiteralExpression(this, node);
+      case UNARY_EXPRESSION: return new UnaryExpression(this, node);
+      case BINARY_EXPRESSION: return new BinaryExpression(this, node);
+      case LOGICAL_EXPRESSION: return new LogicalExpression(this, node);
+      case RANGE_EXPRESSION: return new RangeExpression(this, node);
+      case GROUPING_EXPRESSION: return new GroupingExpression(this, node);
+      case INCREMENT_EXPRESSION: return new IncrementExpression(this, node);
+      case DECREMENT_EXPRESSION: return new DecrementExpression(this, node);
+      case IDENTIFIER_EXPRESSION: return new IdentifierExpression(this, node);
+      case ARRAY_EXPRESSION: return new ArrayExpression(this, node);
+      case TYPED_NAME_EXPRESSION: return new TypedNameExpression(this, node);
+      case ASSIGN_EXPRESSION: return new AssignExpression(this, node);
+      case UPDATE_EXPRESSION: return new UpdateExpression(this, node);
+      case CONDITION_EXPRESSION: return new ConditionExpression(this, node);
+      case CALL_EXPRESSION: return new CallExpression(this, node);
+      case GET_EXPRESSION: return new GetExpression(this, node);
+      case SET_EXPRESSION: return new SetExpression(this, node);
+      case INDEX_EXPRESSION: return new IndexExpression(this, node);
+      case SLICE_EXPRESSION: return new SliceExpression(this, node);
+      case DICT_EXPRESSION: return new DictExpression(this, node);
+      case NEW_EXPRESSION: return new NewExpression(this, node);
+      case PARENT_EXPRESSION: return new ParentExpression(this, node);
+      case SELF_EXPRESSION: return new SelfExpression(this, node);
+      case ANONYMOUS_EXPRESSION: return new AnonymousExpression(this, node);
+      case ECHO_STATEMENT: return new EchoStatement(this, node);
+      case SIMPLE_STATEMENT: return new SimpleStatement(this, node);
+      case IF_STATEMENT: return new IfStatement(this, node);
+      case FOR_STATEMENT: return new ForStatement(this, node);
+      case WHILE_STATEMENT: return new WhileStatement(this, node);
+      case DO_WHILE_STATEMENT: return new DoWhileStatement(this, node);
+      case CONTINUE_STATEMENT: return new ContinueStatement(this, node);
+      case BREAK_STATEMENT: return new BreakStatement(this, node);
+      case RAISE_STATEMENT: return new RaiseStatement(this, node);
+      case RETURN_STATEMENT: return new ReturnStatement(this, node);
+      case ASSERT_STATEMENT: return new AssertStatement(this, node);
+      case USING_STATEMENT: return new UsingStatement(this, node);
+      case IMPORT_STATEMENT: return new ImportStatement(this, node);
+      case CATCH_STATEMENT: return new CatchStatement(this, node);
+      case VAR_STATEMENT: return new VarStatement(this, node);
+      case VAR_LIST_STATEMENT: return new VarListStatement(this, node);
+      case BLOCK_STATEMENT: return new BlockStatement(this, node);
+      case EXTERN_STATEMENT: return new ExternStatement(this, node);
+      case FUNCTION_STATEMENT: return new FunctionStatement(this, node);
+      case METHOD_STATEMENT: return new MethodStatement(this, node);
+      case PROPERTY_STATEMENT: return new PropertyStatement(this, node);
+      case CLASS_STATEMENT: return new ClassStatement(this, node);
+      default: throw new IllegalStateException("unknown node kind " + kinds[node]);
+    }
+  }
+
+  /**
+   * Visits the node, or returns null for {@link #NONE}.
+   */
+  public <T> T accept(int node, Visitor<T> visitor) {
+    return node == NONE ? null : node(node).accept(visitor);
+  }
+
+  /**
+   * Shrinks the columns to the nodes stored so far.
+   */
+  public void trimToSize() {
+    resize(size);
+    slots = Arrays.copyOf(slots, slotSize);
+    refs = Arrays.copyOf(refs, refSize);
+  }
+
+  //region [Building]
+
+  /**
+   * Stores a tree of nodes, children first, and returns the index of its root.
+   *
+   * @throws IllegalArgumentException for nodes that have no kind in the arena.
+   */
+  public int add(AST node) {
+    if (node == null) return NONE;
+
+    importer.last = NONE;
+    if (node instanceof Expression expression) {
+      expression.accept(importer);
+    } else if (node instanceof Statement statement) {
+      statement.accept(importer);
+    } else if (node instanceof Typed typed) {
+      typed.accept(importer);
+    }
+
+    int id = importer.last;
+    if (id == NONE) {
+      throw new IllegalArgumentException("cannot store " + node.astName() + " in an arena");
+    }
+
+    spans[id] = node.span;
+    return id;
+  }
+
+  public int[] addAll(List<? extends AST> nodes) {
+    if (nodes == null) return new int[0];
+
+    int[] result = new int[nodes.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = add(nodes.get(i));
+    }
+
+    return result;
+  }
+
+  public int addVoidTyped() {
+    int node = allocate(VOID_TYPED, 0);
+    return node;
+  }
+
+  public int addIdTyped(int name) {
+    int node = allocate(ID_TYPED, 0);
+    int slot = firstSlots[node];
+    slots[slot] = name;
+    return node;
+  }
+
+  public int addArrayTyped(int type, int size) {
+    int node = allocate(ARRAY_TYPED, 0);
+    int slot = firstSlots[node];
+    slots[slot] = type;
+    slots[slot + 1] = size;
+    return node;
+  }
+
+  public int addVectorTyped(int type) {
+    int node = allocate(VECTOR_TYPED, 0);
+    int slot = firstSlots[node];
+    slots[slot] = type;
+    return node;
+  }
+
+  public int addMapTyped(int keyType, int valueType) {
+    int node = allocate(MAP_TYPED, 0);
+    int slot = firstSlots[node];
+    slots[slot] = keyType;
+    slots[slot + 1] = valueType;
+    return node;
+  }
+
+  public int addNilExpression() {
+    int node = allocate(NIL_EXPRESSION, 0);
+    return node;
+  }
+
+  public int addBooleanExpression(boolean value) {
+    int node = allocate(BOOLEAN_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = value ? 1 : 0;
+    return node;
+  }
+
+  public int addInt32Expression(int value) {
+    int node = allocate(INT32_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = value;
+    return node;
+  }
+
+  public int addInt64Expression(long value) {
+    int node = allocate(INT64_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = (int) (value >>> 32);
+    slots[slot + 1] = (int) value;
+    return node;
+  }
+
+  public int addFloat32Expression(float value) {
+    int node = allocate(FLOAT32_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = Float.floatToRawIntBits(value);
+    return node;
+  }
+
+  public int addFloat64Expression(double value) {
+    int node = allocate(FLOAT64_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = (int) (Double.doubleToRawLongBits(value) >>> 32);
+    slots[slot + 1] = (int) Double.doubleToRawLongBits(value);
+    return node;
+  }
+
+  public int addLiteralExpression(Token token) {
+    int node = allocate(LITERAL_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = ref(token);
+    return node;
+  }
+
+  public int addUnaryExpression(Token op, int right) {
+    int node = allocate(UNARY_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = ref(op);
+    slots[slot + 1] = right;
+    return node;
+  }
+
+  public int addBinaryExpression(int left, Token op, int right) {
+    int node = allocate(BINARY_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = left;
+    slots[slot + 1] = ref(op);
+    slots[slot + 2] = right;
+    return node;
+  }
+
+  public int addLogicalExpression(int left, Token op, int right) {
+    int node = allocate(LOGICAL_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = left;
+    slots[slot + 1] = ref(op);
+    slots[slot + 2] = right;
+    return node;
+  }
+
+  public int addRangeExpression(int lower, int upper) {
+    int node = allocate(RANGE_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = lower;
+    slots[slot + 1] = upper;
+    return node;
+  }
+
+  public int addGroupingExpression(int expression) {
+    int node = allocate(GROUPING_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    return node;
+  }
+
+  public int addIncrementExpression(int expression) {
+    int node = allocate(INCREMENT_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    return node;
+  }
+
+  public int addDecrementExpression(int expression) {
+    int node = allocate(DECREMENT_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    return node;
+  }
+
+  public int addIdentifierExpression(Token token) {
+    int node = allocate(IDENTIFIER_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = ref(token);
+    return node;
+  }
+
+  public int addArrayExpression(int[] items) {
+    if (items == null) items = new int[0];
+    int node = allocate(ARRAY_EXPRESSION, items.length);
+    int slot = firstSlots[node];
+    int extra = slot + 2;
+    slots[slot] = extra;
+    slots[slot + 1] = items.length;
+    System.arraycopy(items, 0, slots, extra, items.length);
+    extra += items.length;
+    return node;
+  }
+
+  public int addTypedNameExpression(int name, int type) {
+    int node = allocate(TYPED_NAME_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = name;
+    slots[slot + 1] = type;
+    return node;
+  }
+
+  public int addAssignExpression(int expression, int value) {
+    int node = allocate(ASSIGN_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    slots[slot + 1] = value;
+    return node;
+  }
+
+  public int addUpdateExpression(int expression, Token op, int value) {
+    int node = allocate(UPDATE_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    slots[slot + 1] = ref(op);
+    slots[slot + 2] = value;
+    return node;
+  }
+
+  public int addConditionExpression(int expression, int truth, int falsy) {
+    int node = allocate(CONDITION_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    slots[slot + 1] = truth;
+    slots[slot + 2] = falsy;
+    return node;
+  }
+
+  public int addCallExpression(int callee, int[] args) {
+    if (args == null) args = new int[0];
+    int node = allocate(CALL_EXPRESSION, args.length);
+    int slot = firstSlots[node];
+    int extra = slot + 3;
+    slots[slot] = callee;
+    slots[slot + 1] = extra;
+    slots[slot + 2] = args.length;
+    System.arraycopy(args, 0, slots, extra, args.length);
+    extra += args.length;
+    return node;
+  }
+
+  public int addGetExpression(int expression, int name) {
+    int node = allocate(GET_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    slots[slot + 1] = name;
+    return node;
+  }
+
+  public int addSetExpression(int expression, int name, int value) {
+    int node = allocate(SET_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    slots[slot + 1] = name;
+    slots[slot + 2] = value;
+    return node;
+  }
+
+  public int addIndexExpression(int callee, int argument) {
+    int node = allocate(INDEX_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = callee;
+    slots[slot + 1] = argument;
+    return node;
+  }
+
+  public int addSliceExpression(int callee, int lower, int upper) {
+    int node = allocate(SLICE_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = callee;
+    slots[slot + 1] = lower;
+    slots[slot + 2] = upper;
+    return node;
+  }
+
+  public int addDictExpression(int[] keys, int[] values) {
+    if (keys == null) keys = new int[0];
+    if (values == null) values = new int[0];
+    int node = allocate(DICT_EXPRESSION, keys.length + values.length);
+    int slot = firstSlots[node];
+    int extra = slot + 4;
+    slots[slot] = extra;
+    slots[slot + 1] = keys.length;
+    System.arraycopy(keys, 0, slots, extra, keys.length);
+    extra += keys.length;
+    slots[slot + 2] = extra;
+    slots[slot + 3] = values.length;
+    System.arraycopy(values, 0, slots, extra, values.length);
+    extra += values.length;
+    return node;
+  }
+
+  public int addNewExpression(int expression) {
+    int node = allocate(NEW_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    return node;
+  }
+
+  public int addParentExpression() {
+    int node = allocate(PARENT_EXPRESSION, 0);
+    return node;
+  }
+
+  public int addSelfExpression() {
+    int node = allocate(SELF_EXPRESSION, 0);
+    return node;
+  }
+
+  public int addAnonymousExpression(int function) {
+    int node = allocate(ANONYMOUS_EXPRESSION, 0);
+    int slot = firstSlots[node];
+    slots[slot] = function;
+    return node;
+  }
+
+  public int addEchoStatement(int value) {
+    int node = allocate(ECHO_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = value;
+    return node;
+  }
+
+  public int addSimpleStatement(int expression) {
+    int node = allocate(SIMPLE_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    return node;
+  }
+
+  public int addIfStatement(int condition, int thenBranch, int elseBranch) {
+    int node = allocate(IF_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = condition;
+    slots[slot + 1] = thenBranch;
+    slots[slot + 2] = elseBranch;
+    return node;
+  }
+
+  public int addForStatement(int declaration, int condition, int interation, int body) {
+    int node = allocate(FOR_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = declaration;
+    slots[slot + 1] = condition;
+    slots[slot + 2] = interation;
+    slots[slot + 3] = body;
+    slots[slot + 4] = NONE;
+    slots[slot + 5] = NONE;
+    return node;
+  }
+
+  public int addWhileStatement(int condition, int body) {
+    int node = allocate(WHILE_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = condition;
+    slots[slot + 1] = body;
+    slots[slot + 2] = NONE;
+    slots[slot + 3] = NONE;
+    return node;
+  }
+
+  public int addDoWhileStatement(int body, int condition) {
+    int node = allocate(DO_WHILE_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = body;
+    slots[slot + 1] = condition;
+    slots[slot + 2] = NONE;
+    slots[slot + 3] = NONE;
+    return node;
+  }
+
+  public int addContinueStatement() {
+    int node = allocate(CONTINUE_STATEMENT, 0);
+    return node;
+  }
+
+  public int addBreakStatement() {
+    int node = allocate(BREAK_STATEMENT, 0);
+    return node;
+  }
+
+  public int addRaiseStatement(int exception) {
+    int node = allocate(RAISE_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = exception;
+    return node;
+  }
+
+  public int addReturnStatement(int value) {
+    int node = allocate(RETURN_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = value;
+    return node;
+  }
+
+  public int addAssertStatement(int expression, int message) {
+    int node = allocate(ASSERT_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = expression;
+    slots[slot + 1] = message;
+    return node;
+  }
+
+  public int addUsingStatement(int expression, int[] caseLabels, int[] caseBodies, int defaultCase) {
+    if (caseLabels == null) caseLabels = new int[0];
+    if (caseBodies == null) caseBodies = new int[0];
+    int node = allocate(USING_STATEMENT, caseLabels.length + caseBodies.length);
+    int slot = firstSlots[node];
+    int extra = slot + 6;
+    slots[slot] = expression;
+    slots[slot + 1] = extra;
+    slots[slot + 2] = caseLabels.length;
+    System.arraycopy(caseLabels, 0, slots, extra, caseLabels.length);
+    extra += caseLabels.length;
+    slots[slot + 3] = extra;
+    slots[slot + 4] = caseBodies.length;
+    System.arraycopy(caseBodies, 0, slots, extra, caseBodies.length);
+    extra += caseBodies.length;
+    slots[slot + 5] = defaultCase;
+    return node;
+  }
+
+  public int addImportStatement(String path, List<Token> elements, boolean all) {
+    if (elements == null) elements = List.of();
+    int node = allocate(IMPORT_STATEMENT, elements.size());
+    int slot = firstSlots[node];
+    int extra = slot + 4;
+    slots[slot] = ref(path);
+    slots[slot + 1] = extra;
+    slots[slot + 2] = elements.size();
+    for (Token token : elements) {
+      slots[extra++] = ref(token);
+    }
+    slots[slot + 3] = all ? 1 : 0;
+    return node;
+  }
+
+  public int addCatchStatement(int body, int catchBody, int finallyBody, int name) {
+    int node = allocate(CATCH_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = body;
+    slots[slot + 1] = catchBody;
+    slots[slot + 2] = finallyBody;
+    slots[slot + 3] = name;
+    return node;
+  }
+
+  public int addVarStatement(int typedName, int value, boolean isConstant) {
+    int node = allocate(VAR_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = typedName;
+    slots[slot + 1] = value;
+    slots[slot + 2] = isConstant ? 1 : 0;
+    return node;
+  }
+
+  public int addVarListStatement(int[] declarations) {
+    if (declarations == null) declarations = new int[0];
+    int node = allocate(VAR_LIST_STATEMENT, declarations.length);
+    int slot = firstSlots[node];
+    int extra = slot + 2;
+    slots[slot] = extra;
+    slots[slot + 1] = declarations.length;
+    System.arraycopy(declarations, 0, slots, extra, declarations.length);
+    extra += declarations.length;
+    return node;
+  }
+
+  public int addBlockStatement(int[] body) {
+    if (body == null) body = new int[0];
+    int node = allocate(BLOCK_STATEMENT, body.length);
+    int slot = firstSlots[node];
+    int extra = slot + 2;
+    slots[slot] = extra;
+    slots[slot + 1] = body.length;
+    System.arraycopy(body, 0, slots, extra, body.length);
+    extra += body.length;
+    return node;
+  }
+
+  public int addExternStatement(Token name, int[] parameters, int returnType, boolean isVariadic) {
+    if (parameters == null) parameters = new int[0];
+    int node = allocate(EXTERN_STATEMENT, parameters.length);
+    int slot = firstSlots[node];
+    int extra = slot + 5;
+    slots[slot] = ref(name);
+    slots[slot + 1] = extra;
+    slots[slot + 2] = parameters.length;
+    System.arraycopy(parameters, 0, slots, extra, parameters.length);
+    extra += parameters.length;
+    slots[slot + 3] = returnType;
+    slots[slot + 4] = isVariadic ? 1 : 0;
+    return node;
+  }
+
+  public int addFunctionStatement(Token name, int[] parameters, int returnType, int body, boolean isVariadic) {
+    if (parameters == null) parameters = new int[0];
+    int node = allocate(FUNCTION_STATEMENT, parameters.length);
+    int slot = firstSlots[node];
+    int extra = slot + 6;
+    slots[slot] = ref(name);
+    slots[slot + 1] = extra;
+    slots[slot + 2] = parameters.length;
+    System.arraycopy(parameters, 0, slots, extra, parameters.length);
+    extra += parameters.length;
+    slots[slot + 3] = returnType;
+    slots[slot + 4] = body;
+    slots[slot + 5] = isVariadic ? 1 : 0;
+    return node;
+  }
+
+  public int addMethodStatement(Token name, int[] parameters, int returnType, int body, boolean isVariadic, boolean isStatic) {
+    if (parameters == null) parameters = new int[0];
+    int node = allocate(METHOD_STATEMENT, parameters.length);
+    int slot = firstSlots[node];
+    int extra = slot + 7;
+    slots[slot] = ref(name);
+    slots[slot + 1] = extra;
+    slots[slot + 2] = parameters.length;
+    System.arraycopy(parameters, 0, slots, extra, parameters.length);
+    extra += parameters.length;
+    slots[slot + 3] = returnType;
+    slots[slot + 4] = body;
+    slots[slot + 5] = isVariadic ? 1 : 0;
+    slots[slot + 6] = isStatic ? 1 : 0;
+    return node;
+  }
+
+  public int addPropertyStatement(int name, int value, boolean isStatic, boolean isConstant) {
+    int node = allocate(PROPERTY_STATEMENT, 0);
+    int slot = firstSlots[node];
+    slots[slot] = name;
+    slots[slot + 1] = value;
+    slots[slot + 2] = isStatic ? 1 : 0;
+    slots[slot + 3] = isConstant ? 1 : 0;
+    return node;
+  }
+
+  public int addClassStatement(Token name, int superclass, int[] properties, int[] methods, int[] operators) {
+    if (properties == null) properties = new int[0];
+    if (methods == null) methods = new int[0];
+    if (operators == null) operators = new int[0];
+    int node = allocate(CLASS_STATEMENT, properties.length + methods.length + operators.length);
+    int slot = firstSlots[node];
+    int extra = slot + 8;
+    slots[slot] = ref(name);
+    slots[slot + 1] = superclass;
+    slots[slot + 2] = extra;
+    slots[slot + 3] = properties.length;
+    System.arraycopy(properties, 0, slots, extra, properties.length);
+    extra += properties.length;
+    slots[slot + 4] = extra;
+    slots[slot + 5] = methods.length;
+    System.arraycopy(methods, 0, slots, extra, methods.length);
+    extra += methods.length;
+    slots[slot + 6] = extra;
+    slots[slot + 7] = operators.length;
+    System.arraycopy(operators, 0, slots, extra, operators.length);
+    extra += operators.length;
+    return node;
+  }
+
+  private int allocate(byte kind, int extraSlots) {
+    if (size == kinds.length) {
+      resize(size + (size >> 1) + 16);
+    }
+
+    int needed = slotSize + SLOTS[kind] + extraSlots;
+    if (needed > slots.length) {
+      slots = Arrays.copyOf(slots, Math.max(needed, slots.length + (slots.length >> 1)));
+    }
+
+    kinds[size] = kind;
+    spans[size] = AST.NO_SPAN;
+    firstSlots[size] = slotSize;
+    slotSize = needed;
+    return size++;
+  }
+
+  private void resize(int capacity) {
+    kinds = Arrays.copyOf(kinds, capacity);
+    spans = Arrays.copyOf(spans, capacity);
+    firstSlots = Arrays.copyOf(firstSlots, capacity);
+  }
+
+  private int ref(Object value) {
+    if (value == null) return NONE;
+
+    if (refSize == refs.length) {
+      refs = Arrays.copyOf(refs, refSize + (refSize >> 1) + 16);
+    }
+
+    refs[refSize] = value;
+    return refSize++;
+  }
+
+  private Object deref(int ref) {
+    return ref == NONE ? null : refs[ref];
+  }
+
+  //endregion
+
+  //region [Rebuilding]
+
+  /**
+   * Rebuilds the tree stored at the node as {@link AST} objects with their
+   * spans, or returns null for {@link #NONE}. Fields that start unset are
+   * left unset.
+   */
+  public AST toAST(int node) {
+    if (node == NONE) return null;
+
+    int slot = firstSlots[node];
+    AST result;
+
+    switch (kinds[node]) {
+      case VOID_TYPED:
+        result = new Typed.Void();
+        break;
+      case ID_TYPED:
+        result = new Typed.Id((Expression.Identifier) toAST(slots[slot]));
+        break;
+      case ARRAY_TYPED:
+        result = new Typed.Array((Typed) toAST(slots[slot]), slots[slot + 1]);
+        break;
+      case VECTOR_TYPED:
+        result = new Typed.Vector((Typed) toAST(slots[slot]));
+        break;
+      case MAP_TYPED:
+        result = new Typed.Map((Typed) toAST(slots[slot]), (Typed) toAST(slots[slot + 1]));
+        break;
+      case NIL_EXPRESSION:
+        result = new Expression.Nil();
+        break;
+      case BOOLEAN_EXPRESSION:
+        result = new Expression.Boolean(slots[slot] != 0);
+        break;
+      case INT32_EXPRESSION:
+        result = new Expression.Int32(slots[slot]);
+        break;
+      case INT64_EXPRESSION:
+        result = new Expression.Int64(((long) slots[slot] << 32 | slots[slot + 1] & 0xffffffffL));
+        break;
+      case FLOAT32_EXPRESSION:
+        result = new Expression.Float32(Float.intBitsToFloat(slots[slot]));
+        break;
+      case FLOAT64_EXPRESSION:
+        result = new Expression.Float64(Double.longBitsToDouble(((long) slots[slot] << 32 | slots[slot + 1] & 0xffffffffL)));
+        break;
+      case LITERAL_EXPRESSION:
+        result = new Expression.Literal((Token) deref(slots[slot]));
+        break;
+      case UNARY_EXPRESSION:
+        result = new Expression.Unary((Token) deref(slots[slot]), (Expression) toAST(slots[slot + 1]));
+        break;
+      case BINARY_EXPRESSION:
+        result = new Expression.Binary((Expression) toAST(slots[slot]), (Token) deref(slots[slot + 1]), (Expression) toAST(slots[slot + 2]));
+        break;
+      case LOGICAL_EXPRESSION:
+        result = new Expression.Logical((Expression) toAST(slots[slot]), (Token) deref(slots[slot + 1]), (Expression) toAST(slots[slot + 2]));
+        break;
+      case RANGE_EXPRESSION:
+        result = new Expression.Range((Expression) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]));
+        break;
+      case GROUPING_EXPRESSION:
+        result = new Expression.Grouping((Expression) toAST(slots[slot]));
+        break;
+      case INCREMENT_EXPRESSION:
+        result = new Expression.Increment((Expression) toAST(slots[slot]));
+        break;
+      case DECREMENT_EXPRESSION:
+        result = new Expression.Decrement((Expression) toAST(slots[slot]));
+        break;
+      case IDENTIFIER_EXPRESSION:
+        result = new Expression.Identifier((Token) deref(slots[slot]));
+        break;
+      case ARRAY_EXPRESSION:
+        result = new Expression.Array(toASTs(slots[slot], slots[slot + 1]));
+        break;
+      case TYPED_NAME_EXPRESSION:
+        result = new Expression.TypedName((Expression.Identifier) toAST(slots[slot]), (Typed) toAST(slots[slot + 1]));
+        break;
+      case ASSIGN_EXPRESSION:
+        result = new Expression.Assign((Expression) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]));
+        break;
+      case UPDATE_EXPRESSION:
+        result = new Expression.Update((Expression) toAST(slots[slot]), (Token) deref(slots[slot + 1]), (Expression) toAST(slots[slot + 2]));
+        break;
+      case CONDITION_EXPRESSION:
+        result = new Expression.Condition((Expression) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]), (Expression) toAST(slots[slot + 2]));
+        break;
+      case CALL_EXPRESSION:
+        result = new Expression.Call((Expression) toAST(slots[slot]), toASTs(slots[slot + 1], slots[slot + 2]));
+        break;
+      case GET_EXPRESSION:
+        result = new Expression.Get((Expression) toAST(slots[slot]), (Expression.Identifier) toAST(slots[slot + 1]));
+        break;
+      case SET_EXPRESSION:
+        result = new Expression.Set((Expression) toAST(slots[slot]), (Expression.Identifier) toAST(slots[slot + 1]), (Expression) toAST(slots[slot + 2]));
+        break;
+      case INDEX_EXPRESSION:
+        result = new Expression.Index((Expression) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]));
+        break;
+      case SLICE_EXPRESSION:
+        result = new Expression.Slice((Expression) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]), (Expression) toAST(slots[slot + 2]));
+        break;
+      case DICT_EXPRESSION:
+        result = new Expression.Dict(toASTs(slots[slot], slots[slot + 1]), toASTs(slots[slot + 2], slots[slot + 3]));
+        break;
+      case NEW_EXPRESSION:
+        result = new Expression.New((Expression) toAST(slots[slot]));
+        break;
+      case PARENT_EXPRESSION:
+        result = new Expression.Parent();
+        break;
+      case SELF_EXPRESSION:
+        result = new Expression.Self();
+        break;
+      case ANONYMOUS_EXPRESSION:
+        result = new Expression.Anonymous((Statement.Function) toAST(slots[slot]));
+        break;
+      case ECHO_STATEMENT:
+        result = new Statement.Echo((Expression) toAST(slots[slot]));
+        break;
+      case SIMPLE_STATEMENT:
+        result = new Statement.Simple((Expression) toAST(slots[slot]));
+        break;
+      case IF_STATEMENT:
+        result = new Statement.If((Expression) toAST(slots[slot]), (Statement) toAST(slots[slot + 1]), (Statement) toAST(slots[slot + 2]));
+        break;
+      case FOR_STATEMENT:
+        result = new Statement.For((Statement) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]), (Statement.Simple) toAST(slots[slot + 2]), (Statement.Block) toAST(slots[slot + 3]));
+        break;
+      case WHILE_STATEMENT:
+        result = new Statement.While((Expression) toAST(slots[slot]), (Statement.Block) toAST(slots[slot + 1]));
+        break;
+      case DO_WHILE_STATEMENT:
+        result = new Statement.DoWhile((Statement.Block) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]));
+        break;
+      case CONTINUE_STATEMENT:
+        result = new Statement.Continue();
+        break;
+      case BREAK_STATEMENT:
+        result = new Statement.Break();
+        break;
+      case RAISE_STATEMENT:
+        result = new Statement.Raise((Expression) toAST(slots[slot]));
+        break;
+      case RETURN_STATEMENT:
+        result = new Statement.Return((Expression) toAST(slots[slot]));
+        break;
+      case ASSERT_STATEMENT:
+        result = new Statement.Assert((Expression) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]));
+        break;
+      case USING_STATEMENT:
+        result = new Statement.Using((Expression) toAST(slots[slot]), toASTs(slots[slot + 1], slots[slot + 2]), toASTs(slots[slot + 3], slots[slot + 4]), (Statement) toAST(slots[slot + 5]));
+        break;
+      case IMPORT_STATEMENT:
+        result = new Statement.Import((String) deref(slots[slot]), tokens(slots[slot + 1], slots[slot + 2]), slots[slot + 3] != 0);
+        break;
+      case CATCH_STATEMENT:
+        result = new Statement.Catch((Statement.Block) toAST(slots[slot]), (Statement.Block) toAST(slots[slot + 1]), (Statement.Block) toAST(slots[slot + 2]), (Expression.Identifier) toAST(slots[slot + 3]));
+        break;
+      case VAR_STATEMENT:
+        result = new Statement.Var((Expression.TypedName) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]), slots[slot + 2] != 0);
+        break;
+      case VAR_LIST_STATEMENT:
+        result = new Statement.VarList(toASTs(slots[slot], slots[slot + 1]));
+        break;
+      case BLOCK_STATEMENT:
+        result = new Statement.Block(toASTs(slots[slot], slots[slot + 1]));
+        break;
+      case EXTERN_STATEMENT:
+        result = new Statement.Extern((Token) deref(slots[slot]), toASTs(slots[slot + 1], slots[slot + 2]), (Typed) toAST(slots[slot + 3]), slots[slot + 4] != 0);
+        break;
+      case FUNCTION_STATEMENT:
+        result = new Statement.Function((Token) deref(slots[slot]), toASTs(slots[slot + 1], slots[slot + 2]), (Typed) toAST(slots[slot + 3]), (Statement.Block) toAST(slots[slot + 4]), slots[slot + 5] != 0);
+        break;
+      case METHOD_STATEMENT:
+        result = new Statement.Method((Token) deref(slots[slot]), toASTs(slots[slot + 1], slots[slot + 2]), (Typed) toAST(slots[slot + 3]), (Statement.Block) toAST(slots[slot + 4]), slots[slot + 5] != 0, slots[slot + 6] != 0);
+        break;
+      case PROPERTY_STATEMENT:
+        result = new Statement.Property((Expression.TypedName) toAST(slots[slot]), (Expression) toAST(slots[slot + 1]), slots[slot + 2] != 0, slots[slot + 3] != 0);
+        break;
+      case CLASS_STATEMENT:
+        result = new Statement.Class((Token) deref(slots[slot]), (Expression.Identifier) toAST(slots[slot + 1]), toASTs(slots[slot + 2], slots[slot + 3]), toASTs(slots[slot + 4], slots[slot + 5]), toASTs(slots[slot + 6], slots[slot + 7]));
+        break;
+      default:
+        throw new IllegalStateException("unknown node kind " + kinds[node]);
+    }
+
+    result.span = spans[node];
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends AST> List<T> toASTs(int start, int size) {
+    List<T> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add((T) toAST(slots[start + i]));
+    }
+
+    return result;
+  }
+
+  private List<Token> tokens(int start, int size) {
+    List<Token> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add((Token) deref(slots[start + i]));
+    }
+
+    return result;
+  }
+
+  //endregion
+
+  //region [Storing]
+
+  private static final byte NULL_REF = 0;
+  private static final byte STRING_REF = 1;
+  private static final byte TOKEN_REF = 2;
+
+  /**
+   * Writes the stored nodes, in the layout {@link #readFrom(ByteBuffer)} reads.
+   *
+   * @throws IllegalArgumentException if a field holds an object that is not a token or a string.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(size);
+    out.writeInt(slotSize);
+    out.writeInt(refSize);
+    out.write(kinds, 0, size);
+
+    for (int i = 0; i < size; i++) {
+      out.writeLong(spans[i]);
+    }
+
+    for (int i = 0; i < size; i++) {
+      out.writeInt(firstSlots[i]);
+    }
+
+    for (int i = 0; i < slotSize; i++) {
+      out.writeInt(slots[i]);
+    }
+
+    for (int i = 0; i < refSize; i++) {
+      writeRef(out, refs[i]);
+    }
+  }
+
+  /**
+   * Reads nodes written by {@link #writeTo(DataOutput)}, starting at the
+   * position of the buffer and leaving it after them. The columns are
+   * copied out of the buffer in bulk.
+   */
+  public static AstArena readFrom(ByteBuffer in) {
+    int size = in.getInt();
+    int slotSize = in.getInt();
+    int refSize = in.getInt();
+
+    AstArena arena = new AstArena(size);
+    arena.slots = new int[slotSize];
+    arena.refs = new Object[refSize];
+    in.get(arena.kinds, 0, size);
+    in.asLongBuffer().get(arena.spans, 0, size);
+    in.position(in.position() + size * Long.BYTES);
+    in.asIntBuffer().get(arena.firstSlots, 0, size);
+    in.position(in.position() + size * Integer.BYTES);
+    in.asIntBuffer().get(arena.slots, 0, slotSize);
+    in.position(in.position() + slotSize * Integer.BYTES);
+
+    for (int i = 0; i < refSize; i++) {
+      arena.refs[i] = readRef(in);
+    }
+
+    arena.size = size;
+    arena.slotSize = slotSize;
+    arena.refSize = refSize;
+    return arena;
+  }
+
+  /**
+   * Writes a token, a string or null the way the arena writes its fields.
+   */
+  public static void writeRef(DataOutput out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL_REF);
+    } else if (value instanceof String string) {
+      out.writeByte(STRING_REF);
+      writeString(out, string);
+    } else if (value instanceof Token token) {
+      out.writeByte(TOKEN_REF);
+      out.writeShort(token.type().ordinal());
+      writeString(out, token.literal());
+      out.writeInt(token.line());
+      out.writeInt(token.offset());
+    } else {
+      throw new IllegalArgumentException("cannot write " + value.getClass().getSimpleName());
+    }
+  }
+
+  /**
+   * Reads a value written by {@link #writeRef(DataOutput, Object)}.
+   * Identifiers are interned again as they are read.
+   */
+  public static Object readRef(ByteBuffer in) {
+    byte tag = in.get();
+    switch (tag) {
+      case NULL_REF:
+        return null;
+      case STRING_REF:
+        return readString(in);
+      case TOKEN_REF:
+        TokenType type = TokenType.values()[in.getShort()];
+        String literal = readString(in);
+        int line = in.getInt();
+        return new Token(type, literal, line, in.getInt());
+      default:
+        throw new IllegalStateException("unknown value tag " + tag);
+    }
+  }
+
+  private static void writeString(DataOutput out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  //endregion
+
+  /**
+   * Adds each node it visits and leaves the index in last.
+   */
+  private class Importer implements Typed.VoidVisitor, Expression.VoidVisitor, Statement.VoidVisitor {
+    int last = NONE;
+
+    @Override
+    public void visitVoidTyped(Typed.Void node) {
+      last = addVoidTyped();
+    }
+
+    @Override
+    public void visitIdTyped(Typed.Id node) {
+      last = addIdTyped(add(node.name));
+    }
+
+    @Override
+    public void visitArrayTyped(Typed.Array node) {
+      last = addArrayTyped(add(node.type), node.size);
+    }
+
+    @Override
+    public void visitVectorTyped(Typed.Vector node) {
+      last = addVectorTyped(add(node.type));
+    }
+
+    @Override
+    public void visitMapTyped(Typed.Map node) {
+      last = addMapTyped(add(node.keyType), add(node.valueType));
+    }
+
+    @Override
+    public void visitNilExpression(Expression.Nil node) {
+      last = addNilExpression();
+    }
+
+    @Override
+    public void visitBooleanExpression(Expression.Boolean node) {
+      last = addBooleanExpression(node.value);
+    }
+
+    @Override
+    public void visitInt32Expression(Expression.Int32 node) {
+      last = addInt32Expression(node.value);
+    }
+
+    @Override
+    public void visitInt64Expression(Expression.Int64 node) {
+      last = addInt64Expression(node.value);
+    }
+
+    @Override
+    public void visitFloat32Expression(Expression.Float32 node) {
+      last = addFloat32Expression(node.value);
+    }
+
+    @Override
+    public void visitFloat64Expression(Expression.Float64 node) {
+      last = addFloat64Expression(node.value);
+    }
+
+    @Override
+    public void visitLiteralExpression(Expression.Literal node) {
+      last = addLiteralExpression(node.token);
+    }
+
+    @Override
+    public void visitUnaryExpression(Expression.Unary node) {
+      last = addUnaryExpression(node.op, add(node.right));
+    }
+
+    @Override
+    public void visitBinaryExpression(Expression.Binary node) {
+      last = addBinaryExpression(add(node.left), node.op, add(node.right));
+    }
+
+    @Override
+    public void visitLogicalExpression(Expression.Logical node) {
+      last = addLogicalExpression(add(node.left), node.op, add(node.right));
+    }
+
+    @Override
+    public void visitRangeExpression(Expression.Range node) {
+      last = addRangeExpression(add(node.lower), add(node.upper));
+    }
+
+    @Override
+    public void visitGroupingExpression(Expression.Grouping node) {
+      last = addGroupingExpression(add(node.expression));
+    }
+
+    @Override
+    public void visitIncrementExpression(Expression.Increment node) {
+      last = addIncrementExpression(add(node.expression));
+    }
+
+    @Override
+    public void visitDecrementExpression(Expression.Decrement node) {
+      last = addDecrementExpression(add(node.expression));
+    }
+
+    @Override
+    public void visitIdentifierExpression(Expression.Identifier node) {
+      last = addIdentifierExpression(node.token);
+    }
+
+    @Override
+    public void visitArrayExpression(Expression.Array node) {
+      last = addArrayExpression(addAll(node.items));
+    }
+
+    @Override
+    public void visitTypedNameExpression(Expression.TypedName node) {
+      last = addTypedNameExpression(add(node.name), add(node.type));
+    }
+
+    @Override
+    public void visitAssignExpression(Expression.Assign node) {
+      last = addAssignExpression(add(node.expression), add(node.value));
+    }
+
+    @Override
+    public void visitUpdateExpression(Expression.Update node) {
+      last = addUpdateExpression(add(node.expression), node.op, add(node.value));
+    }
+
+    @Override
+    public void visitConditionExpression(Expression.Condition node) {
+      last = addConditionExpression(add(node.expression), add(node.truth), add(node.falsy));
+    }
+
+    @Override
+    public void visitCallExpression(Expression.Call node) {
+      last = addCallExpression(add(node.callee), addAll(node.args));
+    }
+
+    @Override
+    public void visitGetExpression(Expression.Get node) {
+      last = addGetExpression(add(node.expression), add(node.name));
+    }
+
+    @Override
+    public void visitSetExpression(Expression.Set node) {
+      last = addSetExpression(add(node.expression), add(node.name), add(node.value));
+    }
+
+    @Override
+    public void visitIndexExpression(Expression.Index node) {
+      last = addIndexExpression(add(node.callee), add(node.argument));
+    }
+
+    @Override
+    public void visitSliceExpression(Expression.Slice node) {
+      last = addSliceExpression(add(node.callee), add(node.lower), add(node.upper));
+    }
+
+    @Override
+    public void visitDictExpression(Expression.Dict node) {
+      last = addDictExpression(addAll(node.keys), addAll(node.values));
+    }
+
+    @Override
+    public void visitNewExpression(Expression.New node) {
+      last = addNewExpression(add(node.expression));
+    }
+
+    @Override
+    public void visitParentExpression(Expression.Parent node) {
+      last = addParentExpression();
+    }
+
+    @Override
+    public void visitSelfExpression(Expression.Self node) {
+      last = addSelfExpression();
+    }
+
+    @Override
+    public void visitAnonymousExpression(Expression.Anonymous node) {
+      last = addAnonymousExpression(add(node.function));
+    }
+
+    @Override
+    public void visitEchoStatement(Statement.Echo node) {
+      last = addEchoStatement(add(node.value));
+    }
+
+    @Override
+    public void visitSimpleStatement(Statement.Simple node) {
+      last = addSimpleStatement(add(node.expression));
+    }
+
+    @Override
+    public void visitIfStatement(Statement.If node) {
+      last = addIfStatement(add(node.condition), add(node.thenBranch), add(node.elseBranch));
+    }
+
+    @Override
+    public void visitForStatement(Statement.For node) {
+      last = addForStatement(add(node.declaration), add(node.condition), add(node.interation), add(node.body));
+    }
+
+    @Override
+    public void visitWhileStatement(Statement.While node) {
+      last = addWhileStatement(add(node.condition), add(node.body));
+    }
+
+    @Override
+    public void visitDoWhileStatement(Statement.DoWhile node) {
+      last = addDoWhileStatement(add(node.body), add(node.condition));
+    }
+
+    @Override
+    public void visitContinueStatement(Statement.Continue node) {
+      last = addContinueStatement();
+    }
+
+    @Override
+    public void visitBreakStatement(Statement.Break node) {
+      last = addBreakStatement();
+    }
+
+    @Override
+    public void visitRaiseStatement(Statement.Raise node) {
+      last = addRaiseStatement(add(node.exception));
+    }
+
+    @Override
+    public void visitReturnStatement(Statement.Return node) {
+      last = addReturnStatement(add(node.value));
+    }
+
+    @Override
+    public void visitAssertStatement(Statement.Assert node) {
+      last = addAssertStatement(add(node.expression), add(node.message));
+    }
+
+    @Override
+    public void visitUsingStatement(Statement.Using node) {
+      last = addUsingStatement(add(node.expression), addAll(node.caseLabels), addAll(node.caseBodies), add(node.defaultCase));
+    }
+
+    @Override
+    public void visitImportStatement(Statement.Import node) {
+      last = addImportStatement(node.path, node.elements, node.all);
+    }
+
+    @Override
+    public void visitCatchStatement(Statement.Catch node) {
+      last = addCatchStatement(add(node.body), add(node.catchBody), add(node.finallyBody), add(node.name));
+    }
+
+    @Override
+    public void visitVarStatement(Statement.Var node) {
+      last = addVarStatement(add(node.typedName), add(node.value), node.isConstant);
+    }
+
+    @Override
+    public void visitVarListStatement(Statement.VarList node) {
+      last = addVarListStatement(addAll(node.declarations));
+    }
+
+    @Override
+    public void visitBlockStatement(Statement.Block node) {
+      last = addBlockStatement(addAll(node.body));
+    }
+
+    @Override
+    public void visitExternStatement(Statement.Extern node) {
+      last = addExternStatement(node.name, addAll(node.parameters), add(node.returnType), node.isVariadic);
+    }
+
+    @Override
+    public void visitFunctionStatement(Statement.Function node) {
+      last = addFunctionStatement(node.name, addAll(node.parameters), add(node.returnType), add(node.body), node.isVariadic);
+    }
+
+    @Override
+    public void visitMethodStatement(Statement.Method node) {
+      last = addMethodStatement(node.name, addAll(node.parameters), add(node.returnType), add(node.body), node.isVariadic, node.isStatic);
+    }
+
+    @Override
+    public void visitPropertyStatement(Statement.Property node) {
+      last = addPropertyStatement(add(node.name), add(node.value), node.isStatic, node.isConstant);
+    }
+
+    @Override
+    public void visitClassStatement(Statement.Class node) {
+      last = addClassStatement(node.name, add(node.superclass), addAll(node.properties), addAll(node.methods), addAll(node.operators));
+    }
+
+    @Override
+    public void visitTyped(Typed node) {
+    }
+
+    @Override
+    public void visitExpression(Expression node) {
+    }
+
+    @Override
+    public void visitStatement(Statement node) {
+    }
+  }
+
+  public interface Visitor<T> {
+    T visitVoidTyped(VoidTyped node);
+    T visitIdTyped(IdTyped node);
+    T visitArrayTyped(ArrayTyped node);
+    T visitVectorTyped(VectorTyped node);
+    T visitMapTyped(MapTyped node);
+    T visitNilExpression(NilExpression node);
+    T visitBooleanExpression(BooleanExpression node);
+    T visitInt32Expression(Int32Expression node);
+    T visitInt64Expression(Int64Expression node);
+    T visitFloat32Expression(Float32Expression node);
+    T visitFloat64Expression(Float64Expression node);
+    T visitLiteralExpression(LiteralExpression node);
+    T visitUnaryExpression(UnaryExpression node);
+    T visitBinaryExpression(BinaryExpression node);
+    T visitLogicalExpression(LogicalExpression node);
+    T visitRangeExpression(RangeExpression node);
+    T visitGroupingExpression(GroupingExpression node);
+    T visitIncrementExpression(IncrementExpression node);
+    T visitDecrementExpression(DecrementExpression node);
+    T visitIdentifierExpression(IdentifierExpression node);
+    T visitArrayExpression(ArrayExpression node);
+    T visitTypedNameExpression(TypedNameExpression node);
+    T visitAssignExpression(AssignExpression node);
+    T visitUpdateExpression(UpdateExpression node);
+    T visitConditionExpression(ConditionExpression node);
+    T visitCallExpression(CallExpression node);
+    T visitGetExpression(GetExpression node);
+    T visitSetExpression(SetExpression node);
+    T visitIndexExpression(IndexExpression node);
+    T visitSliceExpression(SliceExpression node);
+    T visitDictExpression(DictExpression node);
+    T visitNewExpression(NewExpression node);
+    T visitParentExpression(ParentExpression node);
+    T visitSelfExpression(SelfExpression node);
+    T visitAnonymousExpression(AnonymousExpression node);
+    T visitEchoStatement(EchoStatement node);
+    T visitSimpleStatement(SimpleStatement node);
+    T visitIfStatement(IfStatement node);
+    T visitForStatement(ForStatement node);
+    T visitWhileStatement(WhileStatement node);
+    T visitDoWhileStatement(DoWhileStatement node);
+    T visitContinueStatement(ContinueStatement node);
+    T visitBreakStatement(BreakStatement node);
+    T visitRaiseStatement(RaiseStatement node);
+    T visitReturnStatement(ReturnStatement node);
+    T visitAssertStatement(AssertStatement node);
+    T visitUsingStatement(UsingStatement node);
+    T visitImportStatement(ImportStatement node);
+    T visitCatchStatement(CatchStatement node);
+    T visitVarStatement(VarStatement node);
+    T visitVarListStatement(VarListStatement node);
+    T visitBlockStatement(BlockStatement node);
+    T visitExternStatement(ExternStatement node);
+    T visitFunctionStatement(FunctionStatement node);
+    T visitMethodStatement(MethodStatement node);
+    T visitPropertyStatement(PropertyStatement node);
+    T visitClassStatement(ClassStatement node);
+  }
+
+  /**
+   * A view of a node of any kind.
+   */
+  public static abstract class Node {
+    protected final AstArena arena;
+    protected final int id;
+
+    Node(AstArena arena, int id) {
+      this.arena = arena;
+      this.id = id;
+    }
+
+    public int id() {
+      return id;
+    }
+
+    public byte kind() {
+      return arena.kinds[id];
+    }
+
+    public long span() {
+      return arena.spans[id];
+    }
+
+    protected int slot(int offset) {
+      return arena.slots[arena.firstSlots[id] + offset];
+    }
+
+    public abstract <T> T accept(Visitor<T> visitor);
+  }
+
+  public static final class VoidTyped extends Node {
+    VoidTyped(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitVoidTyped(this);
+    }
+  }
+
+  public static final class IdTyped extends Node {
+    IdTyped(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int name() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitIdTyped(this);
+    }
+  }
+
+  public static final class ArrayTyped extends Node {
+    ArrayTyped(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int type() {
+      return slot(0);
+    }
+
+    public int size() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitArrayTyped(this);
+    }
+  }
+
+  public static final class VectorTyped extends Node {
+    VectorTyped(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int type() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitVectorTyped(this);
+    }
+  }
+
+  public static final class MapTyped extends Node {
+    MapTyped(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int keyType() {
+      return slot(0);
+    }
+
+    public int valueType() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitMapTyped(this);
+    }
+  }
+
+  public static final class NilExpression extends Node {
+    NilExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitNilExpression(this);
+    }
+  }
+
+  public static final class BooleanExpression extends Node {
+    BooleanExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public boolean value() {
+      return slot(0) != 0;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitBooleanExpression(this);
+    }
+  }
+
+  public static final class Int32Expression extends Node {
+    Int32Expression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int value() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitInt32Expression(this);
+    }
+  }
+
+  public static final class Int64Expression extends Node {
+    Int64Expression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public long value() {
+      return ((long) slot(0) << 32) | (slot(1) & 0xffffffffL);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitInt64Expression(this);
+    }
+  }
+
+  public static final class Float32Expression extends Node {
+    Float32Expression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public float value() {
+      return Float.intBitsToFloat(slot(0));
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitFloat32Expression(this);
+    }
+  }
+
+  public static final class Float64Expression extends Node {
+    Float64Expression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public double value() {
+      return Double.longBitsToDouble(((long) slot(0) << 32) | (slot(1) & 0xffffffffL));
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitFloat64Expression(this);
+    }
+  }
+
+  public static final class LiteralExpression extends Node {
+    LiteralExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public Token token() {
+      return (Token) arena.deref(slot(0));
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitLiteralExpression(this);
+    }
+  }
+
+  public static final class UnaryExpression extends Node {
+    UnaryExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public Token op() {
+      return (Token) arena.deref(slot(0));
+    }
+
+    public int right() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitUnaryExpression(this);
+    }
+  }
+
+  public static final class BinaryExpression extends Node {
+    BinaryExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int left() {
+      return slot(0);
+    }
+
+    public Token op() {
+      return (Token) arena.deref(slot(1));
+    }
+
+    public int right() {
+      return slot(2);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitBinaryExpression(this);
+    }
+  }
+
+  public static final class LogicalExpression extends Node {
+    LogicalExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int left() {
+      return slot(0);
+    }
+
+    public Token op() {
+      return (Token) arena.deref(slot(1));
+    }
+
+    public int right() {
+      return slot(2);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitLogicalExpression(this);
+    }
+  }
+
+  public static final class RangeExpression extends Node {
+    RangeExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int lower() {
+      return slot(0);
+    }
+
+    public int upper() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitRangeExpression(this);
+    }
+  }
+
+  public static final class GroupingExpression extends Node {
+    GroupingExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitGroupingExpression(this);
+    }
+  }
+
+  public static final class IncrementExpression extends Node {
+    IncrementExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitIncrementExpression(this);
+    }
+  }
+
+  public static final class DecrementExpression extends Node {
+    DecrementExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitDecrementExpression(this);
+    }
+  }
+
+  public static final class IdentifierExpression extends Node {
+    IdentifierExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public Token token() {
+      return (Token) arena.deref(slot(0));
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitIdentifierExpression(this);
+    }
+  }
+
+  public static final class ArrayExpression extends Node {
+    ArrayExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int itemsSize() {
+      return slot(1);
+    }
+
+    public int items(int index) {
+      Objects.checkIndex(index, slot(1));
+      return arena.slots[slot(0) + index];
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitArrayExpression(this);
+    }
+  }
+
+  public static final class TypedNameExpression extends Node {
+    TypedNameExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int name() {
+      return slot(0);
+    }
+
+    public int type() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitTypedNameExpression(this);
+    }
+  }
+
+  public static final class AssignExpression extends Node {
+    AssignExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    public int value() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitAssignExpression(this);
+    }
+  }
+
+  public static final class UpdateExpression extends Node {
+    UpdateExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    public Token op() {
+      return (Token) arena.deref(slot(1));
+    }
+
+    public int value() {
+      return slot(2);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitUpdateExpression(this);
+    }
+  }
+
+  public static final class ConditionExpression extends Node {
+    ConditionExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    public int truth() {
+      return slot(1);
+    }
+
+    public int falsy() {
+      return slot(2);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitConditionExpression(this);
+    }
+  }
+
+  public static final class CallExpression extends Node {
+    CallExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int callee() {
+      return slot(0);
+    }
+
+    public int argsSize() {
+      return slot(2);
+    }
+
+    public int args(int index) {
+      Objects.checkIndex(index, slot(2));
+      return arena.slots[slot(1) + index];
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitCallExpression(this);
+    }
+  }
+
+  public static final class GetExpression extends Node {
+    GetExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    public int name() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitGetExpression(this);
+    }
+  }
+
+  public static final class SetExpression extends Node {
+    SetExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    public int name() {
+      return slot(1);
+    }
+
+    public int value() {
+      return slot(2);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitSetExpression(this);
+    }
+  }
+
+  public static final class IndexExpression extends Node {
+    IndexExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int callee() {
+      return slot(0);
+    }
+
+    public int argument() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitIndexExpression(this);
+    }
+  }
+
+  public static final class SliceExpression extends Node {
+    SliceExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int callee() {
+      return slot(0);
+    }
+
+    public int lower() {
+      return slot(1);
+    }
+
+    public int upper() {
+      return slot(2);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitSliceExpression(this);
+    }
+  }
+
+  public static final class DictExpression extends Node {
+    DictExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int keysSize() {
+      return slot(1);
+    }
+
+    public int keys(int index) {
+      Objects.checkIndex(index, slot(1));
+      return arena.slots[slot(0) + index];
+    }
+
+    public int valuesSize() {
+      return slot(3);
+    }
+
+    public int values(int index) {
+      Objects.checkIndex(index, slot(3));
+      return arena.slots[slot(2) + index];
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitDictExpression(this);
+    }
+  }
+
+  public static final class NewExpression extends Node {
+    NewExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitNewExpression(this);
+    }
+  }
+
+  public static final class ParentExpression extends Node {
+    ParentExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitParentExpression(this);
+    }
+  }
+
+  public static final class SelfExpression extends Node {
+    SelfExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitSelfExpression(this);
+    }
+  }
+
+  public static final class AnonymousExpression extends Node {
+    AnonymousExpression(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int function() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitAnonymousExpression(this);
+    }
+  }
+
+  public static final class EchoStatement extends Node {
+    EchoStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int value() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitEchoStatement(this);
+    }
+  }
+
+  public static final class SimpleStatement extends Node {
+    SimpleStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitSimpleStatement(this);
+    }
+  }
+
+  public static final class IfStatement extends Node {
+    IfStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int condition() {
+      return slot(0);
+    }
+
+    public int thenBranch() {
+      return slot(1);
+    }
+
+    public int elseBranch() {
+      return slot(2);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitIfStatement(this);
+    }
+  }
+
+  public static final class ForStatement extends Node {
+    ForStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int declaration() {
+      return slot(0);
+    }
+
+    public int condition() {
+      return slot(1);
+    }
+
+    public int interation() {
+      return slot(2);
+    }
+
+    public int body() {
+      return slot(3);
+    }
+
+    public Object continueBlock() {
+      return arena.deref(slot(4));
+    }
+
+    public void setContinueBlock(Object value) {
+      int slot = arena.firstSlots[id] + 4;
+      if (arena.slots[slot] == NONE) {
+        arena.slots[slot] = arena.ref(value);
+      } else {
+        arena.refs[arena.slots[slot]] = value;
+      }
+    }
+
+    public Object exitBlock() {
+      return arena.deref(slot(5));
+    }
+
+    public void setExitBlock(Object value) {
+      int slot = arena.firstSlots[id] + 5;
+      if (arena.slots[slot] == NONE) {
+        arena.slots[slot] = arena.ref(value);
+      } else {
+        arena.refs[arena.slots[slot]] = value;
+      }
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitForStatement(this);
+    }
+  }
+
+  public static final class WhileStatement extends Node {
+    WhileStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int condition() {
+      return slot(0);
+    }
+
+    public int body() {
+      return slot(1);
+    }
+
+    public Object continueBlock() {
+      return arena.deref(slot(2));
+    }
+
+    public void setContinueBlock(Object value) {
+      int slot = arena.firstSlots[id] + 2;
+      if (arena.slots[slot] == NONE) {
+        arena.slots[slot] = arena.ref(value);
+      } else {
+        arena.refs[arena.slots[slot]] = value;
+      }
+    }
+
+    public Object exitBlock() {
+      return arena.deref(slot(3));
+    }
+
+    public void setExitBlock(Object value) {
+      int slot = arena.firstSlots[id] + 3;
+      if (arena.slots[slot] == NONE) {
+        arena.slots[slot] = arena.ref(value);
+      } else {
+        arena.refs[arena.slots[slot]] = value;
+      }
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitWhileStatement(this);
+    }
+  }
+
+  public static final class DoWhileStatement extends Node {
+    DoWhileStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int body() {
+      return slot(0);
+    }
+
+    public int condition() {
+      return slot(1);
+    }
+
+    public Object continueBlock() {
+      return arena.deref(slot(2));
+    }
+
+    public void setContinueBlock(Object value) {
+      int slot = arena.firstSlots[id] + 2;
+      if (arena.slots[slot] == NONE) {
+        arena.slots[slot] = arena.ref(value);
+      } else {
+        arena.refs[arena.slots[slot]] = value;
+      }
+    }
+
+    public Object exitBlock() {
+      return arena.deref(slot(3));
+    }
+
+    public void setExitBlock(Object value) {
+      int slot = arena.firstSlots[id] + 3;
+      if (arena.slots[slot] == NONE) {
+        arena.slots[slot] = arena.ref(value);
+      } else {
+        arena.refs[arena.slots[slot]] = value;
+      }
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitDoWhileStatement(this);
+    }
+  }
+
+  public static final class ContinueStatement extends Node {
+    ContinueStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitContinueStatement(this);
+    }
+  }
+
+  public static final class BreakStatement extends Node {
+    BreakStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitBreakStatement(this);
+    }
+  }
+
+  public static final class RaiseStatement extends Node {
+    RaiseStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int exception() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitRaiseStatement(this);
+    }
+  }
+
+  public static final class ReturnStatement extends Node {
+    ReturnStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int value() {
+      return slot(0);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitReturnStatement(this);
+    }
+  }
+
+  public static final class AssertStatement extends Node {
+    AssertStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    public int message() {
+      return slot(1);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitAssertStatement(this);
+    }
+  }
+
+  public static final class UsingStatement extends Node {
+    UsingStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int expression() {
+      return slot(0);
+    }
+
+    public int caseLabelsSize() {
+      return slot(2);
+    }
+
+    public int caseLabels(int index) {
+      Objects.checkIndex(index, slot(2));
+      return arena.slots[slot(1) + index];
+    }
+
+    public int caseBodiesSize() {
+      return slot(4);
+    }
+
+    public int caseBodies(int index) {
+      Objects.checkIndex(index, slot(4));
+      return arena.slots[slot(3) + index];
+    }
+
+    public int defaultCase() {
+      return slot(5);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitUsingStatement(this);
+    }
+  }
+
+  public static final class ImportStatement extends Node {
+    ImportStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public String path() {
+      return (String) arena.deref(slot(0));
+    }
+
+    public int elementsSize() {
+      return slot(2);
+    }
+
+    public Token elements(int index) {
+      Objects.checkIndex(index, slot(2));
+      return (Token) arena.deref(arena.slots[slot(1) + index]);
+    }
+
+    public boolean all() {
+      return slot(3) != 0;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitImportStatement(this);
+    }
+  }
+
+  public static final class CatchStatement extends Node {
+    CatchStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int body() {
+      return slot(0);
+    }
+
+    public int catchBody() {
+      return slot(1);
+    }
+
+    public int finallyBody() {
+      return slot(2);
+    }
+
+    public int name() {
+      return slot(3);
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitCatchStatement(this);
+    }
+  }
+
+  public static final class VarStatement extends Node {
+    VarStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int typedName() {
+      return slot(0);
+    }
+
+    public int value() {
+      return slot(1);
+    }
+
+    public boolean isConstant() {
+      return slot(2) != 0;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitVarStatement(this);
+    }
+  }
+
+  public static final class VarListStatement extends Node {
+    VarListStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int declarationsSize() {
+      return slot(1);
+    }
+
+    public int declarations(int index) {
+      Objects.checkIndex(index, slot(1));
+      return arena.slots[slot(0) + index];
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitVarListStatement(this);
+    }
+  }
+
+  public static final class BlockStatement extends Node {
+    BlockStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int bodySize() {
+      return slot(1);
+    }
+
+    public int body(int index) {
+      Objects.checkIndex(index, slot(1));
+      return arena.slots[slot(0) + index];
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitBlockStatement(this);
+    }
+  }
+
+  public static final class ExternStatement extends Node {
+    ExternStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public Token name() {
+      return (Token) arena.deref(slot(0));
+    }
+
+    public int parametersSize() {
+      return slot(2);
+    }
+
+    public int parameters(int index) {
+      Objects.checkIndex(index, slot(2));
+      return arena.slots[slot(1) + index];
+    }
+
+    public int returnType() {
+      return slot(3);
+    }
+
+    public boolean isVariadic() {
+      return slot(4) != 0;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitExternStatement(this);
+    }
+  }
+
+  public static final class FunctionStatement extends Node {
+    FunctionStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public Token name() {
+      return (Token) arena.deref(slot(0));
+    }
+
+    public int parametersSize() {
+      return slot(2);
+    }
+
+    public int parameters(int index) {
+      Objects.checkIndex(index, slot(2));
+      return arena.slots[slot(1) + index];
+    }
+
+    public int returnType() {
+      return slot(3);
+    }
+
+    public int body() {
+      return slot(4);
+    }
+
+    public boolean isVariadic() {
+      return slot(5) != 0;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitFunctionStatement(this);
+    }
+  }
+
+  public static final class MethodStatement extends Node {
+    MethodStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public Token name() {
+      return (Token) arena.deref(slot(0));
+    }
+
+    public int parametersSize() {
+      return slot(2);
+    }
+
+    public int parameters(int index) {
+      Objects.checkIndex(index, slot(2));
+      return arena.slots[slot(1) + index];
+    }
+
+    public int returnType() {
+      return slot(3);
+    }
+
+    public int body() {
+      return slot(4);
+    }
+
+    public boolean isVariadic() {
+      return slot(5) != 0;
+    }
+
+    public boolean isStatic() {
+      return slot(6) != 0;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitMethodStatement(this);
+    }
+  }
+
+  public static final class PropertyStatement extends Node {
+    PropertyStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public int name() {
+      return slot(0);
+    }
+
+    public int value() {
+      return slot(1);
+    }
+
+    public boolean isStatic() {
+      return slot(2) != 0;
+    }
+
+    public boolean isConstant() {
+      return slot(3) != 0;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitPropertyStatement(this);
+    }
+  }
+
+  public static final class ClassStatement extends Node {
+    ClassStatement(AstArena arena, int id) {
+      super(arena, id);
+    }
+
+    public Token name() {
+      return (Token) arena.deref(slot(0));
+    }
+
+    public int superclass() {
+      return slot(1);
+    }
+
+    public int propertiesSize() {
+      return slot(3);
+    }
+
+    public int properties(int index) {
+      Objects.checkIndex(index, slot(3));
+      return arena.slots[slot(2) + index];
+    }
+
+    public int methodsSize() {
+      return slot(5);
+    }
+
+    public int methods(int index) {
+      Objects.checkIndex(index, slot(5));
+      return arena.slots[slot(4) + index];
+    }
+
+    public int operatorsSize() {
+      return slot(7);
+    }
+
+    public int operators(int index) {
+      Objects.checkIndex(index, slot(7));
+      return arena.slots[slot(6) + index];
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+      return visitor.visitClassStatement(this);
+    }
+  }
+}
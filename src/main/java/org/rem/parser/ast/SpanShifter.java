@@ -0,0 +1,373 @@
+// DO NOT MODIFY DIRECTLY
+// This file was generated by the tools.rem.GenerateAst
+package org.rem.parser.ast;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the spans of trees of nodes by the same offset. A node reachable
+ * more than once is only moved once.
+ */
+public final class SpanShifter implements Typed.VoidVisitor, Expression.VoidVisitor, Statement.VoidVisitor {
+  private final int offsetDelta;
+  private final Set<AST> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  public SpanShifter(int offsetDelta) {
+    this.offsetDelta = offsetDelta;
+  }
+
+  /**
+   * Moves the span of a node and everything below it.
+   */
+  public void shift(AST node) {
+    if (node == null || !visited.add(node)) return;
+
+    // nodes the parser never positioned have no span
+    if (node.hasSpan()) {
+      node.span += (long) offsetDelta << 32;
+    }
+
+    if (node instanceof Expression expression) {
+      expression.accept(this);
+    } else if (node instanceof Statement statement) {
+      statement.accept(this);
+    } else if (node instanceof Typed typed) {
+      typed.accept(this);
+    }
+  }
+
+  public void shiftAll(List<? extends AST> nodes) {
+    if (nodes == null) return;
+
+    for (AST node : nodes) {
+      shift(node);
+    }
+  }
+
+  @Override
+  public void visitVoidTyped(Typed.Void node) {
+  }
+
+  @Override
+  public void visitIdTyped(Typed.Id node) {
+    shift(node.name);
+  }
+
+  @Override
+  public void visitArrayTyped(Typed.Array node) {
+    shift(node.type);
+  }
+
+  @Override
+  public void visitVectorTyped(Typed.Vector node) {
+    shift(node.type);
+  }
+
+  @Override
+  public void visitMapTyped(Typed.Map node) {
+    shift(node.keyType);
+    shift(node.valueType);
+  }
+
+  @Override
+  public void visitNilExpression(Expression.Nil node) {
+  }
+
+  @Override
+  public void visitBooleanExpression(Expression.Boolean node) {
+  }
+
+  @Override
+  public void visitInt32Expression(Expression.Int32 node) {
+  }
+
+  @Override
+  public void visitInt64Expression(Expression.Int64 node) {
+  }
+
+  @Override
+  public void visitFloat32Expression(Expression.Float32 node) {
+  }
+
+  @Override
+  public void visitFloat64Expression(Expression.Float64 node) {
+  }
+
+  @Override
+  public void visitLiteralExpression(Expression.Literal node) {
+  }
+
+  @Override
+  public void visitUnaryExpression(Expression.Unary node) {
+    shift(node.right);
+  }
+
+  @Override
+  public void visitBinaryExpression(Expression.Binary node) {
+    shift(node.left);
+    shift(node.right);
+  }
+
+  @Override
+  public void visitLogicalExpression(Expression.Logical node) {
+    shift(node.left);
+    shift(node.right);
+  }
+
+  @Override
+  public void visitRangeExpression(Expression.Range node) {
+    shift(node.lower);
+    shift(node.upper);
+  }
+
+  @Override
+  public void visitGroupingExpression(Expression.Grouping node) {
+    shift(node.expression);
+  }
+
+  @Override
+  public void visitIncrementExpression(Expression.Increment node) {
+    shift(node.expression);
+  }
+
+  @Override
+  public void visitDecrementExpression(Expression.Decrement node) {
+    shift(node.expression);
+  }
+
+  @Override
+  public void visitIdentifierExpression(Expression.Identifier node) {
+  }
+
+  @Override
+  public void visitArrayExpression(Expression.Array node) {
+    shiftAll(node.items);
+  }
+
+  @Override
+  public void visitTypedNameExpression(Expression.TypedName node) {
+    shift(node.name);
+    shift(node.type);
+  }
+
+  @Override
+  public void visitAssignExpression(Expression.Assign node) {
+    shift(node.expression);
+    shift(node.value);
+  }
+
+  @Override
+  public void visitUpdateExpression(Expression.Update node) {
+    shift(node.expression);
+    shift(node.value);
+  }
+
+  @Override
+  public void visitConditionExpression(Expression.Condition node) {
+    shift(node.expression);
+    shift(node.truth);
+    shift(node.falsy);
+  }
+
+  @Override
+  public void visitCallExpression(Expression.Call node) {
+    shift(node.callee);
+    shiftAll(node.args);
+  }
+
+  @Override
+  public void visitGetExpression(Expression.Get node) {
+    shift(node.expression);
+    shift(node.name);
+  }
+
+  @Override
+  public void visitSetExpression(Expression.Set node) {
+    shift(node.expression);
+    shift(node.name);
+    shift(node.value);
+  }
+
+  @Override
+  public void visitIndexExpression(Expression.Index node) {
+    shift(node.callee);
+    shift(node.argument);
+  }
+
+  @Override
+  public void visitSliceExpression(Expression.Slice node) {
+    shift(node.callee);
+    shift(node.lower);
+    shift(node.upper);
+  }
+
+  @Override
+  public void visitDictExpression(Expression.Dict node) {
+    shiftAll(node.keys);
+    shiftAll(node.values);
+  }
+
+  @Override
+  public void visitNewExpression(Expression.New node) {
+    shift(node.expression);
+  }
+
+  @Override
+  public void visitParentExpression(Expression.Parent node) {
+  }
+
+  @Override
+  public void visitSelfExpression(Expression.Self node) {
+  }
+
+  @Override
+  public void visitAnonymousExpression(Expression.Anonymous node) {
+    shift(node.function);
+  }
+
+  @Override
+  public void visitEchoStatement(Statement.Echo node) {
+    shift(node.value);
+  }
+
+  @Override
+  public void visitSimpleStatement(Statement.Simple node) {
+    shift(node.expression);
+  }
+
+  @Override
+  public void visitIfStatement(Statement.If node) {
+    shift(node.condition);
+    shift(node.thenBranch);
+    shift(node.elseBranch);
+  }
+
+  @Override
+  public void visitForStatement(Statement.For node) {
+    shift(node.declaration);
+    shift(node.condition);
+    shift(node.interation);
+    shift(node.body);
+  }
+
+  @Override
+  public void visitWhileStatement(Statement.While node) {
+    shift(node.condition);
+    shift(node.body);
+  }
+
+  @Override
+  public void visitDoWhileStatement(Statement.DoWhile node) {
+    shift(node.body);
+    shift(node.condition);
+  }
+
+  @Override
+  public void visitContinueStatement(Statement.Continue node) {
+  }
+
+  @Override
+  public void visitBreakStatement(Statement.Break node) {
+  }
+
+  @Override
+  public void visitRaiseStatement(Statement.Raise node) {
+    shift(node.exception);
+  }
+
+  @Override
+  public void visitReturnStatement(Statement.Return node) {
+    shift(node.value);
+  }
+
+  @Override
+  public void visitAssertStatement(Statement.Assert node) {
+    shift(node.expression);
+    shift(node.message);
+  }
+
+  @Override
+  public void visitUsingStatement(Statement.Using node) {
+    shift(node.expression);
+    shiftAll(node.caseLabels);
+    shiftAll(node.caseBodies);
+    shift(node.defaultCase);
+  }
+
+  @Override
+  public void visitImportStatement(Statement.Import node) {
+  }
+
+  @Override
+  public void visitCatchStatement(Statement.Catch node) {
+    shift(node.body);
+    shift(node.catchBody);
+    shift(node.finallyBody);
+    shift(node.name);
+  }
+
+  @Override
+  public void visitVarStatement(Statement.Var node) {
+    shift(node.typedName);
+    shift(node.value);
+  }
+
+  @Override
+  public void visitVarListStatement(Statement.VarList node) {
+    shiftAll(node.declarations);
+  }
+
+  @Override
+  public void visitBlockStatement(Statement.Block node) {
+    shiftAll(node.body);
+  }
+
+  @Override
+  public void visitExternStatement(Statement.Extern node) {
+    shiftAll(node.parameters);
+    shift(node.returnType);
+  }
+
+  @Override
+  public void visitFunctionStatement(Statement.Function node) {
+    shiftAll(node.parameters);
+    shift(node.returnType);
+    shift(node.body);
+  }
+
+  @Override
+  public void visitMethodStatement(Statement.Method node) {
+    shiftAll(node.parameters);
+    shift(node.returnType);
+    shift(node.body);
+  }
+
+  @Override
+  public void visitPropertyStatement(Statement.Property node) {
+    shift(node.name);
+    shift(node.value);
+  }
+
+  @Override
+  public void visitClassStatement(Statement.Class node) {
+    shift(node.superclass);
+    shiftAll(node.properties);
+    shiftAll(node.methods);
+    shiftAll(node.operators);
+  }
+
+  @Override
+  public void visitTyped(Typed node) {
+  }
+
+  @Override
+  public void visitExpression(Expression node) {
+  }
+
+  @Override
+  public void visitStatement(Statement node) {
+  }
+}
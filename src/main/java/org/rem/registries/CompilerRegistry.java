@@ -7,11 +7,15 @@ import org.rem.compiler.targets.llvm.LLVMCompileTarget;
 import org.rem.interfaces.ICompileTarget;
 
 public class CompilerRegistry {
-  public static ICompileTarget<?> get(Object key, Reactor reactor) {
+  public static ICompileTarget<?> get(Object key, Reactor reactor, String moduleName) {
     return switch (key.toString().toLowerCase()) {
       case "c" -> new CCompileTarget(reactor);
       case "js" -> new JSCompileTarget(reactor);
-      default -> new LLVMCompileTarget(reactor);
+      default -> new LLVMCompileTarget(reactor, moduleName);
     };
   }
+
+  public static ICompileTarget<?> get(Object key, Reactor reactor) {
+    return get(key, reactor, "__main__");
+  }
 }
@@ -2,14 +2,14 @@ package org.rem.scope;
 
 import org.rem.parser.ast.AST;
 import org.rem.parser.ast.Statement;
-
-import java.util.HashMap;
+import org.rem.utils.IntMap;
+import org.rem.utils.SymbolTable;
 
 public class Scope {
 
   public final AST node;
   public final Scope parent;
-  private final HashMap<String, AST> declarations = new HashMap<>();
+  private final IntMap<AST> declarations = new IntMap<>();
 
   public Scope(AST node, Scope parent) {
     this.node = node;
@@ -20,11 +20,34 @@ public class Scope {
     this(null, null);
   }
 
+  /**
+   * Adds a new declaration to this scope under the {@link SymbolTable} ID of
+   * its name.
+   */
+  public void declare(int symbol, AST node) {
+    declarations.put(symbol, node);
+  }
+
   /**
    * Adds a new declaration to this scope.
    */
   public void declare(String identifier, AST node) {
-    declarations.put(identifier, node);
+    declare(SymbolTable.intern(identifier), node);
+  }
+
+  /**
+   * Look up the symbol in the scope and its parents, returning a context comprising the
+   * found declaration and the scope in which it occurs, or null if not found.
+   */
+  public DeclarationContext lookup(int symbol) {
+    for (Scope scope = this; scope != null; scope = scope.parent) {
+      AST declaration = scope.declarations.get(symbol);
+      if (declaration != null) {
+        return new DeclarationContext(scope, declaration);
+      }
+    }
+
+    return null;
   }
 
   /**
@@ -32,12 +55,15 @@ public class Scope {
    * found declaration and the scope in which it occurs, or null if not found.
    */
   public DeclarationContext lookup(String name) {
-    AST declaration = declarations.get(name);
-    return declaration != null
-      ? new DeclarationContext(this, declaration)
-      : (parent != null
-      ? parent.lookup(name)
-      : null);
+    return lookup(SymbolTable.intern(name));
+  }
+
+  /**
+   * Look up the given symbol only in this scope and return the corresponding declaration, or null
+   * if not found.
+   */
+  public AST lookupLocal(int symbol) {
+    return declarations.get(symbol);
   }
 
   /**
@@ -45,7 +71,7 @@ public class Scope {
    * if not found.
    */
   public AST lookupLocal(String name) {
-    return declarations.get(name);
+    return lookupLocal(SymbolTable.intern(name));
   }
 
   @Override
@@ -0,0 +1,57 @@
+package org.rem.scope;
+
+import org.rem.utils.IntMap;
+import org.rem.utils.SymbolTable;
+
+/**
+ * An {@link Environment} keyed by {@link SymbolTable} IDs instead of names.
+ */
+public final class SymbolEnvironment<T> {
+  private final IntMap<T> names = new IntMap<>();
+  private final SymbolEnvironment<T> parent;
+  private T lastEntry = null;
+
+  public SymbolEnvironment(SymbolEnvironment<T> parent) {
+    this.parent = parent;
+  }
+
+  public void put(int symbol, T value) {
+    names.put(symbol, value);
+    lastEntry = value;
+  }
+
+  public T get(int symbol) {
+    for (SymbolEnvironment<T> environment = this; environment != null; environment = environment.parent) {
+      T value = environment.names.get(symbol);
+      if (value != null) {
+        return value;
+      }
+    }
+
+    return null;
+  }
+
+  public T getLastEntry() {
+    T t = this.lastEntry;
+    if(t == null) return parent.getLastEntry();
+    return t;
+  }
+
+  public boolean exists(int symbol) {
+    for (SymbolEnvironment<T> environment = this; environment != null; environment = environment.parent) {
+      if (environment.names.containsKey(symbol)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  public boolean existsLocal(int symbol) {
+    return names.containsKey(symbol);
+  }
+
+  public SymbolEnvironment<T> getParent() {
+    return parent;
+  }
+}
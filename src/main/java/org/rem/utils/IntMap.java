@@ -0,0 +1,119 @@
+package org.rem.utils;
+
+import java.util.StringJoiner;
+
+/**
+ * An open addressing hash map from non-negative ints, such as
+ * {@link SymbolTable} IDs, to values, without boxing the keys.
+ */
+public final class IntMap<V> {
+  // keys are stored as key + 1 so that zero means empty
+  private int[] keys;
+  private Object[] values;
+  private int size = 0;
+
+  public IntMap() {
+    this(8);
+  }
+
+  public IntMap(int capacity) {
+    int slots = Integer.highestOneBit(Math.max(4, capacity) * 2 - 1) << 1;
+    keys = new int[slots];
+    values = new Object[slots];
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(int key) {
+    int slot = find(key);
+    return slot < 0 ? null : (V) values[slot];
+  }
+
+  public boolean containsKey(int key) {
+    return find(key) >= 0;
+  }
+
+  public void put(int key, V value) {
+    if (key < 0) {
+      throw new IllegalArgumentException("negative key " + key);
+    }
+
+    int mask = keys.length - 1;
+    int slot = mix(key) & mask;
+
+    while (keys[slot] != 0) {
+      if (keys[slot] == key + 1) {
+        values[slot] = value;
+        return;
+      }
+
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = key + 1;
+    values[slot] = value;
+    size++;
+
+    if (size * 2 > keys.length) {
+      grow();
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    StringJoiner joiner = new StringJoiner(", ", "{", "}");
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != 0) {
+        joiner.add((keys[i] - 1) + "=" + values[i]);
+      }
+    }
+
+    return joiner.toString();
+  }
+
+  private int find(int key) {
+    if (key < 0) return -1;
+
+    int mask = keys.length - 1;
+    int slot = mix(key) & mask;
+
+    while (keys[slot] != 0) {
+      if (keys[slot] == key + 1) {
+        return slot;
+      }
+
+      slot = (slot + 1) & mask;
+    }
+
+    return -1;
+  }
+
+  private void grow() {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+
+    keys = new int[oldKeys.length * 2];
+    values = new Object[oldKeys.length * 2];
+    int mask = keys.length - 1;
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == 0) continue;
+
+      int slot = mix(oldKeys[i] - 1) & mask;
+      while (keys[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+
+      keys[slot] = oldKeys[i];
+      values[slot] = oldValues[i];
+    }
+  }
+
+  private static int mix(int key) {
+    int hash = key * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,56 @@
+package org.rem.utils;
+
+import java.io.PrintStream;
+
+/**
+ * Where the standard output and error of the current thread go when one
+ * process serves several requests at once, as the compiler daemon does.
+ * <p>
+ * A route belongs to the thread that set it and is not inherited, so threads
+ * that outlive a request, such as those of the common fork/join pool, never
+ * write to a finished or unrelated request. Threads a request starts itself
+ * take its route explicitly through {@link #propagate(Runnable)}.
+ */
+public record OutputRoute(PrintStream out, PrintStream err) {
+  private static final ThreadLocal<OutputRoute> CURRENT = new ThreadLocal<>();
+
+  /**
+   * The route of the current thread, or null if its output is not routed.
+   */
+  public static OutputRoute current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Routes the output of the current thread, or stops routing it if null.
+   */
+  public static void set(OutputRoute route) {
+    if (route == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(route);
+    }
+  }
+
+  /**
+   * Wraps a task so that it runs with the route of the calling thread, on
+   * whatever thread it ends up running.
+   */
+  public static Runnable propagate(Runnable task) {
+    OutputRoute route = CURRENT.get();
+    if (route == null) {
+      return task;
+    }
+
+    return () -> {
+      OutputRoute previous = CURRENT.get();
+      set(route);
+
+      try {
+        task.run();
+      } finally {
+        set(previous);
+      }
+    };
+  }
+}
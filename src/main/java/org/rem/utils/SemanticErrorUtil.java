@@ -9,19 +9,20 @@ import java.util.List;
 import java.util.Set;
 
 public class SemanticErrorUtil {
-  public static String trace(SemanticError error, Source source, List<String> lines, String path) {
+  public static String trace(SemanticError error, Source source, String path) {
     AST location = (AST) error.location();
     if(location == null) {
       return error.description;
     } else {
-      int startColumn = location.startColumn - source.getLineStart(location.startColumn);
+      int offset = location.getOffset();
+      int startLine = location.getStartLine(source);
+      int startColumn = offset - source.getLineStart(offset);
       if(startColumn < 0) startColumn = 0;
 
       StringBuilder builder = new StringBuilder();
-      builder.append(String.format("ERROR: %s at %s:%s:%s", error.description, path, location.startLine, source.getLineColumn(location.startColumn)));
+      builder.append(String.format("ERROR: %s at %s:%s:%s", error.description, path, startLine, source.getLineColumn(offset)));
 
-      String line = String.join("\n", lines.get(location.startLine - 1));
-      builder.append(String.format("\n\t%s", line));
+      builder.append(String.format("\n\t%s", source.getLine(startLine)));
       builder.append(String.format("\n\t%s%s", " ".repeat(startColumn), "^"));
 
       return builder.toString();
@@ -31,12 +32,10 @@ public class SemanticErrorUtil {
   public static String trace(Set<SemanticError> errors, Source source) {
     List<String> strings = new ArrayList<>();
 
-    // TODO improve
-    List<String> lines = source.getLines();
     String path = source.getPath();
 
     for(SemanticError error : errors) {
-      strings.add(trace(error, source, lines, path));
+      strings.add(trace(error, source, path));
     }
 
     return String.join("\n", strings);
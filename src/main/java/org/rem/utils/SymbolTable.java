@@ -0,0 +1,202 @@
+package org.rem.utils;
+
+import java.util.Arrays;
+
+/**
+ * Interns identifiers into dense int IDs shared by every module compiled in
+ * the process.
+ * <p>
+ * The lexer interns straight from the source's character range, so a name
+ * that was seen before is resolved without allocating. Scopes and code
+ * generation then key on the ID instead of hashing the string again.
+ * <p>
+ * A long running process brackets each compilation with
+ * {@link #beginSession()} and {@link #endSession()}. Once no session is open
+ * and more than {@link #MAX_IDLE_SIZE} names were interned, every name is
+ * released, so unrelated compilations do not grow the table forever. IDs are
+ * therefore only stable within a session, or for the whole process when
+ * sessions are not used.
+ * <p>
+ * Names that are already interned are found without locking, so lexers
+ * running in parallel only contend when they add new names.
+ */
+public final class SymbolTable {
+  /**
+   * The ID of tokens that are not identifiers.
+   */
+  public static final int NONE = -1;
+
+  /**
+   * The number of names past which the table is cleared when the last open
+   * session ends.
+   */
+  public static final int MAX_IDLE_SIZE = 64 * 1024;
+
+  private static final Object lock = new Object();
+  private static volatile String[] names = new String[1024];
+  // slots hold ID + 1 so that zero means empty
+  private static volatile int[] slots = new int[2048];
+  private static int count = 0;
+  private static int sessions = 0;
+
+  private SymbolTable() {
+  }
+
+  public static int intern(String name) {
+    return intern(name, 0, name.length());
+  }
+
+  /**
+   * Returns the ID of the characters between start (inclusive) and end
+   * (exclusive), interning them on first sight.
+   */
+  public static int intern(CharSequence text, int start, int end) {
+    int hash = hash(text, start, end);
+
+    int id = find(text, start, end, hash);
+    if (id != NONE) {
+      return id;
+    }
+
+    synchronized (lock) {
+      int mask = slots.length - 1;
+
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        int entry = slots[slot];
+
+        if (entry == 0) {
+          return add(text.subSequence(start, end).toString(), slot);
+        }
+
+        if (matches(names[entry - 1], text, start, end)) {
+          return entry - 1;
+        }
+      }
+    }
+  }
+
+  /**
+   * Probes the table without locking. An empty slot or a name that is not
+   * visible yet is a miss, which the caller retries under the lock. A match is
+   * always right since IDs are never reassigned.
+   */
+  private static int find(CharSequence text, int start, int end, int hash) {
+    int[] slots = SymbolTable.slots;
+    String[] names = SymbolTable.names;
+    int mask = slots.length - 1;
+
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == 0 || entry > names.length) {
+        return NONE;
+      }
+
+      String name = names[entry - 1];
+      if (name == null) {
+        return NONE;
+      }
+
+      if (matches(name, text, start, end)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  /**
+   * Returns the name of an interned ID.
+   */
+  public static String name(int id) {
+    return names[id];
+  }
+
+  /**
+   * The number of interned names.
+   */
+  public static int size() {
+    synchronized (lock) {
+      return count;
+    }
+  }
+
+  /**
+   * Marks the start of a compilation, whose IDs stay valid until it ends.
+   */
+  public static void beginSession() {
+    synchronized (lock) {
+      sessions++;
+    }
+  }
+
+  /**
+   * Marks the end of a compilation, releasing every name if it was the last
+   * one running and the table grew past {@link #MAX_IDLE_SIZE}.
+   */
+  public static void endSession() {
+    synchronized (lock) {
+      if (sessions == 0) {
+        throw new IllegalStateException("no symbol table session is open");
+      }
+
+      if (--sessions == 0 && count > MAX_IDLE_SIZE) {
+        // readers that still see the old arrays miss and retry under the lock
+        slots = new int[2048];
+        names = new String[1024];
+        count = 0;
+      }
+    }
+  }
+
+  private static int add(String name, int slot) {
+    int id = count++;
+
+    if (id == names.length) {
+      names = Arrays.copyOf(names, names.length * 2);
+    }
+
+    names[id] = name;
+    slots[slot] = id + 1;
+
+    if (count * 2 > slots.length) {
+      rehash();
+    }
+
+    return id;
+  }
+
+  private static void rehash() {
+    int[] rehashed = new int[slots.length * 2];
+    int mask = rehashed.length - 1;
+
+    for (int id = 0; id < count; id++) {
+      String name = names[id];
+      int slot = hash(name, 0, name.length()) & mask;
+
+      while (rehashed[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+
+      rehashed[slot] = id + 1;
+    }
+
+    slots = rehashed;
+  }
+
+  private static int hash(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean matches(String name, CharSequence text, int start, int end) {
+    if (name.length() != end - start) return false;
+
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != text.charAt(start + i)) return false;
+    }
+
+    return true;
+  }
+}
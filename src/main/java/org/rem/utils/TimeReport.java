@@ -0,0 +1,226 @@
+package org.rem.utils;
+
+import org.bytedeco.javacpp.Pointer;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects wall time, allocated bytes and resident memory per compiler phase,
+ * together with counts such as tokens and AST nodes, and prints them as a
+ * table or as JSON. Resident memory is sampled when a phase ends, and the
+ * largest sample is kept, so it is a lower bound of the real peak.
+ * <p>
+ * Phases may run on several threads at once in multi-module builds, in which
+ * case their times add up and can exceed the total wall time of the build.
+ */
+public final class TimeReport {
+  private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+  private final boolean enabled;
+  private final long startedAt = System.nanoTime();
+  private final Map<Phase, Stats> phases = new EnumMap<>(Phase.class);
+  private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+  private final AtomicLong residentBytesAtEnd = new AtomicLong();
+
+  private TimeReport(boolean enabled) {
+    this.enabled = enabled;
+
+    for (Phase phase : Phase.values()) {
+      phases.put(phase, new Stats());
+    }
+  }
+
+  public static TimeReport create() {
+    return new TimeReport(true);
+  }
+
+  /**
+   * A report that measures nothing, used when no report was requested.
+   */
+  public static TimeReport disabled() {
+    return new TimeReport(false);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public enum Phase {
+    SOURCE("source loading", "source bytes"),
+    LEX("Lexer.run", "tokens"),
+    PARSE("Parser.parse", "ast nodes"),
+    STREAM("Lexer+Parser (streamed)", "streamed tokens"),
+    ANALYZE("SemanticAnalyzer.analyze", null),
+    REACTOR("Reactor.run", "reactor rules"),
+    CODEGEN("ICompileTarget.compile", "llvm instructions"),
+    EMIT("object emission", null),
+    LINK("linking", null),
+    RUN("jit and run", null);
+
+    private final String label;
+    private final String counter;
+
+    Phase(String label, String counter) {
+      this.label = label;
+      this.counter = counter;
+    }
+  }
+
+  public interface Work<T, E extends Exception> {
+    T run() throws E;
+  }
+
+  /**
+   * Runs the given work as part of a phase and records its cost.
+   */
+  public <T, E extends Exception> T measure(Phase phase, Work<T, E> work) throws E {
+    if (!enabled) {
+      return work.run();
+    }
+
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+
+    try {
+      return work.run();
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      long allocated = allocatedBytes() - allocatedBefore;
+      long resident = Pointer.physicalBytes();
+
+      Stats stats = phases.get(phase);
+      stats.calls.increment();
+      stats.nanos.add(elapsed);
+      stats.allocatedBytes.add(Math.max(0, allocated));
+      stats.residentBytesAtEnd.accumulateAndGet(resident, Math::max);
+      residentBytesAtEnd.accumulateAndGet(resident, Math::max);
+    }
+  }
+
+  public void count(String counter, long amount) {
+    if (!enabled) return;
+
+    LongAdder adder;
+    synchronized (counters) {
+      adder = counters.computeIfAbsent(counter, ignored -> new LongAdder());
+    }
+
+    adder.add(amount);
+  }
+
+  public long counter(String counter) {
+    synchronized (counters) {
+      LongAdder adder = counters.get(counter);
+      return adder == null ? 0 : adder.sum();
+    }
+  }
+
+  public void print(PrintStream out) {
+    long total = System.nanoTime() - startedAt;
+
+    out.printf("%-26s %6s %12s %14s %12s %22s%n", "phase", "calls", "wall (ms)", "allocated", "rss at end", "throughput");
+    for (Map.Entry<Phase, Stats> entry : phases.entrySet()) {
+      Phase phase = entry.getKey();
+      Stats stats = entry.getValue();
+      if (stats.calls.sum() == 0) continue;
+
+      String throughput = "";
+      if (phase.counter != null && stats.nanos.sum() > 0) {
+        throughput = String.format("%.0f %s/s", counter(phase.counter) * 1e9 / stats.nanos.sum(), unit(phase.counter));
+      }
+
+      out.printf(
+        "%-26s %6d %12.3f %14s %12s %22s%n",
+        phase.label, stats.calls.sum(), stats.nanos.sum() / 1e6,
+        bytes(stats.allocatedBytes.sum()), bytes(stats.residentBytesAtEnd.get()), throughput
+      );
+    }
+
+    out.printf("%-26s %6s %12.3f %14s %12s%n", "total (wall)", "", total / 1e6, "", bytes(residentBytesAtEnd.get()));
+
+    synchronized (counters) {
+      if (!counters.isEmpty()) {
+        out.println();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+          out.printf("%-26s %d%n", entry.getKey(), entry.getValue().sum());
+        }
+      }
+    }
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{\n  \"totalNanos\": ")
+      .append(System.nanoTime() - startedAt)
+      .append(",\n  \"residentBytesAtEnd\": ")
+      .append(residentBytesAtEnd.get())
+      .append(",\n  \"phases\": {");
+
+    boolean first = true;
+    for (Map.Entry<Phase, Stats> entry : phases.entrySet()) {
+      Stats stats = entry.getValue();
+      if (stats.calls.sum() == 0) continue;
+
+      json.append(first ? "\n" : ",\n");
+      first = false;
+
+      json.append(String.format(
+        "    \"%s\": {\"calls\": %d, \"nanos\": %d, \"allocatedBytes\": %d, \"residentBytesAtEnd\": %d}",
+        entry.getKey().label, stats.calls.sum(), stats.nanos.sum(), stats.allocatedBytes.sum(), stats.residentBytesAtEnd.get()
+      ));
+    }
+
+    json.append(first ? "},\n" : "\n  },\n").append("  \"counters\": {");
+
+    first = true;
+    synchronized (counters) {
+      for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+        json.append(first ? "\n" : ",\n");
+        first = false;
+        json.append(String.format("    \"%s\": %d", entry.getKey(), entry.getValue().sum()));
+      }
+    }
+
+    return json.append(first ? "}\n}" : "\n  }\n}").toString();
+  }
+
+  //region Helpers
+
+  private static final class Stats {
+    final LongAdder calls = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAdder allocatedBytes = new LongAdder();
+    final AtomicLong residentBytesAtEnd = new AtomicLong();
+  }
+
+  private static String unit(String counter) {
+    return counter.substring(counter.lastIndexOf(' ') + 1);
+  }
+
+  private static String bytes(long bytes) {
+    if (bytes < 1024) return bytes + " B";
+    if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024.0);
+    return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+  }
+
+  private static long allocatedBytes() {
+    return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+      && bean.isThreadAllocatedMemorySupported()) {
+      bean.setThreadAllocatedMemoryEnabled(true);
+      return bean;
+    }
+
+    return null;
+  }
+
+  //endregion
+}
@@ -3,6 +3,7 @@ package tools.rem;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -11,7 +12,7 @@ public class GenerateAst {
 
   public static void main(String[] args) throws IOException {
     if (args.length < 1) {
-      System.err.println("Usage: generate_ast <output_dir> [type?]");
+      System.err.println("Usage: generate_ast <output_dir> [expr|stmt|type|arena|shifter?]");
       System.exit(1);
     }
 
@@ -27,10 +28,16 @@ public class GenerateAst {
       defineAst(outputDir, "Statement", STMT_DEFINITION);
     }  else if (type.equalsIgnoreCase("type")) {
       defineAst(outputDir, "Typed", TYPE_DEFINITION);
+    } else if (type.equalsIgnoreCase("arena")) {
+      defineArena(outputDir);
+    } else if (type.equalsIgnoreCase("shifter")) {
+      defineSpanShifter(outputDir);
     } else {
       defineAst(outputDir, "Typed", TYPE_DEFINITION);
       defineAst(outputDir, "Expression", EXPR_DEFINITION);
       defineAst(outputDir, "Statement", STMT_DEFINITION);
+      defineArena(outputDir);
+      defineSpanShifter(outputDir);
     }
   }
 
@@ -227,4 +234,847 @@ public class GenerateAst {
 
     System.out.println(className + " AST class generated.");
   }
+
+  //region [Arena]
+
+  /**
+   * A field of a node as it is stored in the arena.
+   */
+  private record ArenaField(String type, String name, boolean mutable) {
+    boolean isList() {
+      return type.startsWith("List<");
+    }
+
+    boolean isTokenList() {
+      return type.equals("List<Token>");
+    }
+
+    boolean isRef() {
+      return type.equals("Token") || type.equals("String") || type.equals("Object");
+    }
+
+    boolean isNode() {
+      return !isList() && !isRef() && !isWide() && !type.equals("int") && !type.equals("boolean") && !type.equals("Float");
+    }
+
+    boolean isWide() {
+      return type.equals("long") || type.equals("Double");
+    }
+
+    int slots() {
+      return isList() || isWide() ? 2 : 1;
+    }
+
+    /**
+     * The type taken by the add method, or null for fields that start unset.
+     */
+    String parameterType() {
+      if (mutable) return null;
+      if (isTokenList()) return type;
+      if (isList()) return "int[]";
+      if (isNode()) return "int";
+      if (type.equals("Float")) return "float";
+      if (type.equals("Double")) return "double";
+      return type;
+    }
+
+    String capitalized() {
+      return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+  }
+
+  private record ArenaType(String className, String baseName, List<ArenaField> fields) {
+    String viewName() {
+      return className + baseName;
+    }
+
+    String kindName() {
+      return (className + "_" + baseName).replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+    }
+
+    int slots() {
+      return fields.stream().mapToInt(ArenaField::slots).sum();
+    }
+  }
+
+  private static List<ArenaType> arenaTypes(String baseName, List<String> types) {
+    List<ArenaType> result = new ArrayList<>();
+
+    for (String type : types) {
+      String[] brokenType = type.split(":");
+      List<ArenaField> fields = new ArrayList<>();
+
+      for (int i = 1; i < brokenType.length; i++) {
+        if (brokenType[i].isBlank()) continue;
+
+        for (String field : brokenType[i].trim().split(", ")) {
+          String[] parts = field.trim().split(" ");
+          fields.add(new ArenaField(parts[0], parts[1], i == 2));
+        }
+      }
+
+      result.add(new ArenaType(brokenType[0].trim(), baseName, fields));
+    }
+
+    return result;
+  }
+
+  private static void defineArena(String outputDir) throws IOException {
+    List<ArenaType> types = new ArrayList<>();
+    types.addAll(arenaTypes("Typed", TYPE_DEFINITION));
+    types.addAll(arenaTypes("Expression", EXPR_DEFINITION));
+    types.addAll(arenaTypes("Statement", STMT_DEFINITION));
+
+    String path = outputDir + "/AstArena.java";
+    PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8);
+
+    writer.println("// DO NOT MODIFY DIRECTLY");
+    writer.println("// This file was generated by the tools.rem.GenerateAst");
+    writer.println("package org.rem.parser.ast;");
+    writer.println();
+    writer.println("import org.rem.parser.Token;");
+    writer.println("import org.rem.parser.TokenType;");
+    writer.println("import java.io.DataOutput;");
+    writer.println("import java.io.IOException;");
+    writer.println("import java.nio.ByteBuffer;");
+    writer.println("import java.nio.charset.StandardCharsets;");
+    writer.println("import java.util.ArrayList;");
+    writer.println("import java.util.Arrays;");
+    writer.println("import java.util.List;");
+    writer.println("import java.util.Objects;");
+    writer.println();
+    writer.println("/**");
+    writer.println(" * A flat store for trees of {@link Typed}, {@link Expression} and");
+    writer.println(" * {@link Statement} nodes. A node is an index into columns of primitive");
+    writer.println(" * arrays that hold its kind, its span and the slots of its fields.");
+    writer.println(" * Children are stored as their indexes, lists as a range of slots and");
+    writer.println(" * numbers by value. Tokens, strings and other objects go in a separate");
+    writer.println(" * table.");
+    writer.println(" * <p>");
+    writer.println(" * Nodes are read through short-lived views, which {@link #accept(int, Visitor)}");
+    writer.println(" * hands to a visitor, or rebuilt as {@link AST} objects by {@link #toAST(int)}.");
+    writer.println(" * A missing child is {@link #NONE}, and a null list is stored as an empty one.");
+    writer.println(" * The columns can be written out and read back as a whole, which is how a");
+    writer.println(" * parsed module is stored between builds.");
+    writer.println(" */");
+    writer.println("public final class AstArena {");
+    writer.println("  public static final int NONE = -1;");
+    writer.println();
+
+    for (int i = 0; i < types.size(); i++) {
+      writer.println("  public static final byte " + types.get(i).kindName() + " = " + i + ";");
+    }
+
+    writer.println();
+    writer.println("  // the number of fixed slots of each kind");
+    writer.print("  private static final int[] SLOTS = {");
+    for (int i = 0; i < types.size(); i++) {
+      writer.print((i % 16 == 0 ? "\n    " : " ") + types.get(i).slots() + ",");
+    }
+    writer.println();
+    writer.println("  };");
+    writer.println();
+    writer.println("  private byte[] kinds;");
+    writer.println("  private long[] spans;");
+    writer.println("  private int[] firstSlots;");
+    writer.println("  private int[] slots;");
+    writer.println("  private Object[] refs;");
+    writer.println("  private int size = 0;");
+    writer.println("  private int slotSize = 0;");
+    writer.println("  private int refSize = 0;");
+    writer.println("  private final Importer importer = new Importer();");
+    writer.println();
+    writer.println("  public AstArena() {");
+    writer.println("    this(1024);");
+    writer.println("  }");
+    writer.println();
+    writer.println("  public AstArena(int capacity) {");
+    writer.println("    kinds = new byte[capacity];");
+    writer.println("    spans = new long[capacity];");
+    writer.println("    firstSlots = new int[capacity];");
+    writer.println("    slots = new int[capacity * 3];");
+    writer.println("    refs = new Object[capacity];");
+    writer.println("  }");
+    writer.println();
+    writer.println("  public int size() {");
+    writer.println("    return size;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  public byte kind(int node) {");
+    writer.println("    return kinds[node];");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * The packed span of the node, as in {@link AST#span}.");
+    writer.println("   */");
+    writer.println("  public long span(int node) {");
+    writer.println("    return spans[node];");
+    writer.println("  }");
+    writer.println();
+    writer.println("  public void setSpan(int node, long span) {");
+    writer.println("    spans[node] = span;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Returns a view of the node, or null for {@link #NONE}.");
+    writer.println("   */");
+    writer.println("  public Node node(int node) {");
+    writer.println("    if (node == NONE) return null;");
+    writer.println();
+    writer.println("    switch (kinds[node]) {");
+    for (ArenaType type : types) {
+      writer.println("      case " + type.kindName() + ": return new " + type.viewName() + "(this, node);");
+    }
+    writer.println("      default: throw new IllegalStateException(\"unknown node kind \" + kinds[node]);");
+    writer.println("    }");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Visits the node, or returns null for {@link #NONE}.");
+    writer.println("   */");
+    writer.println("  public <T> T accept(int node, Visitor<T> visitor) {");
+    writer.println("    return node == NONE ? null : node(node).accept(visitor);");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Shrinks the columns to the nodes stored so far.");
+    writer.println("   */");
+    writer.println("  public void trimToSize() {");
+    writer.println("    resize(size);");
+    writer.println("    slots = Arrays.copyOf(slots, slotSize);");
+    writer.println("    refs = Arrays.copyOf(refs, refSize);");
+    writer.println("  }");
+
+    defineArenaBuilders(writer, types);
+    defineArenaRebuilding(writer, types);
+    defineArenaStorage(writer);
+    defineArenaImporter(writer, types);
+    defineArenaViews(writer, types);
+
+    writer.println("}");
+    writer.close();
+
+    System.out.println("AstArena generated.");
+  }
+
+  private static void defineArenaBuilders(PrintWriter writer, List<ArenaType> types) {
+    writer.println();
+    writer.println("  //region [Building]");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Stores a tree of nodes, children first, and returns the index of its root.");
+    writer.println("   *");
+    writer.println("   * @throws IllegalArgumentException for nodes that have no kind in the arena.");
+    writer.println("   */");
+    writer.println("  public int add(AST node) {");
+    writer.println("    if (node == null) return NONE;");
+    writer.println();
+    writer.println("    importer.last = NONE;");
+    writer.println("    if (node instanceof Expression expression) {");
+    writer.println("      expression.accept(importer);");
+    writer.println("    } else if (node instanceof Statement statement) {");
+    writer.println("      statement.accept(importer);");
+    writer.println("    } else if (node instanceof Typed typed) {");
+    writer.println("      typed.accept(importer);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    int id = importer.last;");
+    writer.println("    if (id == NONE) {");
+    writer.println("      throw new IllegalArgumentException(\"cannot store \" + node.astName() + \" in an arena\");");
+    writer.println("    }");
+    writer.println();
+    writer.println("    spans[id] = node.span;");
+    writer.println("    return id;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  public int[] addAll(List<? extends AST> nodes) {");
+    writer.println("    if (nodes == null) return new int[0];");
+    writer.println();
+    writer.println("    int[] result = new int[nodes.size()];");
+    writer.println("    for (int i = 0; i < result.length; i++) {");
+    writer.println("      result[i] = add(nodes.get(i));");
+    writer.println("    }");
+    writer.println();
+    writer.println("    return result;");
+    writer.println("  }");
+
+    for (ArenaType type : types) {
+      List<String> parameters = new ArrayList<>();
+      List<String> lists = new ArrayList<>();
+      for (ArenaField field : type.fields()) {
+        if (field.parameterType() != null) parameters.add(field.parameterType() + " " + field.name());
+        if (field.isList()) lists.add(field.name() + (field.isTokenList() ? ".size()" : ".length"));
+      }
+
+      writer.println();
+      writer.println("  public int add" + type.viewName() + "(" + String.join(", ", parameters) + ") {");
+      if (lists.isEmpty()) {
+        writer.println("    int node = allocate(" + type.kindName() + ", 0);");
+      } else {
+        for (ArenaField field : type.fields()) {
+          if (!field.isList()) continue;
+          String empty = field.isTokenList() ? "List.of()" : "new int[0]";
+          writer.println("    if (" + field.name() + " == null) " + field.name() + " = " + empty + ";");
+        }
+        writer.println("    int node = allocate(" + type.kindName() + ", " + String.join(" + ", lists) + ");");
+      }
+
+      if (type.fields().isEmpty()) {
+        writer.println("    return node;");
+        writer.println("  }");
+        continue;
+      }
+
+      writer.println("    int slot = firstSlots[node];");
+      if (!lists.isEmpty()) {
+        writer.println("    int extra = slot + " + type.slots() + ";");
+      }
+
+      int offset = 0;
+      for (ArenaField field : type.fields()) {
+        String target = offset == 0 ? "slots[slot]" : "slots[slot + " + offset + "]";
+        String next = "slots[slot + " + (offset + 1) + "]";
+        String name = field.name();
+
+        if (field.mutable()) {
+          writer.println("    " + target + " = NONE;");
+        } else if (field.isTokenList()) {
+          writer.println("    " + target + " = extra;");
+          writer.println("    " + next + " = " + name + ".size();");
+          writer.println("    for (Token token : " + name + ") {");
+          writer.println("      slots[extra++] = ref(token);");
+          writer.println("    }");
+        } else if (field.isList()) {
+          writer.println("    " + target + " = extra;");
+          writer.println("    " + next + " = " + name + ".length;");
+          writer.println("    System.arraycopy(" + name + ", 0, slots, extra, " + name + ".length);");
+          writer.println("    extra += " + name + ".length;");
+        } else if (field.isRef()) {
+          writer.println("    " + target + " = ref(" + name + ");");
+        } else if (field.type().equals("boolean")) {
+          writer.println("    " + target + " = " + name + " ? 1 : 0;");
+        } else if (field.type().equals("Float")) {
+          writer.println("    " + target + " = Float.floatToRawIntBits(" + name + ");");
+        } else if (field.isWide()) {
+          String bits = field.type().equals("Double") ? "Double.doubleToRawLongBits(" + name + ")" : name;
+          writer.println("    " + target + " = (int) (" + bits + " >>> 32);");
+          writer.println("    " + next + " = (int) " + bits + ";");
+        } else {
+          writer.println("    " + target + " = " + name + ";");
+        }
+
+        offset += field.slots();
+      }
+
+      writer.println("    return node;");
+      writer.println("  }");
+    }
+
+    writer.println();
+    writer.println("  private int allocate(byte kind, int extraSlots) {");
+    writer.println("    if (size == kinds.length) {");
+    writer.println("      resize(size + (size >> 1) + 16);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    int needed = slotSize + SLOTS[kind] + extraSlots;");
+    writer.println("    if (needed > slots.length) {");
+    writer.println("      slots = Arrays.copyOf(slots, Math.max(needed, slots.length + (slots.length >> 1)));");
+    writer.println("    }");
+    writer.println();
+    writer.println("    kinds[size] = kind;");
+    writer.println("    spans[size] = AST.NO_SPAN;");
+    writer.println("    firstSlots[size] = slotSize;");
+    writer.println("    slotSize = needed;");
+    writer.println("    return size++;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  private void resize(int capacity) {");
+    writer.println("    kinds = Arrays.copyOf(kinds, capacity);");
+    writer.println("    spans = Arrays.copyOf(spans, capacity);");
+    writer.println("    firstSlots = Arrays.copyOf(firstSlots, capacity);");
+    writer.println("  }");
+    writer.println();
+    writer.println("  private int ref(Object value) {");
+    writer.println("    if (value == null) return NONE;");
+    writer.println();
+    writer.println("    if (refSize == refs.length) {");
+    writer.println("      refs = Arrays.copyOf(refs, refSize + (refSize >> 1) + 16);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    refs[refSize] = value;");
+    writer.println("    return refSize++;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  private Object deref(int ref) {");
+    writer.println("    return ref == NONE ? null : refs[ref];");
+    writer.println("  }");
+    writer.println();
+    writer.println("  //endregion");
+  }
+
+  private static void defineArenaRebuilding(PrintWriter writer, List<ArenaType> types) {
+    writer.println();
+    writer.println("  //region [Rebuilding]");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Rebuilds the tree stored at the node as {@link AST} objects with their");
+    writer.println("   * spans, or returns null for {@link #NONE}. Fields that start unset are");
+    writer.println("   * left unset.");
+    writer.println("   */");
+    writer.println("  public AST toAST(int node) {");
+    writer.println("    if (node == NONE) return null;");
+    writer.println();
+    writer.println("    int slot = firstSlots[node];");
+    writer.println("    AST result;");
+    writer.println();
+    writer.println("    switch (kinds[node]) {");
+
+    for (ArenaType type : types) {
+      List<String> arguments = new ArrayList<>();
+      int offset = 0;
+
+      for (ArenaField field : type.fields()) {
+        String value = offset == 0 ? "slots[slot]" : "slots[slot + " + offset + "]";
+        String next = "slots[slot + " + (offset + 1) + "]";
+        offset += field.slots();
+
+        if (field.mutable()) continue;
+
+        if (field.isTokenList()) {
+          arguments.add("tokens(" + value + ", " + next + ")");
+        } else if (field.isList()) {
+          arguments.add("toASTs(" + value + ", " + next + ")");
+        } else if (field.isRef()) {
+          arguments.add("(" + field.type() + ") deref(" + value + ")");
+        } else if (field.type().equals("boolean")) {
+          arguments.add(value + " != 0");
+        } else if (field.type().equals("Float")) {
+          arguments.add("Float.intBitsToFloat(" + value + ")");
+        } else if (field.isWide()) {
+          String bits = "((long) " + value + " << 32 | " + next + " & 0xffffffffL)";
+          arguments.add(field.type().equals("Double") ? "Double.longBitsToDouble(" + bits + ")" : bits);
+        } else if (field.isNode()) {
+          arguments.add("(" + qualified(field.type(), type.baseName()) + ") toAST(" + value + ")");
+        } else {
+          arguments.add(value);
+        }
+      }
+
+      writer.println("      case " + type.kindName() + ":");
+      writer.println("        result = new " + type.baseName() + "." + type.className() + "(" + String.join(", ", arguments) + ");");
+      writer.println("        break;");
+    }
+
+    writer.println("      default:");
+    writer.println("        throw new IllegalStateException(\"unknown node kind \" + kinds[node]);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    result.span = spans[node];");
+    writer.println("    return result;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  @SuppressWarnings(\"unchecked\")");
+    writer.println("  private <T extends AST> List<T> toASTs(int start, int size) {");
+    writer.println("    List<T> result = new ArrayList<>(size);");
+    writer.println("    for (int i = 0; i < size; i++) {");
+    writer.println("      result.add((T) toAST(slots[start + i]));");
+    writer.println("    }");
+    writer.println();
+    writer.println("    return result;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  private List<Token> tokens(int start, int size) {");
+    writer.println("    List<Token> result = new ArrayList<>(size);");
+    writer.println("    for (int i = 0; i < size; i++) {");
+    writer.println("      result.add((Token) deref(slots[start + i]));");
+    writer.println("    }");
+    writer.println();
+    writer.println("    return result;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  //endregion");
+  }
+
+  /**
+   * The name of a node type as seen from outside of the class that declares it.
+   */
+  private static String qualified(String type, String baseName) {
+    if (type.contains(".") || type.equals("Typed") || type.equals("Expression") || type.equals("Statement")) {
+      return type;
+    }
+
+    return baseName + "." + type;
+  }
+
+  private static void defineArenaStorage(PrintWriter writer) {
+    writer.println();
+    writer.println("  //region [Storing]");
+    writer.println();
+    writer.println("  private static final byte NULL_REF = 0;");
+    writer.println("  private static final byte STRING_REF = 1;");
+    writer.println("  private static final byte TOKEN_REF = 2;");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Writes the stored nodes, in the layout {@link #readFrom(ByteBuffer)} reads.");
+    writer.println("   *");
+    writer.println("   * @throws IllegalArgumentException if a field holds an object that is not a token or a string.");
+    writer.println("   */");
+    writer.println("  public void writeTo(DataOutput out) throws IOException {");
+    writer.println("    out.writeInt(size);");
+    writer.println("    out.writeInt(slotSize);");
+    writer.println("    out.writeInt(refSize);");
+    writer.println("    out.write(kinds, 0, size);");
+    writer.println();
+    writer.println("    for (int i = 0; i < size; i++) {");
+    writer.println("      out.writeLong(spans[i]);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    for (int i = 0; i < size; i++) {");
+    writer.println("      out.writeInt(firstSlots[i]);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    for (int i = 0; i < slotSize; i++) {");
+    writer.println("      out.writeInt(slots[i]);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    for (int i = 0; i < refSize; i++) {");
+    writer.println("      writeRef(out, refs[i]);");
+    writer.println("    }");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Reads nodes written by {@link #writeTo(DataOutput)}, starting at the");
+    writer.println("   * position of the buffer and leaving it after them. The columns are");
+    writer.println("   * copied out of the buffer in bulk.");
+    writer.println("   */");
+    writer.println("  public static AstArena readFrom(ByteBuffer in) {");
+    writer.println("    int size = in.getInt();");
+    writer.println("    int slotSize = in.getInt();");
+    writer.println("    int refSize = in.getInt();");
+    writer.println();
+    writer.println("    AstArena arena = new AstArena(size);");
+    writer.println("    arena.slots = new int[slotSize];");
+    writer.println("    arena.refs = new Object[refSize];");
+    writer.println("    in.get(arena.kinds, 0, size);");
+    writer.println("    in.asLongBuffer().get(arena.spans, 0, size);");
+    writer.println("    in.position(in.position() + size * Long.BYTES);");
+    writer.println("    in.asIntBuffer().get(arena.firstSlots, 0, size);");
+    writer.println("    in.position(in.position() + size * Integer.BYTES);");
+    writer.println("    in.asIntBuffer().get(arena.slots, 0, slotSize);");
+    writer.println("    in.position(in.position() + slotSize * Integer.BYTES);");
+    writer.println();
+    writer.println("    for (int i = 0; i < refSize; i++) {");
+    writer.println("      arena.refs[i] = readRef(in);");
+    writer.println("    }");
+    writer.println();
+    writer.println("    arena.size = size;");
+    writer.println("    arena.slotSize = slotSize;");
+    writer.println("    arena.refSize = refSize;");
+    writer.println("    return arena;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Writes a token, a string or null the way the arena writes its fields.");
+    writer.println("   */");
+    writer.println("  public static void writeRef(DataOutput out, Object value) throws IOException {");
+    writer.println("    if (value == null) {");
+    writer.println("      out.writeByte(NULL_REF);");
+    writer.println("    } else if (value instanceof String string) {");
+    writer.println("      out.writeByte(STRING_REF);");
+    writer.println("      writeString(out, string);");
+    writer.println("    } else if (value instanceof Token token) {");
+    writer.println("      out.writeByte(TOKEN_REF);");
+    writer.println("      out.writeShort(token.type().ordinal());");
+    writer.println("      writeString(out, token.literal());");
+    writer.println("      out.writeInt(token.line());");
+    writer.println("      out.writeInt(token.offset());");
+    writer.println("    } else {");
+    writer.println("      throw new IllegalArgumentException(\"cannot write \" + value.getClass().getSimpleName());");
+    writer.println("    }");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Reads a value written by {@link #writeRef(DataOutput, Object)}.");
+    writer.println("   * Identifiers are interned again as they are read.");
+    writer.println("   */");
+    writer.println("  public static Object readRef(ByteBuffer in) {");
+    writer.println("    byte tag = in.get();");
+    writer.println("    switch (tag) {");
+    writer.println("      case NULL_REF:");
+    writer.println("        return null;");
+    writer.println("      case STRING_REF:");
+    writer.println("        return readString(in);");
+    writer.println("      case TOKEN_REF:");
+    writer.println("        TokenType type = TokenType.values()[in.getShort()];");
+    writer.println("        String literal = readString(in);");
+    writer.println("        int line = in.getInt();");
+    writer.println("        return new Token(type, literal, line, in.getInt());");
+    writer.println("      default:");
+    writer.println("        throw new IllegalStateException(\"unknown value tag \" + tag);");
+    writer.println("    }");
+    writer.println("  }");
+    writer.println();
+    writer.println("  private static void writeString(DataOutput out, String value) throws IOException {");
+    writer.println("    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);");
+    writer.println("    out.writeInt(bytes.length);");
+    writer.println("    out.write(bytes);");
+    writer.println("  }");
+    writer.println();
+    writer.println("  private static String readString(ByteBuffer in) {");
+    writer.println("    byte[] bytes = new byte[in.getInt()];");
+    writer.println("    in.get(bytes);");
+    writer.println("    return new String(bytes, StandardCharsets.UTF_8);");
+    writer.println("  }");
+    writer.println();
+    writer.println("  //endregion");
+  }
+
+  private static void defineArenaImporter(PrintWriter writer, List<ArenaType> types) {
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Adds each node it visits and leaves the index in last.");
+    writer.println("   */");
+    writer.println("  private class Importer implements Typed.VoidVisitor, Expression.VoidVisitor, Statement.VoidVisitor {");
+    writer.println("    int last = NONE;");
+
+    for (ArenaType type : types) {
+      List<String> arguments = new ArrayList<>();
+      for (ArenaField field : type.fields()) {
+        if (field.mutable()) continue;
+
+        String value = "node." + field.name();
+        if (field.isTokenList()) {
+          arguments.add(value);
+        } else if (field.isList()) {
+          arguments.add("addAll(" + value + ")");
+        } else if (field.isNode()) {
+          arguments.add("add(" + value + ")");
+        } else {
+          arguments.add(value);
+        }
+      }
+
+      writer.println();
+      writer.println("    @Override");
+      writer.println("    public void visit" + type.viewName() + "(" + type.baseName() + "." + type.className() + " node) {");
+      writer.println("      last = add" + type.viewName() + "(" + String.join(", ", arguments) + ");");
+      writer.println("    }");
+    }
+
+    for (String baseName : List.of("Typed", "Expression", "Statement")) {
+      writer.println();
+      writer.println("    @Override");
+      writer.println("    public void visit" + baseName + "(" + baseName + " node) {");
+      writer.println("    }");
+    }
+
+    writer.println("  }");
+  }
+
+  private static void defineArenaViews(PrintWriter writer, List<ArenaType> types) {
+    writer.println();
+    writer.println("  public interface Visitor<T> {");
+    for (ArenaType type : types) {
+      writer.println("    T visit" + type.viewName() + "(" + type.viewName() + " node);");
+    }
+    writer.println("  }");
+
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * A view of a node of any kind.");
+    writer.println("   */");
+    writer.println("  public static abstract class Node {");
+    writer.println("    protected final AstArena arena;");
+    writer.println("    protected final int id;");
+    writer.println();
+    writer.println("    Node(AstArena arena, int id) {");
+    writer.println("      this.arena = arena;");
+    writer.println("      this.id = id;");
+    writer.println("    }");
+    writer.println();
+    writer.println("    public int id() {");
+    writer.println("      return id;");
+    writer.println("    }");
+    writer.println();
+    writer.println("    public byte kind() {");
+    writer.println("      return arena.kinds[id];");
+    writer.println("    }");
+    writer.println();
+    writer.println("    public long span() {");
+    writer.println("      return arena.spans[id];");
+    writer.println("    }");
+    writer.println();
+    writer.println("    protected int slot(int offset) {");
+    writer.println("      return arena.slots[arena.firstSlots[id] + offset];");
+    writer.println("    }");
+    writer.println();
+    writer.println("    public abstract <T> T accept(Visitor<T> visitor);");
+    writer.println("  }");
+
+    for (ArenaType type : types) {
+      writer.println();
+      writer.println("  public static final class " + type.viewName() + " extends Node {");
+      writer.println("    " + type.viewName() + "(AstArena arena, int id) {");
+      writer.println("      super(arena, id);");
+      writer.println("    }");
+
+      int offset = 0;
+      for (ArenaField field : type.fields()) {
+        String name = field.name();
+        writer.println();
+
+        if (field.isList()) {
+          String element = field.isTokenList() ? "Token" : "int";
+          String item = "arena.slots[slot(" + offset + ") + index]";
+          writer.println("    public int " + name + "Size() {");
+          writer.println("      return slot(" + (offset + 1) + ");");
+          writer.println("    }");
+          writer.println();
+          writer.println("    public " + element + " " + name + "(int index) {");
+          writer.println("      Objects.checkIndex(index, slot(" + (offset + 1) + "));");
+          writer.println("      return " + (field.isTokenList() ? "(Token) arena.deref(" + item + ")" : item) + ";");
+          writer.println("    }");
+        } else if (field.isRef()) {
+          writer.println("    public " + field.type() + " " + name + "() {");
+          writer.println("      return " + (field.type().equals("Object") ? "" : "(" + field.type() + ") ") + "arena.deref(slot(" + offset + "));");
+          writer.println("    }");
+
+          if (field.mutable()) {
+            writer.println();
+            writer.println("    public void set" + field.capitalized() + "(Object value) {");
+            writer.println("      int slot = arena.firstSlots[id]" + (offset == 0 ? "" : " + " + offset) + ";");
+            writer.println("      if (arena.slots[slot] == NONE) {");
+            writer.println("        arena.slots[slot] = arena.ref(value);");
+            writer.println("      } else {");
+            writer.println("        arena.refs[arena.slots[slot]] = value;");
+            writer.println("      }");
+            writer.println("    }");
+          }
+        } else if (field.type().equals("boolean")) {
+          writer.println("    public boolean " + name + "() {");
+          writer.println("      return slot(" + offset + ") != 0;");
+          writer.println("    }");
+        } else if (field.type().equals("Float")) {
+          writer.println("    public float " + name + "() {");
+          writer.println("      return Float.intBitsToFloat(slot(" + offset + "));");
+          writer.println("    }");
+        } else if (field.isWide()) {
+          String bits = "((long) slot(" + offset + ") << 32) | (slot(" + (offset + 1) + ") & 0xffffffffL)";
+          if (field.type().equals("Double")) {
+            writer.println("    public double " + name + "() {");
+            writer.println("      return Double.longBitsToDouble(" + bits + ");");
+          } else {
+            writer.println("    public long " + name + "() {");
+            writer.println("      return " + bits + ";");
+          }
+          writer.println("    }");
+        } else {
+          // child nodes are returned as their indexes
+          writer.println("    public int " + name + "() {");
+          writer.println("      return slot(" + offset + ");");
+          writer.println("    }");
+        }
+
+        offset += field.slots();
+      }
+
+      writer.println();
+      writer.println("    @Override");
+      writer.println("    public <T> T accept(Visitor<T> visitor) {");
+      writer.println("      return visitor.visit" + type.viewName() + "(this);");
+      writer.println("    }");
+      writer.println("  }");
+    }
+  }
+
+  //endregion
+
+  //region [Span shifter]
+
+  private static void defineSpanShifter(String outputDir) throws IOException {
+    List<ArenaType> types = new ArrayList<>();
+    types.addAll(arenaTypes("Typed", TYPE_DEFINITION));
+    types.addAll(arenaTypes("Expression", EXPR_DEFINITION));
+    types.addAll(arenaTypes("Statement", STMT_DEFINITION));
+
+    String path = outputDir + "/SpanShifter.java";
+    PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8);
+
+    writer.println("// DO NOT MODIFY DIRECTLY");
+    writer.println("// This file was generated by the tools.rem.GenerateAst");
+    writer.println("package org.rem.parser.ast;");
+    writer.println();
+    writer.println("import java.util.Collections;");
+    writer.println("import java.util.IdentityHashMap;");
+    writer.println("import java.util.List;");
+    writer.println("import java.util.Set;");
+    writer.println();
+    writer.println("/**");
+    writer.println(" * Moves the spans of trees of nodes by the same offset. A node reachable");
+    writer.println(" * more than once is only moved once.");
+    writer.println(" */");
+    writer.println("public final class SpanShifter implements Typed.VoidVisitor, Expression.VoidVisitor, Statement.VoidVisitor {");
+    writer.println("  private final int offsetDelta;");
+    writer.println("  private final Set<AST> visited = Collections.newSetFromMap(new IdentityHashMap<>());");
+    writer.println();
+    writer.println("  public SpanShifter(int offsetDelta) {");
+    writer.println("    this.offsetDelta = offsetDelta;");
+    writer.println("  }");
+    writer.println();
+    writer.println("  /**");
+    writer.println("   * Moves the span of a node and everything below it.");
+    writer.println("   */");
+    writer.println("  public void shift(AST node) {");
+    writer.println("    if (node == null || !visited.add(node)) return;");
+    writer.println();
+    writer.println("    // nodes the parser never positioned have no span");
+    writer.println("    if (node.hasSpan()) {");
+    writer.println("      node.span += (long) offsetDelta << 32;");
+    writer.println("    }");
+    writer.println();
+    writer.println("    if (node instanceof Expression expression) {");
+    writer.println("      expression.accept(this);");
+    writer.println("    } else if (node instanceof Statement statement) {");
+    writer.println("      statement.accept(this);");
+    writer.println("    } else if (node instanceof Typed typed) {");
+    writer.println("      typed.accept(this);");
+    writer.println("    }");
+    writer.println("  }");
+    writer.println();
+    writer.println("  public void shiftAll(List<? extends AST> nodes) {");
+    writer.println("    if (nodes == null) return;");
+    writer.println();
+    writer.println("    for (AST node : nodes) {");
+    writer.println("      shift(node);");
+    writer.println("    }");
+    writer.println("  }");
+
+    for (ArenaType type : types) {
+      writer.println();
+      writer.println("  @Override");
+      writer.println("  public void visit" + type.viewName() + "(" + type.baseName() + "." + type.className() + " node) {");
+      for (ArenaField field : type.fields()) {
+        if (field.mutable() || field.isTokenList()) continue;
+
+        if (field.isList()) {
+          writer.println("    shiftAll(node." + field.name() + ");");
+        } else if (field.isNode()) {
+          writer.println("    shift(node." + field.name() + ");");
+        }
+      }
+      writer.println("  }");
+    }
+
+    for (String baseName : List.of("Typed", "Expression", "Statement")) {
+      writer.println();
+      writer.println("  @Override");
+      writer.println("  public void visit" + baseName + "(" + baseName + " node) {");
+      writer.println("  }");
+    }
+
+    writer.println("}");
+    writer.close();
+  }
+
+  //endregion
 }
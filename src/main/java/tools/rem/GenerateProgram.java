@@ -0,0 +1,284 @@
+package tools.rem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates large, valid rem programs for scaling tests and benchmarks.
+ * <p>
+ * Every function takes two i32 parameters and returns an i32 computed with
+ * assignments, nested conditionals, bounded loops, local array literals and
+ * calls to previously generated functions. Calls only go to earlier functions,
+ * so the call graph is acyclic. Programs are meant to be compiled rather than
+ * run, so `main` only calls the first function. The same options and seed
+ * always produce the same program.
+ */
+public class GenerateProgram {
+  /** Number of generated functions besides `main`. */
+  public int functions = 100;
+  /** Maximum nesting of conditionals and loops inside a function. */
+  public int depth = 3;
+  /** Statements per block. */
+  public int statements = 4;
+  /** Probability that a statement which may nest is a loop. */
+  public double loopDensity = 0.3;
+  /** Probability that a statement is an array literal with its uses. */
+  public double arrayDensity = 0.2;
+  /** Number of calls each function makes to earlier functions. */
+  public int fanOut = 2;
+  public long seed = 42;
+
+  private Random random;
+  private Writer out;
+  private int variables;
+  private int pendingCalls;
+
+  public static void main(String[] args) throws IOException {
+    GenerateProgram generator = new GenerateProgram();
+    String output = null;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        String value = i + 1 < args.length ? args[i + 1] : null;
+
+        switch (arg) {
+          case "--functions" -> generator.functions = Integer.parseInt(value);
+          case "--depth" -> generator.depth = Integer.parseInt(value);
+          case "--statements" -> generator.statements = Integer.parseInt(value);
+          case "--loops" -> generator.loopDensity = Double.parseDouble(value);
+          case "--arrays" -> generator.arrayDensity = Double.parseDouble(value);
+          case "--fan-out" -> generator.fanOut = Integer.parseInt(value);
+          case "--seed" -> generator.seed = Long.parseLong(value);
+          case "-o" -> output = value;
+          default -> throw new IllegalArgumentException(arg);
+        }
+
+        i++;
+      }
+    } catch (IllegalArgumentException | NullPointerException e) {
+      System.err.println(
+        "Usage: generate_program [--functions <n>] [--depth <n>] [--statements <n>] [--loops <0-1>] " +
+          "[--arrays <0-1>] [--fan-out <n>] [--seed <n>] [-o <file>]"
+      );
+      System.exit(1);
+    }
+
+    if (output == null) {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+      generator.generate(writer);
+      writer.flush();
+    } else {
+      try (Writer writer = Files.newBufferedWriter(Path.of(output))) {
+        generator.generate(writer);
+      }
+    }
+  }
+
+  public String generate() {
+    StringBuilder builder = new StringBuilder();
+    try {
+      generate(builder);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return builder.toString();
+  }
+
+  public void generate(Appendable appendable) throws IOException {
+    this.random = new Random(seed);
+    this.out = appendable instanceof Writer writer ? writer : new AppendableWriter(appendable);
+
+    out.write("@def static putchar(c: i32) i32\n\n");
+
+    for (int i = 0; i < functions; i++) {
+      function(i);
+    }
+
+    out.write("def main() i32 {\n");
+    if (functions > 0) {
+      out.write("  putchar(48 + f_0(3, 10) % 10)\n");
+    }
+    out.write("  putchar(10)\n");
+    out.write("  return 0\n");
+    out.write("}\n");
+    out.flush();
+  }
+
+  //region Generators
+
+  private void function(int index) throws IOException {
+    variables = 0;
+    pendingCalls = index == 0 ? 0 : fanOut;
+
+    out.write("def f_" + index + "(a: i32, b: i32) i32 {\n");
+    out.write("  var total = a + " + index + "\n");
+    block(1, index);
+
+    // Calls that did not fit in the body still count towards the fan out.
+    while (pendingCalls > 0) {
+      call(1, index);
+    }
+
+    out.write("  return total\n");
+    out.write("}\n\n");
+  }
+
+  private void block(int level, int function) throws IOException {
+    for (int i = 0; i < statements; i++) {
+      statement(level, function);
+    }
+  }
+
+  private void statement(int level, int function) throws IOException {
+    if (pendingCalls > 0 && random.nextInt(statements) == 0) {
+      call(level, function);
+      return;
+    }
+
+    if (random.nextDouble() < arrayDensity) {
+      array(level);
+      return;
+    }
+
+    if (level <= depth && random.nextDouble() < loopDensity) {
+      switch (random.nextInt(3)) {
+        case 0 -> forLoop(level, function);
+        case 1 -> whileLoop(level, function);
+        default -> doWhileLoop(level, function);
+      }
+      return;
+    }
+
+    if (level <= depth && random.nextInt(3) == 0) {
+      conditional(level, function);
+      return;
+    }
+
+    line(level, "total = " + expression());
+  }
+
+  private void call(int level, int function) throws IOException {
+    int callee = random.nextInt(function);
+    line(level, "total = total + f_" + callee + "(" + operand() + ", total % " + (2 + random.nextInt(13)) + ")");
+    pendingCalls--;
+  }
+
+  private void array(int level) throws IOException {
+    String name = "values_" + variables++;
+    line(level, "var " + name + " = [total, a, b, " + random.nextInt(100) + "]");
+    line(level, name + "[" + random.nextInt(4) + "] = " + expression());
+    line(level, "total = total + " + name + "[" + random.nextInt(4) + "]");
+  }
+
+  private void conditional(int level, int function) throws IOException {
+    line(level, "if " + condition() + " {");
+    block(level + 1, function);
+
+    if (random.nextBoolean()) {
+      line(level, "} else {");
+      block(level + 1, function);
+    }
+
+    line(level, "}");
+  }
+
+  private void forLoop(int level, int function) throws IOException {
+    String counter = "i_" + variables++;
+    line(level, "for var " + counter + " = 0; " + counter + " < " + (2 + random.nextInt(6)) + "; " + counter + "++ {");
+    line(level + 1, "total = total + " + counter);
+    block(level + 1, function);
+    line(level, "}");
+  }
+
+  private void whileLoop(int level, int function) throws IOException {
+    String counter = "w_" + variables++;
+    line(level, "var " + counter + " = " + (2 + random.nextInt(6)));
+    line(level, "while " + counter + " > 0 {");
+    block(level + 1, function);
+    line(level + 1, counter + "--");
+    line(level, "}");
+  }
+
+  private void doWhileLoop(int level, int function) throws IOException {
+    String counter = "d_" + variables++;
+    line(level, "var " + counter + " = 0");
+    line(level, "do {");
+    block(level + 1, function);
+    line(level + 1, counter + "++");
+    line(level, "} while " + counter + " < " + (1 + random.nextInt(5)));
+  }
+
+  private String condition() {
+    String comparison = operand() + " " + pick("<", ">", "<=", ">=", "==", "!=") + " " + operand();
+    if (random.nextInt(3) == 0) {
+      comparison += " " + pick("and", "or") + " " + operand() + " " + pick("<", ">") + " " + random.nextInt(1000);
+    }
+
+    return comparison;
+  }
+
+  private String expression() {
+    return switch (random.nextInt(4)) {
+      case 0 -> "total " + pick("+", "-", "*") + " " + operand();
+      case 1 -> "(total " + pick("<<", ">>") + " " + (1 + random.nextInt(3)) + ") " + pick("+", "-") + " " + operand();
+      case 2 -> "total % " + (2 + random.nextInt(97)) + " + " + operand();
+      default -> "(" + operand() + " " + pick("+", "-", "*") + " " + operand() + ") - total";
+    };
+  }
+
+  private String operand() {
+    return switch (random.nextInt(4)) {
+      case 0 -> "a";
+      case 1 -> "b";
+      case 2 -> "total";
+      default -> String.valueOf(random.nextInt(1000));
+    };
+  }
+
+  private String pick(String... options) {
+    return options[random.nextInt(options.length)];
+  }
+
+  private void line(int level, String text) throws IOException {
+    out.write("  ".repeat(level));
+    out.write(text);
+    out.write('\n');
+  }
+
+  //endregion
+
+  private static final class AppendableWriter extends Writer {
+    private final Appendable appendable;
+
+    AppendableWriter(Appendable appendable) {
+      this.appendable = appendable;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      appendable.append(new String(buffer, offset, length));
+    }
+
+    @Override
+    public void write(String text) throws IOException {
+      appendable.append(text);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
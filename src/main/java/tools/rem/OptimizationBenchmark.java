@@ -0,0 +1,107 @@
+package tools.rem;
+
+import org.rem.enums.OptimizationLevel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles each program at every optimization level and compares the runtime of
+ * the produced executables.
+ * <p>
+ * Each program is compiled in a child JVM so that a crash in one program does not
+ * abort the whole benchmark.
+ */
+public class OptimizationBenchmark {
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int runs = 20;
+    List<File> files = new ArrayList<>();
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--runs") && i + 1 < args.length) {
+        runs = Integer.parseInt(args[++i]);
+      } else {
+        files.add(new File(args[i]));
+      }
+    }
+
+    if (files.isEmpty()) {
+      File[] tests = new File("tests").listFiles((dir, name) -> name.endsWith(".r"));
+      if (tests == null) {
+        System.err.println("Usage: optimization_benchmark [--runs <n>] [file...]");
+        System.exit(1);
+      }
+
+      Arrays.sort(tests);
+      files.addAll(Arrays.asList(tests));
+    }
+
+    Path outputDir = Files.createTempDirectory("rem-opt-bench");
+    OptimizationLevel[] levels = OptimizationLevel.values();
+
+    System.out.printf("%-20s", "program");
+    for (OptimizationLevel level : levels) {
+      System.out.printf("%12s", "-" + level.name());
+    }
+    System.out.println();
+
+    for (File file : files) {
+      String name = file.getName().replaceAll("[.]r$", "");
+      System.out.printf("%-20s", name);
+
+      for (OptimizationLevel level : levels) {
+        Path executable = outputDir.resolve(name + "-" + level.name());
+
+        if (!compile(file, level, executable)) {
+          System.out.printf("%12s", "failed");
+          continue;
+        }
+
+        System.out.printf("%10.3fms", median(executable, runs) / 1_000_000.0);
+      }
+
+      System.out.println();
+    }
+  }
+
+  private static boolean compile(File file, OptimizationLevel level, Path executable) throws IOException, InterruptedException {
+    String java = ProcessHandle.current().info().command().orElse("java");
+    Files.deleteIfExists(executable);
+
+    Process process = new ProcessBuilder(
+      java, "-cp", System.getProperty("java.class.path"),
+      "org.rem.Main", "-" + level.name(), "-o", executable.toString(), file.getPath()
+    )
+      .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+      .redirectError(ProcessBuilder.Redirect.DISCARD)
+      .start();
+
+    process.waitFor();
+    return Files.isExecutable(executable);
+  }
+
+  private static long median(Path executable, int runs) throws IOException, InterruptedException {
+    long[] times = new long[runs];
+
+    for (int i = 0; i < runs; i++) {
+      long start = System.nanoTime();
+
+      new ProcessBuilder(executable.toString())
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .redirectError(ProcessBuilder.Redirect.DISCARD)
+        .start()
+        .waitFor();
+
+      times[i] = System.nanoTime() - start;
+    }
+
+    Arrays.sort(times);
+    return times[runs / 2];
+  }
+}
@@ -0,0 +1,95 @@
+package org.rem.compiler.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BuildCacheTest {
+  private static final int OBJECT_SIZE = 1024;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void evictsTheLeastRecentlyRestoredEntry() throws Exception {
+    // room for two entries, with their manifests
+    BuildCache cache = new BuildCache(directory.resolve("cache"), 3 * OBJECT_SIZE);
+    Path entry = Files.writeString(directory.resolve("main.r"), "");
+
+    // entries are ordered by modification times, which must differ
+    store(cache, entry, "aa01", 1);
+    Thread.sleep(20);
+    store(cache, entry, "aa02", 2);
+    Thread.sleep(20);
+    assertNotNull(cache.restore("aa01", entry, directory.resolve("restored").toString()));
+    Thread.sleep(20);
+
+    store(cache, entry, "aa03", 3);
+    assertNotNull(cache.restore("aa01", entry, directory.resolve("restored").toString()));
+    assertNull(cache.restore("aa02", entry, directory.resolve("restored").toString()));
+    assertNotNull(cache.restore("aa03", entry, directory.resolve("restored").toString()));
+  }
+
+  @Test
+  void sharesTheCacheBetweenConcurrentBuilds() throws Exception {
+    BuildCache cache = new BuildCache(directory.resolve("cache"), 4 * OBJECT_SIZE);
+    Path entry = Files.writeString(directory.resolve("main.r"), "");
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+      List<Future<?>> builds = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        int id = thread;
+        builds.add(executor.submit(() -> {
+          for (int i = 0; i < 20; i++) {
+            String key = "b" + ((id + i) % 10);
+            String output = directory.resolve("out" + id).toString();
+            List<String> restored = cache.restore(key, entry, output);
+
+            if (restored == null) {
+              store(cache, entry, key, key.charAt(1));
+            } else {
+              // a restored entry is always complete
+              assertEquals(List.of(output + ".o"), restored);
+              assertArrayEquals(object(key.charAt(1)), Files.readAllBytes(Path.of(output + ".o")));
+            }
+          }
+
+          return null;
+        }));
+      }
+
+      for (Future<?> build : builds) {
+        build.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    String statistics = cache.statistics();
+    assertTrue(statistics.contains("stores: "), statistics);
+  }
+
+  private void store(BuildCache cache, Path entry, String key, int fill) throws IOException {
+    String output = directory.resolve("build-" + key + "-" + Thread.currentThread().threadId()).toString();
+    Files.write(Path.of(output + ".o"), object(fill));
+    cache.store(key, entry, List.of(entry), output, List.of(output + ".o"));
+  }
+
+  private static byte[] object(int fill) {
+    byte[] bytes = new byte[OBJECT_SIZE];
+    Arrays.fill(bytes, (byte) fill);
+    return bytes;
+  }
+}
@@ -0,0 +1,339 @@
+package org.rem.compiler.modules;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rem.compiler.CompileRequest;
+import org.rem.compiler.Compiler;
+import org.rem.enums.EmitMode;
+import org.rem.enums.OptimizationLevel;
+import org.rem.parser.Source;
+import org.rem.parser.Token;
+import org.rem.parser.ast.AST;
+import org.rem.parser.ast.Statement;
+import org.rem.types.ClassType;
+import org.rem.types.DefType;
+import org.rem.types.F64Type;
+import org.rem.types.I32Type;
+import org.rem.types.I64Type;
+import org.rem.types.VectorType;
+import org.rem.utils.TimeReport;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleSummaryTest {
+  private static final String MAIN = """
+    import a
+    import b
+
+    def main() i32 {
+      putchar(48 + quad(2))
+      putchar(10)
+      return 0
+    }
+    """;
+
+  private static final String A = """
+    import b
+
+    def quad(x: i32) i32 {
+      return twice(twice(x))
+    }
+
+    def scale(x: i64, f: f64, v: []i32) f64 {
+      return f
+    }
+    """;
+
+  private static final String B = """
+    @def static putchar(c: i32) i32
+
+    def twice(y: i32) i32 {
+      return y * 2
+    }
+
+    def _hidden() i32 {
+      return 1
+    }
+    """;
+
+  @TempDir
+  Path directory;
+
+  //region Reading and writing
+
+  @Test
+  void readsBackWhatItWrote() throws IOException {
+    Module module = parse("a.r", A);
+    Module b = parse("b.r", B);
+    module.addDependency(module.imports().getFirst(), b);
+
+    List<ModuleSummary.Export> exports = aExports(module);
+    Path file = directory.resolve("main.a.rmi");
+    ModuleSummary.write(file, module, "options", exports);
+
+    ModuleSummary summary = ModuleSummary.read(file, module.source);
+    assertNotNull(summary);
+    assertEquals("options", summary.getOptions());
+    assertArrayEquals(module.interfaceHash(), summary.getInterfaceHash());
+
+    assertEquals(1, summary.imports().size());
+    Statement.Import anImport = summary.imports().getFirst();
+    assertEquals("b", anImport.path);
+    assertEquals(module.imports().getFirst().span, anImport.span);
+    assertArrayEquals(b.interfaceHash(), summary.dependencyHash(anImport));
+
+    assertEquals(2, summary.exports().size());
+    for (int i = 0; i < exports.size(); i++) {
+      ModuleSummary.Export expected = exports.get(i);
+      ModuleSummary.Export actual = summary.exports().get(i);
+
+      assertEquals(expected.name().literal(), actual.name().literal());
+      assertEquals(expected.span(), actual.span());
+      assertEquals(literals(expected.parameters()), literals(actual.parameters()));
+      assertEquals(expected.type().toString(), actual.type().toString());
+      assertEquals(expected.type().isVariadic(), actual.type().isVariadic());
+    }
+
+    // the summary's exports hash the same as the parsed declarations
+    assertArrayEquals(module.interfaceHash(), ModuleSummary.interfaceHash(summary.externs()));
+    assertEquals(dump(module.statements), dump(summary.statements()));
+  }
+
+  @Test
+  void ignoresSummariesOfOtherSources() throws IOException {
+    Module module = parse("b.r", B);
+    Path file = directory.resolve("main.b.rmi");
+    ModuleSummary.write(file, module, "options", bExports(module));
+
+    assertNotNull(ModuleSummary.read(file, module.source));
+    assertNull(ModuleSummary.read(file, new Source("b.r", B + "\n")));
+    assertNull(ModuleSummary.read(directory.resolve("missing.rmi"), module.source));
+  }
+
+  @Test
+  void ignoresDamagedSummaries() throws IOException {
+    Module module = parse("b.r", B);
+    Path file = directory.resolve("main.b.rmi");
+    ModuleSummary.write(file, module, "options", bExports(module));
+
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+    assertNull(ModuleSummary.read(file, module.source));
+
+    Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+    assertNull(ModuleSummary.read(file, module.source));
+
+    Files.write(file, new byte[0]);
+    assertNull(ModuleSummary.read(file, module.source));
+  }
+
+  @Test
+  void skipsModulesExportingClasses() throws IOException {
+    Module module = parse("c.r", """
+      class Vec {
+        var a: i32 = 110
+      }
+
+      def area(v: Vec) i32 {
+        return 1
+      }
+      """);
+
+    Statement.Function area = (Statement.Function) module.statements.get(1);
+    ClassType vec = new ClassType((Statement.Class) module.statements.getFirst());
+    List<ModuleSummary.Export> exports = List.of(new ModuleSummary.Export(
+      area.name, area.span, List.of(area.parameters.getFirst().name.token), new DefType(I32Type.INSTANCE, vec)
+    ));
+
+    Path file = directory.resolve("main.c.rmi");
+    ModuleSummary.write(file, module, "options", exports);
+
+    assertFalse(Files.exists(file));
+    assertFalse(Files.exists(directory.resolve("main.c.rmi.tmp")));
+  }
+
+  //endregion
+
+  //region Builds
+
+  @Test
+  void reusesTheObjectsOfUnchangedModules() throws IOException {
+    Path entry = project();
+
+    TimeReport first = build(entry, OptimizationLevel.O0);
+    assertEquals(0, first.counter("summarized modules"));
+    assertTrue(Files.isRegularFile(directory.resolve("main.a.rmi")));
+    assertTrue(Files.isRegularFile(directory.resolve("main.b.rmi")));
+
+    TimeReport second = build(entry, OptimizationLevel.O0);
+    assertEquals(2, second.counter("summarized modules"));
+    assertEquals(2, second.counter("reused objects"));
+  }
+
+  @Test
+  void reusesImportersWhenOnlyABodyChanged() throws IOException {
+    Path entry = project();
+    build(entry, OptimizationLevel.O0);
+    byte[] object = Files.readAllBytes(directory.resolve("main.a.o"));
+
+    Files.writeString(directory.resolve("b.r"), B.replace("y * 2", "y * 3"));
+    TimeReport report = build(entry, OptimizationLevel.O0);
+
+    // b is parsed again, a keeps its object since b exports the same functions
+    assertEquals(1, report.counter("summarized modules"));
+    assertEquals(1, report.counter("reused objects"));
+    assertArrayEquals(object, Files.readAllBytes(directory.resolve("main.a.o")));
+  }
+
+  @Test
+  void recompilesImportersWhenAnInterfaceChanged() throws IOException {
+    Path entry = project();
+    build(entry, OptimizationLevel.O0);
+
+    Files.writeString(directory.resolve("b.r"), B + "\ndef thrice(y: i32) i32 {\n  return y * 3\n}\n");
+    TimeReport report = build(entry, OptimizationLevel.O0);
+
+    // a is still read from its summary, but compiled again from its statements
+    assertEquals(1, report.counter("summarized modules"));
+    assertEquals(0, report.counter("reused objects"));
+    byte[] object = Files.readAllBytes(directory.resolve("main.a.o"));
+
+    // and gives the object a build from source does
+    clean();
+    build(entry, OptimizationLevel.O0);
+    assertArrayEquals(object, Files.readAllBytes(directory.resolve("main.a.o")));
+  }
+
+  @Test
+  void recompilesEverythingWhenTheOptionsChanged() throws IOException {
+    Path entry = project();
+    build(entry, OptimizationLevel.O0);
+
+    TimeReport report = build(entry, OptimizationLevel.O2);
+    assertEquals(2, report.counter("summarized modules"));
+    assertEquals(0, report.counter("reused objects"));
+
+    TimeReport again = build(entry, OptimizationLevel.O2);
+    assertEquals(2, again.counter("reused objects"));
+  }
+
+  //endregion
+
+  //region Helpers
+
+  private Module parse(String name, String text) throws IOException {
+    Path path = directory.resolve(name);
+    Files.writeString(path, text);
+    return ModuleGraph.parse(path, name.substring(0, name.length() - 2), TimeReport.disabled());
+  }
+
+  private static List<ModuleSummary.Export> aExports(Module module) {
+    List<ModuleSummary.Export> exports = new ArrayList<>();
+    DefType quad = new DefType(I32Type.INSTANCE, I32Type.INSTANCE);
+    DefType scale = new DefType(F64Type.INSTANCE, I64Type.INSTANCE, F64Type.INSTANCE, new VectorType(I32Type.INSTANCE));
+
+    for (Statement declaration : module.exportedDeclarations()) {
+      Statement.Function function = (Statement.Function) declaration;
+      List<Token> parameters = function.parameters.stream().map(parameter -> parameter.name.token).toList();
+      exports.add(new ModuleSummary.Export(function.name, function.span, parameters, exports.isEmpty() ? quad : scale));
+    }
+
+    return exports;
+  }
+
+  private static List<ModuleSummary.Export> bExports(Module module) {
+    List<ModuleSummary.Export> exports = new ArrayList<>();
+    DefType type = new DefType(I32Type.INSTANCE, I32Type.INSTANCE);
+
+    for (Statement declaration : module.exportedDeclarations()) {
+      Token name = declaration instanceof Statement.Function function ? function.name : ((Statement.Extern) declaration).name;
+      exports.add(new ModuleSummary.Export(name, declaration.span, List.of(), type));
+    }
+
+    return exports;
+  }
+
+  private Path project() throws IOException {
+    Files.writeString(directory.resolve("a.r"), A);
+    Files.writeString(directory.resolve("b.r"), B);
+    return Files.writeString(directory.resolve("main.r"), MAIN);
+  }
+
+  /**
+   * Builds the objects of the project and returns the report of the build.
+   */
+  private TimeReport build(Path entry, OptimizationLevel level) {
+    CompileRequest request = new CompileRequest(entry.toFile(), "llvm", "__main__", directory.resolve("main").toString());
+    request.emit = EnumSet.of(EmitMode.OBJECT);
+    request.optimizationLevel = level;
+    request.timeReport = TimeReport.create();
+    request.jobs = 2;
+
+    assertDoesNotThrow(() -> assertEquals(0, new Compiler(request, false).build()));
+    return request.timeReport;
+  }
+
+  private void clean() throws IOException {
+    try (var files = Files.list(directory)) {
+      for (Path file : files.toList()) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".o") || name.endsWith(ModuleSummary.EXTENSION)) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  private static List<String> literals(List<Token> tokens) {
+    return tokens.stream().map(Token::literal).toList();
+  }
+
+  /**
+   * Writes the class, span and public fields of every node.
+   */
+  private static String dump(Object value) {
+    StringBuilder out = new StringBuilder();
+    dump(value, out);
+    return out.toString();
+  }
+
+  private static void dump(Object value, StringBuilder out) {
+    if (value instanceof List<?> list) {
+      out.append('[');
+      for (Object item : list) {
+        dump(item, out);
+        out.append(',');
+      }
+      out.append(']');
+    } else if (value instanceof Token token) {
+      out.append(token.type()).append(' ').append(token.literal()).append(' ').append(token.offset());
+    } else if (value instanceof AST node) {
+      out.append(node.getClass().getSimpleName()).append('{').append(node.span);
+      for (Field field : node.getClass().getFields()) {
+        if (Modifier.isStatic(field.getModifiers()) || field.getName().equals("span")) continue;
+
+        out.append(' ').append(field.getName()).append('=');
+        try {
+          dump(field.get(node), out);
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      out.append('}');
+    } else {
+      out.append(value);
+    }
+  }
+
+  //endregion
+}
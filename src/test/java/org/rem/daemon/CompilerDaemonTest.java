@@ -0,0 +1,116 @@
+package org.rem.daemon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sends requests to a daemon running in the test's JVM.
+ */
+class CompilerDaemonTest {
+  @TempDir
+  Path directory;
+
+  private Path socket;
+  private Thread server;
+  private PrintStream out;
+  private PrintStream err;
+
+  @BeforeEach
+  void startDaemon() throws Exception {
+    // the daemon routes System.out and System.err for good
+    out = System.out;
+    err = System.err;
+
+    socket = directory.resolve("d.sock");
+    CompilerDaemon daemon = new CompilerDaemon(socket);
+    server = new Thread(() -> {
+      try {
+        daemon.serve();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    server.start();
+
+    while (!DaemonClient.isRunning(socket)) {
+      Thread.sleep(10);
+    }
+  }
+
+  @AfterEach
+  void stopDaemon() throws Exception {
+    send(Map.of(), DaemonProtocol.STOP);
+    server.join();
+
+    System.setOut(out);
+    System.setErr(err);
+  }
+
+  @Test
+  void usesTheCacheDirectoryOfTheClient() throws IOException {
+    Path first = directory.resolve("first");
+    Path second = directory.resolve("second");
+
+    assertTrue(send(Map.of("REM_CACHE_DIR", first.toString()), "--cache-stats").err.contains("cache directory: " + first));
+    assertTrue(send(Map.of("REM_CACHE_DIR", second.toString()), "--cache-stats").err.contains("cache directory: " + second));
+  }
+
+  @Test
+  void findsToolsOnThePathOfTheClient() throws IOException {
+    Files.writeString(directory.resolve("main.r"), "def main() i32 {\n  return 0\n}\n");
+    Path empty = Files.createDirectory(directory.resolve("empty"));
+
+    Response missing = send(Map.of("PATH", empty.toString()), "--no-cache", "main.r");
+    assertEquals(1, missing.status);
+    assertTrue(missing.err.contains("error: no linker found"), missing.err);
+    assertEquals("", missing.out);
+
+    Response found = send(Map.of("PATH", System.getenv("PATH")), "--no-cache", "main.r");
+    assertEquals(0, found.status, found.err);
+    assertTrue(Files.isExecutable(directory.resolve("main")));
+  }
+
+  private record Response(int status, String out, String err) {
+  }
+
+  private Response send(Map<String, String> environment, String... args) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socket));
+
+      DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+      DataInputStream response = new DataInputStream(Channels.newInputStream(channel));
+      DaemonProtocol.writeRequest(request, directory, environment, args);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+      while (true) {
+        byte kind = response.readByte();
+        if (kind == DaemonProtocol.EXIT) {
+          return new Response(response.readInt(), out.toString(), err.toString());
+        }
+
+        byte[] chunk = new byte[response.readInt()];
+        response.readFully(chunk);
+        (kind == DaemonProtocol.STDERR ? err : out).write(chunk);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package org.rem.generators;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rem.Main;
+import org.rem.compiler.CompileRequest;
+import org.rem.compiler.Compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs programs end to end with `rem run`, which JIT compiles them and calls
+ * their `main` in process.
+ */
+class LLVMJitRunnerTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void returnsTheStatusOfMain() throws IOException {
+    Path entry = Files.writeString(directory.resolve("main.r"), """
+      def main() i32 {
+        return 42
+      }
+      """);
+
+    assertEquals(42, run(entry));
+  }
+
+  @Test
+  void runsProgramsOfSeveralModules() throws IOException {
+    Files.writeString(directory.resolve("b.r"), """
+      @def static putchar(c: i32) i32
+
+      def sum(limit: i32) i32 {
+        var total = 0
+        for var i = 0; i < limit; i++ {
+          total = total + i
+        }
+        return total
+      }
+      """);
+
+    Path entry = Files.writeString(directory.resolve("main.r"), """
+      import b
+
+      def main() i32 {
+        putchar(65)
+        putchar(10)
+        return sum(10) - 3
+      }
+      """);
+
+    assertEquals(42, run(entry));
+  }
+
+  @Test
+  void failsOnTargetsThatCannotRun() throws IOException {
+    Path entry = Files.writeString(directory.resolve("main.r"), "def main() i32 {\n  return 0\n}\n");
+    CompileRequest request = new CompileRequest(entry.toFile(), "c");
+
+    PrintStream err = System.err;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(output, true));
+
+    try {
+      assertEquals(1, new Compiler(request, false).run());
+    } finally {
+      System.setErr(err);
+    }
+
+    assertEquals("error: running is only supported for LLVM targets", output.toString().strip());
+  }
+
+  private int run(Path entry) {
+    return Main.run(new String[]{"run", entry.toString()}, directory);
+  }
+}
@@ -0,0 +1,41 @@
+package org.rem.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rem.parser.TokenType.*;
+
+class LexerNumberTest {
+
+  private static TokenBuffer lex(String text) {
+    return new Lexer(new Source("test.r", text)).tokenize();
+  }
+
+  private static void assertNumber(String text, TokenType type, long value) {
+    TokenBuffer tokens = lex(text);
+    assertEquals(type, tokens.type(0), text);
+    assertEquals(value, tokens.value(0), text);
+  }
+
+  @Test
+  void keepsPrefixedLiteralsUpToUnsigned64Bits() {
+    assertNumber("0xFFFFFFFFFFFFFFFF", HEX_NUMBER, -1);
+    assertNumber("0x8000000000000000", HEX_NUMBER, Long.MIN_VALUE);
+    assertNumber("0x7FFFFFFFFFFFFFFF", HEX_NUMBER, Long.MAX_VALUE);
+    assertNumber("0b" + "1".repeat(64), BIN_NUMBER, -1);
+    assertNumber("0c1777777777777777777777", OCT_NUMBER, -1);
+  }
+
+  @Test
+  void widensPrefixedLiteralsPast64Bits() {
+    assertEquals(BIG_NUMBER, lex("0x10000000000000000").type(0));
+    assertEquals(BIG_NUMBER, lex("0b1" + "0".repeat(64)).type(0));
+    assertEquals(BIG_NUMBER, lex("0c2000000000000000000000").type(0));
+  }
+
+  @Test
+  void keepsDecimalLiteralsSigned() {
+    assertNumber("9223372036854775807", REG_NUMBER, Long.MAX_VALUE);
+    assertEquals(BIG_NUMBER, lex("9223372036854775808").type(0));
+  }
+}
@@ -0,0 +1,149 @@
+package org.rem.parser;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.rem.exceptions.LexerException;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link ParallelLexer} produces exactly the tokens and errors of
+ * {@link Lexer#tokenize()}, with chunks small enough that most of them start
+ * in the middle of a comment, string or interpolation.
+ */
+class ParallelLexerTest {
+  private static final int[] CHUNK_SIZES = {1, 7, 64};
+
+  private static final String PROGRAM = """
+    # a line comment with "quotes" and /* an opener
+    def add(a: i32, b: i32) i32 {
+      return a + b * 0x1F - 0b101 + 0c17 + 1.5e3
+    }
+
+    /* a block comment
+       /* nested over
+          several */ lines
+       "with a quote
+    */
+    def greet(name: string) string {
+      var text = "hello ${name}, and ${add(1,
+        2)} with a line break inside the interpolation"
+      var multi = 'first line
+    second line # not a comment
+    third line /* not a comment */'
+      var nested = "outer ${"inner ${name} done"} end"
+      var escaped = "not \\${interpolated} but \\"quoted\\""
+      return text
+    }
+
+    @def static putchar(c: i32) i32
+    const limit = 12345678901234567890
+    """;
+
+  private static final String[] FRAGMENTS = {
+    "\n", " ", "x", "12", "0xFF", "1.5", "{", "}", "(", ")", "+", "#c\n", "/*", "*/",
+    "\"", "'", "${", "\\", "var q = 3\n", "def f() i32 {\n  return 1\n}\n", "\"s ${x}\"", "'m\nl'",
+  };
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  static void startPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  static void stopPool() {
+    pool.shutdown();
+  }
+
+  @Test
+  void matchesTheLexerOnTrickyConstructs() {
+    assertSameTokens(PROGRAM);
+    assertSameTokens(PROGRAM.repeat(20));
+  }
+
+  @Test
+  void matchesTheLexerOnUnterminatedStrings() {
+    // strings span lines, so only the end of the source leaves one open
+    assertSameError(PROGRAM.repeat(3) + "var broken = \"never closed\n" + "def f() {\n}\n".repeat(10));
+    assertSameError(PROGRAM + "var broken = 'never ${closed} either\n");
+  }
+
+  @Test
+  void matchesTheLexerOnUnclosedComments() {
+    assertSameError(PROGRAM + "/* never closed\n" + PROGRAM);
+    assertSameError(PROGRAM + "/* /* closed once */\n" + PROGRAM);
+  }
+
+  @Test
+  void matchesTheLexerOnRandomSources() {
+    Random random = new Random(18);
+
+    for (int i = 0; i < 300; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = 20 + random.nextInt(200);
+      for (int j = 0; j < length; j++) {
+        text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+      }
+
+      String source = text.toString();
+      String expected = lex(() -> new Lexer(new Source("random.r", source)).tokenize());
+      for (int chunkSize : CHUNK_SIZES) {
+        assertEquals(expected, lex(() -> parallel(source, chunkSize)), "chunk size " + chunkSize + " on:\n" + source);
+      }
+    }
+  }
+
+  private static void assertSameTokens(String source) {
+    String expected = lex(() -> new Lexer(new Source("test.r", source)).tokenize());
+    assertFalse(expected.startsWith("error"), expected);
+
+    for (int chunkSize : CHUNK_SIZES) {
+      assertEquals(expected, lex(() -> parallel(source, chunkSize)), "chunk size " + chunkSize);
+    }
+  }
+
+  private static void assertSameError(String source) {
+    String expected = lex(() -> new Lexer(new Source("test.r", source)).tokenize());
+    assertTrue(expected.startsWith("error"), "expected a lexer error");
+
+    for (int chunkSize : CHUNK_SIZES) {
+      assertEquals(expected, lex(() -> parallel(source, chunkSize)), "chunk size " + chunkSize);
+    }
+  }
+
+  private static TokenBuffer parallel(String source, int chunkSize) {
+    return new ParallelLexer(new Source("test.r", source), pool, chunkSize).tokenize();
+  }
+
+  /**
+   * Describes every token, or the error the lexer failed with.
+   */
+  private static String lex(Supplier<TokenBuffer> lexer) {
+    TokenBuffer tokens;
+    try {
+      tokens = lexer.get();
+    } catch (LexerException e) {
+      return "error: " + e.getMessage();
+    }
+
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < tokens.size(); i++) {
+      result.append(tokens.type(i)).append(' ')
+        .append(tokens.start(i)).append(' ')
+        .append(tokens.length(i)).append(' ')
+        .append(tokens.line(i)).append(' ')
+        .append(tokens.literal(i)).append(' ')
+        .append(tokens.value(i)).append(' ')
+        .append(tokens.symbol(i)).append('\n');
+    }
+
+    return result.toString();
+  }
+}
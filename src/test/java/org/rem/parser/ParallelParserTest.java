@@ -0,0 +1,167 @@
+package org.rem.parser;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.rem.exceptions.ParserException;
+import org.rem.parser.ast.AST;
+import org.rem.parser.ast.Statement;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link ParallelParser} produces exactly the statements, spans,
+ * anonymous function names, node count and errors of {@link Parser#parse()},
+ * with chunks small enough that most declarations get their own.
+ */
+class ParallelParserTest {
+  private static final int[] CHUNK_SIZES = {1, 7, 64, ParallelParser.DEFAULT_CHUNK_SIZE};
+
+  private static final String[] DECLARATIONS = {
+    "@def static putchar(c: i32) i32\n",
+    "var count: i32 = 20\n",
+    "const limit = 0x1F\n",
+    "class Vec {\n  var a: i32 = 110\n  static var b: i8 = 25\n\n  @new() {\n    self.a = 1971\n  }\n}\n",
+    "class Point < Vec {}\n",
+    "# a comment\ndef add(a: i32, b: i32) i32 {\n  var apply = @(x: i32) i32 {\n    return x * 2\n  }\n  return apply(a) + b\n}\n",
+    "def greet(name: string) string {\n  return \"hello ${name}, ${add(1, 2)} times\"\n}\n",
+    "def loop(limit: i32) i32 {\n  var total = 0\n  for var i = 0; i < limit; i++ {\n    total = total + i\n  }\n  return total\n}\n",
+    "def compose() i32 {\n  var first = @() i32 { return 1 }\n  var second = @(y: i32) i32 {\n    var inner = @() i32 { return 3 }\n    return y + inner()\n  }\n  return first() + second(2)\n}\n",
+    "var handler = @(code: i32) i32 {\n  return code\n}\n",
+    "count = count + add(1,\n  2)\n",
+    "var values = [1, 2,\n  3]\n",
+    "/* a block comment\n   def hidden() {}\n*/\n",
+    "\n",
+  };
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  static void startPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  static void stopPool() {
+    pool.shutdown();
+  }
+
+  @Test
+  void matchesTheParserOnEveryKindOfDeclaration() {
+    assertSameStatements(String.join("", DECLARATIONS));
+    assertSameStatements(String.join("", DECLARATIONS).repeat(50));
+  }
+
+  @Test
+  void matchesTheParserOnRandomSources() {
+    Random random = new Random(22);
+
+    for (int i = 0; i < 100; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = 1 + random.nextInt(60);
+      for (int j = 0; j < length; j++) {
+        text.append(DECLARATIONS[random.nextInt(DECLARATIONS.length)]);
+      }
+
+      assertSameStatements(text.toString());
+    }
+  }
+
+  @Test
+  void namesAnonymousFunctionsAsTheParserDoes() {
+    // five anonymous functions in each copy of the declarations
+    String source = String.join("", DECLARATIONS).repeat(10);
+    String statements = parse(source, 1);
+
+    assertTrue(statements.contains("@anon0 "), "anonymous functions are numbered from 0");
+    assertTrue(statements.contains("@anon" + (5 * 10 - 1) + " "), "and across every chunk");
+    assertFalse(statements.contains("@anon" + (5 * 10) + " "));
+  }
+
+  @Test
+  void fallsBackToTheParserOnErrors() {
+    String valid = String.join("", DECLARATIONS).repeat(5);
+
+    // the first error is reported, even when a later chunk fails too
+    assertSameStatements(valid + "def broken( {\n}\n" + valid);
+    assertSameStatements(valid + "def broken( {\n}\n" + valid + "class {\n");
+    assertSameStatements("var = 1\n" + valid);
+  }
+
+  @Test
+  void parsesSmallSourcesInOneChunk() {
+    assertSameStatements("");
+    assertSameStatements("def main() i32 {\n  return 0\n}\n");
+  }
+
+  private static void assertSameStatements(String source) {
+    Lexer lexer = new Lexer(new Source("test.r", source));
+    TokenBuffer tokens = lexer.tokenize();
+    Parser parser = new Parser(lexer, tokens);
+    String expected = describe(parser::parse, parser::getNodeCount);
+
+    for (int chunkSize : CHUNK_SIZES) {
+      ParallelParser parallel = new ParallelParser(lexer, tokens, pool, chunkSize);
+      assertEquals(expected, describe(parallel::parse, parallel::getNodeCount), "chunk size " + chunkSize + " on:\n" + source);
+    }
+  }
+
+  private static String parse(String source, int chunkSize) {
+    Lexer lexer = new Lexer(new Source("test.r", source));
+    ParallelParser parallel = new ParallelParser(lexer, lexer.tokenize(), pool, chunkSize);
+    return describe(parallel::parse, parallel::getNodeCount);
+  }
+
+  /**
+   * Describes the statements and node count of a parse, or the error it
+   * failed with.
+   */
+  private static String describe(Supplier<List<Statement>> parse, Supplier<Integer> nodeCount) {
+    StringBuilder result = new StringBuilder();
+    try {
+      dump(parse.get(), result);
+    } catch (ParserException e) {
+      return "error: " + e.getMessage();
+    }
+
+    return result.append("\nnodes ").append(nodeCount.get()).toString();
+  }
+
+  /**
+   * Writes the class, span and public fields of every node.
+   */
+  private static void dump(Object value, StringBuilder out) {
+    if (value instanceof List<?> list) {
+      out.append('[');
+      for (Object item : list) {
+        dump(item, out);
+        out.append(',');
+      }
+      out.append(']');
+    } else if (value instanceof Token token) {
+      out.append(token.type()).append(' ').append(token.literal()).append(' ').append(token.offset());
+    } else if (value instanceof AST node) {
+      out.append(node.getClass().getSimpleName()).append('{').append(node.span);
+      for (Field field : node.getClass().getFields()) {
+        if (Modifier.isStatic(field.getModifiers()) || field.getName().equals("span")) continue;
+
+        out.append(' ').append(field.getName()).append('=');
+        try {
+          dump(field.get(node), out);
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      out.append('}');
+    } else {
+      out.append(value);
+    }
+  }
+}
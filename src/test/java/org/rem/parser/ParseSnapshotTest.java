@@ -0,0 +1,255 @@
+package org.rem.parser;
+
+import org.junit.jupiter.api.Test;
+import org.rem.exceptions.LexerException;
+import org.rem.exceptions.ParserException;
+import org.rem.parser.ast.AST;
+import org.rem.parser.ast.Statement;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that applying edits to a {@link ParseSnapshot} gives the tokens and
+ * declarations of a full parse of the edited source. Anonymous functions are
+ * compared without their numbers, which differ from a full parse by design.
+ */
+class ParseSnapshotTest {
+  private static final String PROGRAM = """
+    @def static putchar(c: i32) i32
+
+    # the counter every test bumps
+    var count: i32 = 20
+
+    class Vec {
+      var a: i32 = 110
+      static var b: i8 = 25
+
+      @new() {
+        self.a = 1971
+      }
+
+      get(a: i8) i32 {
+        return self.a + a
+      }
+    }
+
+    class Point < Vec {}
+
+    /* a block comment
+       /* nested */ over several lines
+    */
+    def add(a: i32, b: i32) i32 {
+      var apply = @(x: i32) i32 {
+        return x * 2
+      }
+      return apply(a) + b
+    }
+
+    def greet(name: string) string {
+      var text = "hello ${name}, ${add(1, 2)} times"
+      var multi = 'first line
+    second line'
+      return text
+    }
+
+    def loop(limit: i32) i32 {
+      var total = 0
+      for var i = 0; i < limit; i++ {
+        if total > 0x1F {
+          total = total - 0b101
+        } else {
+          total = total + i
+        }
+      }
+      while total > 100 {
+        total = total / 2
+      }
+      return total
+    }
+
+    def compose() i32 {
+      var first = @() i32 { return 1 }
+      var second = @(y: i32) i32 {
+        var inner = @() i32 { return 3 }
+        return y + inner()
+      }
+      return first() + second(2)
+    }
+
+    def main() i32 {
+      count = count + loop(10)
+      putchar(65)
+      return 0
+    }
+    """;
+
+  private static final String[] SNIPPETS = {
+    "\n", " ", "x", "1", "}", "{", "\"", "'", "/*", "*/", "#", "${", "(", ")", "0x1F", "\n\n", "a + b", "1.5", "@",
+    "var q = 3\n", "def g() i32 {\n  return 1\n}\n", "var h = @() i32 { return 4 }\n", "class C {}\n",
+  };
+
+  @Test
+  void matchesAFullParseAfterRandomEdits() {
+    int edits = 0;
+
+    for (long seed = 0; seed < 8; seed++) {
+      Random random = new Random(seed);
+      String text = PROGRAM;
+      ParseSnapshot snapshot = ParseSnapshot.parse(new Source("test.r", text));
+
+      for (int i = 0; i < 1000; i++, edits++) {
+        int offset = random.nextInt(text.length() + 1);
+        int removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(20), text.length() - offset) : 0;
+        String inserted = random.nextInt(3) == 0 ? "" : SNIPPETS[random.nextInt(SNIPPETS.length)];
+        TextEdit edit = new TextEdit(offset, removed, inserted);
+
+        String edited = edit.applyTo(text);
+        ParseSnapshot full = parseOrNull(() -> ParseSnapshot.parse(new Source("test.r", edited)));
+        ParseSnapshot current = snapshot;
+        ParseSnapshot next = parseOrNull(() -> current.apply(edit));
+
+        assertEquals(describe(full), describe(next), "seed " + seed + ", edit " + i + " " + edit + " of:\n" + text);
+
+        // an edit that does not parse leaves the snapshot current
+        if (next != null) {
+          text = edited;
+          snapshot = next;
+        }
+      }
+    }
+
+    assertEquals(8000, edits);
+  }
+
+  @Test
+  void reparsesOnlyTheEditedDeclaration() {
+    ParseSnapshot snapshot = ParseSnapshot.parse(new Source("test.r", PROGRAM));
+    List<Statement> before = snapshot.getStatements();
+
+    int offset = PROGRAM.indexOf("total / 2");
+    ParseSnapshot edited = snapshot.apply(TextEdit.insert(offset, "1 + "));
+    List<Statement> after = edited.getStatements();
+
+    assertEquals(1, edited.getParsedCount());
+    assertEquals(before.size(), after.size());
+    for (int i = 0; i < after.size(); i++) {
+      Statement statement = after.get(i);
+      if (statement instanceof Statement.Function function && function.name.literal().equals("loop")) {
+        continue;
+      }
+
+      assertSame(before.get(i), statement);
+    }
+
+    // the declarations after the edit were moved along with their text
+    Statement main = ParseSnapshot.parse(edited.getSource()).getStatements().getLast();
+    assertEquals(main.span, after.getLast().span);
+  }
+
+  @Test
+  void keepsAnonymousNamesUnique() {
+    ParseSnapshot snapshot = ParseSnapshot.parse(new Source("test.r", PROGRAM));
+    int offset = PROGRAM.indexOf("return x * 2");
+    ParseSnapshot edited = snapshot.apply(TextEdit.insert(offset, "x = x + 1\n"));
+
+    // the re-parsed function continues the count of the previous snapshot,
+    // unlike a full parse, which starts over
+    List<String> names = anonymousNames(edited.getStatements());
+    List<String> full = anonymousNames(ParseSnapshot.parse(edited.getSource()).getStatements());
+
+    assertEquals(full.size(), names.size());
+    assertEquals(names.size(), names.stream().distinct().count());
+    assertNotEquals(full, names);
+  }
+
+  @Test
+  void rejectsSupersededSnapshots() {
+    ParseSnapshot snapshot = ParseSnapshot.parse(new Source("test.r", PROGRAM));
+    snapshot.apply(TextEdit.insert(0, "\n"));
+
+    assertThrows(IllegalStateException.class, snapshot::getStatements);
+    assertThrows(IllegalStateException.class, () -> snapshot.apply(TextEdit.insert(0, "\n")));
+  }
+
+  /**
+   * Returns the snapshot, or null if the source does not lex or parse.
+   */
+  private static ParseSnapshot parseOrNull(Supplier<ParseSnapshot> parse) {
+    try {
+      return parse.get();
+    } catch (LexerException | ParserException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Describes the tokens and declarations of a snapshot, with the numbers of
+   * anonymous functions left out.
+   */
+  private static String describe(ParseSnapshot snapshot) {
+    if (snapshot == null) return "error";
+
+    StringBuilder result = new StringBuilder();
+    TokenSource tokens = snapshot.getTokens();
+    for (int i = 0; i < tokens.size(); i++) {
+      result.append(tokens.type(i)).append(' ')
+        .append(tokens.start(i)).append(' ')
+        .append(tokens.length(i)).append(' ')
+        .append(tokens.line(i)).append(' ')
+        .append(tokens.literal(i)).append(' ')
+        .append(tokens.value(i)).append('\n');
+    }
+
+    dump(snapshot.getStatements(), result);
+    return result.toString().replaceAll("@anon\\d+", "@anon");
+  }
+
+  /**
+   * Writes the class, span and public fields of every node. Tokens held by
+   * nodes are written without their offsets, which reused nodes don't update.
+   */
+  private static void dump(Object value, StringBuilder out) {
+    if (value instanceof List<?> list) {
+      out.append('[');
+      for (Object item : list) {
+        dump(item, out);
+        out.append(',');
+      }
+      out.append(']');
+    } else if (value instanceof Token token) {
+      out.append(token.type()).append(' ').append(token.literal());
+    } else if (value instanceof AST node) {
+      out.append(node.getClass().getSimpleName()).append('{').append(node.span);
+      for (Field field : node.getClass().getFields()) {
+        if (Modifier.isStatic(field.getModifiers()) || field.getName().equals("span")) continue;
+
+        out.append(' ').append(field.getName()).append('=');
+        try {
+          dump(field.get(node), out);
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      out.append('}');
+    } else {
+      out.append(value);
+    }
+  }
+
+  private static List<String> anonymousNames(List<Statement> statements) {
+    StringBuilder dump = new StringBuilder();
+    dump(statements, dump);
+
+    return Pattern.compile("@anon\\d+").matcher(dump).results()
+      .map(MatchResult::group)
+      .toList();
+  }
+}
@@ -0,0 +1,79 @@
+package org.rem.parser;
+
+import org.junit.jupiter.api.Test;
+import org.rem.exceptions.ParserException;
+import org.rem.parser.ast.Statement;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rem.parser.Parser.MAX_NESTING;
+
+class ParserTest {
+
+  private static List<Statement> parse(String text) {
+    return new Parser(new Lexer(new Source("test.r", text))).parse();
+  }
+
+  private static void assertNestedTooDeeply(String text, String position) {
+    ParserException error = assertThrows(ParserException.class, () -> parse(text));
+    assertEquals("code is nested too deeply on line " + position, error.getMessage());
+  }
+
+  /**
+   * A variable declaration on the second line whose value nests the given
+   * number of parentheses.
+   */
+  private static String parentheses(int depth) {
+    return "\nvar x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + "\n";
+  }
+
+  /**
+   * A function whose body nests the given number of braced `if` statements.
+   */
+  private static String blocks(int depth) {
+    return "def f() {\n" + "if true {\n".repeat(depth) + "}\n".repeat(depth) + "}\n";
+  }
+
+  @Test
+  void parsesCodeNestedUpToTheLimit() {
+    // the value of the declaration is the first level
+    assertEquals(1, parse(parentheses(MAX_NESTING - 1)).size());
+    assertEquals(1, parse("\nvar x = " + "- ".repeat(MAX_NESTING - 1) + "1\n").size());
+
+    // each `if` nests both its body and its block
+    assertEquals(1, parse(blocks((MAX_NESTING - 1) / 2)).size());
+    assertEquals(1, parse("def f() {\nif a {\n}" + " else if a {\n}".repeat(MAX_NESTING - 3) + "\n}\n").size());
+  }
+
+  @Test
+  void rejectsExpressionsNestedPastTheLimit() {
+    // reported at the token that goes past the limit, whatever follows it
+    assertNestedTooDeeply(parentheses(MAX_NESTING), "2:" + (9 + MAX_NESTING));
+    assertNestedTooDeeply(parentheses(100_000), "2:" + (9 + MAX_NESTING));
+    assertNestedTooDeeply("\nvar x = " + "- ".repeat(100_000) + "1\n", "2:" + (9 + 2 * MAX_NESTING));
+    assertNestedTooDeeply("\nvar x = " + "[".repeat(100_000) + "]".repeat(100_000) + "\n", "2:" + (9 + MAX_NESTING / 2));
+    assertNestedTooDeeply("\nx = " + "x = ".repeat(100_000) + "1\n", "2:" + (1 + 4 * MAX_NESTING));
+  }
+
+  @Test
+  void rejectsStatementsNestedPastTheLimit() {
+    assertNestedTooDeeply(blocks(100_000), (2 + MAX_NESTING / 2) + ":1");
+    assertNestedTooDeeply("def f() {\n" + "if true\n".repeat(100_000) + "x\n}\n", (1 + MAX_NESTING) + ":4");
+    assertNestedTooDeeply("def f() {\nif a {\n}" + " else if a {\n}".repeat(100_000) + "\n}\n", (1 + MAX_NESTING) + ":1");
+  }
+
+  @Test
+  void rejectsDeeplyNestedDeclarations() {
+    // the path taken by incremental and parallel parsing
+    String text = "var a = 1" + parentheses(100_000);
+    ParserException error = assertThrows(ParserException.class, () -> ParseSnapshot.parse(new Source("test.r", text)));
+    assertEquals("code is nested too deeply on line 2:" + (9 + MAX_NESTING), error.getMessage());
+  }
+
+  @Test
+  void rejectsStrayIncrements() {
+    assertThrows(ParserException.class, () -> parse("++\n"));
+    assertThrows(ParserException.class, () -> parse("var a = --\n"));
+  }
+}
@@ -0,0 +1,130 @@
+package org.rem.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDecoderTest {
+  private final StringDecoder decoder = new StringDecoder();
+
+  private String decode(String body) {
+    return decoder.decode(body, 0, body.length());
+  }
+
+  private void assertRejected(String body) {
+    assertThrows(IllegalArgumentException.class, () -> decode(body), body);
+  }
+
+  @Test
+  void returnsBodiesWithoutEscapesAsIs() {
+    assertEquals("plain text", decode("plain text"));
+    assertEquals("lo", decoder.decode("hello", 3, 5));
+  }
+
+  @Test
+  void decodesSimpleEscapes() {
+    assertEquals("\0\u0007\b\u001B\f\n\r\t\u000B", decode("\\0\\a\\b\\e\\f\\n\\r\\t\\v"));
+    assertEquals("\\'\"", decode("\\\\\\'\\\""));
+    assertEquals("a\nb", decode("a\\nb"));
+  }
+
+  @Test
+  void decodesEscapedDollar() {
+    assertEquals("${x}", decode("\\${x}"));
+    assertEquals("$", decode("\\$"));
+  }
+
+  @Test
+  void keepsUnknownEscapes() {
+    assertEquals("\\q\\z", decode("\\q\\z"));
+  }
+
+  @Test
+  void keepsTrailingBackslash() {
+    assertEquals("end\\", decode("end\\"));
+    assertEquals("\n\\", decode("\\n\\"));
+  }
+
+  @Test
+  void decodesUnicodeEscapesOfOneToSixDigits() {
+    assertEquals("A", decode("\\u{41}"));
+    assertEquals("\u0007", decode("\\u{7}"));
+    assertEquals("\u00E9", decode("\\u{0E9}"));
+    assertEquals("\u20AC", decode("\\u{20ac}"));
+    assertEquals("\uD83D\uDE00", decode("\\u{1F600}"));
+    assertEquals("\uDBFF\uDFFF", decode("\\u{10FFFF}"));
+    assertEquals("x", decode("\\u{000078}"));
+  }
+
+  @Test
+  void rejectsMalformedUnicodeEscapes() {
+    assertRejected("\\u{0000041}");
+    assertRejected("\\u{}");
+    assertRejected("\\u41");
+    assertRejected("\\u{41");
+    assertRejected("\\u{4G}");
+    assertRejected("\\u{110000}");
+  }
+
+  @Test
+  void rejectsNonAsciiHexDigits() {
+    // fullwidth digits are digits to Character.digit but not hex digits here
+    assertRejected("\\u{\uFF14\uFF11}");
+    assertRejected("\\x\uFF14\uFF11");
+    // Arabic-Indic digits
+    assertRejected("\\u{\u0664\u0661}");
+  }
+
+  @Test
+  void decodesValidUtf8ByteRuns() {
+    assertEquals("A", decode("\\x41"));
+    assertEquals("\u00E9", decode("\\xC3\\xA9"));
+    assertEquals("\u20AC", decode("\\xe2\\x82\\xac"));
+    assertEquals("\uD83D\uDE00", decode("\\xF0\\x9F\\x98\\x80"));
+    assertEquals("a\u00E9b", decode("a\\xC3\\xA9b"));
+  }
+
+  @Test
+  void rejectsInvalidUtf8ByteRuns() {
+    // continuation byte without a lead
+    assertRejected("\\x80");
+    // overlong encodings
+    assertRejected("\\xC0\\xAF");
+    assertRejected("\\xE0\\x80\\xAF");
+    // truncated sequence
+    assertRejected("\\xC3");
+    assertRejected("\\xE2\\x82");
+    assertRejected("\\xC3a");
+    // lead byte where a continuation is expected
+    assertRejected("\\xC3\\xC3");
+    // encoded surrogate and code points past U+10FFFF
+    assertRejected("\\xED\\xA0\\x80");
+    assertRejected("\\xF4\\x90\\x80\\x80");
+    assertRejected("\\xF5\\x80\\x80\\x80");
+    // not two hex digits
+    assertRejected("\\x4");
+    assertRejected("\\xZZ");
+  }
+
+  @Test
+  void rejectsUnpairedSurrogates() {
+    assertRejected("\\u{D800}");
+    assertRejected("\\u{DFFF}");
+    assertRejected("a\uD83D");
+    assertRejected("\uD83Da");
+    assertRejected("\uDE00");
+    assertRejected("\\n\uDE00");
+  }
+
+  @Test
+  void keepsPairedSurrogates() {
+    assertEquals("\uD83D\uDE00", decode("\uD83D\uDE00"));
+    assertEquals("\uD83D\uDE00\n", decode("\uD83D\uDE00\\n"));
+  }
+
+  @Test
+  void reusesItsBufferAcrossCalls() {
+    assertEquals("a\n", decode("a\\n"));
+    assertEquals("b\t", decode("b\\t"));
+  }
+}
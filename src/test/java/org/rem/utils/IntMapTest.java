@@ -0,0 +1,77 @@
+package org.rem.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntMapTest {
+
+  @Test
+  void putsAndGets() {
+    IntMap<String> map = new IntMap<>();
+    map.put(0, "zero");
+    map.put(7, "seven");
+
+    assertEquals("zero", map.get(0));
+    assertEquals("seven", map.get(7));
+    assertNull(map.get(1));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(1));
+    assertEquals(2, map.size());
+  }
+
+  @Test
+  void replacesValues() {
+    IntMap<String> map = new IntMap<>();
+    map.put(3, "a");
+    map.put(3, "b");
+
+    assertEquals("b", map.get(3));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void keepsNullValues() {
+    IntMap<String> map = new IntMap<>();
+    map.put(5, null);
+
+    assertTrue(map.containsKey(5));
+    assertNull(map.get(5));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void rejectsNegativeKeys() {
+    IntMap<String> map = new IntMap<>();
+
+    assertThrows(IllegalArgumentException.class, () -> map.put(-1, "x"));
+    assertNull(map.get(-1));
+    assertFalse(map.containsKey(-1));
+  }
+
+  @Test
+  void keepsEntriesWhenGrowing() {
+    IntMap<Integer> map = new IntMap<>(2);
+
+    // keys that are multiples of the table size collide before mixing
+    for (int i = 0; i < 10_000; i++) {
+      map.put(i * 1024, i);
+    }
+
+    assertEquals(10_000, map.size());
+    for (int i = 0; i < 10_000; i++) {
+      assertEquals(i, map.get(i * 1024));
+    }
+
+    assertNull(map.get(1023));
+  }
+
+  @Test
+  void printsEntries() {
+    IntMap<String> map = new IntMap<>();
+    assertEquals("{}", map.toString());
+
+    map.put(4, "four");
+    assertEquals("{4=four}", map.toString());
+  }
+}
@@ -0,0 +1,55 @@
+package org.rem.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputRouteTest {
+  private final OutputRoute route = new OutputRoute(new PrintStream(PrintStream.nullOutputStream()), new PrintStream(PrintStream.nullOutputStream()));
+
+  @AfterEach
+  void clearRoute() {
+    OutputRoute.set(null);
+  }
+
+  @Test
+  void isNotInheritedByThreadsOutlivingTheRequest() throws Exception {
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    try {
+      // the pool's thread is started while the route is set
+      OutputRoute.set(route);
+      assertNull(pool.submit(OutputRoute::current).get());
+
+      OutputRoute.set(null);
+      assertNull(pool.submit(OutputRoute::current).get());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void propagatesToTasksExplicitly() throws Exception {
+    AtomicReference<OutputRoute> seen = new AtomicReference<>();
+
+    OutputRoute.set(route);
+    Runnable task = OutputRoute.propagate(() -> seen.set(OutputRoute.current()));
+    OutputRoute.set(null);
+
+    Thread thread = new Thread(task);
+    thread.start();
+    thread.join();
+    assertSame(route, seen.get());
+
+    // and restores the route of the thread that ran it
+    task.run();
+    assertSame(route, seen.get());
+    assertNull(OutputRoute.current());
+  }
+}
@@ -0,0 +1,131 @@
+package org.rem.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+  @Test
+  void internsEachNameOnce() {
+    int first = SymbolTable.intern("symbolTableTestName");
+    int second = SymbolTable.intern("symbolTableTestName");
+    int other = SymbolTable.intern("symbolTableTestOther");
+
+    assertEquals(first, second);
+    assertNotEquals(first, other);
+    assertEquals("symbolTableTestName", SymbolTable.name(first));
+    assertEquals("symbolTableTestOther", SymbolTable.name(other));
+  }
+
+  @Test
+  void internsCharacterRanges() {
+    String text = "var symbolTableTestRange = 1";
+    int id = SymbolTable.intern(text, 4, 24);
+
+    assertEquals(SymbolTable.intern("symbolTableTestRange"), id);
+    assertEquals(SymbolTable.intern(new StringBuilder(text), 4, 24), id);
+    assertEquals("", SymbolTable.name(SymbolTable.intern(text, 4, 4)));
+  }
+
+  @Test
+  void keepsIdsAcrossRehashes() {
+    int before = SymbolTable.size();
+    List<Integer> ids = new ArrayList<>();
+
+    for (int i = 0; i < 20_000; i++) {
+      ids.add(SymbolTable.intern("rehash" + i));
+    }
+
+    assertEquals(before + 20_000, SymbolTable.size());
+    for (int i = 0; i < 20_000; i++) {
+      assertEquals(ids.get(i), SymbolTable.intern("rehash" + i));
+      assertEquals("rehash" + i, SymbolTable.name(ids.get(i)));
+    }
+  }
+
+  @Test
+  void agreesOnIdsWhenInterningConcurrently() throws Exception {
+    int names = 20_000;
+    int threads = 8;
+    int before = SymbolTable.size();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    try {
+      List<Future<int[]>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        long seed = t;
+        Callable<int[]> intern = () -> {
+          List<Integer> order = new ArrayList<>();
+          for (int i = 0; i < names; i++) order.add(i);
+          Collections.shuffle(order, new Random(seed));
+
+          int[] ids = new int[names];
+          for (int i : order) {
+            ids[i] = SymbolTable.intern("concurrent" + i);
+          }
+
+          return ids;
+        };
+
+        results.add(executor.submit(intern));
+      }
+
+      int[] expected = results.getFirst().get();
+      for (Future<int[]> result : results) {
+        assertArrayEquals(expected, result.get());
+      }
+
+      for (int i = 0; i < names; i++) {
+        assertEquals("concurrent" + i, SymbolTable.name(expected[i]));
+      }
+
+      assertEquals(before + names, SymbolTable.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void releasesNamesWhenTheLastLargeSessionEnds() {
+    SymbolTable.beginSession();
+    SymbolTable.beginSession();
+
+    int id = SymbolTable.intern("sessionName");
+    for (int i = 0; i <= SymbolTable.MAX_IDLE_SIZE; i++) {
+      SymbolTable.intern("session" + i);
+    }
+
+    // an inner session ending keeps the IDs of the outer one
+    SymbolTable.endSession();
+    assertEquals("sessionName", SymbolTable.name(id));
+    assertEquals(id, SymbolTable.intern("sessionName"));
+
+    SymbolTable.endSession();
+    assertEquals(0, SymbolTable.size());
+    assertEquals(0, SymbolTable.intern("afterSession"));
+  }
+
+  @Test
+  void keepsSmallTablesWhenSessionsEnd() {
+    SymbolTable.beginSession();
+    int id = SymbolTable.intern("smallSession");
+    SymbolTable.endSession();
+
+    assertEquals(id, SymbolTable.intern("smallSession"));
+  }
+
+  @Test
+  void rejectsUnbalancedSessions() {
+    assertThrows(IllegalStateException.class, SymbolTable::endSession);
+  }
+}